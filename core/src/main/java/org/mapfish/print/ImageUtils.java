@@ -0,0 +1,24 @@
+package org.mapfish.print;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+/**
+ * Utility methods for the images.
+ */
+public final class ImageUtils {
+    private ImageUtils() {
+        // intentionally empty
+    }
+
+    /**
+     * Get the number of bytes taken in memory by the pixels of an image.  Used for bounding the memory taken by the
+     * images kept in memory.
+     *
+     * @param image the image
+     */
+    public static long getImageSize(final BufferedImage image) {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / Byte.SIZE;
+    }
+}
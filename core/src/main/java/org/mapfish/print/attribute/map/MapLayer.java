@@ -133,4 +133,10 @@ public interface MapLayer {
     void cacheResources(final HttpRequestCache httpRequestCache,
             final MfClientHttpRequestFactory clientHttpRequestFactory,
             final MapfishMapContext transformer);
+
+    /**
+     * Release the resources prepared by {@link #cacheResources} and not used by the rendering.  Called once the map
+     * has been rendered, also when the rendering has failed or has been cancelled.
+     */
+    void releaseResources();
 }
@@ -1,5 +1,8 @@
 package org.mapfish.print.config;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
@@ -13,6 +16,7 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.styling.Fill;
 import org.geotools.styling.Graphic;
 import org.geotools.styling.Mark;
@@ -29,10 +33,14 @@ import org.mapfish.print.config.access.RoleAccessAssertion;
 import org.mapfish.print.http.CertificateStore;
 import org.mapfish.print.http.HttpCredential;
 import org.mapfish.print.http.HttpProxy;
+import org.mapfish.print.map.style.ParsedStyleCache;
 import org.mapfish.print.map.style.StyleParser;
 import org.mapfish.print.map.style.json.ColorParser;
+import org.mapfish.print.output.ReportResourceCache;
 import org.mapfish.print.parser.HasDefaultValue;
 import org.mapfish.print.servlet.fileloader.ConfigFileLoaderManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.client.ClientHttpRequestFactory;
@@ -42,6 +50,9 @@ import org.springframework.security.authentication.AuthenticationCredentialsNotF
 import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -57,6 +68,10 @@ import javax.annotation.PostConstruct;
  * <p></p>
  */
 public class Configuration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Configuration.class);
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final String JDBC_ACTIVE = "active";
+    private static final String[] JDBC_POOL_METRICS = {JDBC_ACTIVE, "idle"};
     private static final Map<String, String> GEOMETRY_NAME_ALIASES;
 
     static {
@@ -98,6 +113,11 @@ public class Configuration {
     private boolean defaultToSvg = false;
     private Set<String> jdbcDrivers = Sets.newHashSet();
     private Map<String, Style> namedStyles = Maps.newHashMap();
+    private final ParsedStyleCache parsedStyles = new ParsedStyleCache();
+    private final Map<String, BasicDataSource> jdbcDataSources = Maps.newHashMap();
+    private boolean closed = false;
+    private boolean closeRequested = false;
+    private int printJobs = 0;
 
     /**
      * The color used to draw the WMS tiles error default: transparent pink.
@@ -118,6 +138,10 @@ public class Configuration {
     private ConfigFileLoaderManager fileLoaderManager;
     @Autowired
     private ApplicationContext context;
+    @Autowired
+    private MetricRegistry metricRegistry;
+    @Autowired
+    private ReportResourceCache reportResources;
 
     final PDFConfig getPdfConfig() {
         return this.pdfConfig;
@@ -335,13 +359,15 @@ public class Configuration {
 
     /**
      * Return the named style ot Optional.absent() if there is not a style with the given name.
+     * <p></p>
+     * The parsed styles are cached, a copy is returned each time.
      *
      * @param styleName the name of the style to look up
      */
     public final Optional<? extends Style> getStyle(final String styleName) {
         final String styleRef = this.styles.get(styleName);
         if (styleRef != null) {
-            return this.styleParser.loadStyle(this, this.clientHttpRequestFactory, styleRef);
+            return loadNamedStyle(this.clientHttpRequestFactory, styleRef);
         } else {
             return Optional.absent();
         }
@@ -349,6 +375,26 @@ public class Configuration {
 
     }
 
+    /**
+     * Load a style declared in the configuration or in a template of the configuration.  The parsed style is cached, a
+     * copy is returned each time.
+     *
+     * @param requestFactory the factory for loading the style files
+     * @param styleRef the style
+     */
+    public final Optional<? extends Style> loadNamedStyle(final ClientHttpRequestFactory requestFactory,
+                                                          final String styleRef) {
+        return this.parsedStyles.loadStyle(this.styleParser, this, requestFactory, styleRef);
+    }
+
+    /**
+     * Get the cache of the static resources used by the reports of this configuration, null if the configuration has
+     * not been created by spring.
+     */
+    public final ReportResourceCache getReportResourceCache() {
+        return this.reportResources;
+    }
+
     /**
      * Get a default style.  If null a simple black line style will be returned.
      *
@@ -496,6 +542,19 @@ public class Configuration {
             template.validate(validationErrors, this);
         }
 
+        for (Template template : this.templates.values()) {
+            if (template.getJdbcUrl() != null) {
+                try {
+                    // the pools are only created on first use so that a configuration that is not valid has none
+                    openJdbcConnection(template).close();
+                } catch (SQLException e) {
+                    validationErrors.add(e);
+                } catch (RuntimeException e) {
+                    validationErrors.add(e);
+                }
+            }
+        }
+
         for (HttpProxy proxy : this.proxies) {
             proxy.validate(validationErrors, this);
         }
@@ -568,6 +627,157 @@ public class Configuration {
         this.jdbcDrivers = jdbcDrivers;
     }
 
+    /**
+     * Get a connection to the database of a template that has a <code>jdbcUrl</code>.  The connections come from a pool
+     * created for the template on first use and must be closed by the caller to return them to the pool.
+     * <p></p>
+     * If the configuration has been closed (after a reload) a connection that is not pooled is opened instead so that the
+     * print jobs started with the old configuration can finish.
+     *
+     * @param templateName the name of the template.
+     */
+    public final Connection getJdbcConnection(final String templateName) throws SQLException {
+        final Template template = this.templates.get(templateName);
+        if (template == null || template.getJdbcUrl() == null) {
+            throw new IllegalArgumentException("The template '" + templateName + "' has no jdbcUrl.");
+        }
+        final BasicDataSource dataSource;
+        synchronized (this) {
+            if (this.closed) {
+                dataSource = null;
+            } else {
+                dataSource = getJdbcDataSource(templateName, template);
+            }
+        }
+        if (dataSource == null) {
+            return openJdbcConnection(template);
+        }
+        return dataSource.getConnection();
+    }
+
+    private static Connection openJdbcConnection(final Template template) throws SQLException {
+        if (template.getJdbcUser() != null) {
+            return DriverManager.getConnection(template.getJdbcUrl(), template.getJdbcUser(), template.getJdbcPassword());
+        } else {
+            return DriverManager.getConnection(template.getJdbcUrl());
+        }
+    }
+
+    private BasicDataSource getJdbcDataSource(final String templateName, final Template template) {
+        BasicDataSource dataSource = this.jdbcDataSources.get(templateName);
+        if (dataSource == null) {
+            dataSource = new BasicDataSource();
+            dataSource.setUrl(template.getJdbcUrl());
+            if (template.getJdbcUser() != null) {
+                dataSource.setUsername(template.getJdbcUser());
+                dataSource.setPassword(template.getJdbcPassword());
+            }
+            dataSource.setInitialSize(template.getJdbcPoolMinSize());
+            dataSource.setMinIdle(template.getJdbcPoolMinSize());
+            dataSource.setMaxIdle(template.getJdbcPoolMaxSize());
+            dataSource.setMaxActive(template.getJdbcPoolMaxSize());
+            if (template.getJdbcValidationQuery() != null) {
+                dataSource.setValidationQuery(template.getJdbcValidationQuery());
+                dataSource.setTestOnBorrow(true);
+            }
+            if (template.getJdbcIdleTimeout() > 0) {
+                final long idleTimeout = template.getJdbcIdleTimeout() * MILLIS_PER_SECOND;
+                dataSource.setMinEvictableIdleTimeMillis(idleTimeout);
+                dataSource.setTimeBetweenEvictionRunsMillis(idleTimeout / 2);
+            }
+            this.jdbcDataSources.put(templateName, dataSource);
+
+            for (String name: JDBC_POOL_METRICS) {
+                final String metricName = getJdbcMetricName(templateName, name);
+                // the gauge of the configuration that is reloaded may still be registered
+                this.metricRegistry.remove(metricName);
+                this.metricRegistry.register(metricName, new JdbcPoolGauge(dataSource, name));
+            }
+        }
+        return dataSource;
+    }
+
+    private String getJdbcMetricName(final String templateName, final String name) {
+        // the configurations of the apps all have a different file, only the reloaded configuration has the same name
+        return MetricRegistry.name(Configuration.class, "jdbc", this.configurationFile.getAbsolutePath(), templateName,
+                name);
+    }
+
+    /**
+     * Register a print job that uses this configuration, the configuration is not closed before the job calls
+     * {@link #printJobDone()}.
+     */
+    public final synchronized void printJobStarted() {
+        this.printJobs++;
+    }
+
+    /**
+     * Unregister a print job registered with {@link #printJobStarted()}, the configuration is closed if it has been
+     * replaced and this was its last print job.
+     */
+    public final synchronized void printJobDone() {
+        this.printJobs--;
+        if (this.closeRequested && this.printJobs == 0) {
+            doClose();
+        }
+    }
+
+    /**
+     * Close the database connection pools of the templates once the print jobs that use the configuration are done.
+     * Called when the configuration is replaced by a new one.
+     */
+    public final synchronized void close() {
+        this.closeRequested = true;
+        if (this.printJobs == 0) {
+            doClose();
+        }
+    }
+
+    private synchronized void doClose() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.jdbcDataSources.isEmpty()) {
+            return;
+        }
+        final Map<String, Metric> metrics = this.metricRegistry.getMetrics();
+        for (Map.Entry<String, BasicDataSource> entry : this.jdbcDataSources.entrySet()) {
+            for (String name: JDBC_POOL_METRICS) {
+                final String metricName = getJdbcMetricName(entry.getKey(), name);
+                final Metric metric = metrics.get(metricName);
+                // do not remove the gauge of the configuration that replaced this one
+                if (metric instanceof JdbcPoolGauge && ((JdbcPoolGauge) metric).dataSource == entry.getValue()) {
+                    this.metricRegistry.remove(metricName);
+                }
+            }
+            try {
+                entry.getValue().close();
+            } catch (SQLException e) {
+                LOGGER.warn("Error while closing the connection pool of the template " + entry.getKey(), e);
+            }
+        }
+        this.jdbcDataSources.clear();
+    }
+
+    /**
+     * Exports the number of active or idle connections of a pool.
+     */
+    private static final class JdbcPoolGauge implements Gauge<Integer> {
+        private final BasicDataSource dataSource;
+        private final String name;
+
+        private JdbcPoolGauge(final BasicDataSource dataSource, final String name) {
+            this.dataSource = dataSource;
+            this.name = name;
+        }
+
+        @Override
+        public Integer getValue() {
+            return this.name.equals(JDBC_ACTIVE) ? this.dataSource.getNumActive() : this.dataSource.getNumIdle();
+        }
+    }
+
     /**
      * The roles required to access this configuration/app.  If empty or not set then it is a
      * <em>public</em> app.  If there are many roles then a user must have one of the roles in order to
@@ -71,6 +71,8 @@ public class ConfigurationFactory {
                     errors.append("\n\t* ").append(throwable.getMessage());
                     LOGGER.error("Configuration Error found: ", throwable);
                 }
+                // release the resources that the configuration may have opened while it was validated
+                config.close();
                 throw new Error(errors.toString(), validate.get(0));
             }
         }
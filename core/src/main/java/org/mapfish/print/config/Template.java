@@ -11,7 +11,6 @@ import org.mapfish.print.attribute.InternalAttribute;
 import org.mapfish.print.config.access.AccessAssertion;
 import org.mapfish.print.config.access.AlwaysAllowAssertion;
 import org.mapfish.print.config.access.RoleAccessAssertion;
-import org.mapfish.print.map.style.StyleParser;
 import org.mapfish.print.processor.Processor;
 import org.mapfish.print.processor.ProcessorDependencyGraph;
 import org.mapfish.print.processor.ProcessorDependencyGraphFactory;
@@ -20,9 +19,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.client.ClientHttpRequestFactory;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,12 +29,12 @@ import javax.annotation.Nonnull;
  */
 public class Template implements ConfigurationObject, HasConfiguration {
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Template.class);
+    private static final int DEFAULT_JDBC_POOL_MAX_SIZE = 8;
+    private static final int DEFAULT_JDBC_IDLE_TIMEOUT = 600;
     @Autowired
     private ProcessorDependencyGraphFactory processorGraphFactory;
     @Autowired
     private ClientHttpRequestFactory httpRequestFactory;
-    @Autowired
-    private StyleParser styleParser;
 
 
     private String reportTemplate;
@@ -49,6 +45,10 @@ public class Template implements ConfigurationObject, HasConfiguration {
     private String jdbcUrl;
     private String jdbcUser;
     private String jdbcPassword;
+    private int jdbcPoolMinSize = 0;
+    private int jdbcPoolMaxSize = DEFAULT_JDBC_POOL_MAX_SIZE;
+    private String jdbcValidationQuery;
+    private int jdbcIdleTimeout = DEFAULT_JDBC_IDLE_TIMEOUT;
     private volatile ProcessorDependencyGraph processorGraph;
     private Map<String, String> styles = new HashMap<String, String>();
     private Configuration configuration;
@@ -215,6 +215,60 @@ public class Template implements ConfigurationObject, HasConfiguration {
         this.jdbcPassword = jdbcPassword;
     }
 
+    public final int getJdbcPoolMinSize() {
+        return this.jdbcPoolMinSize;
+    }
+
+    /**
+     * The number of connections to the database that are kept open when the pool is idle (default 0).
+     *
+     * @param jdbcPoolMinSize the number of connections.
+     */
+    public final void setJdbcPoolMinSize(final int jdbcPoolMinSize) {
+        this.jdbcPoolMinSize = jdbcPoolMinSize;
+    }
+
+    public final int getJdbcPoolMaxSize() {
+        return this.jdbcPoolMaxSize;
+    }
+
+    /**
+     * The maximum number of connections to the database that are open at the same time (default 8).  The prints
+     * wait for a free connection when this limit is reached.
+     *
+     * @param jdbcPoolMaxSize the number of connections.
+     */
+    public final void setJdbcPoolMaxSize(final int jdbcPoolMaxSize) {
+        this.jdbcPoolMaxSize = jdbcPoolMaxSize;
+    }
+
+    public final String getJdbcValidationQuery() {
+        return this.jdbcValidationQuery;
+    }
+
+    /**
+     * The SQL query used to check that a pooled connection is still valid before it is used, for example
+     * <code>SELECT 1</code>.  If not set the connections are not checked.
+     *
+     * @param jdbcValidationQuery the query.
+     */
+    public final void setJdbcValidationQuery(final String jdbcValidationQuery) {
+        this.jdbcValidationQuery = jdbcValidationQuery;
+    }
+
+    public final int getJdbcIdleTimeout() {
+        return this.jdbcIdleTimeout;
+    }
+
+    /**
+     * The time in seconds after which an unused connection is closed (default 600).
+     *
+     * @param jdbcIdleTimeout the time in seconds.
+     */
+    public final void setJdbcIdleTimeout(final int jdbcIdleTimeout) {
+        this.jdbcIdleTimeout = jdbcIdleTimeout;
+    }
+
     /**
      * Get the processor graph to use for executing all the processors for the template.
      *
@@ -255,7 +309,7 @@ public class Template implements ConfigurationObject, HasConfiguration {
         final String styleRef = this.styles.get(styleName);
         Optional<Style> style;
         if (styleRef != null) {
-            style = (Optional<Style>) this.styleParser.loadStyle(getConfiguration(), this.httpRequestFactory, styleRef);
+            style = (Optional<Style>) getConfiguration().loadNamedStyle(this.httpRequestFactory, styleRef);
         } else {
             style = Optional.absent();
         }
@@ -296,26 +350,9 @@ public class Template implements ConfigurationObject, HasConfiguration {
             validationErrors.add(t);
         }
 
-        if (getJdbcUrl() != null) {
-
-            Connection connection = null;
-            try {
-                if (getJdbcUser() != null) {
-                    connection = DriverManager.getConnection(getJdbcUrl(), getJdbcUser(), getJdbcPassword());
-                } else {
-                    connection = DriverManager.getConnection(getJdbcUrl());
-                }
-            } catch (SQLException e) {
-                validationErrors.add(e);
-            } finally {
-                if (connection != null) {
-                    try {
-                        connection.close();
-                    } catch (SQLException e) {
-                        validationErrors.add(e);
-                    }
-                }
-            }
+        if (this.jdbcPoolMinSize < 0 || this.jdbcPoolMaxSize < 1 || this.jdbcPoolMinSize > this.jdbcPoolMaxSize) {
+            validationErrors.add(new ConfigurationException("The jdbcPoolMinSize must be positive and smaller or equal " +
+                                                            "to the jdbcPoolMaxSize which must be greater than 0."));
         }
 
         if (this.mapExport) {
@@ -27,6 +27,9 @@ import java.util.concurrent.Callable;
 /**
  *
  * Creates tasks for caching Http Requests that can be run simultaneously.
+ * <p></p>
+ * Layers that load their resources in another way than with a single http request can register a task, it is run
+ * together with the http requests.
  *
  */
 public final class HttpRequestCache {
@@ -158,7 +161,7 @@ public final class HttpRequestCache {
         }
     }
 
-    private final List<CachedClientHttpRequest> requests = new ArrayList<CachedClientHttpRequest>();
+    private final List<Callable<Void>> requests = new ArrayList<Callable<Void>>();
 
     private final File temporaryDirectory;
 
@@ -205,6 +208,16 @@ public final class HttpRequestCache {
         return register(factory.createRequest(uri, HttpMethod.GET));
     }
 
+    /**
+     * Register a task that loads resources, it is run at the same time as the http requests.  The task is
+     * responsible for keeping what it has loaded, its exceptions are ignored.
+     *
+     * @param task the task
+     */
+    public void register(final Callable<Void> task) {
+        this.requests.add(task);
+    }
+
     /**
      * Cache all requests at once.
      *
@@ -0,0 +1,631 @@
+package org.mapfish.print.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * A server wide cache storing the responses of GET requests on disk, so that they can be shared between the print jobs.
+ * <p></p>
+ * The HTTP caching headers are respected: responses marked as <code>no-store</code> or <code>private</code> are never
+ * stored, fresh responses (<code>Cache-Control: max-age</code>, <code>Expires</code>) are served from the disk and stale
+ * responses are revalidated with a conditional request (<code>ETag</code>, <code>Last-Modified</code>).
+ * <p></p>
+ * The total size of the stored responses is bounded by {@link #setMaxSize(long)}, the least recently used responses are
+ * evicted first.  The cache is disabled if the maximum size is 0.
+ */
+public final class PersistentHttpCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentHttpCache.class);
+
+    /**
+     * The request headers that can change the response of a server, they are part of the cache key.
+     */
+    private static final String[] KEY_HEADERS = {"Accept", "Accept-Language", "Authorization", "Cookie"};
+    private static final int HTTP_DEFAULT_PORT = 80;
+    private static final int HTTPS_DEFAULT_PORT = 443;
+    private static final int HEURISTIC_FRACTION = 10;
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private File directory;
+    private long maxSize = 0;
+    private long size = 0;
+
+    /**
+     * The directory where the responses are stored.  The content of the directory is deleted on startup.
+     *
+     * @param directory the directory
+     */
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The maximum number of bytes stored in the cache.  If 0 the cache is disabled.
+     *
+     * @param maxSize the size in bytes
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        if (this.directory.exists()) {
+            // the index of the stored responses is kept in memory, so the old responses cannot be reused
+            FileUtils.cleanDirectory(this.directory);
+        } else if (!this.directory.mkdirs()) {
+            throw new IOException("Unable to create the cache directory: " + this.directory);
+        }
+        // the gauge of a cache created before with the same registry is replaced
+        this.metricRegistry.remove(getMetricName("size"));
+        this.metricRegistry.register(getMetricName("size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                synchronized (PersistentHttpCache.this) {
+                    return PersistentHttpCache.this.size;
+                }
+            }
+        });
+    }
+
+    /**
+     * Return true if the responses can be cached.
+     */
+    public boolean isEnabled() {
+        return this.maxSize > 0 && this.directory != null;
+    }
+
+    /**
+     * Wrap the request factory so that the GET requests it creates are served from this cache when possible.
+     * <p></p>
+     * If the cache is disabled, the factory is returned unchanged.
+     *
+     * @param requestFactory the request factory to wrap
+     */
+    public MfClientHttpRequestFactory wrap(@Nonnull final MfClientHttpRequestFactory requestFactory) {
+        if (!isEnabled()) {
+            return requestFactory;
+        }
+        return new MfClientHttpRequestFactory() {
+            @Override
+            public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) throws IOException {
+                final ClientHttpRequest request = requestFactory.createRequest(uri, httpMethod);
+                if (httpMethod != HttpMethod.GET || uri.getScheme() == null ||
+                    !uri.getScheme().toLowerCase(Locale.ENGLISH).startsWith("http")) {
+                    return request;
+                }
+                return new CachingClientHttpRequest(request);
+            }
+
+            @Override
+            public void register(final RequestConfigurator callback) {
+                requestFactory.register(callback);
+            }
+        };
+    }
+
+    private String getMetricName(final String name) {
+        return PersistentHttpCache.class.getName() + "." + this.directory.getName() + "." + name;
+    }
+
+    /**
+     * Calculate the key under which the response of the request is stored.  The key is made of the normalized URI and of
+     * the headers that can change the response.
+     * <p></p>
+     * Also used by the other caches shared between the print jobs, so that they never give the response of a request to
+     * a request with other credentials or other content negotiation headers.
+     *
+     * @param request the request, with all its headers.
+     */
+    @Nonnull
+    public static String createKey(@Nonnull final ClientHttpRequest request) {
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(request.getMethod().name(), Charsets.UTF_8);
+        hasher.putString(" " + normalize(request.getURI()), Charsets.UTF_8);
+        for (String header : KEY_HEADERS) {
+            final List<String> values = request.getHeaders().get(header);
+            if (values != null) {
+                hasher.putString("\n" + header.toLowerCase(Locale.ENGLISH) + ": " + Joiner.on(',').join(values),
+                        Charsets.UTF_8);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static String normalize(final URI uri) {
+        final URI normalized = uri.normalize();
+        if (normalized.getHost() == null) {
+            return normalized.toString();
+        }
+        final String scheme = normalized.getScheme().toLowerCase(Locale.ENGLISH);
+        final StringBuilder result = new StringBuilder(scheme).append("://");
+        if (normalized.getRawUserInfo() != null) {
+            result.append(normalized.getRawUserInfo()).append('@');
+        }
+        result.append(normalized.getHost().toLowerCase(Locale.ENGLISH));
+        final int port = normalized.getPort();
+        if (port != -1 && !(port == HTTP_DEFAULT_PORT && scheme.equals("http")) &&
+            !(port == HTTPS_DEFAULT_PORT && scheme.equals("https"))) {
+            result.append(':').append(port);
+        }
+        result.append(Strings.isNullOrEmpty(normalized.getRawPath()) ? "/" : normalized.getRawPath());
+        if (normalized.getRawQuery() != null) {
+            result.append('?').append(normalized.getRawQuery());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Get the stored entry for the key, only if the vary headers of the request match the stored ones.
+     */
+    @Nullable
+    private synchronized Entry get(final String key, final ClientHttpRequest request) {
+        final Entry entry = this.entries.get(key);
+        if (entry != null && entry.matchesVary(request.getHeaders())) {
+            return entry;
+        }
+        return null;
+    }
+
+    @Nullable
+    private synchronized InputStream open(final Entry entry) {
+        try {
+            // the entry may have been evicted since it has been fetched
+            return this.entries.get(entry.key) == entry ? new FileInputStream(entry.file) : null;
+        } catch (FileNotFoundException e) {
+            remove(entry);
+            return null;
+        }
+    }
+
+    private synchronized void put(final Entry entry) {
+        final Entry previous = this.entries.put(entry.key, entry);
+        if (previous != null) {
+            this.size -= previous.length;
+            delete(previous.file);
+        }
+        this.size += entry.length;
+
+        final Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            final Entry eldest = iterator.next();
+            iterator.remove();
+            this.size -= eldest.length;
+            delete(eldest.file);
+            this.metricRegistry.counter(getMetricName("evicted")).inc();
+        }
+    }
+
+    private synchronized void remove(final Entry entry) {
+        if (this.entries.get(entry.key) == entry) {
+            this.entries.remove(entry.key);
+            this.size -= entry.length;
+            delete(entry.file);
+        }
+    }
+
+    private static void delete(final File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.debug("Unable to delete the cached file: {}", file);
+        }
+    }
+
+    /**
+     * The information about a stored response.
+     */
+    private static final class Entry {
+        private final String key;
+        private final File file;
+        private final long length;
+        private final HttpHeaders headers;
+        private final Map<String, List<String>> varyHeaders;
+        private volatile long expires;
+
+        private Entry(final String key, final File file, final HttpHeaders headers,
+                      final Map<String, List<String>> varyHeaders, final long expires) {
+            this.key = key;
+            this.file = file;
+            this.length = file.length();
+            this.headers = headers;
+            this.varyHeaders = varyHeaders;
+            this.expires = expires;
+        }
+
+        private boolean isFresh() {
+            return System.currentTimeMillis() < this.expires;
+        }
+
+        private boolean matchesVary(final HttpHeaders requestHeaders) {
+            for (Map.Entry<String, List<String>> vary : this.varyHeaders.entrySet()) {
+                final List<String> values = requestHeaders.get(vary.getKey());
+                if (values == null ? vary.getValue() != null : !values.equals(vary.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Calculate when a response expires, according to its caching headers.
+     *
+     * @param headers the headers of the response.
+     * @param now the time at which the response has been received.
+     * @return the expiration time or null if the response must not be stored.
+     */
+    @Nullable
+    public static Long getExpires(final HttpHeaders headers, final long now) {
+        Long maxAge = null;
+        Long sharedMaxAge = null;
+        boolean noCache = false;
+        final String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ENGLISH).split(",")) {
+                final String[] nameValue = directive.trim().split("=", 2);
+                final String name = nameValue[0].trim();
+                if (name.equals("no-store") || name.equals("private")) {
+                    return null;
+                } else if (name.equals("no-cache")) {
+                    noCache = true;
+                } else if (nameValue.length == 2 && (name.equals("max-age") || name.equals("s-maxage"))) {
+                    try {
+                        final long value = TimeUnit.SECONDS.toMillis(Long.parseLong(nameValue[1].trim().replace("\"", "")));
+                        if (name.equals("max-age")) {
+                            maxAge = value;
+                        } else {
+                            sharedMaxAge = value;
+                        }
+                    } catch (NumberFormatException e) {
+                        LOGGER.debug("Invalid Cache-Control directive: {}", directive);
+                    }
+                }
+            }
+        }
+
+        if (noCache) {
+            return now;
+        } else if (sharedMaxAge != null) {
+            return now + sharedMaxAge;
+        } else if (maxAge != null) {
+            return now + maxAge;
+        }
+
+        final long date = getDate(headers, "Date") > 0 ? getDate(headers, "Date") : now;
+        if (headers.getFirst("Expires") != null) {
+            // an invalid date means that the response is already expired
+            final long expires = getDate(headers, "Expires");
+            return expires > 0 ? now + expires - date : now;
+        }
+        final long lastModified = getDate(headers, "Last-Modified");
+        if (lastModified > 0 && lastModified < date) {
+            // heuristic freshness, see RFC 7234 section 4.2.2
+            return now + Math.min((date - lastModified) / HEURISTIC_FRACTION, MAX_HEURISTIC_LIFETIME);
+        }
+        return now;
+    }
+
+    /**
+     * Calculate until when the response of a request can be kept in a cache shared between the print jobs, that doesn't
+     * key the responses by their vary headers.
+     *
+     * @param request the request, with all its headers.
+     * @param response the response of the request.
+     * @param now the time at which the response has been received.
+     * @return the expiration time or null if the response must not be kept: the request carries credentials, the
+     *         response is not a success, is marked as <code>no-store</code> or <code>private</code> or varies on other
+     *         headers than the ones of the key.
+     */
+    @Nullable
+    public static Long getSharedExpires(@Nonnull final ClientHttpRequest request,
+                                        @Nonnull final ClientHttpResponse response, final long now) throws IOException {
+        if (hasCredentials(request.getHeaders()) || response.getRawStatusCode() != HttpStatus.OK.value()) {
+            return null;
+        }
+        final List<String> vary = response.getHeaders().get("Vary");
+        if (vary != null) {
+            for (String names : vary) {
+                for (String name : names.split(",")) {
+                    if (!isKeyHeader(name.trim())) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return getExpires(response.getHeaders(), now);
+    }
+
+    /**
+     * Return true if the request carries the credentials of a user (<code>Authorization</code> or <code>Cookie</code>
+     * header).
+     *
+     * @param headers the headers of the request.
+     */
+    public static boolean hasCredentials(@Nonnull final HttpHeaders headers) {
+        return headers.containsKey("Authorization") || headers.containsKey("Cookie");
+    }
+
+    private static boolean isKeyHeader(final String name) {
+        // the bodies are decoded by the client, so they don't depend on the accepted encodings
+        if (name.equalsIgnoreCase("Accept-Encoding")) {
+            return true;
+        }
+        for (String header : KEY_HEADERS) {
+            if (header.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make a request conditional with the validators (<code>ETag</code>, <code>Last-Modified</code>) of a stored
+     * response.
+     *
+     * @param storedHeaders the headers of the stored response.
+     * @param requestHeaders the headers of the request to make conditional.
+     * @return false if the stored response has no validator.
+     */
+    public static boolean setConditionalHeaders(@Nonnull final HttpHeaders storedHeaders,
+                                                @Nonnull final HttpHeaders requestHeaders) {
+        if (storedHeaders.getETag() != null) {
+            requestHeaders.setIfNoneMatch(storedHeaders.getETag());
+        }
+        final long lastModified = getDate(storedHeaders, "Last-Modified");
+        if (lastModified > 0) {
+            requestHeaders.setIfModifiedSince(lastModified);
+        }
+        return hasValidator(storedHeaders);
+    }
+
+    /**
+     * Revalidate a stale stored response with a conditional GET request.
+     *
+     * @param requestFactory the factory used to create the request.
+     * @param uri the URI of the stored response.
+     * @param storedHeaders the headers of the stored response.
+     * @return the new expiration time if the stored response is still valid or null if it has changed or it cannot be
+     *         revalidated.
+     */
+    @Nullable
+    public static Long revalidate(@Nonnull final ClientHttpRequestFactory requestFactory, @Nonnull final URI uri,
+                                  @Nonnull final HttpHeaders storedHeaders) throws IOException {
+        if (!hasValidator(storedHeaders)) {
+            return null;
+        }
+        final ClientHttpRequest request = requestFactory.createRequest(uri, HttpMethod.GET);
+        setConditionalHeaders(storedHeaders, request.getHeaders());
+        final ClientHttpResponse response = request.execute();
+        try {
+            if (response.getRawStatusCode() != HttpStatus.NOT_MODIFIED.value()) {
+                return null;
+            }
+            final long now = System.currentTimeMillis();
+            final Long expires = getExpires(response.getHeaders(), now);
+            return expires != null ? expires : now;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static boolean hasValidator(final HttpHeaders headers) {
+        return headers.getETag() != null || getDate(headers, "Last-Modified") > 0;
+    }
+
+    private static long getDate(final HttpHeaders headers, final String name) {
+        try {
+            return headers.getFirstDate(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A request that first looks in the cache for a response.
+     */
+    private final class CachingClientHttpRequest implements ClientHttpRequest {
+        private final ClientHttpRequest originalRequest;
+
+        private CachingClientHttpRequest(final ClientHttpRequest originalRequest) {
+            this.originalRequest = originalRequest;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return this.originalRequest.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return this.originalRequest.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.originalRequest.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return this.originalRequest.getBody();
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            final String key = createKey(this.originalRequest);
+            final Entry entry = get(key, this.originalRequest);
+            if (entry != null && entry.isFresh()) {
+                final InputStream body = open(entry);
+                if (body != null) {
+                    LOGGER.debug("Loading {} from the persistent cache", getURI());
+                    PersistentHttpCache.this.metricRegistry.counter(getMetricName("hit")).inc();
+                    return new StoredClientHttpResponse(entry.headers, body, null);
+                }
+            }
+
+            // open the stale response before the revalidation, it may be evicted in the mean time
+            final InputStream staleBody = entry != null ? open(entry) : null;
+            if (staleBody != null) {
+                setConditionalHeaders(entry.headers, getHeaders());
+            }
+
+            final ClientHttpResponse response;
+            try {
+                response = this.originalRequest.execute();
+            } catch (IOException e) {
+                IOUtils.closeQuietly(staleBody);
+                throw e;
+            }
+            final long now = System.currentTimeMillis();
+            if (staleBody != null && response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                final Long expires = getExpires(response.getHeaders(), now);
+                response.close();
+                entry.expires = expires != null ? expires : now;
+                LOGGER.debug("{} revalidated in the persistent cache", getURI());
+                PersistentHttpCache.this.metricRegistry.counter(getMetricName("revalidated")).inc();
+                return new StoredClientHttpResponse(entry.headers, staleBody, null);
+            }
+            IOUtils.closeQuietly(staleBody);
+
+            PersistentHttpCache.this.metricRegistry.counter(getMetricName("miss")).inc();
+            if (response.getRawStatusCode() != HttpStatus.OK.value()) {
+                return response;
+            }
+            final HttpHeaders headers = response.getHeaders();
+            final Long expires = getExpires(headers, now);
+            final List<String> vary = headers.get("Vary");
+            if (expires == null || (expires <= now && !hasValidator(headers)) || (vary != null && vary.contains("*"))) {
+                return response;
+            }
+
+            return store(key, response, expires);
+        }
+
+        private ClientHttpResponse store(final String key, final ClientHttpResponse response, final long expires)
+                throws IOException {
+            final HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            final Map<String, List<String>> varyHeaders = Maps.newHashMap();
+            final List<String> vary = headers.get("Vary");
+            if (vary != null) {
+                for (String names : vary) {
+                    for (String name : names.split(",")) {
+                        varyHeaders.put(name.trim(), getHeaders().get(name.trim()));
+                    }
+                }
+            }
+
+            final File file = File.createTempFile("cached-", null, PersistentHttpCache.this.directory);
+            try {
+                final InputStream is = response.getBody();
+                final OutputStream os = new FileOutputStream(file);
+                try {
+                    IOUtils.copy(is, os);
+                } finally {
+                    os.close();
+                }
+            } catch (IOException e) {
+                delete(file);
+                throw e;
+            } finally {
+                response.close();
+            }
+
+            final InputStream body = new FileInputStream(file);
+            if (file.length() > PersistentHttpCache.this.maxSize) {
+                // too big to be cached
+                return new StoredClientHttpResponse(headers, body, file);
+            }
+            put(new Entry(key, file, headers, varyHeaders, expires));
+            return new StoredClientHttpResponse(headers, body, null);
+        }
+    }
+
+    /**
+     * A response read from a stored file.
+     */
+    private static final class StoredClientHttpResponse extends AbstractClientHttpResponse {
+        private final HttpHeaders headers;
+        private final InputStream body;
+        private final File fileToDelete;
+
+        private StoredClientHttpResponse(final HttpHeaders headers, final InputStream body,
+                                         @Nullable final File fileToDelete) {
+            this.headers = headers;
+            this.body = body;
+            this.fileToDelete = fileToDelete;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return HttpStatus.OK.value();
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.OK.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return this.body;
+        }
+
+        @Override
+        public void close() {
+            IOUtils.closeQuietly(this.body);
+            if (this.fileToDelete != null) {
+                delete(this.fileToDelete);
+            }
+        }
+    }
+}
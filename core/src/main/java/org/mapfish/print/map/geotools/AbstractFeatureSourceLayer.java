@@ -9,10 +9,14 @@ import org.geotools.map.Layer;
 import org.geotools.styling.Style;
 import org.geotools.styling.visitor.RescaleStyleVisitor;
 import org.mapfish.print.attribute.map.MapfishMapContext;
+import org.mapfish.print.http.HttpRequestCache;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.AbstractLayerParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import javax.annotation.Nonnull;
 
@@ -22,6 +26,7 @@ import static org.mapfish.print.Constants.PDF_DPI;
  * A layer that wraps a Geotools Feature Source and a style object.
  */
 public abstract class AbstractFeatureSourceLayer extends AbstractGeotoolsLayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractFeatureSourceLayer.class);
 
     private FeatureSourceSupplier featureSourceSupplier;
     private FeatureSource<?, ?> featureSource = null;
@@ -98,6 +103,34 @@ public abstract class AbstractFeatureSourceLayer extends AbstractGeotoolsLayer {
         };
     }
 
+    /**
+     * Load the feature source (for example download the GeoJSON or the GML) with the resources of the other layers.
+     *
+     * @param httpRequestCache the cache for the http requests of the map
+     * @param clientHttpRequestFactory client http request factory
+     * @param transformer transformer
+     */
+    @Override
+    public final void cacheResources(final HttpRequestCache httpRequestCache,
+                                     final MfClientHttpRequestFactory clientHttpRequestFactory,
+                                     final MapfishMapContext transformer) {
+        if (this.featureSource != null) {
+            return;
+        }
+        // if it fails, it is loaded again when the layer is rendered
+        httpRequestCache.register(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    getFeatureSource(clientHttpRequestFactory, transformer);
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Unable to load the features of the layer {}, retried at rendering", getName(), e);
+                }
+                return null;
+            }
+        });
+    }
+
     @Override
     public final RenderType getRenderType() {
         return this.renderAsSvg ? RenderType.SVG : RenderType.UNKNOWN;
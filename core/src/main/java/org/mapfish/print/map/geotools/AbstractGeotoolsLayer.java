@@ -188,4 +188,8 @@ public abstract class AbstractGeotoolsLayer implements MapLayer {
     public void cacheResources(final HttpRequestCache httpRequestCache,
             final MfClientHttpRequestFactory clientHttpRequestFactory, final MapfishMapContext transformer) {
     }
+
+    @Override
+    public void releaseResources() {
+    }
 }
@@ -6,20 +6,26 @@ import org.geotools.map.GridReaderLayer;
 import org.geotools.map.Layer;
 import org.geotools.styling.Style;
 import org.mapfish.print.attribute.map.MapfishMapContext;
+import org.mapfish.print.http.HttpRequestCache;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.AbstractLayerParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
 /**
  * The AbstractGridCoverage2DReaderLayer class.
  */
 public abstract class AbstractGridCoverage2DReaderLayer extends AbstractGeotoolsLayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractGridCoverage2DReaderLayer.class);
 
     private final Function<MfClientHttpRequestFactory, AbstractGridCoverage2DReader> coverage2DReaderSupplier;
     private final StyleSupplier<AbstractGridCoverage2DReader> styleSupplier;
+    private AbstractGridCoverage2DReader cachedReader = null;
 
     /**
      * Constructor.
@@ -46,8 +52,79 @@ public abstract class AbstractGridCoverage2DReaderLayer extends AbstractGeotools
     @Override
     public final synchronized List<? extends Layer> getLayers(final MfClientHttpRequestFactory httpRequestFactory,
                                                  final MapfishMapContext mapContext) throws Exception {
-        AbstractGridCoverage2DReader coverage2DReader = this.coverage2DReaderSupplier.apply(httpRequestFactory);
-        Style style = this.styleSupplier.load(httpRequestFactory, coverage2DReader);
-        return Collections.singletonList(new GridReaderLayer(coverage2DReader, style));
+        final AbstractGridCoverage2DReader coverage2DReader;
+        if (this.cachedReader != null) {
+            coverage2DReader = this.cachedReader;
+            this.cachedReader = null;
+        } else {
+            coverage2DReader = this.coverage2DReaderSupplier.apply(httpRequestFactory);
+        }
+        final Style style;
+        try {
+            style = this.styleSupplier.load(httpRequestFactory, coverage2DReader);
+        } catch (Exception e) {
+            // the layer is not rendered, nothing disposes the reader
+            releaseReader(coverage2DReader);
+            throw e;
+        }
+        return Collections.singletonList(new GridReaderLayer(coverage2DReader, style) {
+            @Override
+            public void dispose() {
+                super.dispose();
+                releaseReader(coverage2DReader);
+            }
+        });
+    }
+
+    /**
+     * Open the reader (for example download the GeoTIFF) with the resources of the other layers.
+     *
+     * @param httpRequestCache the cache for the http requests of the map
+     * @param clientHttpRequestFactory client http request factory
+     * @param transformer transformer
+     */
+    @Override
+    public final void cacheResources(final HttpRequestCache httpRequestCache,
+                                     final MfClientHttpRequestFactory clientHttpRequestFactory,
+                                     final MapfishMapContext transformer) {
+        // if it fails, it is loaded again when the layer is rendered
+        httpRequestCache.register(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    final AbstractGridCoverage2DReader reader =
+                            AbstractGridCoverage2DReaderLayer.this.coverage2DReaderSupplier.apply(clientHttpRequestFactory);
+                    synchronized (AbstractGridCoverage2DReaderLayer.this) {
+                        if (AbstractGridCoverage2DReaderLayer.this.cachedReader != null) {
+                            releaseReader(AbstractGridCoverage2DReaderLayer.this.cachedReader);
+                        }
+                        AbstractGridCoverage2DReaderLayer.this.cachedReader = reader;
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.debug("Unable to open the reader of the layer {}, retried at rendering", getName(), e);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Release the reader opened by {@link #cacheResources} if the layer has not been rendered.
+     */
+    @Override
+    public final synchronized void releaseResources() {
+        if (this.cachedReader != null) {
+            releaseReader(this.cachedReader);
+            this.cachedReader = null;
+        }
+    }
+
+    /**
+     * Called when the reader returned by the supplier is no more used, once the layer has been rendered or when
+     * the reader opened by {@link #cacheResources} is not used.
+     *
+     * @param coverage2DReader the reader.
+     */
+    protected void releaseReader(final AbstractGridCoverage2DReader coverage2DReader) {
     }
 }
@@ -1,28 +1,19 @@
 package org.mapfish.print.map.geotools;
 
-import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharSource;
-import com.google.common.io.CharStreams;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
-import com.vividsolutions.jts.geom.Geometry;
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
-import org.geotools.geojson.feature.FeatureJSON;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultEngineeringCRS;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mapfish.print.Constants;
 import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.FileUtils;
-import org.mapfish.print.PrintException;
 import org.mapfish.print.config.Template;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.NoSuchAuthorityCodeException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -34,18 +25,15 @@ import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Iterator;
-import java.util.Set;
-import javax.annotation.Nonnull;
 
 /**
  * Parser for GeoJson features collection.
@@ -99,7 +87,6 @@ public class FeaturesParser {
             return null;
         }
 
-        final String geojsonString;
         Closer closer = Closer.create();
         try {
             Reader input;
@@ -112,14 +99,13 @@ public class FeaturesParser {
 
                 input = closer.register(new BufferedReader(new InputStreamReader(response.getBody(), Constants.DEFAULT_CHARSET)));
             }
-            geojsonString = CharStreams.toString(input);
+            // parsed directly from the stream, the document is never loaded as a string
+            return readFeatureCollection(input);
         } catch (URISyntaxException e) {
             throw ExceptionUtils.getRuntimeException(e);
         } finally {
             closer.close();
         }
-
-        return treatStringAsGeoJson(geojsonString);
     }
 
     /**
@@ -130,101 +116,13 @@ public class FeaturesParser {
      * @throws IOException
      */
     public final SimpleFeatureCollection treatStringAsGeoJson(final String geoJsonString) throws IOException {
-        return readFeatureCollection(geoJsonString);
-    }
-
-    private SimpleFeatureCollection readFeatureCollection(final String geojsonData) throws IOException {
-        String convertedGeojsonObject = convertToGeoJsonCollection(geojsonData);
-
-        FeatureJSON geoJsonReader = new FeatureJSON();
-        final SimpleFeatureType featureType = createFeatureType(convertedGeojsonObject);
-        if (featureType != null) {
-            geoJsonReader.setFeatureType(featureType);
-        }
-        ByteArrayInputStream input = new ByteArrayInputStream(convertedGeojsonObject.getBytes(Constants.DEFAULT_CHARSET));
-
-        return (SimpleFeatureCollection) geoJsonReader.readFeatureCollection(input);
-    }
-
-    private String convertToGeoJsonCollection(final String geojsonData) {
-        String convertedGeojsonObject = geojsonData.trim();
-        if (convertedGeojsonObject.startsWith("[")) {
-            convertedGeojsonObject = "{\"type\": \"FeatureCollection\", \"features\": " + convertedGeojsonObject + "}";
-        }
-        return convertedGeojsonObject;
+        return readFeatureCollection(new StringReader(geoJsonString));
     }
 
-    private SimpleFeatureType createFeatureType(@Nonnull final String geojsonData) {
-        try {
-            JSONObject geojson = new JSONObject(geojsonData);
-            if (geojson.has("type") && geojson.getString("type").equalsIgnoreCase("FeatureCollection")) {
-                CoordinateReferenceSystem crs = parseCoordinateReferenceSystem(this.httpRequestFactory, geojson,
-                        this.forceLongitudeFirst);
-                SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
-                builder.setName("GeosjonFeatureType");
-                final JSONArray features = geojson.getJSONArray("features");
-
-                if (features.length() == 0) {
-                    // do not try to build the feature type if there are no features
-                    return null;
-                }
-
-                Set<String> allAttributes = Sets.newHashSet();
-                Class<Geometry> geomType = null;
-                for (int i = 0; i < features.length(); i++) {
-                    final JSONObject feature = features.getJSONObject(i);
-                    final JSONObject properties = feature.getJSONObject("properties");
-                    final Iterator keys = properties.keys();
-                    while (keys.hasNext()) {
-                        String nextKey = (String) keys.next();
-                        if (!allAttributes.contains(nextKey)) {
-                            allAttributes.add(nextKey);
-                            builder.add(nextKey, Object.class);
-                        }
-                    }
-                    if (geomType != Geometry.class) {
-                        Class<Geometry> thisGeomType = parseGeometryType(feature);
-                        if (thisGeomType != null) {
-                            if (geomType == null) {
-                                geomType = thisGeomType;
-                            } else if (geomType != thisGeomType) {
-                                geomType = Geometry.class;
-                            }
-                        }
-                    }
-                }
-
-                builder.add("geometry", geomType, crs);
-                builder.setDefaultGeometry("geometry");
-                return builder.buildFeatureType();
-            } else {
-                return null;
-            }
-        } catch (JSONException e) {
-            throw new PrintException("Invalid geoJSON: \n" + geojsonData + ": " + e.getMessage(), e);
-        }
-
-    }
-
-    @SuppressWarnings("unchecked")
-    private Class<Geometry> parseGeometryType(@Nonnull final JSONObject featureJson) throws JSONException {
-        JSONObject geomJson = featureJson.optJSONObject("geometry");
-        if (geomJson == null) {
-            return null;
-        }
-        String geomTypeString = geomJson.optString("type", "Geometry");
-        if (geomTypeString.equalsIgnoreCase("Positions")) {
-            return Geometry.class;
-        } else {
-            try {
-                return (Class<Geometry>) Class.forName("com.vividsolutions.jts.geom." + geomTypeString);
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException("Unrecognized geometry type in geojson: " + geomTypeString);
-            }
-        }
+    private SimpleFeatureCollection readFeatureCollection(final Reader geojsonData) throws IOException {
+        return new GeoJsonFeatureReader(this.httpRequestFactory, this.forceLongitudeFirst).read(geojsonData);
     }
 
-    @VisibleForTesting
     static final CoordinateReferenceSystem parseCoordinateReferenceSystem(final MfClientHttpRequestFactory requestFactory,
                                                                           final JSONObject geojson,
                                                                           final boolean forceLongitudeFirst) {
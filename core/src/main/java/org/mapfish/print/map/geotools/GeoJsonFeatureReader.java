@@ -0,0 +1,386 @@
+package org.mapfish.print.map.geotools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultEngineeringCRS;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mapfish.print.PrintException;
+import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a GeoJSON feature collection (or an array of features) in a single streaming pass.
+ * <p></p>
+ * The feature type (attributes and geometry type) and the CRS are inferred while the features are read, the features
+ * are built once the whole document has been read.  An instance reads only one document.
+ */
+final class GeoJsonFeatureReader {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+    private static final String GEOMETRY_ATTRIBUTE = "geometry";
+
+    private final MfClientHttpRequestFactory requestFactory;
+    private final boolean forceLongitudeFirst;
+    private final List<ParsedFeature> features = Lists.newArrayList();
+    private final Set<String> attributes = Sets.newLinkedHashSet();
+    private Class<? extends Geometry> geometryType = null;
+    private CoordinateReferenceSystem crs = DefaultEngineeringCRS.GENERIC_2D;
+
+    /**
+     * Constructor.
+     *
+     * @param requestFactory the factory used to load a linked CRS
+     * @param forceLongitudeFirst if true then force longitude coordinate as first coordinate
+     */
+    GeoJsonFeatureReader(final MfClientHttpRequestFactory requestFactory, final boolean forceLongitudeFirst) {
+        this.requestFactory = requestFactory;
+        this.forceLongitudeFirst = forceLongitudeFirst;
+    }
+
+    /**
+     * Read the features.
+     *
+     * @param input the GeoJSON, it is not closed
+     */
+    SimpleFeatureCollection read(final Reader input) throws IOException {
+        final JsonParser parser = JSON_FACTORY.createParser(input);
+        try {
+            final JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readFeatures(parser);
+            } else if (token == JsonToken.START_OBJECT) {
+                readCollection(parser);
+            } else {
+                throw invalid("a feature collection or an array of features is expected");
+            }
+        } catch (JsonProcessingException e) {
+            throw new PrintException("Invalid geoJSON: " + e.getMessage(), e);
+        } finally {
+            parser.close();
+        }
+        return buildCollection();
+    }
+
+    private void readCollection(final JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (name.equals("features") && value == JsonToken.START_ARRAY) {
+                readFeatures(parser);
+            } else if (name.equals("crs") && value == JsonToken.START_OBJECT) {
+                readCrs(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readCrs(final JsonParser parser) throws IOException {
+        // the CRS is small, it is given to the same code as the other GeoJSON readers
+        final StringWriter crsJson = new StringWriter();
+        final JsonGenerator generator = JSON_FACTORY.createGenerator(crsJson);
+        generator.writeStartObject();
+        generator.writeFieldName("crs");
+        generator.copyCurrentStructure(parser);
+        generator.writeEndObject();
+        generator.close();
+        try {
+            this.crs = FeaturesParser.parseCoordinateReferenceSystem(this.requestFactory,
+                    new JSONObject(crsJson.toString()), this.forceLongitudeFirst);
+        } catch (JSONException e) {
+            throw new PrintException("Invalid geoJSON crs: " + crsJson + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void readFeatures(final JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                throw invalid("a feature must be an object");
+            }
+            readFeature(parser);
+        }
+    }
+
+    private void readFeature(final JsonParser parser) throws IOException {
+        final ParsedFeature feature = new ParsedFeature();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (name.equals("id") && value != JsonToken.VALUE_NULL) {
+                feature.id = parser.getText();
+            } else if (name.equals("properties") && value == JsonToken.START_OBJECT) {
+                feature.properties = readObject(parser);
+            } else if (name.equals(GEOMETRY_ATTRIBUTE) && value == JsonToken.START_OBJECT) {
+                feature.geometry = readGeometry(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (feature.properties != null) {
+            this.attributes.addAll(feature.properties.keySet());
+        }
+        if (feature.geometry != null && this.geometryType != Geometry.class) {
+            final Class<? extends Geometry> thisGeometryType = feature.geometry.getClass();
+            if (this.geometryType == null) {
+                this.geometryType = thisGeometryType;
+            } else if (this.geometryType != thisGeometryType) {
+                this.geometryType = Geometry.class;
+            }
+        }
+        this.features.add(feature);
+    }
+
+    private Map<String, Object> readObject(final JsonParser parser) throws IOException {
+        final Map<String, Object> result = Maps.newLinkedHashMap();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            parser.nextToken();
+            result.put(name, readValue(parser));
+        }
+        return result;
+    }
+
+    private Object readValue(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                return readObject(parser);
+            case START_ARRAY:
+                final List<Object> values = Lists.newArrayList();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    values.add(readValue(parser));
+                }
+                return values;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    return parser.getBigIntegerValue();
+                }
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    private Geometry readGeometry(final JsonParser parser) throws IOException {
+        String type = null;
+        Object coordinates = null;
+        List<Geometry> geometries = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (name.equals("type")) {
+                type = parser.getText();
+            } else if (name.equals("coordinates") && value == JsonToken.START_ARRAY) {
+                coordinates = readCoordinates(parser);
+            } else if (name.equals("geometries") && value == JsonToken.START_ARRAY) {
+                geometries = Lists.newArrayList();
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw invalid("a geometry must be an object");
+                    }
+                    geometries.add(readGeometry(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (type == null) {
+            throw invalid("a geometry must have a type");
+        }
+        try {
+            return createGeometry(type, coordinates, geometries);
+        } catch (IllegalArgumentException e) {
+            throw new PrintException("Invalid geoJSON " + type + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read nested arrays of positions, a position is returned as a {@link Coordinate} and an array of positions (or
+     * of arrays) as a list.
+     */
+    private Object readCoordinates(final JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token.isNumeric()) {
+            final double[] ordinates = {Double.NaN, Double.NaN, Double.NaN};
+            int count = 0;
+            while (token != JsonToken.END_ARRAY) {
+                if (!token.isNumeric()) {
+                    throw invalid("a position must contain only numbers");
+                }
+                if (count < ordinates.length) {
+                    ordinates[count] = parser.getDoubleValue();
+                }
+                count++;
+                token = parser.nextToken();
+            }
+            if (count < 2) {
+                throw invalid("a position must have at least two elements");
+            }
+            return new Coordinate(ordinates[0], ordinates[1], ordinates[2]);
+        }
+
+        final List<Object> result = Lists.newArrayList();
+        while (token != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_ARRAY) {
+                throw invalid("the coordinates must be arrays of positions");
+            }
+            result.add(readCoordinates(parser));
+            token = parser.nextToken();
+        }
+        return result;
+    }
+
+    private static Geometry createGeometry(final String type, final Object coordinates,
+                                           final List<Geometry> geometries) {
+        if (type.equalsIgnoreCase("GeometryCollection")) {
+            final List<Geometry> parts = geometries != null ? geometries : Lists.<Geometry>newArrayList();
+            return GEOMETRY_FACTORY.createGeometryCollection(parts.toArray(new Geometry[parts.size()]));
+        }
+        if (coordinates == null) {
+            throw invalid("the geometry " + type + " has no coordinates");
+        }
+        if (type.equalsIgnoreCase("Point")) {
+            return GEOMETRY_FACTORY.createPoint(toPosition(coordinates));
+        } else if (type.equalsIgnoreCase("MultiPoint")) {
+            return GEOMETRY_FACTORY.createMultiPoint(toPositions(coordinates));
+        } else if (type.equalsIgnoreCase("LineString")) {
+            return GEOMETRY_FACTORY.createLineString(toPositions(coordinates));
+        } else if (type.equalsIgnoreCase("MultiLineString")) {
+            final List<?> lines = toList(coordinates);
+            final LineString[] lineStrings = new LineString[lines.size()];
+            for (int i = 0; i < lineStrings.length; i++) {
+                lineStrings[i] = GEOMETRY_FACTORY.createLineString(toPositions(lines.get(i)));
+            }
+            return GEOMETRY_FACTORY.createMultiLineString(lineStrings);
+        } else if (type.equalsIgnoreCase("Polygon")) {
+            return toPolygon(coordinates);
+        } else if (type.equalsIgnoreCase("MultiPolygon")) {
+            final List<?> polygonsCoordinates = toList(coordinates);
+            final Polygon[] polygons = new Polygon[polygonsCoordinates.size()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = toPolygon(polygonsCoordinates.get(i));
+            }
+            return GEOMETRY_FACTORY.createMultiPolygon(polygons);
+        } else {
+            throw invalid("unrecognized geometry type: " + type);
+        }
+    }
+
+    private static Polygon toPolygon(final Object coordinates) {
+        final List<?> rings = toList(coordinates);
+        if (rings.isEmpty()) {
+            return GEOMETRY_FACTORY.createPolygon((LinearRing) null, null);
+        }
+        final LinearRing shell = GEOMETRY_FACTORY.createLinearRing(toPositions(rings.get(0)));
+        final LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = GEOMETRY_FACTORY.createLinearRing(toPositions(rings.get(i + 1)));
+        }
+        return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    private static Coordinate[] toPositions(final Object coordinates) {
+        final List<?> positions = toList(coordinates);
+        final Coordinate[] result = new Coordinate[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = toPosition(positions.get(i));
+        }
+        return result;
+    }
+
+    private static Coordinate toPosition(final Object coordinates) {
+        if (coordinates instanceof Coordinate) {
+            return (Coordinate) coordinates;
+        }
+        throw invalid("a position is expected");
+    }
+
+    private static List<?> toList(final Object coordinates) {
+        if (coordinates instanceof List) {
+            return (List<?>) coordinates;
+        }
+        throw invalid("an array of positions is expected");
+    }
+
+    private SimpleFeatureCollection buildCollection() {
+        if (this.features.isEmpty()) {
+            return new DefaultFeatureCollection();
+        }
+
+        final SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("GeosjonFeatureType");
+        for (String attribute : this.attributes) {
+            typeBuilder.add(attribute, Object.class);
+        }
+        typeBuilder.add(GEOMETRY_ATTRIBUTE, this.geometryType != null ? this.geometryType : Geometry.class, this.crs);
+        typeBuilder.setDefaultGeometry(GEOMETRY_ATTRIBUTE);
+        final SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+
+        final SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType);
+        final List<SimpleFeature> result = Lists.newArrayListWithCapacity(this.features.size());
+        for (int i = 0; i < this.features.size(); i++) {
+            final ParsedFeature feature = this.features.get(i);
+            if (feature.properties != null) {
+                for (Map.Entry<String, Object> property : feature.properties.entrySet()) {
+                    featureBuilder.set(property.getKey(), property.getValue());
+                }
+            }
+            featureBuilder.set(GEOMETRY_ATTRIBUTE, feature.geometry);
+            result.add(featureBuilder.buildFeature(feature.id != null ? feature.id : "feature." + i));
+            // the parsed values are now referenced by the built feature
+            this.features.set(i, null);
+        }
+        this.features.clear();
+        return new ListFeatureCollection(featureType, result);
+    }
+
+    private static PrintException invalid(final String message) {
+        return new PrintException("Invalid geoJSON: " + message);
+    }
+
+    /**
+     * The values read for a feature, the feature is built when the feature type is known.
+     */
+    private static final class ParsedFeature {
+        private String id;
+        private Map<String, Object> properties;
+        private Geometry geometry;
+    }
+}
@@ -0,0 +1,380 @@
+package org.mapfish.print.map.geotools;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.io.FileUtils;
+import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
+import org.geotools.gce.geotiff.GeoTiffFormat;
+import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.mapfish.print.http.PersistentHttpCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.Nonnull;
+import javax.annotation.PostConstruct;
+
+/**
+ * A server wide cache for the GeoTIFF files of the geotiff layers.
+ * <p></p>
+ * The remote GeoTIFFs are downloaded in a directory shared between the print jobs and revalidated with a conditional
+ * request when they are stale, according to the HTTP caching headers.  The total size of the downloaded files is bounded by
+ * {@link #setMaxSize(long)}, the least recently used files are deleted first.  If the maximum size is 0 the files are
+ * downloaded for each print and deleted when the print has rendered them.  The GeoTIFFs are keyed like in the
+ * {@link PersistentHttpCache} and the ones downloaded with the credentials of a user are never kept.
+ * <p></p>
+ * The readers opened on a file (remote or local) are kept and reused by the next prints that render the same file.  A
+ * reader is used by only one layer at a time, between {@link #getReader(URI, MfClientHttpRequestFactory)} and
+ * {@link #release(AbstractGridCoverage2DReader)}.  The readers of at most {@link #setMaxLocalFiles(int)} local files are
+ * kept, the ones of the least recently used files are disposed first.
+ */
+public final class GeotiffCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeotiffCache.class);
+    private static final int DOWNLOAD_LOCKS = 64;
+    private static final int DEFAULT_MAX_LOCAL_FILES = 16;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final Map<AbstractGridCoverage2DReader, Entry> borrowedReaders =
+            new IdentityHashMap<AbstractGridCoverage2DReader, Entry>();
+    private final Striped<Lock> downloadLocks = Striped.lock(DOWNLOAD_LOCKS);
+    private File directory;
+    private long maxSize = 0;
+    private long size = 0;
+    private int maxLocalFiles = DEFAULT_MAX_LOCAL_FILES;
+    private int localFiles = 0;
+
+    /**
+     * The directory where the GeoTIFFs are downloaded.  The content of the directory is deleted on startup.
+     *
+     * @param directory the directory
+     */
+    public void setDirectory(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The maximum number of bytes of the downloaded GeoTIFFs kept between the prints.  If 0 the downloaded files are not
+     * kept.
+     *
+     * @param maxSize the size in bytes
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The maximum number of local GeoTIFF files for which the readers are kept between the prints.
+     * <p></p>
+     * Default is 16.
+     *
+     * @param maxLocalFiles the number of files
+     */
+    public void setMaxLocalFiles(final int maxLocalFiles) {
+        this.maxLocalFiles = maxLocalFiles;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (this.directory.exists()) {
+            // the index of the downloaded files is kept in memory, so the old files cannot be reused
+            FileUtils.cleanDirectory(this.directory);
+        } else if (!this.directory.mkdirs()) {
+            throw new IOException("Unable to create the GeoTIFF cache directory: " + this.directory);
+        }
+        // the gauge of a cache created before with the same registry is replaced
+        this.metricRegistry.remove(getMetricName("size"));
+        this.metricRegistry.register(getMetricName("size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                synchronized (GeotiffCache.this) {
+                    return GeotiffCache.this.size;
+                }
+            }
+        });
+    }
+
+    /**
+     * Get a reader for a GeoTIFF, the GeoTIFF is downloaded if it is remote and not in the cache or changed on the
+     * server.  The reader must be given back with {@link #release(AbstractGridCoverage2DReader)} when the layer has been
+     * rendered.
+     *
+     * @param uri the URI of the GeoTIFF, either a file or an http(s) URI
+     * @param requestFactory the request factory used to download the GeoTIFF
+     */
+    @Nonnull
+    public AbstractGridCoverage2DReader getReader(@Nonnull final URI uri,
+                                                  @Nonnull final MfClientHttpRequestFactory requestFactory)
+            throws IOException {
+        final Entry entry;
+        if (uri.getScheme().equalsIgnoreCase("file")) {
+            entry = getLocalEntry(new File(uri));
+        } else {
+            final Lock lock = this.downloadLocks.get(uri.toString());
+            // only one print downloads or revalidates a GeoTIFF at a time, the others wait and reuse it
+            lock.lock();
+            try {
+                entry = getRemoteEntry(uri, requestFactory);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        AbstractGridCoverage2DReader reader;
+        synchronized (this) {
+            reader = entry.idleReaders.poll();
+        }
+        if (reader == null) {
+            try {
+                reader = new GeoTiffFormat().getReader(entry.file);
+            } catch (RuntimeException e) {
+                release(entry);
+                throw e;
+            }
+            if (reader == null) {
+                release(entry);
+                throw new IOException("Unable to read the GeoTIFF " + uri);
+            }
+        }
+        synchronized (this) {
+            this.borrowedReaders.put(reader, entry);
+        }
+        return reader;
+    }
+
+    /**
+     * Give back a reader obtained with {@link #getReader(URI, MfClientHttpRequestFactory)}.
+     *
+     * @param reader the reader
+     */
+    public void release(@Nonnull final AbstractGridCoverage2DReader reader) {
+        final Entry entry;
+        synchronized (this) {
+            entry = this.borrowedReaders.remove(reader);
+        }
+        if (entry == null) {
+            reader.dispose();
+            return;
+        }
+        synchronized (this) {
+            // the readers of an obsolete entry are disposed with it
+            entry.idleReaders.add(reader);
+            release(entry);
+        }
+    }
+
+    private synchronized Entry getLocalEntry(final File file) {
+        final String key = file.getAbsolutePath();
+        Entry entry = this.entries.get(key);
+        if (entry == null || entry.lastModified != file.lastModified()) {
+            if (entry != null) {
+                removeEntry(entry);
+            }
+            entry = new Entry(key, file, false, file.lastModified(), null, Long.MAX_VALUE);
+            // the local files are not counted in the size, they are not deleted
+            this.entries.put(key, entry);
+            this.localFiles++;
+            evict();
+        }
+        entry.users++;
+        return entry;
+    }
+
+    private Entry getRemoteEntry(final URI uri, final MfClientHttpRequestFactory requestFactory) throws IOException {
+        // the request carries the headers added by the configuration, they are part of the key
+        final ClientHttpRequest request = requestFactory.createRequest(uri, HttpMethod.GET);
+        final String key = PersistentHttpCache.createKey(request);
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null && entry.isFresh()) {
+                entry.users++;
+                this.metricRegistry.counter(getMetricName("hit")).inc();
+                return entry;
+            }
+        }
+
+        if (entry != null && entry.headers != null) {
+            PersistentHttpCache.setConditionalHeaders(entry.headers, request.getHeaders());
+        }
+
+        final Closer closer = Closer.create();
+        try {
+            final ClientHttpResponse response = closer.register(request.execute());
+            final long now = System.currentTimeMillis();
+            if (entry != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                final Long expires = PersistentHttpCache.getExpires(response.getHeaders(), now);
+                synchronized (this) {
+                    entry.expires = expires != null ? expires : now;
+                    if (this.entries.get(key) == entry) {
+                        entry.users++;
+                        this.metricRegistry.counter(getMetricName("notModified")).inc();
+                        return entry;
+                    }
+                }
+                // evicted in the meantime, download it again
+                return getRemoteEntry(uri, requestFactory);
+            }
+            if (response.getStatusCode() != HttpStatus.OK) {
+                throw new IOException("Error while getting the GeoTIFF " + uri + ": " + response.getStatusCode() + " " +
+                                      response.getStatusText());
+            }
+
+            final File file = File.createTempFile("downloadedGeotiff", ".tiff", this.directory);
+            try {
+                final FileOutputStream output = closer.register(new FileOutputStream(file));
+                ByteStreams.copy(response.getBody(), output);
+                output.close();
+            } catch (IOException e) {
+                delete(file);
+                throw e;
+            }
+            this.metricRegistry.counter(getMetricName("miss")).inc();
+
+            // the GeoTIFFs downloaded with the credentials of a user are not shared
+            final Long expires = PersistentHttpCache.getSharedExpires(request, response, now);
+            final Entry newEntry = new Entry(key, file, true, 0L, response.getHeaders(), expires != null ? expires : 0L);
+            newEntry.users++;
+            synchronized (this) {
+                final Entry previous = this.entries.get(key);
+                if (previous != null) {
+                    removeEntry(previous);
+                }
+                if (expires != null && file.length() <= this.maxSize) {
+                    this.entries.put(key, newEntry);
+                    this.size += file.length();
+                    evict();
+                } else {
+                    // not kept, deleted when released
+                    newEntry.obsolete = true;
+                }
+            }
+            return newEntry;
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+    }
+
+    private synchronized void evict() {
+        final Iterator<Entry> iterator = this.entries.values().iterator();
+        while ((this.size > this.maxSize || this.localFiles > this.maxLocalFiles) && iterator.hasNext()) {
+            final Entry eldest = iterator.next();
+            if (eldest.owned ? this.size > this.maxSize : this.localFiles > this.maxLocalFiles) {
+                iterator.remove();
+                if (eldest.owned) {
+                    this.size -= eldest.length;
+                } else {
+                    this.localFiles--;
+                }
+                eldest.obsolete = true;
+                disposeIfUnused(eldest);
+                this.metricRegistry.counter(getMetricName("evicted")).inc();
+            }
+        }
+    }
+
+    private synchronized void removeEntry(final Entry entry) {
+        if (this.entries.get(entry.key) == entry) {
+            this.entries.remove(entry.key);
+            if (entry.owned) {
+                this.size -= entry.length;
+            } else {
+                this.localFiles--;
+            }
+        }
+        entry.obsolete = true;
+        disposeIfUnused(entry);
+    }
+
+    private synchronized void release(final Entry entry) {
+        entry.users--;
+        disposeIfUnused(entry);
+    }
+
+    /**
+     * Dispose the readers and delete the file of an entry that has been removed from the cache, once no layer uses it.
+     */
+    private synchronized void disposeIfUnused(final Entry entry) {
+        if (!entry.obsolete || entry.users > 0) {
+            return;
+        }
+        AbstractGridCoverage2DReader reader;
+        while ((reader = entry.idleReaders.poll()) != null) {
+            try {
+                reader.dispose();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Error while disposing a GeoTIFF reader", e);
+            }
+        }
+        if (entry.owned) {
+            delete(entry.file);
+        }
+    }
+
+    private String getMetricName(final String name) {
+        return GeotiffCache.class.getName() + "." + name;
+    }
+
+    private static void delete(final File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.warn("Unable to delete the downloaded GeoTIFF: {}", file);
+        }
+    }
+
+    /**
+     * A GeoTIFF file with its idle readers.
+     */
+    private static final class Entry {
+        private final String key;
+        private final File file;
+        private final boolean owned;
+        private final long length;
+        private final long lastModified;
+        private final HttpHeaders headers;
+        private final Queue<AbstractGridCoverage2DReader> idleReaders = new ArrayDeque<AbstractGridCoverage2DReader>();
+        private volatile long expires;
+        private int users = 0;
+        private boolean obsolete = false;
+
+        private Entry(final String key, final File file, final boolean owned, final long lastModified,
+                      final HttpHeaders headers, final long expires) {
+            this.key = key;
+            this.file = file;
+            this.owned = owned;
+            this.length = file.length();
+            this.lastModified = lastModified;
+            this.headers = headers;
+            this.expires = expires;
+        }
+
+        private boolean isFresh() {
+            return System.currentTimeMillis() < this.expires;
+        }
+    }
+}
@@ -2,10 +2,7 @@ package org.mapfish.print.map.geotools;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Sets;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.Closer;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
-import org.geotools.gce.geotiff.GeoTiffFormat;
 import org.mapfish.print.Constants;
 import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.FileUtils;
@@ -15,12 +12,7 @@ import org.mapfish.print.map.AbstractLayerParams;
 import org.mapfish.print.map.MapLayerFactoryPlugin;
 import org.mapfish.print.parser.HasDefaultValue;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.client.ClientHttpRequest;
-import org.springframework.http.client.ClientHttpResponse;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Set;
@@ -32,6 +24,7 @@ import javax.annotation.Nullable;
  * <p>Reads a GeoTIFF file from an URL.</p>
  */
 public final class GeotiffLayer extends AbstractGridCoverage2DReaderLayer {
+    private final GeotiffCache geotiffCache;
 
     /**
      * Constructor.
@@ -40,12 +33,20 @@ public final class GeotiffLayer extends AbstractGridCoverage2DReaderLayer {
      * @param style style to use for rendering the data.
      * @param executorService the thread pool for doing the rendering.
      * @param params the parameters for this layer
+     * @param geotiffCache the cache the reader comes from.
      */
     public GeotiffLayer(final Function<MfClientHttpRequestFactory, AbstractGridCoverage2DReader> reader,
                         final StyleSupplier<AbstractGridCoverage2DReader> style,
                         final ExecutorService executorService,
-                        final AbstractLayerParams params) {
+                        final AbstractLayerParams params,
+                        final GeotiffCache geotiffCache) {
         super(reader, style, executorService, params);
+        this.geotiffCache = geotiffCache;
+    }
+
+    @Override
+    protected void releaseReader(final AbstractGridCoverage2DReader coverage2DReader) {
+        this.geotiffCache.release(coverage2DReader);
     }
 
     /**
@@ -56,6 +57,8 @@ public final class GeotiffLayer extends AbstractGridCoverage2DReaderLayer {
             implements MapLayerFactoryPlugin<GeotiffParam> {
         @Autowired
         private ExecutorService forkJoinPool;
+        @Autowired
+        private GeotiffCache geotiffCache;
 
         private Set<String> typeNames = Sets.newHashSet("geotiff");
 
@@ -82,41 +85,24 @@ public final class GeotiffLayer extends AbstractGridCoverage2DReaderLayer {
             return new GeotiffLayer(geotiffReader,
                     super.<AbstractGridCoverage2DReader>createStyleSupplier(template, styleRef),
                     this.forkJoinPool,
-                    param);
+                    param,
+                    this.geotiffCache);
         }
 
         private Function<MfClientHttpRequestFactory, AbstractGridCoverage2DReader> getGeotiffReader(
                 final Template template,
                 final String geotiffUrl) throws IOException {
             final URL url = FileUtils.testForLegalFileUrl(template.getConfiguration(), new URL(geotiffUrl));
+            final GeotiffCache cache = this.geotiffCache;
             return new Function<MfClientHttpRequestFactory, AbstractGridCoverage2DReader>() {
                 @Nullable
                 @Override
                 public AbstractGridCoverage2DReader apply(final MfClientHttpRequestFactory requestFactory) {
                     try {
-                        final File geotiffFile;
-                        if (url.getProtocol().equalsIgnoreCase("file")) {
-                            geotiffFile = new File(url.toURI());
-                        } else {
-                            geotiffFile = File.createTempFile("downloadedGeotiff", ".tiff");
-                            Closer closer = Closer.create();
-
-                            try {
-                                final ClientHttpRequest request = requestFactory.createRequest(url.toURI(),
-                                        HttpMethod.GET);
-                                final ClientHttpResponse httpResponse = closer.register(request.execute());
-                                FileOutputStream output = closer.register(new FileOutputStream(geotiffFile));
-                                ByteStreams.copy(httpResponse.getBody(), output);
-                            } finally {
-                                closer.close();
-                            }
-                        }
-
-                        return new GeoTiffFormat().getReader(geotiffFile);
+                        return cache.getReader(url.toURI(), requestFactory);
                     } catch (Throwable t) {
                         throw ExceptionUtils.getRuntimeException(t);
                     }
-
                 }
             };
         }
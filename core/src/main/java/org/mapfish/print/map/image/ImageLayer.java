@@ -22,6 +22,7 @@ import org.mapfish.print.attribute.map.MapBounds;
 import org.mapfish.print.attribute.map.MapfishMapContext;
 import org.mapfish.print.config.Configuration;
 import org.mapfish.print.config.Template;
+import org.mapfish.print.http.HttpRequestCache;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.AbstractLayerParams;
 import org.mapfish.print.map.MapLayerFactoryPlugin;
@@ -62,6 +63,7 @@ public final class ImageLayer extends AbstractSingleImageLayer {
     private final StyleSupplier<GridCoverage2D> styleSupplier;
     private final ExecutorService executorService;
     private final Configuration configuration;
+    private ClientHttpRequest imageRequest = null;
 
     /**
      * Constructor.
@@ -177,8 +179,10 @@ public final class ImageLayer extends AbstractSingleImageLayer {
         MapBounds bounds = transformer.getBounds();
         MapContent content = new MapContent();
         try {
-            final ClientHttpRequest request = requestFactory.createRequest(commonUri, HttpMethod.GET);
+            final ClientHttpRequest request = this.imageRequest != null ? this.imageRequest :
+                    requestFactory.createRequest(commonUri, HttpMethod.GET);
             final ClientHttpResponse httpResponse = closer.register(request.execute());
+            Assert.isTrue(httpResponse != null, "No response, see error above");
             final BufferedImage image = ImageIO.read(httpResponse.getBody());
             if (image == null) {
                 return createErrorImage(paintArea);
@@ -255,4 +259,16 @@ public final class ImageLayer extends AbstractSingleImageLayer {
     public RenderType getRenderType() {
         return RenderType.UNKNOWN;
     }
+
+    @Override
+    public void cacheResources(
+            @Nonnull final HttpRequestCache httpRequestCache,
+            @Nonnull final MfClientHttpRequestFactory requestFactory,
+            @Nonnull final MapfishMapContext transformer) {
+        try {
+            this.imageRequest = httpRequestCache.register(requestFactory, new URI(this.params.getBaseUrl()));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
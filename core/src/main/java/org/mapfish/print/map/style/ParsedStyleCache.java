@@ -0,0 +1,256 @@
+package org.mapfish.print.map.style;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import org.geotools.styling.Style;
+import org.geotools.styling.visitor.DuplicatingStyleVisitor;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.http.PersistentHttpCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+
+/**
+ * Cache of the styles parsed by the {@link StyleParser} for the named styles of a configuration.
+ * <p></p>
+ * The resources read while parsing a style are recorded to know when the style must be parsed again: the files are
+ * checked for modification and the http resources are kept according to their caching headers and revalidated with
+ * a conditional request when they are stale.
+ * <p></p>
+ * The styles are modified by the layers (opacity, rescaling), so a copy of the cached style is returned.
+ */
+public final class ParsedStyleCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsedStyleCache.class);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Get a copy of the parsed style, parse it if it is not in the cache or if its resources have changed.
+     *
+     * @param styleParser the parser
+     * @param configuration the configuration for the current request.
+     * @param clientHttpRequestFactory a factory for making http requests
+     * @param styleString the style to load.
+     */
+    public Optional<? extends Style> loadStyle(@Nonnull final StyleParser styleParser,
+                                               @Nonnull final Configuration configuration,
+                                               @Nonnull final ClientHttpRequestFactory clientHttpRequestFactory,
+                                               @Nonnull final String styleString) {
+        final Entry entry = this.entries.get(styleString);
+        if (entry != null && entry.isValid(clientHttpRequestFactory)) {
+            return Optional.of(copy(entry.style));
+        }
+
+        final RecordingRequestFactory recordingFactory = new RecordingRequestFactory(clientHttpRequestFactory,
+                configuration.getDirectory());
+        final Optional<? extends Style> style = styleParser.loadStyle(configuration, recordingFactory, styleString);
+        if (style.isPresent()) {
+            final List<Resource> resources = recordingFactory.getResources();
+            if (resources != null) {
+                this.entries.put(styleString, new Entry(style.get(), resources));
+                return Optional.of(copy(style.get()));
+            }
+        }
+        this.entries.remove(styleString);
+        return style;
+    }
+
+    private static Style copy(final Style style) {
+        final DuplicatingStyleVisitor copier = new DuplicatingStyleVisitor();
+        style.accept(copier);
+        return (Style) copier.getCopy();
+    }
+
+    private static final class Entry {
+        private final Style style;
+        private final List<Resource> resources;
+
+        private Entry(final Style style, final List<Resource> resources) {
+            this.style = style;
+            this.resources = resources;
+        }
+
+        private boolean isValid(final ClientHttpRequestFactory requestFactory) {
+            for (Resource resource : this.resources) {
+                if (!resource.isValid(requestFactory)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A resource read while parsing a style.
+     */
+    private abstract static class Resource {
+        abstract boolean isValid(ClientHttpRequestFactory requestFactory);
+    }
+
+    private static final class FileResource extends Resource {
+        private final File file;
+        private final long lastModified;
+
+        private FileResource(final File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        boolean isValid(final ClientHttpRequestFactory requestFactory) {
+            return this.file.lastModified() == this.lastModified;
+        }
+    }
+
+    private static final class HttpResource extends Resource {
+        private final URI uri;
+        private final HttpHeaders headers;
+        private volatile long expires;
+
+        private HttpResource(final URI uri, final HttpHeaders headers, final long expires) {
+            this.uri = uri;
+            this.headers = headers;
+            this.expires = expires;
+        }
+
+        @Override
+        boolean isValid(final ClientHttpRequestFactory requestFactory) {
+            if (System.currentTimeMillis() < this.expires) {
+                return true;
+            }
+            try {
+                final Long newExpires = PersistentHttpCache.revalidate(requestFactory, this.uri, this.headers);
+                if (newExpires == null) {
+                    return false;
+                }
+                this.expires = newExpires;
+                return true;
+            } catch (IOException e) {
+                LOGGER.debug("Unable to revalidate the style {}", this.uri, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Records the resources read by the style parsers.
+     */
+    private static final class RecordingRequestFactory implements ClientHttpRequestFactory {
+        private final ClientHttpRequestFactory requestFactory;
+        private final File directory;
+        private final List<Resource> resources = Collections.synchronizedList(Lists.<Resource>newArrayList());
+        private volatile boolean cacheable = true;
+
+        private RecordingRequestFactory(final ClientHttpRequestFactory requestFactory, final File directory) {
+            this.requestFactory = requestFactory;
+            this.directory = directory;
+        }
+
+        /**
+         * Get the read resources or null if the style must not be cached.
+         */
+        private List<Resource> getResources() {
+            return this.cacheable ? Lists.newArrayList(this.resources) : null;
+        }
+
+        /**
+         * Get the file read for a file URI, the relative paths are resolved against the configuration directory like
+         * the configuration file loaders do.
+         */
+        private File getFile(final URI uri) {
+            File file;
+            if (uri.getScheme() == null) {
+                file = new File(uri.getPath());
+            } else {
+                try {
+                    file = new File(uri);
+                } catch (IllegalArgumentException e) {
+                    // file://relative/path
+                    file = new File(uri.toString().substring("file://".length()));
+                }
+            }
+            return file.isAbsolute() ? file : new File(this.directory, file.getPath());
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) throws IOException {
+            final ClientHttpRequest request = this.requestFactory.createRequest(uri, httpMethod);
+            return new ClientHttpRequest() {
+                @Override
+                public ClientHttpResponse execute() throws IOException {
+                    final ClientHttpResponse response;
+                    try {
+                        response = request.execute();
+                    } catch (IOException e) {
+                        // the parsers try several ways to read a style, the missing files are recorded too
+                        record(uri, null);
+                        throw e;
+                    }
+                    record(uri, response);
+                    return response;
+                }
+
+                private void record(final URI requestUri, final ClientHttpResponse response) {
+                    final String scheme = requestUri.getScheme();
+                    if (scheme == null || scheme.equalsIgnoreCase("file")) {
+                        RecordingRequestFactory.this.resources.add(new FileResource(getFile(requestUri)));
+                    } else if (response != null &&
+                               (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+                        // the styles loaded with the credentials of a user are not kept for the other users
+                        final Long expires = getSharedExpires(response);
+                        if (expires == null || httpMethod != HttpMethod.GET) {
+                            RecordingRequestFactory.this.cacheable = false;
+                        } else {
+                            RecordingRequestFactory.this.resources.add(
+                                    new HttpResource(requestUri, response.getHeaders(), expires));
+                        }
+                    } else {
+                        RecordingRequestFactory.this.cacheable = false;
+                    }
+                }
+
+                private Long getSharedExpires(final ClientHttpResponse response) {
+                    try {
+                        return PersistentHttpCache.getSharedExpires(request, response, System.currentTimeMillis());
+                    } catch (IOException e) {
+                        return null;
+                    }
+                }
+
+                @Override
+                public OutputStream getBody() throws IOException {
+                    return request.getBody();
+                }
+
+                @Override
+                public HttpMethod getMethod() {
+                    return request.getMethod();
+                }
+
+                @Override
+                public URI getURI() {
+                    return request.getURI();
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return request.getHeaders();
+                }
+            };
+        }
+    }
+}
@@ -28,6 +28,8 @@ public abstract class AbstractTiledLayer extends AbstractGeotoolsLayer {
 
     private final StyleSupplier<GridCoverage2D> styleSupplier;
     private final MetricRegistry registry;
+    private final ForkJoinPool requestForkJoinPool;
+    private final TileCache tileCache;
     private final Configuration configuration;
     private TileCacheInformation tileCacheInformation;
     private TilePreparationInfo tilePreparationInfo;
@@ -40,20 +42,26 @@ public abstract class AbstractTiledLayer extends AbstractGeotoolsLayer {
     /**
      * Constructor.
      * @param forkJoinPool the thread pool for doing the rendering.
+     * @param requestForkJoinPool the thread pool for loading and decoding the tiles.
      * @param styleSupplier strategy for loading the style for this layer.
      * @param params the parameters for this layer.
      * @param registry the metrics registry.
+     * @param tileCache the cache shared between the print jobs for the tiles.
      * @param configuration the configuration.
      */
     protected AbstractTiledLayer(
             @Nullable final ForkJoinPool forkJoinPool,
+            @Nullable final ForkJoinPool requestForkJoinPool,
             @Nullable final StyleSupplier<GridCoverage2D> styleSupplier,
             @Nonnull final AbstractLayerParams params,
             @Nullable final MetricRegistry registry,
+            @Nullable final TileCache tileCache,
             @Nonnull final Configuration configuration) {
         super(forkJoinPool, params);
         this.styleSupplier = styleSupplier;
         this.registry = registry;
+        this.requestForkJoinPool = requestForkJoinPool;
+        this.tileCache = tileCache;
         this.configuration = configuration;
     }
 
@@ -71,7 +79,8 @@ public abstract class AbstractTiledLayer extends AbstractGeotoolsLayer {
             final MapfishMapContext mapContext) throws Exception {
 
         final CoverageTask task = new CoverageTask(this.tilePreparationInfo,
-                getFailOnError(), this.registry, this.tileCacheInformation, this.configuration);
+                getFailOnError(), this.registry, this.requestForkJoinPool, this.tileCacheInformation,
+                this.tileCache, this.configuration);
         final GridCoverage2D gridCoverage2D = task.call();
 
         GridCoverageLayer layer = new GridCoverageLayer(
@@ -100,9 +109,11 @@ public abstract class AbstractTiledLayer extends AbstractGeotoolsLayer {
         final MapfishMapContext layerTransformer = getLayerTransformer(transformer);
 
         final double dpi = transformer.getDPI();
+        final MfClientHttpRequestFactory tileRequestFactory = this.tileCache != null ?
+                this.tileCache.wrap(clientHttpRequestFactory) : clientHttpRequestFactory;
         final TilePreparationTask task = new TilePreparationTask(
-                clientHttpRequestFactory, dpi, layerTransformer,
-                this.tileCacheInformation, httpRequestCache);
+                tileRequestFactory, dpi, layerTransformer,
+                this.tileCacheInformation, httpRequestCache, this.tileCache);
         this.tilePreparationInfo = task.call();
     }
 }
@@ -3,6 +3,8 @@ package org.mapfish.print.map.tiled;
 
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import jsr166y.ForkJoinPool;
 import jsr166y.RecursiveTask;
 import org.geotools.coverage.CoverageFactoryFinder;
 import org.geotools.coverage.grid.GridCoverage2D;
@@ -21,9 +23,14 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 
 
@@ -38,6 +45,8 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
     private final TilePreparationInfo tilePreparationInfo;
     private final boolean failOnError;
     private final MetricRegistry registry;
+    private final ForkJoinPool requestForkJoinPool;
+    private final TileCache tileCache;
     private final BufferedImage errorImage;
 
 
@@ -46,19 +55,25 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
      * @param tilePreparationInfo tileLoader Results.
      * @param failOnError fail on tile download error.
      * @param registry the metrics registry.
+     * @param requestForkJoinPool the thread pool used for loading and decoding the tiles.
      * @param tileCacheInfo the object used to create the tile requests.
+     * @param tileCache the cache shared between the print jobs for the decoded tiles.
      * @param configuration the configuration.
      */
     public CoverageTask(
             @Nonnull final TilePreparationInfo tilePreparationInfo,
             final boolean failOnError,
             @Nonnull final MetricRegistry registry,
+            @Nonnull final ForkJoinPool requestForkJoinPool,
             @Nonnull final TileCacheInformation tileCacheInfo,
+            @Nullable final TileCache tileCache,
             @Nonnull final Configuration configuration) {
         this.tilePreparationInfo = tilePreparationInfo;
         this.tiledLayer = tileCacheInfo;
         this.failOnError = failOnError;
         this.registry = registry;
+        this.requestForkJoinPool = requestForkJoinPool;
+        this.tileCache = tileCache;
 
         final Dimension tileSize = this.tiledLayer.getTileSize();
         this.errorImage = new BufferedImage(tileSize.width, tileSize.height, BufferedImage.TYPE_4BYTE_ABGR);
@@ -73,6 +88,9 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
 
     /**
      * Call the Coverage Task.
+     * <p></p>
+     * The tiles are loaded and decoded in parallel on the request pool, each tile is drawn into the coverage
+     * image as soon as it is ready.
      */
     public GridCoverage2D call() {
         try {
@@ -81,24 +99,39 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
                     this.tilePreparationInfo.getImageHeight());
             Graphics2D graphics = coverageImage.createGraphics();
 
-            for (SingleTilePreparationInfo tileInfo : this.tilePreparationInfo.getSingleTiles()) {
-                TileTask task;
-                if (tileInfo.getTileRequest() != null) {
-                    task = new SingleTileLoaderTask(
-                                tileInfo.getTileRequest(), this.errorImage, tileInfo.getTileIndexX(),
-                                tileInfo.getTileIndexY(), this.failOnError, this.registry);
-                } else {
-                    task = new PlaceHolderImageTask(this.tiledLayer.getMissingTileImage(),
-                            tileInfo.getTileIndexX(), tileInfo.getTileIndexY());
+            // the decoding time is measured per layer
+            final String commonUrl = this.tiledLayer.createCommonUrl();
+            final String decodeMetricName = CoverageTask.class.getName() + ".decode." + commonUrl;
+            final CompletionService<Tile> loader = new ExecutorCompletionService<Tile>(this.requestForkJoinPool);
+            final List<Future<Tile>> futures = Lists.newArrayList();
+            try {
+                for (SingleTilePreparationInfo tileInfo : this.tilePreparationInfo.getSingleTiles()) {
+                    TileTask task;
+                    if (tileInfo.getTileRequest() != null) {
+                        task = new SingleTileLoaderTask(tileInfo, this.errorImage, this.failOnError,
+                                    this.registry, decodeMetricName, this.tileCache);
+                    } else {
+                        task = new PlaceHolderImageTask(this.tiledLayer.getMissingTileImage(),
+                                tileInfo.getTileIndexX(), tileInfo.getTileIndexY());
+                    }
+                    futures.add(loader.submit(task));
                 }
-                Tile tile = task.call();
-                if (tile.getImage() != null) {
-                    graphics.drawImage(tile.getImage(),
-                            tile.getxIndex() * this.tiledLayer.getTileSize().width,
-                            tile.getyIndex() * this.tiledLayer.getTileSize().height, null);
+
+                for (int i = 0; i < futures.size(); i++) {
+                    Tile tile = loader.take().get();
+                    if (tile.getImage() != null) {
+                        graphics.drawImage(tile.getImage(),
+                                tile.getxIndex() * this.tiledLayer.getTileSize().width,
+                                tile.getyIndex() * this.tiledLayer.getTileSize().height, null);
+                    }
                 }
+            } finally {
+                // stop loading the remaining tiles if one of them failed
+                for (Future<Tile> future : futures) {
+                    future.cancel(false);
+                }
+                graphics.dispose();
             }
-            graphics.dispose();
 
             GridCoverageFactory factory = CoverageFactoryFinder.getGridCoverageFactory(null);
             GeneralEnvelope gridEnvelope = new GeneralEnvelope(this.tilePreparationInfo.getMapProjection());
@@ -107,7 +140,7 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
                     this.tilePreparationInfo.getGridCoverageMaxX(),
                     this.tilePreparationInfo.getGridCoverageMaxY());
 //            ImageIO.write(coverageImage, "png", new File(System.getProperty("java.io.tmpdir"), "coverageImage.png"));
-            return factory.create(this.tiledLayer.createCommonUrl(), coverageImage, gridEnvelope,
+            return factory.create(commonUrl, coverageImage, gridEnvelope,
                     null, null, null);
         } catch (Exception e) {
             throw ExceptionUtils.getRuntimeException(e);
@@ -160,30 +193,41 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
         private final ClientHttpRequest tileRequest;
         private final boolean failOnError;
         private final MetricRegistry registry;
+        private final String decodeMetricName;
         private final BufferedImage errorImage;
+        private final TileCache tileCache;
 
         /**
          * Constructor.
          *
-         * @param tileRequest tile request
+         * @param tileInfo the request and the indices of the tile
          * @param errorImage error image
-         * @param tileIndexX tile index x
-         * @param tileIndexY tile index y
          * @param failOnError fail on error
          * @param registry registry
+         * @param decodeMetricName the name of the timer of the decoding of the tiles of the layer
+         * @param tileCache the cache for the decoded tiles, may be null
          */
-        public SingleTileLoaderTask(final ClientHttpRequest tileRequest, final BufferedImage errorImage,
-                                    final int tileIndexX, final int tileIndexY, final boolean failOnError,
-                                    final MetricRegistry registry) {
-            super(tileIndexX, tileIndexY);
-            this.tileRequest = tileRequest;
+        public SingleTileLoaderTask(final SingleTilePreparationInfo tileInfo, final BufferedImage errorImage,
+                                    final boolean failOnError, final MetricRegistry registry,
+                                    final String decodeMetricName, @Nullable final TileCache tileCache) {
+            super(tileInfo.getTileIndexX(), tileInfo.getTileIndexY());
+            this.tileRequest = tileInfo.getTileRequest();
             this.errorImage = errorImage;
             this.failOnError = failOnError;
             this.registry = registry;
+            this.decodeMetricName = decodeMetricName;
+            this.tileCache = tileCache;
         }
 
         @Override
         protected Tile compute() {
+            if (this.tileCache != null) {
+                final BufferedImage cachedImage = this.tileCache.getDecodedTile(this.tileRequest);
+                if (cachedImage != null) {
+                    return new Tile(cachedImage, getTileIndexX(), getTileIndexY());
+                }
+            }
+
             ClientHttpResponse response = null;
             final String baseMetricName = TilePreparationTask.class.getName() + ".read." +
                     this.tileRequest.getURI().getHost();
@@ -191,6 +235,7 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
                 LOGGER.debug("\n\t" + this.tileRequest.getMethod() + " -- " + this.tileRequest.getURI());
                 final Timer.Context timerDownload = this.registry.timer(baseMetricName).time();
                 response = this.tileRequest.execute();
+                timerDownload.stop();
                 final HttpStatus statusCode = response.getStatusCode();
                 if (statusCode == HttpStatus.NO_CONTENT || statusCode == HttpStatus.NOT_FOUND) {
                     if (statusCode == HttpStatus.NOT_FOUND) {
@@ -212,14 +257,20 @@ public final class CoverageTask implements Callable<GridCoverage2D> {
                     return new Tile(this.errorImage, getTileIndexX(), getTileIndexY());
                     }
 
-                BufferedImage image = ImageIO.read(response.getBody());
+                final Timer.Context timerDecode = this.registry.timer(this.decodeMetricName).time();
+                BufferedImage image;
+                try {
+                    image = ImageIO.read(response.getBody());
+                } finally {
+                    timerDecode.stop();
+                }
                 if (image == null) {
                     LOGGER.warn(String.format("The URL: %s is an image format that cannot be decoded",
                             this.tileRequest.getURI()));
                     image = this.errorImage;
                     this.registry.counter(baseMetricName + ".error").inc();
-                } else {
-                    timerDownload.stop();
+                } else if (this.tileCache != null) {
+                    this.tileCache.putDecodedTile(this.tileRequest, response, image);
                 }
 
                 return new Tile(image, getTileIndexX(), getTileIndexY());
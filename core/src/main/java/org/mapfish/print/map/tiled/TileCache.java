@@ -0,0 +1,168 @@
+package org.mapfish.print.map.tiled;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.mapfish.print.ImageUtils;
+import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.mapfish.print.http.PersistentHttpCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * The caches shared between the print jobs for the tiles of the tiled layers.
+ * <p></p>
+ * The downloaded tiles are stored on disk by a {@link PersistentHttpCache} and the decoded tiles can be kept in memory so
+ * that the print jobs rendering the same area share the same images instead of decoding them again.  The decoded tiles
+ * are keyed like in the {@link PersistentHttpCache}, kept only until their response expires and never kept when the
+ * request carries the credentials of a user.
+ */
+public final class TileCache {
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private PersistentHttpCache httpCache;
+    private long maxDecodedSize = 0;
+    private Cache<String, DecodedTile> decodedTiles = null;
+
+    /**
+     * The cache used to store the downloaded tiles.
+     *
+     * @param httpCache the cache
+     */
+    public void setHttpCache(final PersistentHttpCache httpCache) {
+        this.httpCache = httpCache;
+    }
+
+    /**
+     * The maximum number of bytes of the decoded tiles kept in memory.  If 0 the decoded tiles are not cached.
+     *
+     * @param maxDecodedSize the size in bytes
+     */
+    public void setMaxDecodedSize(final long maxDecodedSize) {
+        this.maxDecodedSize = maxDecodedSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() {
+        if (this.maxDecodedSize <= 0) {
+            return;
+        }
+        this.decodedTiles = CacheBuilder.newBuilder().
+                maximumWeight(this.maxDecodedSize).
+                weigher(new Weigher<String, DecodedTile>() {
+                    @Override
+                    public int weigh(@Nonnull final String key, @Nonnull final DecodedTile tile) {
+                        return (int) Math.min(ImageUtils.getImageSize(tile.image), Integer.MAX_VALUE);
+                    }
+                }).
+                removalListener(new RemovalListener<String, DecodedTile>() {
+                    @Override
+                    public void onRemoval(@Nonnull final RemovalNotification<String, DecodedTile> notification) {
+                        if (notification.wasEvicted()) {
+                            TileCache.this.metricRegistry.counter(getMetricName("eviction")).inc();
+                        }
+                    }
+                }).
+                build();
+    }
+
+    /**
+     * Wrap the request factory so that the tiles are loaded through the persistent cache.
+     *
+     * @param requestFactory the request factory to wrap
+     */
+    public MfClientHttpRequestFactory wrap(@Nonnull final MfClientHttpRequestFactory requestFactory) {
+        return this.httpCache != null ? this.httpCache.wrap(requestFactory) : requestFactory;
+    }
+
+    /**
+     * Return true if the decoded image of the tile is in the cache.
+     *
+     * @param request the request of the tile, with all its headers
+     */
+    public boolean hasDecodedTile(@Nonnull final ClientHttpRequest request) {
+        return getFreshTile(request) != null;
+    }
+
+    /**
+     * Get the decoded image of the tile or null if it is not in the cache.  The returned image is shared and must not be
+     * modified.
+     *
+     * @param request the request of the tile, with all its headers
+     */
+    @Nullable
+    public BufferedImage getDecodedTile(@Nonnull final ClientHttpRequest request) {
+        if (this.decodedTiles == null) {
+            return null;
+        }
+        final DecodedTile tile = getFreshTile(request);
+        this.metricRegistry.counter(getMetricName(tile != null ? "hit" : "miss")).inc();
+        return tile != null ? tile.image : null;
+    }
+
+    /**
+     * Add the decoded image of a tile to the cache, if its response can be shared between the print jobs (see
+     * {@link PersistentHttpCache#getSharedExpires(ClientHttpRequest, ClientHttpResponse, long)}).  The image is kept
+     * until the response expires.
+     *
+     * @param request the request of the tile, with all its headers
+     * @param response the response of the request
+     * @param image the decoded image
+     */
+    public void putDecodedTile(@Nonnull final ClientHttpRequest request, @Nonnull final ClientHttpResponse response,
+                               @Nonnull final BufferedImage image) throws IOException {
+        if (this.decodedTiles == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final Long expires = PersistentHttpCache.getSharedExpires(request, response, now);
+        if (expires != null && expires > now) {
+            this.decodedTiles.put(PersistentHttpCache.createKey(request), new DecodedTile(image, expires));
+        }
+    }
+
+    @Nullable
+    private DecodedTile getFreshTile(final ClientHttpRequest request) {
+        if (this.decodedTiles == null || PersistentHttpCache.hasCredentials(request.getHeaders())) {
+            return null;
+        }
+        final String key = PersistentHttpCache.createKey(request);
+        final DecodedTile tile = this.decodedTiles.getIfPresent(key);
+        if (tile != null && System.currentTimeMillis() >= tile.expires) {
+            this.decodedTiles.invalidate(key);
+            return null;
+        }
+        return tile;
+    }
+
+    private String getMetricName(final String name) {
+        return TileCache.class.getName() + ".decoded." + name;
+    }
+
+    /**
+     * A decoded tile with the time at which its response expires.
+     */
+    private static final class DecodedTile {
+        private final BufferedImage image;
+        private final long expires;
+
+        private DecodedTile(final BufferedImage image, final long expires) {
+            this.image = image;
+            this.expires = expires;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 
 /**
@@ -44,6 +45,7 @@ public final class TilePreparationTask implements Callable<TilePreparationInfo>
     private final MfClientHttpRequestFactory httpRequestFactory;
     private Optional<Geometry> cachedRotatedMapBounds = null;
     private final HttpRequestCache requestCache;
+    private final TileCache tileCache;
 
     /**
      * Constructor.
@@ -52,13 +54,16 @@ public final class TilePreparationTask implements Callable<TilePreparationInfo>
      * @param transformer a transformer for making calculations
      * @param tileCacheInfo the object used to create the tile requests
      * @param requestCache request cache
+     * @param tileCache the cache shared between the print jobs for the decoded tiles, may be null
      */
     public TilePreparationTask(final MfClientHttpRequestFactory httpRequestFactory,
                           final double dpi,
                           @Nonnull final MapfishMapContext transformer,
                           @Nonnull final TileCacheInformation tileCacheInfo,
-                          final HttpRequestCache requestCache) {
+                          final HttpRequestCache requestCache,
+                          @Nullable final TileCache tileCache) {
         this.requestCache = requestCache;
+        this.tileCache = tileCache;
         this.bounds = transformer.getBounds();
         this.paintArea = new Rectangle(transformer.getMapSize());
         this.dpi = dpi;
@@ -129,7 +134,10 @@ public final class TilePreparationTask implements Callable<TilePreparationInfo>
                             commonUrl, tileBounds, tileSizeOnScreen, column, row);
                     if (isInTileCacheBounds(tileCacheBounds, tileBounds)) {
                         if (isTileVisible(tileBounds)) {
-                            tileRequest = this.requestCache.register(tileRequest);
+                            // the tiles already decoded by another print don't need to be downloaded
+                            if (this.tileCache == null || !this.tileCache.hasDecodedTile(tileRequest)) {
+                                tileRequest = this.requestCache.register(tileRequest);
+                            }
                             tiles.add(new SingleTilePreparationInfo(xIndex, yIndex, tileRequest));
                         }
                     } else {
@@ -10,6 +10,7 @@ import org.mapfish.print.config.Configuration;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.geotools.StyleSupplier;
 import org.mapfish.print.map.tiled.AbstractTiledLayer;
+import org.mapfish.print.map.tiled.TileCache;
 import org.mapfish.print.map.tiled.TileCacheInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Strategy object for rendering Osm based layers.
@@ -34,18 +36,22 @@ public final class OsmLayer extends AbstractTiledLayer {
      * Constructor.
      *
      * @param forkJoinPool the thread pool for doing the rendering.
+     * @param requestForkJoinPool the thread pool for loading and decoding the tiles.
      * @param styleSupplier strategy for loading the style for this layer.
      * @param param the information needed to create OSM requests.
      * @param registry the metrics registry.
+     * @param tileCache the cache shared between the print jobs for the tiles.
      * @param configuration the configuration.
      */
     public OsmLayer(
             @Nonnull final ForkJoinPool forkJoinPool,
+            @Nonnull final ForkJoinPool requestForkJoinPool,
             @Nonnull final StyleSupplier<GridCoverage2D> styleSupplier,
             @Nonnull final OsmLayerParam param,
             @Nonnull final MetricRegistry registry,
+            @Nullable final TileCache tileCache,
             @Nonnull final Configuration configuration) {
-        super(forkJoinPool, styleSupplier, param, registry, configuration);
+        super(forkJoinPool, requestForkJoinPool, styleSupplier, param, registry, tileCache, configuration);
         this.param = param;
     }
 
@@ -10,6 +10,7 @@ import org.mapfish.print.config.Template;
 import org.mapfish.print.map.MapLayerFactoryPlugin;
 import org.mapfish.print.map.geotools.AbstractGridCoverageLayerPlugin;
 import org.mapfish.print.map.style.StyleParser;
+import org.mapfish.print.map.tiled.TileCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Set;
@@ -32,6 +33,8 @@ public final class OsmLayerParserPlugin extends AbstractGridCoverageLayerPlugin
     private MetricRegistry registry;
     @Resource(name = "requestForkJoinPool")
     private ForkJoinPool requestForkJoinPool;
+    @Resource(name = "tileCache")
+    private TileCache tileCache;
 
     private Set<String> typenames = Sets.newHashSet("osm");
 
@@ -51,8 +54,8 @@ public final class OsmLayerParserPlugin extends AbstractGridCoverageLayerPlugin
             @Nonnull final Template template,
             @Nonnull final OsmLayerParam param) {
         String styleRef = param.rasterStyle;
-        return new OsmLayer(this.forkJoinPool,
+        return new OsmLayer(this.forkJoinPool, this.requestForkJoinPool,
                 super.<GridCoverage2D>createStyleSupplier(template, styleRef),
-                param, this.registry, template.getConfiguration());
+                param, this.registry, this.tileCache, template.getConfiguration());
     }
 }
@@ -9,6 +9,7 @@ import org.mapfish.print.config.Configuration;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.geotools.StyleSupplier;
 import org.mapfish.print.map.tiled.AbstractTiledLayer;
+import org.mapfish.print.map.tiled.TileCache;
 import org.mapfish.print.map.tiled.TileCacheInformation;
 import org.opengis.referencing.FactoryException;
 import org.springframework.http.HttpMethod;
@@ -20,6 +21,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static org.mapfish.print.map.image.wms.WmsUtilities.makeWmsGetLayerRequest;
 
@@ -33,18 +35,22 @@ public final class TiledWmsLayer extends AbstractTiledLayer {
      * Constructor.
      *
      * @param forkJoinPool the thread pool for doing the rendering.
+     * @param requestForkJoinPool the thread pool for loading and decoding the tiles.
      * @param styleSupplier strategy for loading the style for this layer.
      * @param param the information needed to create WMS requests.
      * @param registry the metrics registry.
+     * @param tileCache the cache shared between the print jobs for the tiles.
      * @param configuration the configuration.
      */
     public TiledWmsLayer(
             @Nonnull final ForkJoinPool forkJoinPool,
+            @Nonnull final ForkJoinPool requestForkJoinPool,
             @Nonnull final StyleSupplier<GridCoverage2D> styleSupplier,
             @Nonnull final TiledWmsLayerParam param,
             @Nonnull final MetricRegistry registry,
+            @Nullable final TileCache tileCache,
             @Nonnull final Configuration configuration) {
-        super(forkJoinPool, styleSupplier, param, registry, configuration);
+        super(forkJoinPool, requestForkJoinPool, styleSupplier, param, registry, tileCache, configuration);
         this.param = param;
     }
 
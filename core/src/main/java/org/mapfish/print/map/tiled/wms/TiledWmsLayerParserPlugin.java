@@ -9,6 +9,7 @@ import org.geotools.coverage.grid.GridCoverage2D;
 import org.mapfish.print.config.Template;
 import org.mapfish.print.map.MapLayerFactoryPlugin;
 import org.mapfish.print.map.geotools.AbstractGridCoverageLayerPlugin;
+import org.mapfish.print.map.tiled.TileCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Set;
@@ -30,6 +31,8 @@ public final class TiledWmsLayerParserPlugin extends AbstractGridCoverageLayerPl
     private MetricRegistry registry;
     @Resource(name = "requestForkJoinPool")
     private ForkJoinPool requestForkJoinPool;
+    @Resource(name = "tileCache")
+    private TileCache tileCache;
 
     private final Set<String> typenames = Sets.newHashSet("tiledwms");
 
@@ -49,8 +52,8 @@ public final class TiledWmsLayerParserPlugin extends AbstractGridCoverageLayerPl
             @Nonnull final Template template,
             @Nonnull final TiledWmsLayerParam param) {
         String styleRef = param.rasterStyle;
-        return new TiledWmsLayer(this.forkJoinPool,
+        return new TiledWmsLayer(this.forkJoinPool, this.requestForkJoinPool,
                 super.<GridCoverage2D>createStyleSupplier(template, styleRef),
-                param, this.registry, template.getConfiguration());
+                param, this.registry, this.tileCache, template.getConfiguration());
     }
 }
@@ -12,6 +12,7 @@ import org.mapfish.print.config.Configuration;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.geotools.StyleSupplier;
 import org.mapfish.print.map.tiled.AbstractTiledLayer;
+import org.mapfish.print.map.tiled.TileCache;
 import org.mapfish.print.map.tiled.TileCacheInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,18 +42,22 @@ public class WMTSLayer extends AbstractTiledLayer {
      * Constructor.
      *
      * @param forkJoinPool the thread pool for doing the rendering.
+     * @param requestForkJoinPool the thread pool for loading and decoding the tiles.
      * @param styleSupplier strategy for loading the style for this layer
      * @param param the information needed to create WMTS requests.
      * @param registry the metrics registry.
+     * @param tileCache the cache shared between the print jobs for the tiles.
      * @param configuration the configuration.
      */
     protected WMTSLayer(
             @Nullable final ForkJoinPool forkJoinPool,
+            @Nullable final ForkJoinPool requestForkJoinPool,
             @Nullable final StyleSupplier<GridCoverage2D> styleSupplier,
             @Nonnull final WMTSLayerParam param,
             @Nullable final MetricRegistry registry,
+            @Nullable final TileCache tileCache,
             @Nonnull final Configuration configuration) {
-        super(forkJoinPool, styleSupplier, param, registry, configuration);
+        super(forkJoinPool, requestForkJoinPool, styleSupplier, param, registry, tileCache, configuration);
         this.param = param;
     }
 
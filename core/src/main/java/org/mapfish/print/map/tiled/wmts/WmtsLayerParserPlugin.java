@@ -9,6 +9,7 @@ import org.geotools.coverage.grid.GridCoverage2D;
 import org.mapfish.print.config.Template;
 import org.mapfish.print.map.MapLayerFactoryPlugin;
 import org.mapfish.print.map.geotools.AbstractGridCoverageLayerPlugin;
+import org.mapfish.print.map.tiled.TileCache;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Set;
@@ -29,6 +30,8 @@ public final class WmtsLayerParserPlugin extends AbstractGridCoverageLayerPlugin
     private MetricRegistry registry;
     @Resource(name = "requestForkJoinPool")
     private ForkJoinPool requestForkJoinPool;
+    @Resource(name = "tileCache")
+    private TileCache tileCache;
 
     private Set<String> typenames = Sets.newHashSet("wmts");
 
@@ -48,8 +51,8 @@ public final class WmtsLayerParserPlugin extends AbstractGridCoverageLayerPlugin
             @Nonnull final Template template,
             @Nonnull final WMTSLayerParam param) {
         String styleRef = param.rasterStyle;
-        return new WMTSLayer(this.forkJoinPool,
+        return new WMTSLayer(this.forkJoinPool, this.requestForkJoinPool,
                 super.<GridCoverage2D>createStyleSupplier(template, styleRef),
-                param, this.registry, template.getConfiguration());
+                param, this.registry, this.tileCache, template.getConfiguration());
     }
 }
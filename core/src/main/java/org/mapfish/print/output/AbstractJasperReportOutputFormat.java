@@ -18,6 +18,7 @@ import net.sf.jasperreports.engine.Renderable;
 import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
 import net.sf.jasperreports.engine.design.JRDesignField;
 import net.sf.jasperreports.engine.util.LocalJasperReportsContext;
+import net.sf.jasperreports.engine.util.SimpleFileResolver;
 import net.sf.jasperreports.repo.RepositoryService;
 import org.json.JSONException;
 import org.mapfish.print.Constants;
@@ -27,22 +28,19 @@ import org.mapfish.print.config.Configuration;
 import org.mapfish.print.config.Template;
 import org.mapfish.print.config.WorkingDirectories;
 import org.mapfish.print.http.MfClientHttpRequestFactoryImpl;
+import org.mapfish.print.output.JasperReportCache.Declarations;
 import org.mapfish.print.parser.MapfishParser;
+import org.mapfish.print.processor.jasper.DataSourceProcessor;
 import org.mapfish.print.processor.jasper.JasperReportBuilder;
 import org.mapfish.print.wrapper.json.PJsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,8 +51,6 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 
 /**
@@ -72,6 +68,9 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
     @Autowired
     private MfClientHttpRequestFactoryImpl httpRequestFactory;
 
+    @Autowired
+    private JasperReportCache jasperReportCache;
+
 
     /**
      * Export the report to the output stream.
@@ -97,8 +96,14 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
         doExport(outputStream, print);
     }
 
-    private JasperFillManager getJasperFillManager(@Nonnull final Configuration configuration) {
+    private JasperFillManager getJasperFillManager(@Nonnull final Configuration configuration,
+                                                   @Nonnull final File jasperTemplateBuild) {
         LocalJasperReportsContext ctx = getLocalJasperReportsContext(configuration);
+        // resolve the relative paths from the compiled report like JasperFillManager does when filling a report file
+        SimpleFileResolver fileResolver = new SimpleFileResolver(
+                Arrays.asList(jasperTemplateBuild.getParentFile(), new File(".")));
+        fileResolver.setResolveAbsolutePath(true);
+        ctx.setFileResolver(fileResolver);
         return JasperFillManager.getInstance(ctx);
     }
 
@@ -136,90 +141,87 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
         final ForkJoinTask<Values> taskFuture = this.forkJoinPool.submit(template.getProcessorGraph().createTask(values));
 
         try {
-            taskFuture.get();
-        } catch (InterruptedException exc) {
-            // if cancel() is called on the current thread, this exception will be thrown.
-            // in this case, also properly cancel the task future.
-            taskFuture.cancel(true);
-            Thread.currentThread().interrupt();
-            throw new CancellationException();
-        }
-
-        ValuesLogger.log(templateName, template, values);
-        JasperFillManager fillManager = getJasperFillManager(config);
+            try {
+                taskFuture.get();
+            } catch (InterruptedException exc) {
+                // if cancel() is called on the current thread, this exception will be thrown.
+                // in this case, also properly cancel the task future.
+                taskFuture.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
 
-        checkRequiredValues(config, values, template.getReportTemplate());
+            ValuesLogger.log(templateName, template, values);
+            JasperFillManager fillManager = getJasperFillManager(config, jasperTemplateBuild);
+
+            final Declarations declarations = getDeclarations(config, template.getReportTemplate(), jasperTemplateBuild);
+            checkRequiredValues(declarations, values, template.getReportTemplate());
+
+            final JasperPrint print;
+            if (template.getJdbcUrl() != null) {
+                final Connection connection = config.getJdbcConnection(templateName);
+                try {
+                    print = fillManager.fill(
+                            this.jasperReportCache.getReport(jasperTemplateBuild),
+                            values.asMap(),
+                            connection);
+                } finally {
+                    connection.close();
+                }
 
-        final JasperPrint print;
-        if (template.getJdbcUrl() != null) {
-            Connection connection;
-            if (template.getJdbcUser() != null) {
-                connection = DriverManager.getConnection(template.getJdbcUrl(), template.getJdbcUser(), template.getJdbcPassword());
             } else {
-                connection = DriverManager.getConnection(template.getJdbcUrl());
-            }
-
-            print = fillManager.fill(
-                    jasperTemplateBuild.getAbsolutePath(),
-                    values.asMap(),
-                    connection);
-
-        } else {
-            JRDataSource dataSource;
-            if (template.getTableDataKey() != null) {
-                final Object dataSourceObj = values.getObject(template.getTableDataKey(), Object.class);
-                if (dataSourceObj instanceof JRDataSource) {
-                    dataSource = (JRDataSource) dataSourceObj;
-                } else if (dataSourceObj instanceof Iterable) {
-                    Iterable sourceObj = (Iterable) dataSourceObj;
-                    dataSource = toJRDataSource(sourceObj.iterator());
-                } else if (dataSourceObj instanceof Iterator) {
-                    Iterator sourceObj = (Iterator) dataSourceObj;
-                    dataSource = toJRDataSource(sourceObj);
-                } else if (dataSourceObj.getClass().isArray()) {
-                    Object[] sourceObj = (Object[]) dataSourceObj;
-                    dataSource = toJRDataSource(Arrays.asList(sourceObj).iterator());
+                JRDataSource dataSource;
+                if (template.getTableDataKey() != null) {
+                    final Object dataSourceObj = values.getObject(template.getTableDataKey(), Object.class);
+                    if (dataSourceObj instanceof JRDataSource) {
+                        dataSource = (JRDataSource) dataSourceObj;
+                    } else if (dataSourceObj instanceof Iterable) {
+                        Iterable sourceObj = (Iterable) dataSourceObj;
+                        dataSource = toJRDataSource(sourceObj.iterator());
+                    } else if (dataSourceObj instanceof Iterator) {
+                        Iterator sourceObj = (Iterator) dataSourceObj;
+                        dataSource = toJRDataSource(sourceObj);
+                    } else if (dataSourceObj.getClass().isArray()) {
+                        Object[] sourceObj = (Object[]) dataSourceObj;
+                        dataSource = toJRDataSource(Arrays.asList(sourceObj).iterator());
+                    } else {
+                        throw new AssertionError("Objects of type: " + dataSourceObj.getClass() + " cannot be converted to a row in a " +
+                                             "JRDataSource");
+                    }
                 } else {
-                    throw new AssertionError("Objects of type: " + dataSourceObj.getClass() + " cannot be converted to a row in a " +
-                                         "JRDataSource");
+                    dataSource = new JREmptyDataSource();
                 }
-            } else {
-                dataSource = new JREmptyDataSource();
+                checkRequiredFields(declarations, dataSource, template.getReportTemplate());
+                print = fillManager.fill(
+                        this.jasperReportCache.getReport(jasperTemplateBuild),
+                        values.asMap(),
+                        dataSource);
             }
-            checkRequiredFields(config, dataSource, template.getReportTemplate());
-            print = fillManager.fill(
-                    jasperTemplateBuild.getAbsolutePath(),
-                    values.asMap(),
-                    dataSource);
+            print.setProperty(Renderable.PROPERTY_IMAGE_DPI, String.valueOf(Math.round(maxDpi)));
+            return new Print(getLocalJasperReportsContext(config), print, values, maxDpi);
+        } finally {
+            // the rows of the datasources that have not been read are not needed anymore
+            DataSourceProcessor.closeDataSources(values);
         }
-        print.setProperty(Renderable.PROPERTY_IMAGE_DPI, String.valueOf(Math.round(maxDpi)));
-        return new Print(getLocalJasperReportsContext(config), print, values, maxDpi);
     }
 
-    private void checkRequiredFields(final Configuration configuration, final JRDataSource dataSource, final String reportTemplate) {
+    private void checkRequiredFields(final Declarations declarations, final JRDataSource dataSource,
+                                     final String reportTemplate) {
         if (dataSource instanceof JRRewindableDataSource) {
             JRRewindableDataSource source = (JRRewindableDataSource) dataSource;
             StringBuilder wrongType = new StringBuilder();
             try {
+                JRDesignField field = new JRDesignField();
                 while (source.next()) {
-                    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                    factory.setValidating(false);
-                    final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-                    final byte[] bytes = configuration.loadFile(reportTemplate);
-                    final Document document = documentBuilder.parse(new ByteArrayInputStream(bytes));
-                    final NodeList parameters = document.getElementsByTagName("field");
-                    JRDesignField field = new JRDesignField();
-                    for (int i = 0; i < parameters.getLength(); i++) {
-                        final Element param = (Element) parameters.item(i);
-                        final String name = param.getAttribute("name");
+                    for (Map.Entry<String, Class<?>> declaration : declarations.getFields().entrySet()) {
+                        final String name = declaration.getKey();
                         field.setName(name);
                         Object record = dataSource.getFieldValue(field);
                         if (record != null) {
-                            final String type = param.getAttribute("class");
-                            Class<?> clazz = Class.forName(type);
+                            final Class<?> clazz = declaration.getValue();
                             if (!clazz.isInstance(record)) {
                                 wrongType.append("\t* ").append(name).append(" : ").append(record.getClass().getName());
-                                wrongType.append(" expected type: ").append(type).append("\n");
+                                wrongType.append(" expected type: ").append(clazz.getName()).append("\n");
                             }
                         } else {
                             LOGGER.warn("The field " + name + " in " + reportTemplate + " is not available in at least one of the " +
@@ -248,33 +250,21 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
         }
     }
 
-    private void checkRequiredValues(final Configuration configuration, final Values values, final String reportTemplate) {
+    private void checkRequiredValues(final Declarations declarations, final Values values, final String reportTemplate) {
         StringBuilder missing = new StringBuilder();
         StringBuilder wrongType = new StringBuilder();
-        try {
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setValidating(false);
-            final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
-            final byte[] bytes = configuration.loadFile(reportTemplate);
-            final Document document = documentBuilder.parse(new ByteArrayInputStream(bytes));
-            final NodeList parameters = document.getElementsByTagName("parameter");
-            for (int i = 0; i < parameters.getLength(); i++) {
-                final Element param = (Element) parameters.item(i);
-                final String name = param.getAttribute("name");
-                if (!values.containsKey(name)) {
-                    missing.append("\t* ").append(name).append("\n");
-                } else {
-                    final String type = param.getAttribute("class");
-                    Class<?> clazz = Class.forName(type);
-                    Object value = values.getObject(name, Object.class);
-                    if (!clazz.isInstance(value)) {
-                        wrongType.append("\t* ").append(name).append(" : ").append(value.getClass().getName());
-                        wrongType.append(" expected type: ").append(type).append("\n");
-                    }
+        for (Map.Entry<String, Class<?>> declaration : declarations.getParameters().entrySet()) {
+            final String name = declaration.getKey();
+            if (!values.containsKey(name)) {
+                missing.append("\t* ").append(name).append("\n");
+            } else {
+                final Class<?> clazz = declaration.getValue();
+                Object value = values.getObject(name, Object.class);
+                if (!clazz.isInstance(value)) {
+                    wrongType.append("\t* ").append(name).append(" : ").append(value.getClass().getName());
+                    wrongType.append(" expected type: ").append(clazz.getName()).append("\n");
                 }
             }
-        } catch (Throwable e) {
-            throw ExceptionUtils.getRuntimeException(e);
         }
 
         StringBuilder finalError = new StringBuilder();
@@ -298,11 +288,22 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
         }
     }
 
+    private Declarations getDeclarations(final Configuration configuration, final String reportTemplate,
+                                         final File buildFile) {
+        try {
+            return this.jasperReportCache.getDeclarations(configuration, reportTemplate, buildFile);
+        } catch (Exception e) {
+            throw ExceptionUtils.getRuntimeException(e);
+        }
+    }
+
     private LocalJasperReportsContext getLocalJasperReportsContext(final Configuration configuration) {
         LocalJasperReportsContext ctx = new LocalJasperReportsContext(DefaultJasperReportsContext.getInstance());
         ctx.setClassLoader(getClass().getClassLoader());
         ctx.setExtensions(RepositoryService.class,
-                Lists.newArrayList(new MapfishPrintRepositoryService(configuration, this.httpRequestFactory)));
+                Lists.newArrayList(new MapfishPrintRepositoryService(configuration, this.httpRequestFactory,
+                        this.jasperReportCache, this.workingDirectories.getJasperCompilation(configuration),
+                        this.workingDirectories.getWorking())));
         return ctx;
     }
 
@@ -347,8 +348,9 @@ public abstract class AbstractJasperReportOutputFormat implements OutputFormat {
 
         // CHECKSTYLE:ON
 
-        private Print(@Nonnull final JasperReportsContext context, @Nonnull final JasperPrint print,
-                      @Nonnull final Values values, @Nonnegative final double dpi) {
+        @VisibleForTesting
+        Print(@Nonnull final JasperReportsContext context, @Nonnull final JasperPrint print,
+              @Nonnull final Values values, @Nonnegative final double dpi) {
             this.print = print;
             this.context = context;
             this.values = values;
@@ -0,0 +1,133 @@
+package org.mapfish.print.output;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import org.mapfish.print.config.Configuration;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Cache shared between the print jobs for the compiled Jasper reports and the information read from their templates.
+ * <p></p>
+ * The entries are keyed by the compiled report file and are invalidated when that file is modified, so a report is
+ * loaded again each time it is rebuilt by the {@link org.mapfish.print.processor.jasper.JasperReportBuilder}.
+ */
+public final class JasperReportCache {
+    private static final int MAX_REPORTS = 1000;
+
+    private final Cache<String, Entry<Declarations>> declarations = CacheBuilder.newBuilder().
+            maximumSize(MAX_REPORTS).
+            build();
+    private final Cache<String, Entry<JasperReport>> reports = CacheBuilder.newBuilder().
+            maximumSize(MAX_REPORTS).
+            build();
+
+    /**
+     * Get the report loaded from a compiled report file.  The returned report is shared by all the prints and must not be
+     * modified.
+     *
+     * @param buildFile the compiled report file
+     */
+    @Nonnull
+    public JasperReport getReport(@Nonnull final File buildFile) throws JRException {
+        final String key = buildFile.getAbsolutePath();
+        final long lastModified = buildFile.lastModified();
+        Entry<JasperReport> entry = this.reports.getIfPresent(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = new Entry<JasperReport>(lastModified, (JasperReport) JRLoader.loadObject(buildFile));
+            this.reports.put(key, entry);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Get the parameters and fields declared in a report template.
+     *
+     * @param configuration the configuration, used to load the template
+     * @param reportTemplate the path of the template (the jrxml file), relative to the configuration
+     * @param buildFile the compiled report file
+     */
+    @Nonnull
+    public Declarations getDeclarations(@Nonnull final Configuration configuration, @Nonnull final String reportTemplate,
+                                        @Nonnull final File buildFile) throws Exception {
+        final String key = buildFile.getAbsolutePath();
+        final long lastModified = buildFile.lastModified();
+        Entry<Declarations> entry = this.declarations.getIfPresent(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = new Entry<Declarations>(lastModified, Declarations.parse(configuration.loadFile(reportTemplate)));
+            this.declarations.put(key, entry);
+        }
+        return entry.value;
+    }
+
+    private static final class Entry<T> {
+        private final long lastModified;
+        private final T value;
+
+        private Entry(final long lastModified, final T value) {
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The parameters and the fields declared in a report template, with their classes.
+     */
+    public static final class Declarations {
+        private static final String DEFAULT_CLASS = "java.lang.String";
+        private final Map<String, Class<?>> parameters;
+        private final Map<String, Class<?>> fields;
+
+        private Declarations(final Map<String, Class<?>> parameters, final Map<String, Class<?>> fields) {
+            this.parameters = Collections.unmodifiableMap(parameters);
+            this.fields = Collections.unmodifiableMap(fields);
+        }
+
+        private static Declarations parse(final byte[] template) throws Exception {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setValidating(false);
+            final DocumentBuilder documentBuilder = factory.newDocumentBuilder();
+            final Document document = documentBuilder.parse(new ByteArrayInputStream(template));
+            return new Declarations(getDeclarations(document, "parameter"), getDeclarations(document, "field"));
+        }
+
+        private static Map<String, Class<?>> getDeclarations(final Document document, final String tagName)
+                throws ClassNotFoundException {
+            final Map<String, Class<?>> result = new LinkedHashMap<String, Class<?>>();
+            final NodeList elements = document.getElementsByTagName(tagName);
+            for (int i = 0; i < elements.getLength(); i++) {
+                final Element element = (Element) elements.item(i);
+                final String type = element.getAttribute("class");
+                result.put(element.getAttribute("name"), Class.forName(type.isEmpty() ? DEFAULT_CLASS : type));
+            }
+            return result;
+        }
+
+        /**
+         * The declared parameters, by name.
+         */
+        public Map<String, Class<?>> getParameters() {
+            return this.parameters;
+        }
+
+        /**
+         * The declared fields, by name.
+         */
+        public Map<String, Class<?>> getFields() {
+            return this.fields;
+        }
+    }
+}
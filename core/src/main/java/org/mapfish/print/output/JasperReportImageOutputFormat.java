@@ -1,8 +1,11 @@
 package org.mapfish.print.output;
 
+import jsr166y.ForkJoinPool;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperPrintManager;
+import org.mapfish.print.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -10,38 +13,127 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Stroke;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 
 import static org.mapfish.print.Constants.PDF_DPI;
 
 /**
- * An PDF output format that uses Jasper reports to generate the result.
+ * An image output format that uses Jasper reports to generate the result.
+ * <p></p>
+ * The pages are rasterized in parallel, the number of pages rasterized at the same time is limited by
+ * {@link #setMemoryBudget(long)}.  Depending on {@link #setPageOutput(PageOutput)} the pages are stitched in one
+ * image, written as separate images in a ZIP file or written as the pages of a multi-page image (TIFF).  Only the
+ * stitched output needs the full image in memory.
  */
 public final class JasperReportImageOutputFormat extends AbstractJasperReportOutputFormat implements OutputFormat {
+    private static final long DEFAULT_MEMORY_BUDGET = 128L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * How the pages are written.
+     */
+    public enum PageOutput {
+        /**
+         * All the pages in one image, separated by a line.
+         */
+        STITCHED,
+        /**
+         * One image per page, in a ZIP file.
+         */
+        ZIP,
+        /**
+         * One image with several pages, the image format must support it (for example TIFF).
+         */
+        MULTI_PAGE
+    }
+
+    @Autowired
+    private ForkJoinPool forkJoinPool;
 
     private int imageType = BufferedImage.TYPE_INT_ARGB;
 
     private String fileSuffix;
 
+    private PageOutput pageOutput = PageOutput.STITCHED;
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
     @Override
     public String getContentType() {
+        if (this.pageOutput == PageOutput.ZIP) {
+            return "application/zip";
+        }
         return "image/" + this.fileSuffix;
     }
 
+    /**
+     * The image format of the pages.
+     *
+     * @param fileSuffix the format, for example png.
+     */
     public void setFileSuffix(final String fileSuffix) {
         this.fileSuffix = fileSuffix;
     }
 
     @Override
     public String getFileSuffix() {
+        if (this.pageOutput == PageOutput.ZIP) {
+            return "zip";
+        }
         return this.fileSuffix;
     }
 
+    /**
+     * How the pages are written.  Default is STITCHED.
+     *
+     * @param pageOutput the page output.
+     */
+    public void setPageOutput(final PageOutput pageOutput) {
+        this.pageOutput = pageOutput;
+    }
+
+    /**
+     * The maximum number of bytes taken by the pages rasterized and not yet written, at least one page is always
+     * rasterized.  Default is 128MB.
+     *
+     * @param memoryBudget the budget in bytes.
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
     @Override
     protected void doExport(final OutputStream outputStream, final Print print) throws JRException, IOException {
+        switch (this.pageOutput) {
+            case ZIP:
+                exportZip(outputStream, print);
+                break;
+            case MULTI_PAGE:
+                exportMultiPage(outputStream, print);
+                break;
+            default:
+                exportStitched(outputStream, print);
+                break;
+        }
+    }
+
+    private void exportStitched(final OutputStream outputStream, final Print print) throws JRException, IOException {
         JasperPrint jasperPrint = print.print;
         final int numPages = jasperPrint.getPages().size();
 
@@ -55,19 +147,18 @@ public final class JasperReportImageOutputFormat extends AbstractJasperReportOut
                 pageWidthOnImage, numPages * pageHeightOnImage + (numPages - 1) * separatorHeightOnImage,
                 this.imageType);
 
-        Graphics2D graphics2D = reportImage.createGraphics();
+        final Graphics2D graphics2D = reportImage.createGraphics();
         try {
-            JasperPrintManager printManager = JasperPrintManager.getInstance(print.context);
-
-            for (int pageIndex = 0; pageIndex < numPages; pageIndex++) {
-                Image pageImage = printManager.printToImage(jasperPrint, pageIndex, dpiRatio);
-
-                graphics2D.drawImage(pageImage,
-                        0, (pageHeightOnImage + separatorHeight) * pageIndex,
-                        pageWidthOnImage, (pageHeightOnImage + separatorHeight) * pageIndex + pageHeightOnImage,
-                        0, 0,
-                        pageWidthOnImage, pageHeightOnImage, null);
-            }
+            renderPages(print, new PageWriter() {
+                @Override
+                public void write(final int pageIndex, final Image pageImage) {
+                    graphics2D.drawImage(pageImage,
+                            0, (pageHeightOnImage + separatorHeight) * pageIndex,
+                            pageWidthOnImage, (pageHeightOnImage + separatorHeight) * pageIndex + pageHeightOnImage,
+                            0, 0,
+                            pageWidthOnImage, pageHeightOnImage, null);
+                }
+            });
 
             // draw separator line between the pages
             final Stroke stroke = new BasicStroke(separatorHeightOnImage);
@@ -83,7 +174,139 @@ public final class JasperReportImageOutputFormat extends AbstractJasperReportOut
             graphics2D.dispose();
         }
 
-        ImageIO.write(reportImage, getFileSuffix(), outputStream);
+        ImageIO.write(reportImage, this.fileSuffix, outputStream);
+    }
+
+    private void exportZip(final OutputStream outputStream, final Print print) throws JRException, IOException {
+        final ZipOutputStream zip = new ZipOutputStream(outputStream);
+        renderPages(print, new PageWriter() {
+            @Override
+            public void write(final int pageIndex, final Image pageImage) throws IOException {
+                zip.putNextEntry(new ZipEntry("page-" + (pageIndex + 1) + "." + JasperReportImageOutputFormat.this.fileSuffix));
+                ImageIO.write(toRenderedImage(pageImage), JasperReportImageOutputFormat.this.fileSuffix, zip);
+                zip.closeEntry();
+            }
+        });
+        // the output stream is closed by the caller
+        zip.finish();
+    }
+
+    private void exportMultiPage(final OutputStream outputStream, final Print print) throws JRException, IOException {
+        ImageWriter imageWriter = null;
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(this.fileSuffix);
+        while (imageWriter == null && writers.hasNext()) {
+            final ImageWriter writer = writers.next();
+            if (writer.canWriteSequence()) {
+                imageWriter = writer;
+            } else {
+                writer.dispose();
+            }
+        }
+        if (imageWriter == null) {
+            throw new IOException("No image writer can write multi-page images in the format: " + this.fileSuffix);
+        }
+
+        final ImageOutputStream imageOutput = ImageIO.createImageOutputStream(outputStream);
+        try {
+            final ImageWriter sequenceWriter = imageWriter;
+            sequenceWriter.setOutput(imageOutput);
+            sequenceWriter.prepareWriteSequence(null);
+            renderPages(print, new PageWriter() {
+                @Override
+                public void write(final int pageIndex, final Image pageImage) throws IOException {
+                    sequenceWriter.writeToSequence(new IIOImage(toRenderedImage(pageImage), null, null), null);
+                }
+            });
+            sequenceWriter.endWriteSequence();
+        } finally {
+            imageWriter.dispose();
+            imageOutput.close();
+        }
+    }
+
+    /**
+     * Rasterize the pages in parallel and give them to the writer in the page order.
+     */
+    private void renderPages(final Print print, final PageWriter writer) throws JRException, IOException {
+        final JasperPrint jasperPrint = print.print;
+        final int numPages = jasperPrint.getPages().size();
+        final float dpiRatio = (float) (print.dpi / PDF_DPI);
+        final JasperPrintManager printManager = JasperPrintManager.getInstance(print.context);
+
+        final int pageHeightOnImage = (int) (jasperPrint.getPageHeight() * dpiRatio);
+        final int pageWidthOnImage = (int) (jasperPrint.getPageWidth() * dpiRatio);
+
+        final long pageSize = (long) pageHeightOnImage * pageWidthOnImage * BYTES_PER_PIXEL;
+        final long maxParallelPages = pageSize > 0 ? this.memoryBudget / pageSize : numPages;
+        final int window = (int) Math.max(1, Math.min(numPages, maxParallelPages));
+
+        final Queue<Future<Image>> pending = new ArrayDeque<Future<Image>>(window);
+        int nextPage = 0;
+        try {
+            while (nextPage < window) {
+                pending.add(submitPage(printManager, jasperPrint, nextPage++, dpiRatio));
+            }
+            for (int pageIndex = 0; pageIndex < numPages; pageIndex++) {
+                final Image pageImage = pending.remove().get();
+                if (nextPage < numPages) {
+                    pending.add(submitPage(printManager, jasperPrint, nextPage++, dpiRatio));
+                }
+                writer.write(pageIndex, cropPage(pageImage, pageWidthOnImage, pageHeightOnImage));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JRException) {
+                throw (JRException) e.getCause();
+            }
+            throw ExceptionUtils.getRuntimeException(e.getCause());
+        } finally {
+            for (Future<Image> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<Image> submitPage(final JasperPrintManager printManager, final JasperPrint jasperPrint,
+                                     final int pageIndex, final float dpiRatio) {
+        return this.forkJoinPool.submit(new Callable<Image>() {
+            @Override
+            public Image call() throws JRException {
+                return printManager.printToImage(jasperPrint, pageIndex, dpiRatio);
+            }
+        });
+    }
+
+    /**
+     * Jasper rasterizes the pages with one more pixel in each dimension, remove it so that the pages have the same
+     * size in all the outputs.
+     */
+    private static Image cropPage(final Image pageImage, final int pageWidthOnImage, final int pageHeightOnImage) {
+        if (pageImage instanceof BufferedImage) {
+            final BufferedImage bufferedImage = (BufferedImage) pageImage;
+            if (bufferedImage.getWidth() > pageWidthOnImage || bufferedImage.getHeight() > pageHeightOnImage) {
+                return bufferedImage.getSubimage(0, 0,
+                        Math.min(bufferedImage.getWidth(), pageWidthOnImage),
+                        Math.min(bufferedImage.getHeight(), pageHeightOnImage));
+            }
+        }
+        return pageImage;
+    }
+
+    private RenderedImage toRenderedImage(final Image image) {
+        if (image instanceof RenderedImage) {
+            return (RenderedImage) image;
+        }
+        final BufferedImage bufferedImage = new BufferedImage(image.getWidth(null), image.getHeight(null),
+                this.imageType);
+        final Graphics2D graphics = bufferedImage.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return bufferedImage;
     }
 
     /**
@@ -94,4 +317,11 @@ public final class JasperReportImageOutputFormat extends AbstractJasperReportOut
     public void setImageType(final int imageType) {
         this.imageType = imageType;
     }
+
+    /**
+     * Writes the rasterized pages.
+     */
+    private interface PageWriter {
+        void write(int pageIndex, Image pageImage) throws IOException;
+    }
 }
@@ -1,14 +1,16 @@
 package org.mapfish.print.output;
 
-import com.google.common.io.Closer;
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperReportsContext;
 import net.sf.jasperreports.repo.FileRepositoryService;
 import net.sf.jasperreports.repo.InputStreamResource;
 import net.sf.jasperreports.repo.PersistenceService;
 import net.sf.jasperreports.repo.PersistenceUtil;
+import net.sf.jasperreports.repo.ReportResource;
 import net.sf.jasperreports.repo.Resource;
 import net.sf.jasperreports.repo.StreamRepositoryService;
+import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.config.Configuration;
 import org.mapfish.print.http.ConfigFileResolvingHttpRequestFactory;
 import org.mapfish.print.http.MfClientHttpRequestFactoryImpl;
@@ -28,12 +30,23 @@ import javax.annotation.Nonnull;
  */
 class MapfishPrintRepositoryService implements StreamRepositoryService {
 
+    private final Configuration configuration;
     private final ConfigFileResolvingHttpRequestFactory httpRequestFactory;
+    private final JasperReportCache jasperReportCache;
+    private final File jasperCompilationDir;
+    private final File workingDir;
     private JasperReportsContext jasperReportsContext;
 
     MapfishPrintRepositoryService(@Nonnull final Configuration configuration,
-                                  @Nonnull final MfClientHttpRequestFactoryImpl httpRequestFactory) {
+                                  @Nonnull final MfClientHttpRequestFactoryImpl httpRequestFactory,
+                                  @Nonnull final JasperReportCache jasperReportCache,
+                                  @Nonnull final File jasperCompilationDir,
+                                  @Nonnull final File workingDir) {
+        this.configuration = configuration;
         this.httpRequestFactory = new ConfigFileResolvingHttpRequestFactory(httpRequestFactory, configuration);
+        this.jasperReportCache = jasperReportCache;
+        this.jasperCompilationDir = jasperCompilationDir;
+        this.workingDir = workingDir;
         this.jasperReportsContext = DefaultJasperReportsContext.getInstance();
     }
 
@@ -46,6 +59,15 @@ class MapfishPrintRepositoryService implements StreamRepositoryService {
             uri = new File(uriString).toURI();
         }
         try {
+            final ReportResourceCache cache = this.configuration.getReportResourceCache();
+            final String scheme = uri.getScheme();
+            if (cache != null && scheme != null && (scheme.equals("http") || scheme.equals("https"))) {
+                return cache.getInputStream(uri, null, this.httpRequestFactory);
+            }
+            final File configurationFile = cache != null ? getConfigurationFile(uri) : null;
+            if (configurationFile != null) {
+                return cache.getInputStream(uri, configurationFile, this.httpRequestFactory);
+            }
             final ClientHttpResponse response = this.httpRequestFactory.createRequest(uri, HttpMethod.GET).execute();
             return new ResponseClosingStream(response);
         } catch (IOException e) {
@@ -53,10 +75,38 @@ class MapfishPrintRepositoryService implements StreamRepositoryService {
         }
     }
 
+    /**
+     * Get the file of a resource that belongs to the configuration, the other files (for example the graphics
+     * created for the current print in the task directory) are not cached.
+     */
+    private File getConfigurationFile(final URI uri) {
+        final File file;
+        if (uri.getScheme() == null) {
+            final File path = new File(uri.getPath());
+            file = path.isAbsolute() ? path : new File(this.configuration.getDirectory(), uri.getPath());
+        } else if (uri.getScheme().equals("file")) {
+            try {
+                file = new File(uri);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        if (file.isFile() && isInDirectory(file, this.configuration.getDirectory()) &&
+            !isInDirectory(file, this.workingDir)) {
+            return file;
+        }
+        return null;
+    }
+
+    private static boolean isInDirectory(final File file, final File directory) {
+        return file.getAbsolutePath().startsWith(directory.getAbsolutePath() + File.separator);
+    }
 
     @Override
     public Resource getResource(final String uri) {
-        throw new UnsupportedOperationException();
+        return getResource(uri, InputStreamResource.class);
     }
 
     @Override
@@ -66,6 +116,19 @@ class MapfishPrintRepositoryService implements StreamRepositoryService {
 
     @Override
     public <K extends Resource> K getResource(final String uri, final Class<K> resourceType) {
+        if (resourceType.isAssignableFrom(ReportResource.class)) {
+            // the sub-reports compiled from the configuration are shared by all the prints
+            final File reportFile = getCompiledReportFile(uri);
+            if (reportFile != null) {
+                final ReportResource resource = new ReportResource();
+                try {
+                    resource.setReport(this.jasperReportCache.getReport(reportFile));
+                } catch (JRException e) {
+                    throw ExceptionUtils.getRuntimeException(e);
+                }
+                return resourceType.cast(resource);
+            }
+        }
         if (resourceType.isAssignableFrom(InputStreamResource.class)) {
             final InputStream inputStream = getInputStream(uri);
             if (inputStream != null) {
@@ -83,65 +146,31 @@ class MapfishPrintRepositoryService implements StreamRepositoryService {
         return null;
     }
 
-    @Override
-    public OutputStream getOutputStream(final String uri) {
-        throw new UnsupportedOperationException();
-    }
-
-    private static class ResponseClosingStream extends InputStream {
-        private final Closer closer;
-        private final InputStream stream;
-
-        public ResponseClosingStream(final ClientHttpResponse response) throws IOException {
-            this.closer = Closer.create();
-            this.closer.register(response);
-            this.stream = this.closer.register(response.getBody());
-        }
-
-        @Override
-        public void close() throws IOException {
-            this.closer.close();
-            super.close();
-        }
-
-        @Override
-        public int read() throws IOException {
-            return this.stream.read();
-        }
-
-        @Override
-        public int read(final byte[] b) throws IOException {
-            return this.stream.read(b);
-        }
-
-        @Override
-        public int read(final byte[] b, final int off, final int len) throws IOException {
-            return this.stream.read(b, off, len);
-        }
-
-        @Override
-        public long skip(final long n) throws IOException {
-            return this.stream.skip(n);
-        }
-
-        @Override
-        public int available() throws IOException {
-            return this.stream.available();
-        }
-
-        @Override
-        public void mark(final int readlimit) {
-            this.stream.mark(readlimit);
+    private File getCompiledReportFile(final String uriString) {
+        File file;
+        try {
+            final URI uri = new URI(uriString);
+            if (uri.getScheme() == null) {
+                file = new File(uriString);
+            } else if (uri.getScheme().equals("file")) {
+                file = new File(uri);
+            } else {
+                return null;
+            }
+        } catch (URISyntaxException e) {
+            file = new File(uriString);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-
-        @Override
-        public void reset() throws IOException {
-            this.stream.reset();
+        if (file.isAbsolute() && file.isFile() &&
+            file.getAbsolutePath().startsWith(this.jasperCompilationDir.getAbsolutePath() + File.separator)) {
+            return file;
         }
+        return null;
+    }
 
-        @Override
-        public boolean markSupported() {
-            return this.stream.markSupported();
-        }
+    @Override
+    public OutputStream getOutputStream(final String uri) {
+        throw new UnsupportedOperationException();
     }
 }
@@ -0,0 +1,170 @@
+package org.mapfish.print.output;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import org.mapfish.print.http.PersistentHttpCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * Cache of the static resources of the reports of a configuration (logos, background images, ...) loaded by the
+ * Jasper repository service, so they are not loaded again for each fill of each report.
+ * <p></p>
+ * The cache belongs to the configuration, so it is dropped when the configuration is reloaded, its size is configured
+ * with the <code>reportResourceCacheMaxSize</code> property of the print server.  The files are checked for
+ * modification and the http resources are kept according to their caching headers and revalidated with a conditional
+ * request when they are stale.  The http resources loaded with the credentials of a user are not kept.
+ * <p></p>
+ * Only the content of the resources is kept, not the decoded images: the Jasper repository only exchanges streams
+ * and the images are decoded by the renderers of Jasper.  The resources that are not kept, or that are too large to
+ * be kept, are streamed and never fully loaded in memory.
+ */
+public final class ReportResourceCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportResourceCache.class);
+    private static final int CONCURRENCY_LEVEL = 4;
+
+    private long maxSize = 0;
+    private long maxEntrySize = 0;
+    private Cache<String, Entry> entries = null;
+
+    /**
+     * The maximum number of bytes of the resources kept in memory for a configuration.  If 0 the resources are not
+     * cached.
+     *
+     * @param maxSize the size in bytes
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() {
+        if (this.maxSize <= 0) {
+            return;
+        }
+        // each segment of the cache holds a part of the maximum weight, a larger entry would be evicted at once
+        this.maxEntrySize = this.maxSize / CONCURRENCY_LEVEL;
+        this.entries = CacheBuilder.newBuilder().
+                concurrencyLevel(CONCURRENCY_LEVEL).
+                maximumWeight(this.maxSize).
+                weigher(new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(@Nonnull final String key, @Nonnull final Entry entry) {
+                        return entry.content.length;
+                    }
+                }).
+                build();
+    }
+
+    /**
+     * Get a stream on the content of a resource, load it if it is not in the cache or if it has changed.  The
+     * resources that cannot be cached or that are larger than the part of the cache they may use are streamed from
+     * the response.
+     *
+     * @param uri the URI of the resource
+     * @param file the file of the resource or null if it is not a file
+     * @param requestFactory the factory used to load the resource
+     */
+    @Nonnull
+    public InputStream getInputStream(@Nonnull final URI uri, @Nullable final File file,
+                                      @Nonnull final ClientHttpRequestFactory requestFactory) throws IOException {
+        final ClientHttpRequest request = requestFactory.createRequest(uri, HttpMethod.GET);
+        if (this.entries == null) {
+            return new ResponseClosingStream(request.execute());
+        }
+        final String key = PersistentHttpCache.createKey(request);
+        final Entry entry = this.entries.getIfPresent(key);
+        if (entry != null && entry.isValid(uri, file, requestFactory)) {
+            return new ByteArrayInputStream(entry.content);
+        }
+
+        final long lastModified = file != null ? file.lastModified() : 0L;
+        final ClientHttpResponse response = request.execute();
+        boolean streamed = false;
+        try {
+            final Long expires = file != null ? Long.valueOf(Long.MAX_VALUE) :
+                    PersistentHttpCache.getSharedExpires(request, response, System.currentTimeMillis());
+            final long length = file != null ? file.length() : response.getHeaders().getContentLength();
+            if (expires == null || length > this.maxEntrySize) {
+                LOGGER.debug("The resource {} cannot be cached", uri);
+                this.entries.invalidate(key);
+                streamed = true;
+                return new ResponseClosingStream(response);
+            }
+
+            // the length may be unknown, the resource is streamed once it is larger than an entry
+            final byte[] content = ByteStreams.toByteArray(ByteStreams.limit(response.getBody(),
+                    this.maxEntrySize + 1));
+            if (content.length > this.maxEntrySize) {
+                LOGGER.debug("The resource {} is too large to be cached", uri);
+                this.entries.invalidate(key);
+                streamed = true;
+                return new SequenceInputStream(new ByteArrayInputStream(content), new ResponseClosingStream(response));
+            }
+            this.entries.put(key, new Entry(content, file != null ? null : response.getHeaders(), lastModified,
+                    expires));
+            return new ByteArrayInputStream(content);
+        } finally {
+            if (!streamed) {
+                response.close();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] content;
+        private final HttpHeaders headers;
+        private final long lastModified;
+        private volatile long expires;
+
+        private Entry(final byte[] content, final HttpHeaders headers, final long lastModified, final long expires) {
+            this.content = content;
+            this.headers = headers;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        private boolean isValid(final URI uri, final File file, final ClientHttpRequestFactory requestFactory) {
+            if (file != null) {
+                return this.headers == null && file.lastModified() == this.lastModified;
+            }
+            if (this.headers == null) {
+                return false;
+            }
+            if (System.currentTimeMillis() < this.expires) {
+                return true;
+            }
+            try {
+                final Long newExpires = PersistentHttpCache.revalidate(requestFactory, uri, this.headers);
+                if (newExpires == null) {
+                    return false;
+                }
+                this.expires = newExpires;
+                return true;
+            } catch (IOException e) {
+                LOGGER.debug("Unable to revalidate the resource {}", uri, e);
+                return false;
+            }
+        }
+    }
+}
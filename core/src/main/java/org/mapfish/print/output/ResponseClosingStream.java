@@ -0,0 +1,67 @@
+package org.mapfish.print.output;
+
+import com.google.common.io.Closer;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream reading the body of a http response, the response is closed with the stream.
+ */
+final class ResponseClosingStream extends InputStream {
+    private final Closer closer;
+    private final InputStream stream;
+
+    ResponseClosingStream(final ClientHttpResponse response) throws IOException {
+        this.closer = Closer.create();
+        this.closer.register(response);
+        this.stream = this.closer.register(response.getBody());
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closer.close();
+        super.close();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return this.stream.read();
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException {
+        return this.stream.read(b);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        return this.stream.read(b, off, len);
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        return this.stream.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return this.stream.available();
+    }
+
+    @Override
+    public void mark(final int readlimit) {
+        this.stream.mark(readlimit);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        this.stream.reset();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return this.stream.markSupported();
+    }
+}
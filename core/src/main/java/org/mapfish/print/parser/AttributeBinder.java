@@ -0,0 +1,198 @@
+package org.mapfish.print.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The attributes of a parameter class (the public fields of the class and of its super classes) and their
+ * annotations, inspected once per class and shared by all the requests.
+ * <p></p>
+ * Used by {@link MapfishParser} and {@link org.mapfish.print.processor.ProcessorUtils} for populating the parameter
+ * objects and reading the output objects without inspecting the class for each attribute, processor and row.
+ */
+public final class AttributeBinder {
+    private static final ConcurrentMap<Class<?>, AttributeBinder> BINDERS =
+            new ConcurrentHashMap<Class<?>, AttributeBinder>();
+
+    private final List<Field> attributes;
+    private final List<Field> mutableAttributes;
+    private final Set<Field> hasDefaultAttributes;
+    private final Set<Field> optionalAttributes;
+    private final Set<Field> oneOfAttributes;
+    private final List<Field> requiresAttributes;
+    private final Set<String> attributeNames;
+    private final Set<String> acceptedNames;
+    private final Method postConstructMethod;
+
+    private AttributeBinder(final Class<?> type) {
+        final Set<Field> allFields = Sets.newLinkedHashSet();
+        for (Class<?> current = type; current != null && current != Void.class; current = current.getSuperclass()) {
+            for (Field field : current.getFields()) {
+                allFields.add(field);
+            }
+        }
+
+        final ImmutableList.Builder<Field> mutable = ImmutableList.builder();
+        final ImmutableSet.Builder<Field> hasDefault = ImmutableSet.builder();
+        final ImmutableSet.Builder<Field> optional = ImmutableSet.builder();
+        final ImmutableSet.Builder<Field> oneOf = ImmutableSet.builder();
+        final ImmutableList.Builder<Field> requires = ImmutableList.builder();
+        final ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        final ImmutableSet.Builder<String> accepted = ImmutableSet.builder();
+        for (Field field : allFields) {
+            makeAccessible(field);
+            names.add(field.getName());
+            final boolean isOneOf = field.getAnnotation(OneOf.class) != null ||
+                                    field.getAnnotation(CanSatisfyOneOf.class) != null;
+            if (field.getAnnotation(HasDefaultValue.class) != null) {
+                hasDefault.add(field);
+                optional.add(field);
+            } else if (isOneOf) {
+                optional.add(field);
+            }
+            if (!Modifier.isFinal(field.getModifiers())) {
+                mutable.add(field);
+                accepted.add(field.getName().toLowerCase());
+                if (isOneOf) {
+                    oneOf.add(field);
+                }
+                if (field.getAnnotation(Requires.class) != null) {
+                    requires.add(field);
+                }
+            }
+        }
+
+        this.attributes = ImmutableList.copyOf(allFields);
+        this.mutableAttributes = mutable.build();
+        this.hasDefaultAttributes = hasDefault.build();
+        this.optionalAttributes = optional.build();
+        this.oneOfAttributes = oneOf.build();
+        this.requiresAttributes = requires.build();
+        this.attributeNames = names.build();
+        this.acceptedNames = accepted.build();
+        this.postConstructMethod = findPostConstructMethod(type);
+    }
+
+    /**
+     * Get the binder of a class, inspect the class if it is the first time.
+     *
+     * @param type the class of the parameter objects.
+     */
+    @Nonnull
+    public static AttributeBinder of(@Nonnull final Class<?> type) {
+        AttributeBinder binder = BINDERS.get(type);
+        if (binder == null) {
+            binder = new AttributeBinder(type);
+            final AttributeBinder previous = BINDERS.putIfAbsent(type, binder);
+            if (previous != null) {
+                binder = previous;
+            }
+        }
+        return binder;
+    }
+
+    private static void makeAccessible(final AccessibleObject member) {
+        try {
+            // the access checks are done once here instead of on each get/set/invoke
+            member.setAccessible(true);
+        } catch (SecurityException e) {
+            // keep the checked access
+        }
+    }
+
+    @Nullable
+    private static Method findPostConstructMethod(final Class<?> type) {
+        try {
+            final Method method = type.getMethod(MapfishParser.POST_CONSTRUCT_METHOD_NAME);
+            makeAccessible(method);
+            return method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * All the attributes, like {@link ParserUtils#getAllAttributes(Class)}.
+     */
+    public List<Field> getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * The non final attributes, the ones that can be populated.
+     */
+    public List<Field> getMutableAttributes() {
+        return this.mutableAttributes;
+    }
+
+    /**
+     * The non final attributes that are part of a {@link OneOf} relationship.
+     */
+    public Collection<Field> getOneOfAttributes() {
+        return this.oneOfAttributes;
+    }
+
+    /**
+     * The non final attributes that have the {@link Requires} annotation.
+     */
+    public Collection<Field> getRequiresAttributes() {
+        return this.requiresAttributes;
+    }
+
+    /**
+     * The names of all the attributes, like {@link ParserUtils#getAllAttributeNames(Class)}.
+     */
+    public Set<String> getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    /**
+     * Check if a name (ignoring the case) is the name of a non final attribute.
+     *
+     * @param name the name to check.
+     */
+    public boolean isAcceptedName(@Nonnull final String name) {
+        return this.acceptedNames.contains(name.toLowerCase());
+    }
+
+    /**
+     * Check if the attribute has the {@link HasDefaultValue} annotation.
+     *
+     * @param attribute the attribute of this binder.
+     */
+    public boolean hasDefaultValue(@Nonnull final Field attribute) {
+        return this.hasDefaultAttributes.contains(attribute);
+    }
+
+    /**
+     * Check if the attribute may be missing in the request data: it has a default value or it is part of a
+     * {@link OneOf} relationship.
+     *
+     * @param attribute the attribute of this binder.
+     */
+    public boolean isOptional(@Nonnull final Field attribute) {
+        return this.optionalAttributes.contains(attribute);
+    }
+
+    /**
+     * The public <code>{@value org.mapfish.print.parser.MapfishParser#POST_CONSTRUCT_METHOD_NAME}()</code> method or
+     * null if the class has none.
+     */
+    @Nullable
+    public Method getPostConstructMethod() {
+        return this.postConstructMethod;
+    }
+}
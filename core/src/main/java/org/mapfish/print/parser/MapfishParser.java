@@ -1,6 +1,5 @@
 package org.mapfish.print.parser;
 
-import com.google.common.base.Predicates;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -25,9 +24,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 
-import static org.mapfish.print.parser.ParserUtils.FILTER_NON_FINAL_FIELDS;
-import static org.mapfish.print.parser.ParserUtils.getAllAttributeNames;
-import static org.mapfish.print.parser.ParserUtils.getAttributeNames;
 
 /**
  * This class parses json parameter objects into the parameter object taken by {@link org.mapfish.print.map.MapLayerFactoryPlugin}
@@ -44,7 +40,7 @@ import static org.mapfish.print.parser.ParserUtils.getAttributeNames;
  */
 public final class MapfishParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(MapfishParser.class);
-    private static final String POST_CONSTRUCT_METHOD_NAME = "postConstruct";
+    static final String POST_CONSTRUCT_METHOD_NAME = "postConstruct";
 
     /**
      * Populate the param object by obtaining the values from the like names values in the request data object.
@@ -59,19 +55,22 @@ public final class MapfishParser {
      */
     public void parse(final boolean errorOnExtraProperties, final PObject requestData, final Object objectToPopulate,
                       final String... extraPropertyToIgnore) {
-        checkForExtraProperties(errorOnExtraProperties, objectToPopulate.getClass(), requestData, extraPropertyToIgnore);
+        final AttributeBinder binder = AttributeBinder.of(objectToPopulate.getClass());
+        checkForExtraProperties(errorOnExtraProperties, binder, requestData, extraPropertyToIgnore);
 
-        final Collection<Field> allAttributes = ParserUtils.getAttributes(objectToPopulate.getClass(), FILTER_NON_FINAL_FIELDS);
         Map<String, Class<?>> missingProperties = Maps.newHashMap();
 
         final OneOfTracker oneOfTracker = new OneOfTracker();
         final RequiresTracker requiresTracker = new RequiresTracker();
-        for (Field attribute : allAttributes) {
+        for (Field attribute : binder.getOneOfAttributes()) {
             oneOfTracker.register(attribute);
+        }
+        final boolean hasRequirements = !binder.getRequiresAttributes().isEmpty();
+        for (Field attribute : binder.getRequiresAttributes()) {
             requiresTracker.register(attribute);
         }
 
-        for (Field property : allAttributes) {
+        for (Field property : binder.getMutableAttributes()) {
             try {
                 Object value;
                 try {
@@ -91,17 +90,18 @@ public final class MapfishParser {
                                                "parseValue and parseArrayValue in this class and add a test to the test class", e);
                 }
                 try {
-                    oneOfTracker.markAsVisited(property);
-                    requiresTracker.markAsVisited(property);
+                    if (binder.getOneOfAttributes().contains(property)) {
+                        oneOfTracker.markAsVisited(property);
+                    }
+                    if (hasRequirements) {
+                        requiresTracker.markAsVisited(property);
+                    }
                     property.set(objectToPopulate, value);
                 } catch (IllegalAccessException e) {
                     throw ExceptionUtils.getRuntimeException(e);
                 }
             } catch (ObjectMissingException e) {
-                final HasDefaultValue hasDefaultValue = property.getAnnotation(HasDefaultValue.class);
-                final OneOf oneOf = property.getAnnotation(OneOf.class);
-                final CanSatisfyOneOf canSatisfyOneOf = property.getAnnotation(CanSatisfyOneOf.class);
-                if (hasDefaultValue == null && oneOf == null && canSatisfyOneOf == null) {
+                if (!binder.isOptional(property)) {
                     missingProperties.put(property.getName(), property.getType());
                 }
             }
@@ -112,15 +112,18 @@ public final class MapfishParser {
 
         if (!missingProperties.isEmpty()) {
             String message = "Request Json is missing some required attributes at: '" + requestData.getCurrentPath() + "': ";
-            throw new MissingPropertyException(message, missingProperties, getAllAttributeNames(objectToPopulate.getClass()));
+            throw new MissingPropertyException(message, missingProperties,
+                    Sets.newHashSet(binder.getAttributeNames()));
         }
 
+        final Method method = binder.getPostConstructMethod();
+        if (method == null) {
+            LOGGER.debug("No " + POST_CONSTRUCT_METHOD_NAME + " method on parameter object.");
+            return;
+        }
         try {
-            final Method method = objectToPopulate.getClass().getMethod(POST_CONSTRUCT_METHOD_NAME);
             LOGGER.debug("Executing " + POST_CONSTRUCT_METHOD_NAME + " method on parameter object.");
             method.invoke(objectToPopulate);
-        } catch (NoSuchMethodException e) {
-            LOGGER.debug("No " + POST_CONSTRUCT_METHOD_NAME + " method on parameter object.");
         } catch (InvocationTargetException e) {
             final Throwable targetException = e.getTargetException();
             if (targetException instanceof RuntimeException) {
@@ -134,31 +137,24 @@ public final class MapfishParser {
         }
     }
 
-    private void checkForExtraProperties(final boolean errorOnExtraProperties, final Class<?> paramClass,
+    private void checkForExtraProperties(final boolean errorOnExtraProperties, final AttributeBinder binder,
                                          final PObject layer, final String[] extraPropertyToIgnore) {
-        final Collection<String> acceptableKeyValues = Sets.newHashSet();
-        for (String name : getAttributeNames(paramClass, FILTER_NON_FINAL_FIELDS)) {
-            acceptableKeyValues.add(name.toLowerCase());
-        }
-        if (extraPropertyToIgnore != null) {
-            for (String propName : extraPropertyToIgnore) {
-                acceptableKeyValues.add(propName.toLowerCase());
-            }
-        }
-
-        Collection<String> extraProperties = Sets.newHashSet();
+        Collection<String> extraProperties = null;
         @SuppressWarnings("unchecked")
         final Iterator<String> keys = layer.keys();
         while (keys.hasNext()) {
             String next = keys.next();
-            if (!acceptableKeyValues.contains(next.toLowerCase())) {
+            if (!binder.isAcceptedName(next) && !isIgnored(next, extraPropertyToIgnore)) {
+                if (extraProperties == null) {
+                    extraProperties = Sets.newHashSet();
+                }
                 extraProperties.add(next);
             }
         }
-        if (!extraProperties.isEmpty()) {
+        if (extraProperties != null) {
             String msg = "Extra properties were found in the request data at: " + layer.getCurrentPath() + ": ";
-            ExtraPropertyException exception = new ExtraPropertyException(msg, extraProperties, getAttributeNames(paramClass,
-                    Predicates.<Field>alwaysTrue()));
+            ExtraPropertyException exception = new ExtraPropertyException(msg, extraProperties,
+                    Sets.newHashSet(binder.getAttributeNames()));
             if (errorOnExtraProperties) {
                 throw exception;
             } else {
@@ -167,6 +163,17 @@ public final class MapfishParser {
         }
     }
 
+    private static boolean isIgnored(final String propertyName, final String[] extraPropertyToIgnore) {
+        if (extraPropertyToIgnore != null) {
+            for (String propName : extraPropertyToIgnore) {
+                if (propName.equalsIgnoreCase(propertyName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
 
     private Object parseValue(final boolean errorOnExtraProperties, final String[] extraPropertyToIgnore, final Class<?> type,
                               final String fieldName, final PObject layer) throws
@@ -12,8 +12,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Basic functionality of a processor.  Mostly utility methods.
@@ -172,6 +176,27 @@ public abstract class AbstractProcessor<In, Out> implements Processor<In, Out> {
 
         private volatile boolean canceled = false;
 
+        private final ExecutionContext taskContext;
+
+        private final ConcurrentMap<String, Semaphore> taskPermits = new ConcurrentHashMap<String, Semaphore>();
+
+        /**
+         * Constructor for the context of a print task.
+         */
+        public Context() {
+            this(null);
+        }
+
+        /**
+         * Constructor for a context running a part of a print task, for example the processors of a datasource row.
+         *
+         * @param taskContext the context of the print task, it is canceled with this context and provides the
+         *                    task permits.
+         */
+        public Context(@Nullable final ExecutionContext taskContext) {
+            this.taskContext = taskContext;
+        }
+
         /**
          * Sets the canceled flag.
          */
@@ -181,7 +206,23 @@ public abstract class AbstractProcessor<In, Out> implements Processor<In, Out> {
 
         @Override
         public boolean isCanceled() {
-            return this.canceled;
+            return this.canceled || (this.taskContext != null && this.taskContext.isCanceled());
+        }
+
+        @Override
+        public Semaphore getTaskPermits(final String name, final int permits) {
+            if (this.taskContext != null) {
+                return this.taskContext.getTaskPermits(name, permits);
+            }
+            Semaphore semaphore = this.taskPermits.get(name);
+            if (semaphore == null) {
+                final Semaphore newSemaphore = new Semaphore(permits);
+                semaphore = this.taskPermits.putIfAbsent(name, newSemaphore);
+                if (semaphore == null) {
+                    semaphore = newSemaphore;
+                }
+            }
+            return semaphore;
         }
     }
 }
@@ -4,6 +4,8 @@ import com.google.common.collect.BiMap;
 
 import org.mapfish.print.config.ConfigurationObject;
 
+import java.util.concurrent.Semaphore;
+
 import javax.annotation.Nullable;
 
 /**
@@ -130,5 +132,15 @@ public interface Processor<In, Out> extends ConfigurationObject {
          * @return Was the print task canceled?
          */
         boolean isCanceled();
+
+        /**
+         * Get permits shared by all the processors of the print task, including the processors run for the rows of a
+         * datasource, to limit the work of the print task done at the same time.
+         *
+         * @param name the name of the permits.
+         * @param permits the number of permits, only used by the first processor asking for them.
+         * @return the permits of the print task with this name.
+         */
+        Semaphore getTaskPermits(String name, int permits);
     }
 }
@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static org.mapfish.print.parser.ParserUtils.FILTER_ONLY_REQUIRED_ATTRIBUTES;
 import static org.mapfish.print.parser.ParserUtils.getAttributeNames;
@@ -42,6 +43,18 @@ public final class ProcessorDependencyGraph {
      * @return a task ready to be submitted to a fork join pool.
      */
     public ProcessorGraphForkJoinTask createTask(@Nonnull final Values values) {
+        return createTask(values, null);
+    }
+
+    /**
+     * Create a ForkJoinTask for running a part of a print task in a fork join pool.
+     *
+     * @param values the values to use for getting the required inputs of the processor and putting the output in.
+     * @param taskContext the context of the print task, null if the graph runs the whole print task.
+     * @return a task ready to be submitted to a fork join pool.
+     */
+    public ProcessorGraphForkJoinTask createTask(@Nonnull final Values values,
+                                                 @Nullable final Processor.ExecutionContext taskContext) {
         StringBuilder missingAttributes = new StringBuilder();
         final Multimap<String, Processor> requiredAttributes = getAllRequiredAttributes();
         for (String attribute : requiredAttributes.keySet()) {
@@ -55,7 +68,7 @@ public final class ProcessorDependencyGraph {
                     "missing from the values object:" + missingAttributes + "\n");
         }
 
-        return new ProcessorGraphForkJoinTask(values);
+        return new ProcessorGraphForkJoinTask(values, taskContext);
     }
 
     /**
@@ -140,8 +153,9 @@ public final class ProcessorDependencyGraph {
     public final class ProcessorGraphForkJoinTask extends RecursiveTask<Values> {
         private final ProcessorExecutionContext execContext;
 
-        private ProcessorGraphForkJoinTask(@Nonnull final Values values) {
-            this.execContext = new ProcessorExecutionContext(values);
+        private ProcessorGraphForkJoinTask(@Nonnull final Values values,
+                                           @Nullable final Processor.ExecutionContext taskContext) {
+            this.execContext = new ProcessorExecutionContext(values, taskContext);
         }
 
         /**
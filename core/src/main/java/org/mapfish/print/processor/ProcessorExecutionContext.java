@@ -2,12 +2,15 @@ package org.mapfish.print.processor;
 
 import org.mapfish.print.output.Values;
 import org.mapfish.print.processor.AbstractProcessor.Context;
+import org.mapfish.print.processor.Processor.ExecutionContext;
 
 import java.util.IdentityHashMap;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.Nullable;
+
 /**
  * Contains information shared across all nodes being executed.
  * <p></p>
@@ -17,14 +20,25 @@ public final class ProcessorExecutionContext {
     private final IdentityHashMap<Processor, Void> runningProcessors = new IdentityHashMap<Processor, Void>();
     private final IdentityHashMap<Processor, Void> executedProcessors = new IdentityHashMap<Processor, Void>();
     private final Lock processorLock = new ReentrantLock();
-    private final Context context = new Context();
+    private final Context context;
     /**
      * Constructor.
      *
      * @param values the values object.
      */
     public ProcessorExecutionContext(final Values values) {
+        this(values, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param values the values object.
+     * @param taskContext the context of the print task when the processors run a part of it.
+     */
+    public ProcessorExecutionContext(final Values values, @Nullable final ExecutionContext taskContext) {
         this.values = values;
+        this.context = new Context(taskContext);
     }
 
     public Values getValues() {
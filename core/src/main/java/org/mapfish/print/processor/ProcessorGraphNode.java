@@ -34,6 +34,9 @@ public final class ProcessorGraphNode<In, Out> {
     private final Set<ProcessorGraphNode> dependencies = Sets.newHashSet();
     private final Set<ProcessorGraphNode> requirements = Sets.newHashSet();
     private final MetricRegistry metricRegistry;
+    // the names of the values are computed on the first execution, once the processor graph is built
+    private volatile ProcessorUtils.ValueNames inputNames;
+    private volatile ProcessorUtils.ValueNames outputNames;
 
     /**
      * Constructor.
@@ -64,6 +67,24 @@ public final class ProcessorGraphNode<In, Out> {
         node.addRequirement(this);
     }
 
+    private ProcessorUtils.ValueNames getInputNames(final Class<?> inputType) {
+        ProcessorUtils.ValueNames names = this.inputNames;
+        if (names == null || !names.isFor(inputType)) {
+            names = ProcessorUtils.getInputValueNames(this.processor, inputType);
+            this.inputNames = names;
+        }
+        return names;
+    }
+
+    private ProcessorUtils.ValueNames getOutputNames(final Class<?> outputType) {
+        ProcessorUtils.ValueNames names = this.outputNames;
+        if (names == null || !names.isFor(outputType)) {
+            names = ProcessorUtils.getOutputValueNames(this.processor, outputType);
+            this.outputNames = names;
+        }
+        return names;
+    }
+
     private void addRequirement(final ProcessorGraphNode node) {
         this.requirements.add(node);
     }
@@ -192,7 +213,11 @@ public final class ProcessorGraphNode<In, Out> {
                     ProcessorGraphNode.class.getName(), process.getClass());
             Timer.Context timerContext = registry.timer(name).time();
             try {
-                In inputParameter = ProcessorUtils.populateInputParameter(process, values);
+                In inputParameter = process.createInputParameter();
+                if (inputParameter != null) {
+                    ProcessorUtils.populateInputParameter(process, inputParameter,
+                            this.node.getInputNames(inputParameter.getClass()), values);
+                }
 
                 Out output;
                 try {
@@ -210,7 +235,8 @@ public final class ProcessorGraphNode<In, Out> {
                 }
 
                 if (output != null) {
-                    ProcessorUtils.writeProcessorOutputToValues(output, process, values);
+                    ProcessorUtils.writeProcessorOutputToValues(output,
+                            this.node.getOutputNames(output.getClass()), values);
                 }
             } finally {
                 this.execContext.finished(this.node);
@@ -2,27 +2,30 @@ package org.mapfish.print.processor;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.BiMap;
+import com.google.common.collect.ImmutableSet;
 
 import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.output.Values;
-import org.mapfish.print.parser.HasDefaultValue;
+import org.mapfish.print.parser.AttributeBinder;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import static org.mapfish.print.parser.ParserUtils.getAllAttributes;
-
 /**
  * Shared methods for working with processor.
  */
 public final class ProcessorUtils {
+    private static final Set<String> DEFAULT_VALUES = ImmutableSet.of(
+            Values.TASK_DIRECTORY_KEY, Values.CLIENT_HTTP_REQUEST_FACTORY_KEY,
+            Values.TEMPLATE_KEY, Values.PDF_CONFIG_KEY, Values.SUBREPORT_DIR_KEY, Values.OUTPUT_FORMAT_KEY);
+
     private ProcessorUtils() {
         // do nothing
     }
@@ -42,28 +45,43 @@ public final class ProcessorUtils {
             @Nonnull final Values values) {
         In inputObject = processor.createInputParameter();
         if (inputObject != null) {
-            Collection<Field> fields = getAllAttributes(inputObject.getClass());
-            for (Field field : fields) {
-                String name = getInputValueName(processor.getOutputPrefix(),
-                        processor.getInputMapperBiMap(), field.getName());
-                Object value = values.getObject(name, Object.class);
-                if (value != null) {
-                    try {
-                        field.set(inputObject, value);
-                    } catch (IllegalAccessException e) {
-                        throw ExceptionUtils.getRuntimeException(e);
-                    }
-                } else {
-                    if (field.getAnnotation(HasDefaultValue.class) == null) {
-                        throw new NoSuchElementException(name + " is a required property for " + processor
-                                + " and therefore must be defined in the Request Data or be an output of " +
-                                "one of the other processors. Available values: " +
-                                values.asMap().keySet() + ".");
-                    }
+            populateInputParameter(processor, inputObject, getInputValueNames(processor, inputObject.getClass()),
+                    values);
+        }
+        return inputObject;
+    }
+
+    /**
+     * Populate all the fields of the input object from the values object.
+     *
+     * @param processor the processor that the input object is for.
+     * @param inputObject the input object
+     * @param names the names of the values of the fields of the input object
+     * @param values the object containing the values to put into the input object
+     */
+    static void populateInputParameter(
+            final Processor<?, ?> processor,
+            @Nonnull final Object inputObject,
+            @Nonnull final ValueNames names,
+            @Nonnull final Values values) {
+        for (int i = 0; i < names.fields.length; i++) {
+            final String name = names.names[i];
+            Object value = values.getObject(name, Object.class);
+            if (value != null) {
+                try {
+                    names.fields[i].set(inputObject, value);
+                } catch (IllegalAccessException e) {
+                    throw ExceptionUtils.getRuntimeException(e);
+                }
+            } else {
+                if (!names.hasDefaultValue[i]) {
+                    throw new NoSuchElementException(name + " is a required property for " + processor
+                            + " and therefore must be defined in the Request Data or be an output of " +
+                            "one of the other processors. Available values: " +
+                            values.asMap().keySet() + ".");
                 }
             }
         }
-        return inputObject;
     }
 
     /**
@@ -76,20 +94,27 @@ public final class ProcessorUtils {
             final Object output,
             final Processor<?, ?> processor,
             final Values values) {
-        Map<String, String> mapper = processor.getOutputMapperBiMap();
-        if (mapper == null) {
-            mapper = Collections.emptyMap();
-        }
+        writeProcessorOutputToValues(output, getOutputValueNames(processor, output.getClass()), values);
+    }
 
-        final Collection<Field> fields = getAllAttributes(output.getClass());
-        for (Field field : fields) {
-            String name = getOutputValueName(processor.getOutputPrefix(), mapper, field);
+    /**
+     * Read the values from the output object and write them to the values object.
+     *
+     * @param output the output object from a processor
+     * @param names the names of the values of the fields of the output object
+     * @param values the object for sharing values between processors
+     */
+    static void writeProcessorOutputToValues(
+            @Nonnull final Object output,
+            @Nonnull final ValueNames names,
+            @Nonnull final Values values) {
+        for (int i = 0; i < names.fields.length; i++) {
             try {
-                final Object value = field.get(output);
+                final Object value = names.fields[i].get(output);
                 if (value != null) {
-                    values.put(name, value);
+                    values.put(names.names[i], value);
                 } else {
-                    values.remove(name);
+                    values.remove(names.names[i]);
                 }
             } catch (IllegalAccessException e) {
                 throw ExceptionUtils.getRuntimeException(e);
@@ -97,6 +122,48 @@ public final class ProcessorUtils {
         }
     }
 
+    /**
+     * Calculate the names of the input values of a processor.
+     *
+     * @param processor the processor
+     * @param inputType the class of the input object of the processor
+     */
+    static ValueNames getInputValueNames(@Nonnull final Processor<?, ?> processor,
+                                         @Nonnull final Class<?> inputType) {
+        final AttributeBinder binder = AttributeBinder.of(inputType);
+        final List<Field> fields = binder.getAttributes();
+        final String[] names = new String[fields.size()];
+        final boolean[] hasDefaultValue = new boolean[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            final Field field = fields.get(i);
+            names[i] = getInputValueName(processor.getOutputPrefix(), processor.getInputMapperBiMap(),
+                    field.getName());
+            hasDefaultValue[i] = binder.hasDefaultValue(field);
+        }
+        return new ValueNames(inputType, fields, names, hasDefaultValue);
+    }
+
+    /**
+     * Calculate the names of the output values of a processor.
+     *
+     * @param processor the processor
+     * @param outputType the class of the output object of the processor
+     */
+    static ValueNames getOutputValueNames(@Nonnull final Processor<?, ?> processor,
+                                          @Nonnull final Class<?> outputType) {
+        Map<String, String> mapper = processor.getOutputMapperBiMap();
+        if (mapper == null) {
+            mapper = Collections.emptyMap();
+        }
+
+        final List<Field> fields = AttributeBinder.of(outputType).getAttributes();
+        final String[] names = new String[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = getOutputValueName(processor.getOutputPrefix(), mapper, fields.get(i));
+        }
+        return new ValueNames(outputType, fields, names, new boolean[fields.size()]);
+    }
+
     /**
      * Calculate the name of the input value.
      *
@@ -112,11 +179,7 @@ public final class ProcessorUtils {
             if (inputMapper != null && inputMapper.containsKey(field)) {
                 throw new RuntimeException("field in keys");
             }
-            final String[] defaultValues = {
-                Values.TASK_DIRECTORY_KEY, Values.CLIENT_HTTP_REQUEST_FACTORY_KEY,
-                Values.TEMPLATE_KEY, Values.PDF_CONFIG_KEY, Values.SUBREPORT_DIR_KEY, Values.OUTPUT_FORMAT_KEY
-            };
-            if (inputPrefix == null || Arrays.asList(defaultValues).contains(field)) {
+            if (inputPrefix == null || DEFAULT_VALUES.contains(field)) {
                 name = field;
             } else {
                 name = inputPrefix.trim() +
@@ -147,4 +210,33 @@ public final class ProcessorUtils {
 
         return name;
     }
+
+    /**
+     * The names of the values of the fields of an input or output class of a processor.  They only depend on the
+     * configuration of the processor, so {@link ProcessorGraphNode} computes them once instead of for each field of
+     * each execution.
+     */
+    static final class ValueNames {
+        private final Class<?> type;
+        private final Field[] fields;
+        private final String[] names;
+        private final boolean[] hasDefaultValue;
+
+        private ValueNames(final Class<?> type, final List<Field> fields, final String[] names,
+                           final boolean[] hasDefaultValue) {
+            this.type = type;
+            this.fields = fields.toArray(new Field[fields.size()]);
+            this.names = names;
+            this.hasDefaultValue = hasDefaultValue;
+        }
+
+        /**
+         * Return true if the names are the ones of the fields of the class.
+         *
+         * @param otherType the class of the input or output object
+         */
+        boolean isFor(final Class<?> otherType) {
+            return this.type == otherType;
+        }
+    }
 }
@@ -53,7 +53,7 @@ public class AddressHostMatcher extends InetHostMatcher {
 
     @Override
     protected final List<AddressMask> createAuthorizedIPs() throws UnknownHostException, SocketException {
-        InetAddress[] ips = InetAddress.getAllByName(this.ip);
+        InetAddress[] ips = resolve(this.ip);
         final ArrayList<AddressMask> authorizedIPs = new ArrayList<AddressMask>(ips.length);
         final InetAddress theMask = getMaskAddress();
         for (InetAddress actualIp : ips) {
@@ -78,10 +78,12 @@ public class DnsHostMatcher extends HostMatcher {
      */
     public final void setHost(final String host) throws UnknownHostException {
         this.host = host;
-        final InetAddress[] inetAddresses = InetAddress.getAllByName(host);
+        final InetAddress[] inetAddresses = resolve(host);
 
         for (InetAddress address : inetAddresses) {
             final AddressHostMatcher matcher = new AddressHostMatcher();
+            // the requested hosts are resolved once for all the addresses
+            matcher.setHostResolver(getHostResolver());
             matcher.setIp(address.getHostAddress());
             this.matchersForHost.add(matcher);
         }
@@ -3,7 +3,9 @@ package org.mapfish.print.processor.http.matcher;
 import com.google.common.base.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
@@ -23,6 +25,10 @@ public abstract class HostMatcher extends AbstractMatcher {
      * A regex that will be ran against the host name.  If there is a match then the matcher accepts the uri.
      */
     protected String pathRegex = null;
+    private Pattern pathPattern = null;
+
+    @Autowired(required = false)
+    private HostResolver hostResolver = null;
 
     @Override
     public final boolean matches(final MatchInfo matchInfo) throws UnknownHostException, SocketException,
@@ -37,7 +43,7 @@ public abstract class HostMatcher extends AbstractMatcher {
             }
 
             if (this.pathRegex != null && matchInfo.getPath() != MatchInfo.ANY_PATH) {
-                Matcher matcher = Pattern.compile(this.pathRegex).matcher(matchInfo.getPath());
+                Matcher matcher = this.pathPattern.matcher(matchInfo.getPath());
                 if (!matcher.matches()) {
                     LOGGER.debug("pathRegex '{}' is not matching '{}'", this.pathRegex,
                             matchInfo.getPath());
@@ -74,6 +80,27 @@ public abstract class HostMatcher extends AbstractMatcher {
      */
     public final void setPathRegex(final String pathRegex) {
         this.pathRegex = pathRegex;
+        this.pathPattern = pathRegex != null ? Pattern.compile(pathRegex) : null;
+    }
+
+    /**
+     * Get the addresses of a host, with the resolver shared by the matchers if this matcher has been created by spring.
+     *
+     * @param host the host name or a textual IP address
+     */
+    protected final InetAddress[] resolve(final String host) throws UnknownHostException {
+        if (this.hostResolver != null) {
+            return this.hostResolver.getAllByName(host);
+        }
+        return InetAddress.getAllByName(host);
+    }
+
+    final HostResolver getHostResolver() {
+        return this.hostResolver;
+    }
+
+    final void setHostResolver(final HostResolver hostResolver) {
+        this.hostResolver = hostResolver;
     }
 
     @Override
@@ -0,0 +1,127 @@
+package org.mapfish.print.processor.http.matcher;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * Resolves the host names for the URI matchers with a cache shared by all the matchers.
+ * <p></p>
+ * The resolutions (and the failed resolutions) are kept for {@link #setTimeToLive(long)} seconds.  The same time to
+ * live is used by {@link UriMatchers} for remembering if a host is accepted or rejected.
+ */
+public final class HostResolver {
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private long timeToLive = 0;
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private Cache<String, Resolution> resolutions = null;
+
+    /**
+     * The number of seconds a resolution is kept.  If 0 the resolutions are not cached.
+     *
+     * @param timeToLive the time in seconds
+     */
+    public void setTimeToLive(final long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * The maximum number of hosts kept.
+     *
+     * @param maxSize the number of hosts
+     */
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() {
+        this.resolutions = createCache();
+    }
+
+    /**
+     * Get the addresses of a host, like {@link InetAddress#getAllByName(String)}.
+     *
+     * @param host the host name or a textual IP address
+     */
+    @Nonnull
+    public InetAddress[] getAllByName(@Nonnull final String host) throws UnknownHostException {
+        if (this.resolutions == null) {
+            return InetAddress.getAllByName(host);
+        }
+        Resolution resolution = this.resolutions.getIfPresent(host);
+        if (resolution == null) {
+            this.metricRegistry.counter(getMetricName("miss")).inc();
+            try {
+                resolution = new Resolution(InetAddress.getAllByName(host), null);
+            } catch (UnknownHostException e) {
+                resolution = new Resolution(null, e.getMessage());
+            }
+            this.resolutions.put(host, resolution);
+        } else {
+            this.metricRegistry.counter(getMetricName("hit")).inc();
+        }
+
+        if (resolution.addresses == null) {
+            throw new UnknownHostException(resolution.error);
+        }
+        return resolution.addresses.clone();
+    }
+
+    /**
+     * Create a cache with the time to live and the maximum size of this resolver, or null if the caching is disabled.
+     *
+     * @param <V> the type of the cached values
+     */
+    @Nullable
+    <V> Cache<String, V> createCache() {
+        if (this.timeToLive <= 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder().
+                expireAfterWrite(this.timeToLive, TimeUnit.SECONDS).
+                maximumSize(this.maxSize).
+                build();
+    }
+
+    /**
+     * Count the accept/reject decisions of the {@link UriMatchers} taken from their cache or computed.
+     *
+     * @param cached true if the decision was taken from the cache
+     */
+    void countDecision(final boolean cached) {
+        this.metricRegistry.counter(UriMatchers.class.getName() + ".decision." + (cached ? "hit" : "miss")).inc();
+    }
+
+    private String getMetricName(final String name) {
+        return HostResolver.class.getName() + "." + name;
+    }
+
+    /**
+     * The result of a resolution.
+     */
+    private static final class Resolution {
+        private final InetAddress[] addresses;
+        private final String error;
+
+        private Resolution(final InetAddress[] addresses, final String error) {
+            this.addresses = addresses;
+            this.error = error;
+        }
+    }
+}
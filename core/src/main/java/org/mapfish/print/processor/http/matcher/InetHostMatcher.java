@@ -86,7 +86,7 @@ public abstract class InetHostMatcher extends HostMatcher {
 
         final InetAddress[] requestedIPs;
         try {
-            requestedIPs = InetAddress.getAllByName(host);
+            requestedIPs = resolve(host);
         } catch (UnknownHostException ex) {
             return Optional.of(false);
         }
@@ -152,6 +152,10 @@ public final class MatchInfo {
         return this.realm;
     }
 
+    public HttpMethod getMethod() {
+        return this.method;
+    }
+
     private static String valOrAny(final String val) {
         return val != null ? val : "*";
     }
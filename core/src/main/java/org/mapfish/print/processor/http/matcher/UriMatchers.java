@@ -1,5 +1,6 @@
 package org.mapfish.print.processor.http.matcher;
 
+import com.google.common.cache.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
@@ -13,10 +14,16 @@ import java.util.List;
 
 /**
  * Hold a list of {@link URIMatcher} and implement the logic to see if any matches an URI.
+ * <p></p>
+ * If the matchers have been created by spring, the decisions are remembered for the scheme, host, port and method
+ * (and path if a matcher checks it) during the time to live of the {@link HostResolver}.
  */
 public final class UriMatchers {
     private static final Logger LOGGER = LoggerFactory.getLogger(UriMatchers.class);
     private List<? extends URIMatcher> matchers = Collections.singletonList(new AcceptAllMatcher());
+    private volatile HostResolver hostResolver = null;
+    private volatile Cache<String, Boolean> decisions = null;
+    private volatile boolean pathDependent = false;
 
     /**
      * Set the matchers.
@@ -24,6 +31,30 @@ public final class UriMatchers {
      */
     public void setMatchers(final List<? extends URIMatcher> matchers) {
         this.matchers = matchers;
+        initDecisions();
+    }
+
+    private void initDecisions() {
+        HostResolver resolver = null;
+        boolean cacheable = this.matchers != null;
+        boolean usesPath = false;
+        if (this.matchers != null) {
+            for (URIMatcher matcher : this.matchers) {
+                if (matcher instanceof HostMatcher) {
+                    final HostMatcher hostMatcher = (HostMatcher) matcher;
+                    usesPath |= hostMatcher.pathRegex != null;
+                    if (hostMatcher.getHostResolver() != null) {
+                        resolver = hostMatcher.getHostResolver();
+                    }
+                } else if (!(matcher instanceof AcceptAllMatcher)) {
+                    // the decisions of the other matchers may depend on other parts of the URI
+                    cacheable = false;
+                }
+            }
+        }
+        this.pathDependent = usesPath;
+        this.hostResolver = resolver;
+        this.decisions = cacheable && resolver != null ? resolver.<Boolean>createCache() : null;
     }
 
     /**
@@ -43,6 +74,24 @@ public final class UriMatchers {
      */
     public boolean matches(final MatchInfo matchInfo)
             throws SocketException, UnknownHostException, MalformedURLException {
+        final Cache<String, Boolean> decisionCache = this.decisions;
+        if (decisionCache == null) {
+            return computeMatches(matchInfo);
+        }
+
+        final String key = matchInfo.getMethod() + " " + matchInfo.getScheme() + "://" + matchInfo.getHost() + ":" +
+                           matchInfo.getPort() + (this.pathDependent ? matchInfo.getPath() : "");
+        Boolean decision = decisionCache.getIfPresent(key);
+        this.hostResolver.countDecision(decision != null);
+        if (decision == null) {
+            decision = computeMatches(matchInfo);
+            decisionCache.put(key, decision);
+        }
+        return decision;
+    }
+
+    private boolean computeMatches(final MatchInfo matchInfo)
+            throws SocketException, UnknownHostException, MalformedURLException {
         for (URIMatcher matcher : this.matchers) {
             if (matcher.matches(matchInfo)) {
                 if (matcher.isReject()) {
@@ -2,11 +2,11 @@ package org.mapfish.print.processor.jasper;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import jsr166y.ForkJoinPool;
 import jsr166y.ForkJoinTask;
 import net.sf.jasperreports.engine.JRDataSource;
 import net.sf.jasperreports.engine.JREmptyDataSource;
 import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mapfish.print.attribute.Attribute;
@@ -26,7 +26,6 @@ import org.mapfish.print.wrapper.json.PJsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -68,6 +67,9 @@ import static org.mapfish.print.attribute.DataSourceAttribute.DataSourceAttribut
  *
  * <p>If reportKey is defined the reportTemplate must also be defined (and vice-versa).</p>
  *
+ * <p>The rows are processed while the report reads them, at most maxParallelRows at the same time, so a datasource
+ * with many rows (for example the pages of an atlas) doesn't render all its maps at once.</p>
+ *
  * <p>See also: <a href="attributes.html#!datasource">!datasource</a> attribute</p>
  * [[examples=verboseExample,datasource_dynamic_tables,datasource_many_dynamictables_legend,
  * datasource_multiple_maps,customDynamicReport,report]]
@@ -75,6 +77,7 @@ import static org.mapfish.print.attribute.DataSourceAttribute.DataSourceAttribut
 public final class DataSourceProcessor
         extends AbstractProcessor<DataSourceProcessor.Input, DataSourceProcessor.Output>
         implements RequireAttributes, CustomDependencies {
+    private static final int DEFAULT_MAX_PARALLEL_ROWS = 4;
 
     private Map<String, Attribute> internalAttributes = Maps.newHashMap();
     private Map<String, Attribute> allAttributes = Maps.newHashMap();
@@ -89,8 +92,12 @@ public final class DataSourceProcessor
     @Autowired
     private JasperReportBuilder jasperReportBuilder;
 
+    @Autowired
+    private ForkJoinPool forkJoinPool;
+
     private String reportTemplate;
     private String reportKey;
+    private int maxParallelRows = DEFAULT_MAX_PARALLEL_ROWS;
 
     /**
      * Constructor.
@@ -131,6 +138,22 @@ public final class DataSourceProcessor
         this.reportKey = reportKey;
     }
 
+    /**
+     * Set the maximum number of rows of the datasource that are processed at the same time.  The rows are processed
+     * while the report reads them, so this also limits the number of processed rows kept in memory.
+     * <p></p>
+     * The rows share the limits of the print job, for example the maps of all the rows render at most
+     * <code>maxParallelLayers</code> graphics at the same time (see
+     * {@link org.mapfish.print.processor.map.CreateMapProcessor#setMaxParallelLayers(int)}).
+     * <p></p>
+     * Default is 4.
+     *
+     * @param maxParallelRows the number of rows, 1 to process the rows one after the other.
+     */
+    public void setMaxParallelRows(final int maxParallelRows) {
+        this.maxParallelRows = maxParallelRows;
+    }
+
     /**
      * All the processors that will executed for each value retrieved from the
      * {@link org.mapfish.print.output.Values} object with the datasource name.  All output values from the
@@ -198,7 +221,7 @@ public final class DataSourceProcessor
     @Override
     public Output execute(final Input input, final ExecutionContext context) throws Exception {
 
-        JRDataSource jrDataSource = processInput(input);
+        JRDataSource jrDataSource = processInput(input, context);
 
         if (jrDataSource == null) {
             jrDataSource = new JREmptyDataSource();
@@ -206,50 +229,63 @@ public final class DataSourceProcessor
         return new Output(jrDataSource);
     }
 
-    private JRDataSource processInput(@Nonnull final Input input)
-            throws JSONException, JRException {
-        List<Values> dataSourceValues = Lists.newArrayList();
-        for (Map<String, Object> o : input.datasource.attributesValues) {
-            // copy only the required values
-            Values rowValues = new Values(input.values);
-            for (String attributeName: this.copyAttributes) {
-                rowValues.put(attributeName, input.values.getObject(attributeName, Object.class));
-            }
-            for (Map.Entry<String, Object> entry : o.entrySet()) {
-                rowValues.put(entry.getKey(), entry.getValue());
-            }
-
-            dataSourceValues.add(rowValues);
+    private JRDataSource processInput(@Nonnull final Input input, @Nonnull final ExecutionContext context)
+            throws JRException {
+        if (input.datasource.attributesValues.length == 0) {
+            return null;
         }
-
-        List<ForkJoinTask<Values>> futures = Lists.newArrayList();
-        if (!dataSourceValues.isEmpty()) {
-            for (Values dataSourceValue : dataSourceValues) {
-                addAttributes(input.template, dataSourceValue);
-                final ForkJoinTask<Values> taskFuture = this.processorGraph.createTask(dataSourceValue).fork();
-                futures.add(taskFuture);
-            }
-            final File reportFile;
-            if (this.reportTemplate != null) {
-                final Configuration configuration = input.template.getConfiguration();
-                final File file = new File(configuration.getDirectory(), this.reportTemplate);
-                reportFile = this.jasperReportBuilder.compileJasperReport(configuration, file);
-            } else {
-                reportFile = null;
+        final File reportFile;
+        if (this.reportTemplate != null) {
+            final Configuration configuration = input.template.getConfiguration();
+            final File file = new File(configuration.getDirectory(), this.reportTemplate);
+            reportFile = this.jasperReportBuilder.compileJasperReport(configuration, file);
+        } else {
+            reportFile = null;
+        }
+        final Map<String, Object>[] rows = input.datasource.attributesValues;
+        return new RowsDataSource(input.values, this.forkJoinPool, rows.length, this.maxParallelRows, context) {
+            @Override
+            protected ForkJoinTask<Values> createRowTask(final int row) throws JRException {
+                final Values rowValues;
+                try {
+                    rowValues = createRowValues(input, rows[row]);
+                } catch (JSONException e) {
+                    throw new JRException(e);
+                }
+                return DataSourceProcessor.this.processorGraph.createTask(rowValues, context);
             }
-            List<Map<String, ?>> rows = new ArrayList<Map<String, ?>>();
 
-            for (ForkJoinTask<Values> future : futures) {
-                final Values rowData = future.join();
+            @Override
+            protected void rowRead(final Values rowValues) {
                 if (reportFile != null) {
-                        rowData.put(this.reportKey, reportFile.getAbsolutePath());
+                    rowValues.put(DataSourceProcessor.this.reportKey, reportFile.getAbsolutePath());
                 }
-                rows.add(rowData.asMap());
             }
+        }.start();
+    }
 
-            return new JRMapCollectionDataSource(rows);
+    /**
+     * Cancel the processing of the rows that have not been read of the datasources created by this processor, called
+     * when the report is filled, has failed or has been cancelled.
+     *
+     * @param values the values of the print
+     */
+    public static void closeDataSources(@Nonnull final Values values) {
+        RowsDataSource.closeDataSources(values);
+    }
+
+    private Values createRowValues(@Nonnull final Input input, @Nonnull final Map<String, Object> row)
+            throws JSONException {
+        // copy only the required values
+        Values rowValues = new Values(input.values);
+        for (String attributeName: this.copyAttributes) {
+            rowValues.put(attributeName, input.values.getObject(attributeName, Object.class));
+        }
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            rowValues.put(entry.getKey(), entry.getValue());
         }
-        return null;
+        addAttributes(input.template, rowValues);
+        return rowValues;
     }
 
     private void addAttributes(@Nonnull final Template template,
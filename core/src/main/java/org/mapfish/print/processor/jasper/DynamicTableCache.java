@@ -0,0 +1,144 @@
+package org.mapfish.print.processor.jasper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.apache.commons.io.FileUtils;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.WorkingDirectories;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.mapfish.print.processor.jasper.JasperReportBuilder.JASPER_REPORT_COMPILED_FILE_EXT;
+
+/**
+ * The compiled sub-reports of the dynamic tables (see {@link TableProcessor}) kept on disk and shared between the
+ * print jobs, in the <code>jasper-bin/dynamic-tables</code> directory of each configuration.
+ * <p></p>
+ * At most <code>maxFiles</code> sub-reports are kept for each configuration, the least recently used ones are
+ * deleted.  The sub-reports left by a previous run of the server are deleted the first time the directory is used.
+ */
+public final class DynamicTableCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DynamicTableCache.class);
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+    @Autowired
+    private WorkingDirectories workingDirectories;
+
+    private int maxFiles = 0;
+    private final ConcurrentMap<File, Cache<String, File>> directories = new ConcurrentHashMap<File, Cache<String, File>>();
+
+    /**
+     * The maximum number of compiled sub-reports kept for each configuration.  If 0 the sub-reports are compiled in
+     * the directory of the print task and not reused.
+     *
+     * @param maxFiles the number of files
+     */
+    public void setMaxFiles(final int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Get the compiled sub-report or null if it is not in the cache.
+     *
+     * @param configuration the configuration of the table processor
+     * @param key the hash of everything the sub-report depends on
+     */
+    @Nullable
+    public File get(@Nonnull final Configuration configuration, @Nonnull final String key) throws IOException {
+        if (this.maxFiles <= 0) {
+            return null;
+        }
+        final File buildFile = getFiles(getDirectory(configuration)).getIfPresent(key);
+        final boolean hit = buildFile != null && buildFile.isFile();
+        this.metricRegistry.counter(getMetricName(hit ? "hit" : "miss")).inc();
+        return hit ? buildFile : null;
+    }
+
+    /**
+     * Get the file to compile a sub-report to.
+     *
+     * @param configuration the configuration of the table processor
+     * @param key the hash of everything the sub-report depends on
+     * @param taskDirectory the directory of the print task, used if the sub-reports are not kept
+     */
+    @Nonnull
+    public File getBuildFile(@Nonnull final Configuration configuration, @Nonnull final String key,
+                             @Nonnull final File taskDirectory) throws IOException {
+        File directory = taskDirectory;
+        if (this.maxFiles > 0) {
+            directory = getDirectory(configuration);
+            getFiles(directory);
+        }
+        return new File(directory, "table-" + key + JASPER_REPORT_COMPILED_FILE_EXT);
+    }
+
+    /**
+     * Add a compiled sub-report to the cache, the least recently used ones are deleted if there are too many.
+     *
+     * @param configuration the configuration of the table processor
+     * @param key the hash of everything the sub-report depends on
+     * @param buildFile the file returned by {@link #getBuildFile(Configuration, String, File)}
+     */
+    public void put(@Nonnull final Configuration configuration, @Nonnull final String key,
+                    @Nonnull final File buildFile) throws IOException {
+        if (this.maxFiles > 0) {
+            getFiles(getDirectory(configuration)).put(key, buildFile);
+        }
+    }
+
+    private File getDirectory(final Configuration configuration) {
+        return new File(this.workingDirectories.getJasperCompilation(configuration), "dynamic-tables");
+    }
+
+    private Cache<String, File> getFiles(final File directory) throws IOException {
+        Cache<String, File> files = this.directories.get(directory);
+        if (files == null) {
+            synchronized (this.directories) {
+                files = this.directories.get(directory);
+                if (files == null) {
+                    // the use of the sub-reports left by a previous run is not known
+                    FileUtils.deleteDirectory(directory);
+                    if (!directory.mkdirs() && !directory.isDirectory()) {
+                        throw new IOException("Unable to create the directory for the dynamic tables: " + directory);
+                    }
+                    files = createFiles();
+                    this.directories.put(directory, files);
+                }
+            }
+        }
+        return files;
+    }
+
+    private Cache<String, File> createFiles() {
+        return CacheBuilder.newBuilder().
+                maximumSize(this.maxFiles).
+                removalListener(new RemovalListener<String, File>() {
+                    @Override
+                    public void onRemoval(@Nonnull final RemovalNotification<String, File> notification) {
+                        if (notification.wasEvicted()) {
+                            DynamicTableCache.this.metricRegistry.counter(getMetricName("eviction")).inc();
+                            if (!FileUtils.deleteQuietly(notification.getValue())) {
+                                LOGGER.warn("Unable to delete the table sub-report {}", notification.getValue());
+                            }
+                        }
+                    }
+                }).
+                build();
+    }
+
+    private String getMetricName(final String name) {
+        return DynamicTableCache.class.getName() + "." + name;
+    }
+}
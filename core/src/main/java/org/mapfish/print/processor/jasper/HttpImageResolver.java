@@ -1,10 +1,13 @@
 package org.mapfish.print.processor.jasper;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.mapfish.print.config.Configuration;
 import org.mapfish.print.config.ConfigurationException;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequest;
@@ -21,6 +24,8 @@ import javax.imageio.ImageIO;
 
 /**
  * <p>Interprets text in a table cell as an image URL.</p>
+ * <p>The images downloaded with http(s) can be kept in a cache shared between the print jobs, the size of this cache
+ * is configured with the <code>tableImageCacheMaxSize</code> property of the print server (disabled by default).</p>
  * <p>See also: <a href="tableimages.html">Configuration of tables with HTML images</a></p>
  * [[examples=datasource_many_dynamictables_legend]]
  */
@@ -31,6 +36,11 @@ public final class HttpImageResolver implements TableColumnConverter<BufferedIma
     private int urlGroup = 1;
     private BufferedImage defaultImage;
 
+    @Autowired
+    private MetricRegistry metricRegistry;
+    @Autowired
+    private TableImageCache tableImageCache;
+
     /**
      * Constructor.
      */
@@ -67,24 +77,41 @@ public final class HttpImageResolver implements TableColumnConverter<BufferedIma
             final String uriString = urlMatcher.group(this.urlGroup);
             try {
                 URI url = new URI(uriString);
-                final ClientHttpRequest request = requestFactory.createRequest(url, HttpMethod.GET);
-                final ClientHttpResponse response = request.execute();
-                if (response.getStatusCode() == HttpStatus.OK) {
+                final String metricName = HttpImageResolver.class.getName() + ".read." + url.getHost();
+                try {
+                    final ClientHttpRequest request = requestFactory.createRequest(url, HttpMethod.GET);
+                    final BufferedImage cachedImage = this.tableImageCache.getImage(request);
+                    if (cachedImage != null) {
+                        return cachedImage;
+                    }
+                    final Timer.Context timer = this.metricRegistry.timer(metricName).time();
+                    final ClientHttpResponse response = request.execute();
                     try {
-                        final BufferedImage image = ImageIO.read(response.getBody());
-                        if (image == null) {
-                            LOGGER.warn("The URL: " + url + " is NOT an image format that can be decoded");
-                            return this.defaultImage;
+                        if (response.getStatusCode() == HttpStatus.OK) {
+                            try {
+                                final BufferedImage image = ImageIO.read(response.getBody());
+                                if (image == null) {
+                                    LOGGER.warn("The URL: " + url + " is NOT an image format that can be decoded");
+                                } else {
+                                    timer.stop();
+                                    this.tableImageCache.putImage(request, response, image);
+                                    return image;
+                                }
+                            } catch (IOException e) {
+                                LOGGER.warn("Image loaded from '" + url + "'is not valid: " + e.getMessage());
+                            }
+                        } else {
+                            LOGGER.warn("Error loading the table row image: " + url + ".\nStatus Code: " +
+                                        response.getStatusCode() + "\nStatus Text: " + response.getStatusText());
                         }
-                        return image;
-                    } catch (IOException e) {
-                        LOGGER.warn("Image loaded from '" + url + "'is not valid: " + e.getMessage());
+                    } finally {
+                        response.close();
                     }
-                } else {
-                    LOGGER.warn("Error loading the table row image: " + url + ".\nStatus Code: " + response.getStatusCode() +
-                                "\nStatus Text: " + response.getStatusText());
+                } catch (Throwable e) {
+                    LOGGER.warn("Error loading table row image: " + uriString, e);
                 }
-            } catch (Throwable e) {
+                this.metricRegistry.counter(metricName + ".error").inc();
+            } catch (URISyntaxException e) {
                 LOGGER.warn("Error loading table row image: " + uriString, e);
             }
         }
@@ -1,9 +1,13 @@
 package org.mapfish.print.processor.jasper;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.Files;
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.Renderable;
 import net.sf.jasperreports.engine.design.JRDesignBand;
 import net.sf.jasperreports.engine.design.JRDesignElement;
@@ -13,8 +17,13 @@ import net.sf.jasperreports.engine.design.JasperDesign;
 import net.sf.jasperreports.engine.type.HorizontalImageAlignEnum;
 import net.sf.jasperreports.engine.type.ScaleImageEnum;
 import net.sf.jasperreports.engine.type.WhenNoDataTypeEnum;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import net.sf.jasperreports.renderers.BatikRenderer;
 
 import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.URI;
 import java.util.List;
@@ -22,9 +31,21 @@ import java.util.List;
 /**
  * Creates a Jasper containing overlaid images, which is supposed to
  * be embedded into an another report as sub-report.
+ * <p></p>
+ * The paths of the images and the dpi are stored in the properties of the compiled report and read by the image
+ * expressions when the report is filled, so the compiled report only depends on the number of images and on the size.
+ * It is compiled once and reused by the next sub-reports with the same number of images and size.
  */
 public class ImagesSubReport {
-
+    private static final String GRAPHIC_PROPERTY_PREFIX = "org.mapfish.print.imagesSubReport.graphic.";
+    private static final int MAX_COMPILED_REPORTS = 100;
+    private static final Cache<String, byte[]> COMPILED_REPORTS = CacheBuilder.newBuilder().
+            maximumSize(MAX_COMPILED_REPORTS).
+            build();
+
+    private final List<URI> graphics;
+    private final Dimension size;
+    private final double dpi;
     private final JasperDesign reportDesign;
 
     /**
@@ -35,10 +56,13 @@ public class ImagesSubReport {
      * @param dpi the dpi of the report
      */
     public ImagesSubReport(final List<URI> graphics, final Dimension size, final double dpi) {
-        this.reportDesign = createReport(graphics, size, dpi);
+        this.graphics = graphics;
+        this.size = size;
+        this.dpi = dpi;
+        this.reportDesign = createReport(graphics.size(), size);
     }
 
-    private JasperDesign createReport(final List<URI> graphics, final Dimension size, final double dpi) {
+    private JasperDesign createReport(final int nbGraphics, final Dimension size) {
         final JasperDesign design = new JasperDesign();
         design.setName("map");
 
@@ -56,30 +80,21 @@ public class ImagesSubReport {
         band.setHeight(size.height);
 
         // add layer graphics to report
-        addGraphics(graphics, band, size, design);
+        addGraphics(nbGraphics, band, size, design);
 
         // note that the images are added to the "NoData" band, this ensures
         // that they are displayed even if no data connection is passed to the
         // sub-report
         design.setNoData(band);
         design.setWhenNoDataType(WhenNoDataTypeEnum.NO_DATA_SECTION);
-        design.setProperty(Renderable.PROPERTY_IMAGE_DPI, String.valueOf(Math.round(dpi)));
         return design;
     }
 
-    private void addGraphics(final List<URI> graphics, final JRDesignBand band,
+    private void addGraphics(final int nbGraphics, final JRDesignBand band,
             final Dimension size, final JasperDesign design) {
-        for (URI graphicFile : graphics) {
-            String imageExpression;
-
-            final String fileName = new File(graphicFile).getAbsolutePath().replace('\\', '/');
-            if (Files.getFileExtension(fileName).equals("svg")) {
-                imageExpression = "net.sf.jasperreports.renderers.BatikRenderer.getInstance(new java.io.File(\""
-                        + fileName + "\"))";
-            } else {
-                imageExpression = "\"" + fileName + "\"";
-            }
-
+        for (int i = 0; i < nbGraphics; i++) {
+            final String imageExpression = ImagesSubReport.class.getName() + ".getGraphic($P{" +
+                                           JRParameter.JASPER_REPORT + "}, " + i + ")";
             band.addElement(getImage(imageExpression, size, design));
         }
     }
@@ -109,7 +124,38 @@ public class ImagesSubReport {
      * @throws JRException
      */
     public final void compile(final File compiledReportFile) throws JRException {
-        JasperCompileManager.compileReportToFile(this.reportDesign, compiledReportFile.getAbsolutePath());
+        final String key = this.graphics.size() + ":" + this.size.width + "x" + this.size.height;
+        byte[] compiledReport = COMPILED_REPORTS.getIfPresent(key);
+        if (compiledReport == null) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            JasperCompileManager.compileReportToStream(this.reportDesign, output);
+            compiledReport = output.toByteArray();
+            COMPILED_REPORTS.put(key, compiledReport);
+        }
+
+        // a copy of the compiled report for setting the properties of this sub-report
+        final JasperReport report = (JasperReport) JRLoader.loadObject(new ByteArrayInputStream(compiledReport));
+        for (int i = 0; i < this.graphics.size(); i++) {
+            final String fileName = new File(this.graphics.get(i)).getAbsolutePath().replace('\\', '/');
+            report.setProperty(GRAPHIC_PROPERTY_PREFIX + i, fileName);
+        }
+        report.setProperty(Renderable.PROPERTY_IMAGE_DPI, String.valueOf(Math.round(this.dpi)));
+        JRSaver.saveObject(report, compiledReportFile);
+    }
+
+    /**
+     * Get an image of a sub-report, called by the image expressions of the compiled report.
+     *
+     * @param report the sub-report being filled.
+     * @param index the index of the image.
+     * @throws JRException
+     */
+    public static Object getGraphic(final JasperReport report, final int index) throws JRException {
+        final String fileName = report.getProperty(GRAPHIC_PROPERTY_PREFIX + index);
+        if (Files.getFileExtension(fileName).equals("svg")) {
+            return BatikRenderer.getInstance(new File(fileName));
+        }
+        return fileName;
     }
 
     @VisibleForTesting
@@ -0,0 +1,205 @@
+package org.mapfish.print.processor.jasper;
+
+import jsr166y.ForkJoinPool;
+import jsr166y.ForkJoinTask;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.mapfish.print.output.Values;
+import org.mapfish.print.processor.Processor.ExecutionContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nonnull;
+
+/**
+ * A datasource that processes its rows while they are read, at most <code>maxParallelRows</code> rows are processed
+ * or waiting to be read at the same time.  The rows that have been read are not kept so the memory used does not
+ * depend on the number of rows.
+ * <p></p>
+ * The rows that will not be read are cancelled: when reading a row fails, when the print is cancelled and when the
+ * report is filled (see {@link #closeDataSources(Values)}).  The datasources of a row are cancelled when the next row is
+ * read, except the ones returned by {@link #getFieldValue(JRField)}: they may be read later, for example when their
+ * rows are copied by a {@link MergeDataSourceProcessor}.
+ */
+abstract class RowsDataSource implements JRDataSource {
+    private final Values values;
+    private final ForkJoinPool forkJoinPool;
+    private final int rowCount;
+    private final int maxParallelRows;
+    private final ExecutionContext context;
+    private final Queue<ForkJoinTask<Values>> pendingRows = new ArrayDeque<ForkJoinTask<Values>>();
+    private final Set<RowsDataSource> returnedDataSources =
+            Collections.newSetFromMap(new IdentityHashMap<RowsDataSource, Boolean>());
+    private int nextRowToProcess = 0;
+    private Values currentValues = null;
+    private Map<String, ?> currentRow = null;
+
+    /**
+     * Constructor, {@link #start()} must be called before reading the rows.
+     *
+     * @param values the values the datasource is created in
+     * @param forkJoinPool the pool the rows are processed in
+     * @param rowCount the number of rows
+     * @param maxParallelRows the maximum number of rows processed or waiting to be read
+     * @param context the execution context of the processor creating the datasource
+     */
+    RowsDataSource(@Nonnull final Values values, @Nonnull final ForkJoinPool forkJoinPool, final int rowCount,
+                   final int maxParallelRows, @Nonnull final ExecutionContext context) {
+        this.values = values;
+        this.forkJoinPool = forkJoinPool;
+        this.rowCount = rowCount;
+        this.maxParallelRows = Math.max(1, maxParallelRows);
+        this.context = context;
+    }
+
+    /**
+     * Create the task processing a row.
+     *
+     * @param row the index of the row
+     */
+    @Nonnull
+    protected abstract ForkJoinTask<Values> createRowTask(int row) throws JRException;
+
+    /**
+     * Called with the values of a processed row when it is read.
+     *
+     * @param rowValues the values of the row
+     */
+    protected void rowRead(@Nonnull final Values rowValues) {
+        // nothing by default
+    }
+
+    /**
+     * Start the processing of the first rows.
+     */
+    final RowsDataSource start() throws JRException {
+        boolean started = false;
+        try {
+            processNextRows();
+            started = true;
+        } finally {
+            if (!started) {
+                close();
+            }
+        }
+        return this;
+    }
+
+    private void processNextRows() throws JRException {
+        while (this.nextRowToProcess < this.rowCount && this.pendingRows.size() < this.maxParallelRows) {
+            // the task is submitted to the pool because the rows can be read outside of the processor graph
+            this.pendingRows.add(this.forkJoinPool.submit(createRowTask(this.nextRowToProcess)));
+            this.nextRowToProcess++;
+        }
+    }
+
+    @Override
+    public final boolean next() throws JRException {
+        if (this.currentValues != null) {
+            // the sub-reports of the previous row are filled
+            for (RowsDataSource dataSource : getDataSources(this.currentValues)) {
+                if (!this.returnedDataSources.contains(dataSource)) {
+                    dataSource.close();
+                }
+            }
+            this.returnedDataSources.clear();
+            this.currentValues = null;
+            this.currentRow = null;
+        }
+        ForkJoinTask<Values> task = null;
+        boolean success = false;
+        try {
+            if (this.context.isCanceled()) {
+                throw new CancellationException("task was canceled");
+            }
+            task = this.pendingRows.poll();
+            if (task == null) {
+                success = true;
+                return false;
+            }
+            processNextRows();
+            final Values rowValues;
+            try {
+                rowValues = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JRException(e);
+            } catch (ExecutionException e) {
+                throw new JRException(e.getCause());
+            }
+            rowRead(rowValues);
+            this.currentValues = rowValues;
+            this.currentRow = rowValues.asMap();
+            success = true;
+            return true;
+        } finally {
+            if (!success) {
+                if (task != null) {
+                    cancelRow(task);
+                }
+                close();
+            }
+        }
+    }
+
+    @Override
+    public final Object getFieldValue(final JRField field) throws JRException {
+        final Object value = this.currentRow.get(field.getName());
+        if (value instanceof RowsDataSource) {
+            this.returnedDataSources.add((RowsDataSource) value);
+        }
+        return value;
+    }
+
+    /**
+     * Cancel the processing of the rows that have not been read.
+     */
+    final void close() {
+        ForkJoinTask<Values> task;
+        while ((task = this.pendingRows.poll()) != null) {
+            cancelRow(task);
+        }
+        if (this.currentValues != null) {
+            closeDataSources(this.currentValues);
+        }
+    }
+
+    private static void cancelRow(final ForkJoinTask<Values> task) {
+        task.cancel(true);
+        if (task.isCompletedNormally()) {
+            // the row will not be read, neither its sub-reports
+            closeDataSources(task.getRawResult());
+        }
+    }
+
+    /**
+     * Cancel the processing of the rows that have not been read of the datasources created in the values (not the
+     * ones copied from a parent level).
+     *
+     * @param values the values containing the datasources
+     */
+    static void closeDataSources(@Nonnull final Values values) {
+        for (RowsDataSource dataSource : getDataSources(values)) {
+            dataSource.close();
+        }
+    }
+
+    private static List<RowsDataSource> getDataSources(@Nonnull final Values values) {
+        final List<RowsDataSource> dataSources = new ArrayList<RowsDataSource>();
+        for (RowsDataSource dataSource : values.find(RowsDataSource.class).values()) {
+            if (dataSource.values == values) {
+                dataSources.add(dataSource);
+            }
+        }
+        return dataSources;
+    }
+}
@@ -0,0 +1,135 @@
+package org.mapfish.print.processor.jasper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.mapfish.print.ImageUtils;
+import org.mapfish.print.http.PersistentHttpCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * A cache in memory shared between the print jobs for the decoded images of the table cells (see
+ * {@link HttpImageResolver}).
+ * <p></p>
+ * Only the images downloaded with http(s) are kept, the file URLs are relative to the configuration directory.  The
+ * images are keyed like in the {@link PersistentHttpCache}, kept only until their response expires and never kept
+ * when the request carries the credentials of a user.
+ */
+public final class TableImageCache {
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private long maxSize = 0;
+    private Cache<String, CachedImage> images = null;
+
+    /**
+     * The maximum number of bytes of the decoded images kept in memory.  If 0 the images are not cached.
+     *
+     * @param maxSize the size in bytes
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() {
+        if (this.maxSize <= 0) {
+            return;
+        }
+        this.images = CacheBuilder.newBuilder().
+                maximumWeight(this.maxSize).
+                weigher(new Weigher<String, CachedImage>() {
+                    @Override
+                    public int weigh(@Nonnull final String key, @Nonnull final CachedImage image) {
+                        return (int) Math.min(ImageUtils.getImageSize(image.image), Integer.MAX_VALUE);
+                    }
+                }).
+                removalListener(new RemovalListener<String, CachedImage>() {
+                    @Override
+                    public void onRemoval(@Nonnull final RemovalNotification<String, CachedImage> notification) {
+                        if (notification.wasEvicted()) {
+                            TableImageCache.this.metricRegistry.counter(getMetricName("eviction")).inc();
+                        }
+                    }
+                }).
+                build();
+    }
+
+    /**
+     * Get the decoded image or null if it is not in the cache.  The returned image is shared and must not be modified.
+     *
+     * @param request the request of the image, with all its headers
+     */
+    @Nullable
+    public BufferedImage getImage(@Nonnull final ClientHttpRequest request) {
+        if (this.images == null || !isShareable(request)) {
+            return null;
+        }
+        final String key = PersistentHttpCache.createKey(request);
+        CachedImage image = this.images.getIfPresent(key);
+        if (image != null && System.currentTimeMillis() >= image.expires) {
+            this.images.invalidate(key);
+            image = null;
+        }
+        this.metricRegistry.counter(getMetricName(image != null ? "hit" : "miss")).inc();
+        return image != null ? image.image : null;
+    }
+
+    /**
+     * Add a decoded image to the cache, if its response can be shared between the print jobs (see
+     * {@link PersistentHttpCache#getSharedExpires(ClientHttpRequest, ClientHttpResponse, long)}).  The image is kept
+     * until the response expires.
+     *
+     * @param request the request of the image, with all its headers
+     * @param response the response of the request
+     * @param image the decoded image
+     */
+    public void putImage(@Nonnull final ClientHttpRequest request, @Nonnull final ClientHttpResponse response,
+                         @Nonnull final BufferedImage image) throws IOException {
+        if (this.images == null || !isShareable(request)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final Long expires = PersistentHttpCache.getSharedExpires(request, response, now);
+        if (expires != null && expires > now) {
+            this.images.put(PersistentHttpCache.createKey(request), new CachedImage(image, expires));
+        }
+    }
+
+    private boolean isShareable(final ClientHttpRequest request) {
+        final String scheme = request.getURI().getScheme();
+        return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) &&
+               !PersistentHttpCache.hasCredentials(request.getHeaders());
+    }
+
+    private String getMetricName(final String name) {
+        return TableImageCache.class.getName() + "." + name;
+    }
+
+    /**
+     * A decoded image with the time at which its response expires.
+     */
+    private static final class CachedImage {
+        private final BufferedImage image;
+        private final long expires;
+
+        private CachedImage(final BufferedImage image, final long expires) {
+            this.image = image;
+            this.expires = expires;
+        }
+    }
+}
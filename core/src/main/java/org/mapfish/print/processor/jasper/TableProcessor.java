@@ -1,9 +1,13 @@
 package org.mapfish.print.processor.jasper;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Resources;
+import jsr166y.ForkJoinPool;
 import net.sf.jasperreports.engine.JRBand;
 import net.sf.jasperreports.engine.JRElement;
 import net.sf.jasperreports.engine.JRException;
@@ -27,7 +31,7 @@ import net.sf.jasperreports.engine.xml.JRXmlWriter;
 
 import org.json.JSONObject;
 import org.mapfish.print.Constants;
-import org.mapfish.print.PrintException;
+import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.attribute.TableAttribute.TableAttributeValue;
 import org.mapfish.print.config.Configuration;
 import org.mapfish.print.config.ConfigurationException;
@@ -36,6 +40,8 @@ import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.processor.AbstractProcessor;
 import org.mapfish.print.processor.http.MfClientHttpRequestFactoryProvider;
 import org.mapfish.print.wrapper.PArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.awt.image.RenderedImage;
@@ -50,16 +56,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.annotation.Resource;
 
-import static org.mapfish.print.processor.jasper.JasperReportBuilder.JASPER_REPORT_COMPILED_FILE_EXT;
 import static org.mapfish.print.processor.jasper.JasperReportBuilder.JASPER_REPORT_XML_FILE_EXT;
 
 /**
  * <p>A processor for generating a table.</p>
+ * <p>The cell values are converted (for example by {@link HttpImageResolver}) in parallel, each distinct value is
+ * converted only once.</p>
  * <p>See also: <a href="attributes.html#!table">!table</a> attribute</p>
  * [[examples=verboseExample,datasource_dynamic_tables,customDynamicReport]]
  */
 public final class TableProcessor extends AbstractProcessor<TableProcessor.Input, TableProcessor.Output> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableProcessor.class);
 
     private static final int SPACE_BETWEEN_COLS = 0;
     private static final int DEFAULT_MAX_COLUMNS = 9;
@@ -79,6 +91,10 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
 
     @Autowired
     private JasperReportBuilder jasperReportBuilder;
+    @Autowired
+    private DynamicTableCache dynamicTableCache;
+    @Resource(name = "requestForkJoinPool")
+    private ForkJoinPool requestForkJoinPool;
     private boolean defaultTemplate;
 
     /**
@@ -95,6 +111,8 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
      * If dynamic is true then the template will be used to obtain the column styles and the size of the subreport and to
      * get the position of the first header and field element.
      * The actual field and column definitions will be dynamically generated from the table data that is provided.
+     * The generated sub-reports are compiled once for each set of columns and kept in the jasper-bin directory, the
+     * number of kept sub-reports is limited by the <code>dynamicTableCacheMaxFiles</code> property of the print server.
      * </p>
      * This may be null if dynamic is false.  If it is null then the main template will likely use the generated
      * table datasource directly as its datasource for use in its detail section and the table will be directly in the main template's
@@ -245,6 +263,7 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
         // this map needs to be linked so it keeps order
         Map<String, Class<?>> columns = Maps.newLinkedHashMap();
         final PArray[] jsonData = jsonTable.data;
+        final Map<Conversion, Object> conversions = convertCells(values, jsonData, columnNames, context);
         for (final PArray jsonRow : jsonData) {
             checkCancelState(context);
             final Map<String, Object> row = new HashMap<String, Object>();
@@ -254,11 +273,9 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
                 if (rowValue == JSONObject.NULL) {
                     rowValue = null;
                 }
-                TableColumnConverter<?> converter = this.columnConverterMap.get(columnName);
-                if (converter != null) {
-                    rowValue = converter.resolve(values.clientHttpRequestFactoryProvider.get(), (String) rowValue);
-                } else {
-                    rowValue = tryConvert(values.clientHttpRequestFactoryProvider.get(), rowValue);
+                final Conversion conversion = getConversion(columnName, rowValue);
+                if (conversion != null) {
+                    rowValue = conversions.get(conversion);
                 }
                 if (columns.size() < this.maxColumns && !this.excludeColumns.contains(columnName)) {
                     Class<?> columnDef = columns.get(columnName);
@@ -284,30 +301,92 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
     }
 
     /**
+     * Convert all the distinct cell values that have a converter, in parallel.
+     */
+    private Map<Conversion, Object> convertCells(final Input values, final PArray[] jsonData,
+                                                 final String[] columnNames, final ExecutionContext context)
+            throws Exception {
+        final Map<Conversion, Object> conversions = Maps.newHashMap();
+        final List<Conversion> toConvert = Lists.newArrayList();
+        for (final PArray jsonRow : jsonData) {
+            for (int j = 0; j < jsonRow.size(); j++) {
+                Object rowValue = jsonRow.get(j);
+                if (rowValue == JSONObject.NULL) {
+                    rowValue = null;
+                }
+                final Conversion conversion = getConversion(columnNames[j], rowValue);
+                if (conversion != null && !conversions.containsKey(conversion)) {
+                    conversions.put(conversion, null);
+                    toConvert.add(conversion);
+                }
+            }
+        }
+        if (toConvert.isEmpty()) {
+            return conversions;
+        }
+        checkCancelState(context);
+
+        final MfClientHttpRequestFactory clientHttpRequestFactory = values.clientHttpRequestFactoryProvider.get();
+        final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(toConvert.size());
+        for (final Conversion conversion : toConvert) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return conversion.converter.resolve(clientHttpRequestFactory, conversion.text);
+                }
+            });
+        }
+        final List<Future<Object>> futures = this.requestForkJoinPool.invokeAll(tasks);
+        for (int i = 0; i < toConvert.size(); i++) {
+            try {
+                conversions.put(toConvert.get(i), futures.get(i).get());
+            } catch (ExecutionException e) {
+                throw ExceptionUtils.getRuntimeException(e.getCause());
+            }
+        }
+        return conversions;
+    }
+
+    /**
+     * Get the conversion to apply to a cell value or null if the value is not converted.
+     * <p></p>
      * If converters are set on a table, this function tests if these can convert
      * a cell value. The first converter, which claims that it can convert,
      * will be used to do the conversion.
      */
-    private Object tryConvert(final MfClientHttpRequestFactory clientHttpRequestFactory,
-            final Object rowValue) throws URISyntaxException, IOException {
-        if (this.converters.isEmpty()) {
-            return rowValue;
+    private Conversion getConversion(final String columnName, final Object rowValue) {
+        TableColumnConverter<?> converter = this.columnConverterMap.get(columnName);
+        if (converter != null) {
+            return new Conversion(converter, (String) rowValue);
         }
 
         String value = String.valueOf(rowValue);
-        for (TableColumnConverter<?> converter : this.converters) {
-            if (converter.canConvert(value)) {
-                return converter.resolve(clientHttpRequestFactory, value);
+        for (TableColumnConverter<?> cellConverter : this.converters) {
+            if (cellConverter.canConvert(value)) {
+                return new Conversion(cellConverter, value);
             }
         }
 
-        return rowValue;
+        return null;
     }
 
+    /**
+     * Get the compiled sub-report for the columns.  The sub-report only depends on the template, the settings of this
+     * processor and the columns, so it is compiled only the first time a set of columns is printed.
+     */
     private String generateSubReport(
             final Input input,
             final Map<String, Class<?>> columns) throws JRException, ClassNotFoundException, IOException {
-        byte[] bytes = loadJasperTemplate(input.template.getConfiguration());
+        final Configuration configuration = input.template.getConfiguration();
+        byte[] bytes = loadJasperTemplate(configuration);
+
+        final String key = getSubReportKey(bytes, columns);
+        final File cachedFile = this.dynamicTableCache.get(configuration, key);
+        if (cachedFile != null) {
+            LOGGER.debug("Reusing the table sub-report: {}", cachedFile);
+            return cachedFile.getAbsolutePath();
+        }
+
         final JasperDesign templateDesign = JRXmlLoader.load(new ByteArrayInputStream(bytes));
 
         if (this.reportWidth != null) {
@@ -433,11 +512,24 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
         final File jrxmlFile = File.createTempFile("table-", JASPER_REPORT_XML_FILE_EXT, input.tempTaskDirectory);
         JRXmlWriter.writeReport(templateDesign, jrxmlFile.getAbsolutePath(), Constants.DEFAULT_ENCODING);
 
-        final File buildFile = File.createTempFile("table-", JASPER_REPORT_COMPILED_FILE_EXT, input.tempTaskDirectory);
-        if (!buildFile.delete()) {
-            throw new PrintException("Unable to delete the build file: " + buildFile);
+        final File buildFile = this.dynamicTableCache.getBuildFile(configuration, key, input.tempTaskDirectory);
+        this.jasperReportBuilder.compileJasperReport(buildFile, jrxmlFile);
+        this.dynamicTableCache.put(configuration, key, buildFile);
+        return buildFile.getAbsolutePath();
+    }
+
+    private String getSubReportKey(final byte[] templateBytes, final Map<String, Class<?>> columns) {
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putBytes(templateBytes);
+        hasher.putString("\n" + this.reportWidth + "\n" + this.converters.isEmpty() + "\n" + this.firstHeaderStyle +
+                         "\n" + this.headerStyle + "\n" + this.lastHeaderStyle + "\n" + this.firstDetailStyle + "\n" +
+                         this.detailStyle + "\n" + this.lastDetailStyle, Charsets.UTF_8);
+        for (Map.Entry<String, Class<?>> column : columns.entrySet()) {
+            final Class<?> columnClass = column.getValue();
+            hasher.putString("\n" + column.getKey() + ": " + (columnClass != null ? columnClass.getName() : ""),
+                    Charsets.UTF_8);
         }
-        return this.jasperReportBuilder.compileJasperReport(buildFile, jrxmlFile).getAbsolutePath();
+        return hasher.hash().toString();
     }
 
     private JRDesignTextField createTextField(final String columnName) {
@@ -588,6 +680,37 @@ public final class TableProcessor extends AbstractProcessor<TableProcessor.Input
         }
     }
 
+    /**
+     * A cell value to convert with a converter.
+     */
+    private static final class Conversion {
+        private final TableColumnConverter<?> converter;
+        private final String text;
+
+        private Conversion(final TableColumnConverter<?> converter, final String text) {
+            this.converter = converter;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Conversion other = (Conversion) o;
+            return this.converter == other.converter &&
+                   (this.text == null ? other.text == null : this.text.equals(other.text));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(this.converter) + (this.text == null ? 0 : this.text.hashCode());
+        }
+    }
+
     /**
      * Input object for execute.
      */
@@ -28,6 +28,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.mapfish.print.Constants;
 import org.mapfish.print.ExceptionUtils;
+import org.mapfish.print.ImageUtils;
 import org.mapfish.print.SvgUtil;
 import org.mapfish.print.attribute.map.AreaOfInterest;
 import org.mapfish.print.attribute.map.BBoxMapBounds;
@@ -82,6 +83,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -103,6 +108,9 @@ import static org.mapfish.print.Constants.PDF_DPI;
  */
 public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcessor.Input, CreateMapProcessor.Output> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CreateMapProcessor.class);
+    private static final long DEFAULT_MAP_EXPORT_MEMORY_BUDGET = 256L * 1024 * 1024;
+    private static final int DEFAULT_MAX_PARALLEL_LAYERS = 4;
+    private static final String LAYER_PERMITS = CreateMapProcessor.class.getName() + ".maxParallelLayers";
 
     enum BufferedImageType {
         TYPE_4BYTE_ABGR(BufferedImage.TYPE_4BYTE_ABGR, true),
@@ -147,10 +155,17 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
     @Resource(name = "requestForkJoinPool")
     private ForkJoinPool requestForkJoinPool;
 
+    @Autowired
+    private ForkJoinPool forkJoinPool;
+
     private BufferedImageType imageType = BufferedImageType.TYPE_4BYTE_ABGR;
 
     private BufferedImageType jpegImageType = BufferedImageType.TYPE_3BYTE_BGR;
 
+    private long mapExportMemoryBudget = DEFAULT_MAP_EXPORT_MEMORY_BUDGET;
+
+    private int maxParallelLayers = DEFAULT_MAX_PARALLEL_LAYERS;
+
     /**
      * Constructor.
      */
@@ -171,20 +186,29 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
             zoomToFeatures(param.clientHttpRequestFactoryProvider.get(), mapValues, context);
         }
         final MapfishMapContext mapContext = createMapContext(mapValues);
+        final boolean mapExport = param.map.getTemplate().isMapExport();
+        // for the map exports the raster layers are composited directly from memory
+        final Map<URI, BufferedImage> layerImages = mapExport ? new ConcurrentHashMap<URI, BufferedImage>() : null;
         final List<URI> graphics = createLayerGraphics(
                 param.tempTaskDirectory,
                 param.clientHttpRequestFactoryProvider.get(),
-                mapValues, context, mapContext);
+                mapValues, context, mapContext, layerImages);
         checkCancelState(context);
 
         final URI mapSubReport;
-        if (param.map.getTemplate().isMapExport()) {
-            mapSubReport = createMergedGraphic(param.tempTaskDirectory, graphics, mapContext, param.outputFormat);
+        final List<URI> layerGraphics;
+        if (mapExport) {
+            // only the graphics that have been written are returned
+            layerGraphics = new ArrayList<URI>(graphics);
+            layerGraphics.removeAll(layerImages.keySet());
+            mapSubReport = createMergedGraphic(param.tempTaskDirectory, graphics, layerImages, mapContext,
+                    param.outputFormat);
         } else {
+            layerGraphics = graphics;
             mapSubReport = createMapSubReport(param.tempTaskDirectory, mapValues.getMapSize(), graphics, mapValues.getDpi());
         }
 
-        return new Output(graphics, mapSubReport.toString(), mapContext);
+        return new Output(layerGraphics, mapSubReport.toString(), mapContext);
     }
 
     @Override
@@ -196,6 +220,7 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
 
     private URI createMergedGraphic(final File printDirectory,
                                     final List<URI> graphics,
+                                    final Map<URI, BufferedImage> layerImages,
                                     final MapfishMapContext mapContext,
                                     final String outputFormat) throws IOException, JRException {
 
@@ -212,7 +237,7 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
                 PdfContentByte pdfCB = writer.getDirectContent();
                 Graphics g = pdfCB.createGraphics(width, height);
                 try {
-                    drawGraphics(width, height, graphics, g);
+                    drawGraphics(width, height, graphics, layerImages, g);
                 } finally {
                     g.dispose();
                 }
@@ -233,7 +258,7 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
                 g.fillRect(0, 0, width, height);
             }
             try {
-                drawGraphics(width, height, graphics, g);
+                drawGraphics(width, height, graphics, layerImages, g);
             } finally {
                 g.dispose();
             }
@@ -244,10 +269,15 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
     }
 
     private void drawGraphics(final int width, final int height,
-            final List<URI> graphics, final Graphics g) throws IOException, JRException {
+            final List<URI> graphics, final Map<URI, BufferedImage> layerImages,
+            final Graphics g) throws IOException, JRException {
         for (URI graphic : graphics) {
             final File graphicFile = new File(graphic);
-            if (Files.getFileExtension(graphicFile.getName()).equals("svg")) {
+            // release the layer images as soon as they are drawn
+            final BufferedImage layerImage = layerImages.remove(graphic);
+            if (layerImage != null) {
+                g.drawImage(layerImage, 0, 0, width, height, null);
+            } else if (Files.getFileExtension(graphicFile.getName()).equals("svg")) {
                 try {
                     g.drawImage(SvgUtil.convertFromSvg(graphic, width, height), 0, 0, width, height, null);
                 } catch (TranscoderException e) {
@@ -308,101 +338,76 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
                                           final MfClientHttpRequestFactory clientHttpRequestFactory,
                                           final MapAttributeValues mapValues,
                                           final ExecutionContext context,
-                                          final MapfishMapContext mapContext)
+                                          final MapfishMapContext mapContext,
+                                          @Nullable final Map<URI, BufferedImage> layerImages)
             throws Exception {
         // reverse layer list to draw from bottom to top.  normally position 0 is top-most layer.
         final List<MapLayer> layers = Lists.reverse(Lists.newArrayList(mapValues.getLayers()));
 
         final AreaOfInterest areaOfInterest = addAreaOfInterestLayer(mapValues, layers);
 
-        final String mapKey = UUID.randomUUID().toString();
-        final List<URI> graphics = new ArrayList<URI>(layers.size());
-
-        HttpRequestCache cache = new HttpRequestCache(printDirectory, this.metricRegistry);
-
-        //prepare layers for rendering
-        for (final MapLayer layer : layers) {
-            layer.prepareRender(mapContext);
-            final MapfishMapContext transformer = getTransformer(mapContext,
-                    layer.getImageBufferScaling());
-            layer.cacheResources(cache, clientHttpRequestFactory, transformer);
-        }
-
-        //now we download and cache all images at once
-        cache.cache(this.requestForkJoinPool);
-
-        for (int i = 0; i < layers.size(); i++) {
-            MapLayer layer = layers.get(i);
-            checkCancelState(context);
-            final File path;
-            RenderType renderType = getSupportedRenderType(layer.getRenderType());
-            if (layer.getRenderType() == RenderType.SVG) {
-                // render layer as SVG
-                final SVGGraphics2D graphics2D = getSvgGraphics(mapContext.getMapSize());
+        try {
+            final String mapKey = UUID.randomUUID().toString();
 
-                try {
-                    Graphics2D clippedGraphics2D = createClippedGraphics(
-                            mapContext, areaOfInterest, graphics2D);
-                    layer.render(clippedGraphics2D, clientHttpRequestFactory, mapContext);
+            HttpRequestCache cache = new HttpRequestCache(printDirectory, this.metricRegistry);
 
-                    path = new File(printDirectory, mapKey + "_layer_" + i + ".svg");
-                    saveSvgFile(graphics2D, path);
-                } finally {
-                    graphics2D.dispose();
-                }
-            } else {
-                // render layer as raster graphic
-                warnIfDifferentRenderType(renderType, layer);
-                final double imageBufferScaling = layer.getImageBufferScaling();
-                final BufferedImageType layerImageType =
-                        renderType == RenderType.JPEG ? this.jpegImageType : this.imageType;
-                final BufferedImage bufferedImage = new BufferedImage(
-                        (int) Math.round(mapContext.getMapSize().width * imageBufferScaling),
-                        (int) Math.round(mapContext.getMapSize().height * imageBufferScaling),
-                        layerImageType.value
-                );
-                Graphics2D graphics2D = createClippedGraphics(
-                        mapContext, areaOfInterest,
-                        bufferedImage.createGraphics()
-                );
-                if (!layerImageType.transparency) {
-                    // the image is opaque and therefore needs a white background
-                    final Color prevColor = graphics2D.getColor();
-                    graphics2D.setColor(Color.WHITE);
-                    graphics2D.fillRect(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight());
-                    graphics2D.setColor(prevColor);
-                }
-
-                try {
-                    MapfishMapContext transformer = getTransformer(mapContext, layer.getImageBufferScaling());
-                    layer.render(graphics2D, clientHttpRequestFactory, transformer);
+            //prepare layers for rendering
+            for (final MapLayer layer : layers) {
+                layer.prepareRender(mapContext);
+                final MapfishMapContext transformer = getTransformer(mapContext,
+                        layer.getImageBufferScaling());
+                layer.cacheResources(cache, clientHttpRequestFactory, transformer);
+            }
 
+            //now we download and cache all images at once
+            cache.cache(this.requestForkJoinPool);
+
+            final LayerRenderer renderer = new LayerRenderer(clientHttpRequestFactory, context, mapContext,
+                    areaOfInterest, layerImages);
+            final List<Callable<URI>> tasks = new ArrayList<Callable<URI>>(layers.size());
+            for (int i = 0; i < layers.size(); i++) {
+                final MapLayer layer = layers.get(i);
+                final RenderType renderType = getSupportedRenderType(layer.getRenderType());
+                if (layer.getRenderType() == RenderType.SVG) {
+                    final File path = new File(printDirectory, mapKey + "_layer_" + i + ".svg");
+                    tasks.add(new Callable<URI>() {
+                        @Override
+                        public URI call() throws Exception {
+                            return renderer.renderSvg(layer, path);
+                        }
+                    });
+                } else {
                     // Merge consecutive layers of same render type and same buffer scaling (native
                     // resolution)
+                    final List<MapLayer> mergedLayers = Lists.newArrayList(layer);
                     while (
                         i < layers.size() - 1 &&
                         getSupportedRenderType(layers.get(i + 1).getRenderType()) == renderType &&
-                        imageBufferScaling == layers.get(i + 1).getImageBufferScaling()
+                        layer.getImageBufferScaling() == layers.get(i + 1).getImageBufferScaling()
                     ) {
-                        layer = layers.get(++i);
-                        checkCancelState(context);
-                        layer.prepareRender(mapContext);
-                        warnIfDifferentRenderType(renderType, layer);
-                        layer.render(graphics2D, clientHttpRequestFactory, transformer);
+                        mergedLayers.add(layers.get(++i));
                     }
-
-                    path = new File(
+                    final File path = new File(
                             printDirectory,
                             mapKey + "_layer_" + i + "." + renderType.toString().toLowerCase());
-                    ImageIO.write(bufferedImage, renderType.toString(), path);
-                } finally {
-                    graphics2D.dispose();
+                    tasks.add(new Callable<URI>() {
+                        @Override
+                        public URI call() throws Exception {
+                            return renderer.renderRaster(mergedLayers, renderType, path);
+                        }
+                    });
                 }
             }
-            graphics.add(path.toURI());
-        }
 
-        return graphics;
+            final Semaphore permits = context.getTaskPermits(LAYER_PERMITS, Math.max(1, this.maxParallelLayers));
+            return LayerGraphicsRenderer.render(this.forkJoinPool, permits, tasks,
+                    tasks.size() > 1 && this.maxParallelLayers > 1);
+        } finally {
+            // the resources prepared by the layers and not used by the rendering (failure, cancel) are released
+            for (MapLayer layer : layers) {
+                layer.releaseResources();
+            }
+        }
     }
 
     /**
@@ -685,6 +690,34 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
         this.jpegImageType = BufferedImageType.lookupValue(jpegImageType);
     }
 
+    /**
+     * Set the maximum number of bytes of the layer images kept in memory when creating a map export.  The layers
+     * that do not fit in this budget are written to the task directory and read again when merging the layers.
+     * <p></p>
+     * Default is 256MB.
+     *
+     * @param mapExportMemoryBudget the budget in bytes, 0 to always write the layers to disk.
+     */
+    public void setMapExportMemoryBudget(final long mapExportMemoryBudget) {
+        this.mapExportMemoryBudget = mapExportMemoryBudget;
+    }
+
+    /**
+     * Set the maximum number of layer graphics of a print job that are rendered at the same time.  The consecutive
+     * layers drawn in the same graphic are always rendered one after the other.
+     * <p></p>
+     * The limit is shared by all the maps of the print job, including the maps in the rows of a datasource (see
+     * {@link org.mapfish.print.processor.jasper.DataSourceProcessor#setMaxParallelRows(int)}).  When the maps of a
+     * job have different values, the value of the first map rendered is used.
+     * <p></p>
+     * Default is 4.
+     *
+     * @param maxParallelLayers the number of graphics, 1 to render the layers sequentially.
+     */
+    public void setMaxParallelLayers(final int maxParallelLayers) {
+        this.maxParallelLayers = maxParallelLayers;
+    }
+
     /**
      * The Input object for processor.
      */
@@ -721,6 +754,9 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
 
         /**
          * The paths to a graphic for each layer.
+         * <p></p>
+         * For the map exports the raster layers kept in memory are composited directly in the map and are not
+         * written, so only the graphics of the other layers are listed.
          */
         @InternalValue
         public final List<URI> layerGraphics;
@@ -744,6 +780,104 @@ public final class CreateMapProcessor extends AbstractProcessor<CreateMapProcess
         }
     }
 
+    /**
+     * Render the layers of a map in their graphics, the graphics of a map can be rendered concurrently.
+     */
+    private final class LayerRenderer {
+        private final MfClientHttpRequestFactory clientHttpRequestFactory;
+        private final ExecutionContext context;
+        private final MapfishMapContext mapContext;
+        private final AreaOfInterest areaOfInterest;
+        private final Map<URI, BufferedImage> layerImages;
+        private final AtomicLong memoryBudget;
+
+        private LayerRenderer(final MfClientHttpRequestFactory clientHttpRequestFactory,
+                              final ExecutionContext context,
+                              final MapfishMapContext mapContext,
+                              final AreaOfInterest areaOfInterest,
+                              final Map<URI, BufferedImage> layerImages) {
+            this.clientHttpRequestFactory = clientHttpRequestFactory;
+            this.context = context;
+            this.mapContext = mapContext;
+            this.areaOfInterest = areaOfInterest;
+            this.layerImages = layerImages;
+            this.memoryBudget = new AtomicLong(CreateMapProcessor.this.mapExportMemoryBudget);
+        }
+
+        private URI renderSvg(final MapLayer layer, final File path) throws Exception {
+            checkCancelState(this.context);
+            final SVGGraphics2D graphics2D = getSvgGraphics(this.mapContext.getMapSize());
+
+            try {
+                Graphics2D clippedGraphics2D = createClippedGraphics(
+                        this.mapContext, this.areaOfInterest, graphics2D);
+                layer.render(clippedGraphics2D, this.clientHttpRequestFactory, this.mapContext);
+
+                saveSvgFile(graphics2D, path);
+            } finally {
+                graphics2D.dispose();
+            }
+            return path.toURI();
+        }
+
+        private URI renderRaster(final List<MapLayer> layers, final RenderType renderType, final File path)
+                throws Exception {
+            checkCancelState(this.context);
+            final double imageBufferScaling = layers.get(0).getImageBufferScaling();
+            final BufferedImageType layerImageType =
+                    renderType == RenderType.JPEG ? CreateMapProcessor.this.jpegImageType : CreateMapProcessor.this.imageType;
+            final BufferedImage bufferedImage = new BufferedImage(
+                    (int) Math.round(this.mapContext.getMapSize().width * imageBufferScaling),
+                    (int) Math.round(this.mapContext.getMapSize().height * imageBufferScaling),
+                    layerImageType.value
+            );
+            Graphics2D graphics2D = createClippedGraphics(
+                    this.mapContext, this.areaOfInterest,
+                    bufferedImage.createGraphics()
+            );
+            if (!layerImageType.transparency) {
+                // the image is opaque and therefore needs a white background
+                final Color prevColor = graphics2D.getColor();
+                graphics2D.setColor(Color.WHITE);
+                graphics2D.fillRect(0, 0, bufferedImage.getWidth(), bufferedImage.getHeight());
+                graphics2D.setColor(prevColor);
+            }
+
+            try {
+                MapfishMapContext transformer = getTransformer(this.mapContext, imageBufferScaling);
+                for (int i = 0; i < layers.size(); i++) {
+                    final MapLayer layer = layers.get(i);
+                    if (i > 0) {
+                        checkCancelState(this.context);
+                        layer.prepareRender(this.mapContext);
+                    }
+                    warnIfDifferentRenderType(renderType, layer);
+                    layer.render(graphics2D, this.clientHttpRequestFactory, transformer);
+                }
+
+                if (this.layerImages != null && reserveMemory(ImageUtils.getImageSize(bufferedImage))) {
+                    this.layerImages.put(path.toURI(), bufferedImage);
+                } else {
+                    ImageIO.write(bufferedImage, renderType.toString(), path);
+                }
+            } finally {
+                graphics2D.dispose();
+            }
+            return path.toURI();
+        }
+
+        private boolean reserveMemory(final long size) {
+            long left;
+            do {
+                left = this.memoryBudget.get();
+                if (size > left) {
+                    return false;
+                }
+            } while (!this.memoryBudget.compareAndSet(left, left - size));
+            return true;
+        }
+    }
+
     private static final class OpacityAdjustingStyleHandler extends DefaultStyleHandler {
         @Override
         public void setStyle(final Element element,
@@ -9,6 +9,7 @@ import org.mapfish.print.processor.AbstractProcessor;
 import org.mapfish.print.processor.http.MfClientHttpRequestFactoryProvider;
 import org.mapfish.print.processor.jasper.ImagesSubReport;
 import org.mapfish.print.processor.jasper.JasperReportBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.awt.Dimension;
 import java.io.File;
@@ -44,6 +45,9 @@ import static org.mapfish.print.Constants.PDF_DPI;
  */
 public class CreateNorthArrowProcessor extends AbstractProcessor<CreateNorthArrowProcessor.Input, CreateNorthArrowProcessor.Output> {
 
+    @Autowired
+    private DecorationCache decorationCache;
+
     /**
      * Constructor.
      */
@@ -75,7 +79,8 @@ public class CreateNorthArrowProcessor extends AbstractProcessor<CreateNorthArro
                 values.northArrow.getBackgroundColor(),
                 values.map.getRotation(),
                 values.tempTaskDirectory,
-                values.clientHttpRequestFactoryProvider.get());
+                values.clientHttpRequestFactoryProvider.get(),
+                this.decorationCache);
 
         checkCancelState(context);
 
@@ -0,0 +1,138 @@
+package org.mapfish.print.processor.map;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * A cache in memory shared between the print jobs for the rendered map decorations (north arrows and scalebars).
+ * <p></p>
+ * A decoration is a function of its parameters (size, rotation, colors, DPI, units, scale, ...) and, for the
+ * north arrow, of the content of the graphic, so the key is built from those and the same decoration is rendered
+ * only once.  The graphic is written in the directory of each print task: a file shared between the jobs could be
+ * removed by an eviction while a job still needs it.
+ */
+public final class DecorationCache {
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    private long maxSize = 0;
+    private Cache<String, byte[]> graphics = null;
+
+    /**
+     * The maximum number of bytes of the rendered decorations kept in memory.  If 0 the decorations are not cached.
+     *
+     * @param maxSize the size in bytes
+     */
+    public void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Called by spring after bean has been created and populated.
+     */
+    @PostConstruct
+    public void init() {
+        if (this.maxSize <= 0) {
+            return;
+        }
+        this.graphics = CacheBuilder.newBuilder().
+                maximumWeight(this.maxSize).
+                weigher(new Weigher<String, byte[]>() {
+                    @Override
+                    public int weigh(@Nonnull final String key, @Nonnull final byte[] graphic) {
+                        return graphic.length;
+                    }
+                }).
+                removalListener(new RemovalListener<String, byte[]>() {
+                    @Override
+                    public void onRemoval(@Nonnull final RemovalNotification<String, byte[]> notification) {
+                        if (notification.wasEvicted()) {
+                            DecorationCache.this.metricRegistry.counter(getMetricName("eviction")).inc();
+                        }
+                    }
+                }).
+                build();
+    }
+
+    /**
+     * Create a key for a decoration.
+     *
+     * @param parts the parameters the decoration depends on
+     */
+    @Nonnull
+    public static String createKey(@Nonnull final Object... parts) {
+        final StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            if (key.length() > 0) {
+                key.append('|');
+            }
+            if (part instanceof byte[]) {
+                key.append(Hashing.sha1().hashBytes((byte[]) part));
+            } else {
+                key.append(part);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the rendered decoration or null if it is not in the cache.  The returned array must not be modified.
+     *
+     * @param key the key created with {@link #createKey(Object...)}
+     */
+    @Nullable
+    public byte[] get(@Nonnull final String key) {
+        if (this.graphics == null) {
+            return null;
+        }
+        final byte[] graphic = this.graphics.getIfPresent(key);
+        this.metricRegistry.counter(getMetricName(graphic != null ? "hit" : "miss")).inc();
+        return graphic;
+    }
+
+    /**
+     * Add a rendered decoration to the cache.
+     *
+     * @param key the key created with {@link #createKey(Object...)}
+     * @param graphic the content of the graphic file
+     */
+    public void put(@Nonnull final String key, @Nonnull final byte[] graphic) {
+        if (this.graphics != null) {
+            this.graphics.put(key, graphic);
+        }
+    }
+
+    /**
+     * Write a rendered decoration in a new file.
+     *
+     * @param graphic the content of the graphic file
+     * @param prefix the prefix of the file name
+     * @param suffix the suffix of the file name (for example ".svg")
+     * @param directory the directory of the print task
+     */
+    @Nonnull
+    public static URI write(@Nonnull final byte[] graphic, @Nonnull final String prefix, @Nonnull final String suffix,
+                            @Nonnull final File directory) throws IOException {
+        final File path = File.createTempFile(prefix, suffix, directory);
+        Files.write(graphic, path);
+        return path.toURI();
+    }
+
+    private String getMetricName(final String name) {
+        return DecorationCache.class.getName() + "." + name;
+    }
+}
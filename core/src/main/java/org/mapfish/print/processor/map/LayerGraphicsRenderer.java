@@ -0,0 +1,132 @@
+package org.mapfish.print.processor.map;
+
+import jsr166y.ForkJoinPool;
+import jsr166y.ForkJoinTask;
+import org.mapfish.print.ExceptionUtils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Render the graphics of the layers of a map, each graphic holds one of the permits of the print task while it is
+ * rendered so that all the maps of a print task render at most that number of graphics at the same time.
+ */
+final class LayerGraphicsRenderer {
+    private LayerGraphicsRenderer() {
+        // utility class
+    }
+
+    /**
+     * Render the graphics.
+     *
+     * @param forkJoinPool the pool to render the graphics in parallel.
+     * @param permits the permits of the print task.
+     * @param tasks the tasks rendering each graphic.
+     * @param parallel if false the graphics are rendered one after the other in the current thread.
+     * @return the graphics in the order of the tasks.
+     */
+    static List<URI> render(final ForkJoinPool forkJoinPool, final Semaphore permits,
+                            final List<Callable<URI>> tasks, final boolean parallel) throws Exception {
+        final List<URI> graphics = new ArrayList<URI>(tasks.size());
+        if (!parallel) {
+            for (Callable<URI> task : tasks) {
+                acquire(permits);
+                try {
+                    graphics.add(task.call());
+                } finally {
+                    permits.release();
+                }
+            }
+            return graphics;
+        }
+
+        final List<PermitTask> permitTasks = new ArrayList<PermitTask>(tasks.size());
+        final List<ForkJoinTask<URI>> futures = new ArrayList<ForkJoinTask<URI>>(tasks.size());
+        try {
+            for (Callable<URI> task : tasks) {
+                acquire(permits);
+                final PermitTask permitTask = new PermitTask(task, permits);
+                permitTasks.add(permitTask);
+                futures.add(forkJoinPool.submit(permitTask));
+            }
+            // the graphics are returned in the z-order of the layers
+            for (ForkJoinTask<URI> future : futures) {
+                graphics.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw ExceptionUtils.getRuntimeException(e.getCause());
+        } finally {
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i).cancel(false)) {
+                    // a task canceled before it is run never releases its permit
+                    permitTasks.get(i).release();
+                }
+            }
+        }
+        return graphics;
+    }
+
+    /**
+     * Acquire a permit, a thread of the pool waiting for it is compensated so that the graphics holding the permits
+     * can still be rendered.
+     */
+    private static void acquire(final Semaphore permits) throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired = false;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                if (!this.acquired) {
+                    permits.acquire();
+                    this.acquired = true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                if (!this.acquired) {
+                    this.acquired = permits.tryAcquire();
+                }
+                return this.acquired;
+            }
+        });
+    }
+
+    /**
+     * A task releasing its permit once it is rendered.
+     */
+    private static final class PermitTask implements Callable<URI> {
+        private final Callable<URI> task;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private PermitTask(final Callable<URI> task, final Semaphore permits) {
+            this.task = task;
+            this.permits = permits;
+        }
+
+        @Override
+        public URI call() throws Exception {
+            try {
+                return this.task.call();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (this.released.compareAndSet(false, true)) {
+                this.permits.release();
+            }
+        }
+    }
+}
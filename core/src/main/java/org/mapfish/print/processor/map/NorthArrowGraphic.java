@@ -1,13 +1,13 @@
 package org.mapfish.print.processor.map;
 
 import com.google.common.base.Strings;
-import com.google.common.io.Closer;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
 import org.apache.batik.dom.svg.SAXSVGDocumentFactory;
 import org.apache.batik.dom.svg.SVGDOMImplementation;
 import org.apache.batik.dom.util.DOMUtilities;
 import org.apache.batik.util.SVGConstants;
 import org.apache.batik.util.XMLResourceDescriptor;
-import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.mapfish.print.FloatingPointUtil;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
 import org.mapfish.print.map.style.json.ColorParser;
@@ -29,15 +29,18 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 
 /**
@@ -72,27 +75,56 @@ public final class NorthArrowGraphic {
             final Double rotation,
             final File workingDir,
             final MfClientHttpRequestFactory clientHttpRequestFactory) throws Exception {
-        final Closer closer = Closer.create();
-        try {
-            final RasterReference input = loadGraphic(graphicFile, clientHttpRequestFactory, closer);
-            if (graphicFile == null || graphicFile.toLowerCase().trim().endsWith("svg")) {
-                return createSvg(targetSize, input, rotation, backgroundColor, workingDir);
+        return create(targetSize, graphicFile, backgroundColor, rotation, workingDir, clientHttpRequestFactory, null);
+    }
+
+    /**
+     * Creates the north-arrow graphic or takes it from the cache if the same graphic has already been rendered
+     * with the same parameters.
+     *
+     * @param targetSize The size of the graphic to create.
+     * @param graphicFile The graphic to use as north-arrow.
+     * @param backgroundColor The background color.
+     * @param rotation The rotation to apply.
+     * @param workingDir The directory in which the graphic is created.
+     * @param clientHttpRequestFactory The request factory.
+     * @param cache The cache of the rendered graphics, null to always render the graphic.
+     * @return The path to the created graphic.
+     */
+    public static URI create(
+            final Dimension targetSize,
+            final String graphicFile,
+            final Color backgroundColor,
+            final Double rotation,
+            final File workingDir,
+            final MfClientHttpRequestFactory clientHttpRequestFactory,
+            @Nullable final DecorationCache cache) throws Exception {
+        final RasterReference input = loadGraphic(graphicFile, clientHttpRequestFactory);
+        final boolean svg = graphicFile == null || graphicFile.toLowerCase().trim().endsWith("svg");
+
+        // the key contains the hash of the graphic content, so a modified graphic is rendered again
+        final String key = DecorationCache.createKey("north-arrow", svg, input.content,
+                targetSize.width, targetSize.height, rotation, backgroundColor.getRGB());
+        byte[] graphic = cache != null ? cache.get(key) : null;
+        if (graphic == null) {
+            if (svg) {
+                graphic = createSvg(targetSize, input, rotation, backgroundColor);
             } else {
-                return createRaster(targetSize, input, rotation, backgroundColor, workingDir);
+                graphic = createRaster(targetSize, input, rotation, backgroundColor);
+            }
+            if (cache != null) {
+                cache.put(key, graphic);
             }
-        } finally {
-            closer.close();
         }
+        return DecorationCache.write(graphic, "north-arrow-", svg ? ".svg" : ".tiff", workingDir);
     }
 
     private static RasterReference loadGraphic(final String graphicFile,
-            final MfClientHttpRequestFactory clientHttpRequestFactory,
-            final Closer closer) throws IOException, URISyntaxException {
+            final MfClientHttpRequestFactory clientHttpRequestFactory) throws IOException, URISyntaxException {
         if (Strings.isNullOrEmpty(graphicFile)) {
             // if no graphic is set, take a default graphic
             URL file = NorthArrowGraphic.class.getResource(DEFAULT_GRAPHIC);
-            InputStream inputStream = new BufferedInputStream(new FileInputStream(new File(file.toURI())));
-            return new RasterReference(closer.register(inputStream), file.toURI());
+            return new RasterReference(Resources.toByteArray(file), file.toURI());
         }
 
         // try to load the given graphic
@@ -104,24 +136,26 @@ public final class NorthArrowGraphic {
         }
 
         final ClientHttpRequest request = clientHttpRequestFactory.createRequest(uri, HttpMethod.GET);
-        final ClientHttpResponse response = closer.register(request.execute());
-        return new RasterReference(new BufferedInputStream(response.getBody()), uri);
+        final ClientHttpResponse response = request.execute();
+        try {
+            return new RasterReference(ByteStreams.toByteArray(response.getBody()), uri);
+        } finally {
+            response.close();
+        }
     }
 
     /**
      * Renders a given graphic into a new image, scaled to fit the new size and rotated.
      */
-    private static URI createRaster(final Dimension targetSize, final RasterReference rasterReference,
-                                    final Double rotation, final Color backgroundColor,
-                                    final File workingDir) throws IOException {
-        final File path = File.createTempFile("north-arrow-", ".tiff", workingDir);
-
+    private static byte[] createRaster(final Dimension targetSize, final RasterReference rasterReference,
+                                       final Double rotation, final Color backgroundColor) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
         final BufferedImage newImage = new BufferedImage(targetSize.width, targetSize.height, BufferedImage.TYPE_4BYTE_ABGR);
         Graphics2D graphics2d = null;
         try {
             graphics2d = newImage.createGraphics();
 
-            final BufferedImage originalImage = ImageIO.read(rasterReference.inputStream);
+            final BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(rasterReference.content));
             if (originalImage == null) {
                 LOGGER.warn("Unable to load NorthArrow graphic: " + rasterReference.uri +
                             ", it is not an image format that can be decoded");
@@ -159,13 +193,13 @@ public final class NorthArrowGraphic {
             graphics2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
             graphics2d.drawImage(originalImage, deltaX, deltaY, newWidth, newHeight, null);
 
-            ImageIO.write(newImage, "tiff", path);
+            ImageIO.write(newImage, "tiff", output);
         } finally {
             if (graphics2d != null) {
                 graphics2d.dispose();
             }
         }
-        return path.toURI();
+        return output.toByteArray();
     }
 
     /**
@@ -173,12 +207,12 @@ public final class NorthArrowGraphic {
      * but you can not modify an existing graphic. So, we are loading the SVG file
      * as plain XML and doing the modifications by hand.
      */
-    private static URI createSvg(final Dimension targetSize,
+    private static byte[] createSvg(final Dimension targetSize,
             final RasterReference rasterReference, final Double rotation,
-            final Color backgroundColor, final File workingDir)
+            final Color backgroundColor)
             throws IOException {
         // load SVG graphic
-        final SVGElement svgRoot = parseSvg(rasterReference.inputStream);
+        final SVGElement svgRoot = parseSvg(new ByteArrayInputStream(rasterReference.content));
 
         // create a new SVG graphic in which the existing graphic is embedded (scaled and rotated)
         DOMImplementation impl = SVGDOMImplementation.getDOMImplementation();
@@ -189,9 +223,7 @@ public final class NorthArrowGraphic {
 
         setSvgBackground(backgroundColor, targetSize, newDocument, newSvgRoot);
         embedSvgGraphic(svgRoot, newSvgRoot, newDocument, targetSize, rotation);
-        File path = writeSvgToFile(newDocument, workingDir);
-
-        return path.toURI();
+        return writeSvg(newDocument);
     }
 
     private static void setSvgBackground(final Color backgroundColor,  final Dimension targetSize,
@@ -307,31 +339,23 @@ public final class NorthArrowGraphic {
         return (SVGElement) document.getDocumentElement();
     }
 
-    private static File writeSvgToFile(final Document document,
-            final File workingDir) throws IOException {
-        final File path = File.createTempFile("north-arrow-", ".svg", workingDir);
-        FileWriterWithEncoding fw = null;
-        try {
-            fw = new FileWriterWithEncoding(path, Charset.forName("UTF-8").newEncoder());
-            DOMUtilities.writeDocument(document, fw);
-            fw.flush();
-        } finally {
-            if (fw != null) {
-                fw.close();
-            }
-        }
-        return path;
+    private static byte[] writeSvg(final Document document) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Writer writer = new OutputStreamWriter(output, Charset.forName("UTF-8").newEncoder());
+        DOMUtilities.writeDocument(document, writer);
+        writer.flush();
+        return output.toByteArray();
     }
 
     private static final class RasterReference {
 
-        private final InputStream inputStream;
+        private final byte[] content;
         private final URI uri;
 
         public RasterReference(
-                final InputStream inputStream,
+                final byte[] content,
                 final URI uri) {
-            this.inputStream = inputStream;
+            this.content = content;
             this.uri = uri;
         }
     }
@@ -11,6 +11,8 @@ import org.mapfish.print.config.Template;
 import org.mapfish.print.processor.AbstractProcessor;
 import org.mapfish.print.processor.jasper.ImagesSubReport;
 import org.mapfish.print.processor.jasper.JasperReportBuilder;
+import org.mapfish.print.processor.map.DecorationCache;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.awt.Dimension;
 import java.io.File;
@@ -27,6 +29,9 @@ import javax.xml.parsers.ParserConfigurationException;
  */
 public class CreateScalebarProcessor extends AbstractProcessor<CreateScalebarProcessor.Input, CreateScalebarProcessor.Output> {
 
+    @Autowired
+    private DecorationCache decorationCache;
+
     /**
      * Constructor.
      */
@@ -64,7 +69,8 @@ public class CreateScalebarProcessor extends AbstractProcessor<CreateScalebarPro
 
     private URI createScalebarGraphic(final Input values) throws IOException, ParserConfigurationException {
         final ScalebarGraphic scalebar = new ScalebarGraphic();
-        return scalebar.render(values.mapContext, values.scalebar, values.tempTaskDirectory, values.template);
+        return scalebar.render(values.mapContext, values.scalebar, values.tempTaskDirectory, values.template,
+                this.decorationCache);
     }
 
     private URI createScalebarSubReport(final File printDirectory,
@@ -4,13 +4,16 @@ import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.geotools.referencing.GeodeticCalculator;
+import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.attribute.ScalebarAttribute.ScalebarAttributeValues;
 import org.mapfish.print.attribute.map.MapBounds;
 import org.mapfish.print.attribute.map.MapfishMapContext;
 import org.mapfish.print.config.Template;
 import org.mapfish.print.map.DistanceUnit;
 import org.mapfish.print.map.Scale;
+import org.mapfish.print.parser.AttributeBinder;
 import org.mapfish.print.processor.map.CreateMapProcessor;
+import org.mapfish.print.processor.map.DecorationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,11 +24,16 @@ import java.awt.Rectangle;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -52,6 +60,25 @@ public class ScalebarGraphic {
             final File tempFolder,
             final Template template)
             throws IOException, ParserConfigurationException {
+        return render(mapContext, scalebarParams, tempFolder, template, null);
+    }
+
+    /**
+     * Render the scalebar or take it from the cache if a scalebar has already been rendered with the same
+     * parameters.
+     * @param mapContext The context of the map for which the scalebar is created.
+     * @param scalebarParams The scalebar parameters.
+     * @param tempFolder The directory in which the graphic file is created.
+     * @param template The template that containts the scalebar processor
+     * @param cache The cache of the rendered graphics, null to always render the scalebar.
+     */
+    public final URI render(
+            final MapfishMapContext mapContext,
+            final ScalebarAttributeValues scalebarParams,
+            final File tempFolder,
+            final Template template,
+            @Nullable final DecorationCache cache)
+            throws IOException, ParserConfigurationException {
         final double dpi = mapContext.getDPI();
         final double dpiRatio = dpi / PDF_DPI;
 
@@ -80,44 +107,75 @@ public class ScalebarGraphic {
         final double niceIntervalLengthInWorldUnits =
                 getNearestNiceValue(maxIntervalLengthInWorldUnits, scaleUnit, scalebarParams.lockUnits);
 
-        final ScaleBarRenderSettings settings = new ScaleBarRenderSettings();
-        settings.setParams(scalebarParams);
-        settings.setMaxSize(new Dimension(maxWidthInPixelAdjusted, maxHeightInPixelAdjusted));
-        settings.setDpiRatio(dpiRatio);
-        settings.setPadding(getPadding(settings));
+        final boolean renderAsSvg = template.getConfiguration().renderAsSvg(scalebarParams.renderAsSvg);
+        final String key = DecorationCache.createKey("scalebar", renderAsSvg, scaleUnit, scaleDenominator,
+                niceIntervalLengthInWorldUnits, maxWidthInPixelAdjusted, maxHeightInPixelAdjusted, dpiRatio,
+                getParamsKey(scalebarParams));
+        byte[] graphic = cache != null ? cache.get(key) : null;
+        if (graphic == null) {
+            final ScaleBarRenderSettings settings = new ScaleBarRenderSettings();
+            settings.setParams(scalebarParams);
+            settings.setMaxSize(new Dimension(maxWidthInPixelAdjusted, maxHeightInPixelAdjusted));
+            settings.setDpiRatio(dpiRatio);
+            settings.setPadding(getPadding(settings));
+
+            graphic = draw(renderAsSvg, scaleUnit, scaleDenominator, niceIntervalLengthInWorldUnits, settings);
+            if (cache != null) {
+                cache.put(key, graphic);
+            }
+        }
+
+        return DecorationCache.write(graphic, "scalebar-graphic-", renderAsSvg ? ".svg" : ".tiff", tempFolder);
+    }
 
-        // start the rendering
-        File path = null;
-        if (template.getConfiguration().renderAsSvg(scalebarParams.renderAsSvg)) {
+    private byte[] draw(final boolean renderAsSvg, final DistanceUnit scaleUnit, final double scaleDenominator,
+                        final double intervalLengthInWorldUnits, final ScaleBarRenderSettings settings)
+            throws IOException, ParserConfigurationException {
+        final Dimension maxSize = settings.getMaxSize();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (renderAsSvg) {
             // render scalebar as SVG
-            final SVGGraphics2D graphics2D = CreateMapProcessor.getSvgGraphics(
-                    new Dimension(maxWidthInPixelAdjusted, maxHeightInPixelAdjusted));
+            final SVGGraphics2D graphics2D = CreateMapProcessor.getSvgGraphics(maxSize);
 
             try {
-                tryLayout(graphics2D, scaleUnit, scaleDenominator, niceIntervalLengthInWorldUnits, settings, 0);
+                tryLayout(graphics2D, scaleUnit, scaleDenominator, intervalLengthInWorldUnits, settings, 0);
 
-                path = File.createTempFile("scalebar-graphic-", ".svg", tempFolder);
-                CreateMapProcessor.saveSvgFile(graphics2D, path);
+                final Writer writer = new OutputStreamWriter(output, "UTF-8");
+                graphics2D.stream(writer, true);
+                writer.flush();
             } finally {
                 graphics2D.dispose();
             }
         } else {
             // render scalebar as raster graphic
-            final BufferedImage bufferedImage = new BufferedImage(maxWidthInPixelAdjusted, maxHeightInPixelAdjusted,
+            final BufferedImage bufferedImage = new BufferedImage(maxSize.width, maxSize.height,
                     BufferedImage.TYPE_4BYTE_ABGR);
             final Graphics2D graphics2D = bufferedImage.createGraphics();
 
             try {
-                tryLayout(graphics2D, scaleUnit, scaleDenominator, niceIntervalLengthInWorldUnits, settings, 0);
+                tryLayout(graphics2D, scaleUnit, scaleDenominator, intervalLengthInWorldUnits, settings, 0);
 
-                path = File.createTempFile("scalebar-graphic-", ".tiff", tempFolder);
-                ImageIO.write(bufferedImage, "tiff", path);
+                ImageIO.write(bufferedImage, "tiff", output);
             } finally {
                 graphics2D.dispose();
             }
         }
+        return output.toByteArray();
+    }
 
-        return path.toURI();
+    /**
+     * The values of all the scalebar parameters, the rendering depends on them.
+     */
+    private static String getParamsKey(final ScalebarAttributeValues scalebarParams) {
+        final StringBuilder key = new StringBuilder();
+        for (Field attribute : AttributeBinder.of(scalebarParams.getClass()).getMutableAttributes()) {
+            try {
+                key.append(attribute.getName()).append('=').append(attribute.get(scalebarParams)).append(';');
+            } catch (IllegalAccessException e) {
+                throw ExceptionUtils.getRuntimeException(e);
+            }
+        }
+        return key.toString();
     }
 
     private DistanceUnit getUnit(final MapBounds bounds) {
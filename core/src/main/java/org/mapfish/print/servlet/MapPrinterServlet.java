@@ -452,6 +452,7 @@ public class MapPrinterServlet extends BaseMapServlet {
         String ref = createAndSubmitPrintJob(appId, format, requestData, createReportRequest, createReportResponse);
         if (ref == null) {
             error(createReportResponse, "Failed to create a print job", HttpStatus.INTERNAL_SERVER_ERROR);
+            return;
         }
 
         final HandleReportLoadResult<Boolean> handler = new HandleReportLoadResult<Boolean>() {
@@ -489,12 +490,18 @@ public class MapPrinterServlet extends BaseMapServlet {
         };
 
 
-        boolean isDone = false;
         long startWaitTime = System.currentTimeMillis();
         final long maxWaitTimeInMillis = TimeUnit.SECONDS.toMillis(this.maxCreateAndGetWaitTimeInSeconds);
-        while (!isDone && System.currentTimeMillis() - startWaitTime < maxWaitTimeInMillis) {
-            Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+        boolean isDone = loadReport(ref, createReportResponse, handler);
+        long remaining = maxWaitTimeInMillis - (System.currentTimeMillis() - startWaitTime);
+        while (!isDone && remaining > 0) {
+            final boolean completed = this.jobManager.waitForCompletion(ref, remaining, TimeUnit.MILLISECONDS);
             isDone = loadReport(ref, createReportResponse, handler);
+            remaining = maxWaitTimeInMillis - (System.currentTimeMillis() - startWaitTime);
+            if (!isDone && !completed && remaining > 0) {
+                // the job is not executed by this instance, poll its status
+                Thread.sleep(Math.min(remaining, TimeUnit.SECONDS.toMillis(1)));
+            }
         }
     }
 
@@ -2,6 +2,7 @@ package org.mapfish.print.servlet;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import com.vividsolutions.jts.util.Assert;
 import org.mapfish.print.MapPrinter;
@@ -18,11 +19,17 @@ import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.ClosedByInterruptException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 /**
  * A {@link org.mapfish.print.MapPrinterFactory} that reads configuration from files and uses servlet's methods for resolving
@@ -36,6 +43,7 @@ public class ServletMapPrinterFactory implements MapPrinterFactory {
      * The name of the default app.  This is always required to be one of the apps that are registered.
      */
     public static final String DEFAULT_CONFIGURATION_FILE_KEY = "default";
+    private static final long DEFAULT_CHECK_INTERVAL = 1000L;
 
     @Autowired
     private ApplicationContext applicationContext;
@@ -45,11 +53,26 @@ public class ServletMapPrinterFactory implements MapPrinterFactory {
     @Autowired
     private ConfigFileLoaderManager configFileLoader;
 
-    private Map<String, URI> configurationFiles = new HashMap<String, URI>();
+    private final Map<String, URI> configurationFiles = Maps.newConcurrentMap();
 
-    private final Map<String, MapPrinter> printers = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, MapPrinter> printers = Maps.newConcurrentMap();
 
-    private final HashMap<String, Long> configurationFileLastModifiedTimes = new HashMap<String, Long>();
+    private final ConcurrentMap<String, Long> configurationFileLastModifiedTimes = Maps.newConcurrentMap();
+
+    private final ConcurrentMap<String, Long> configurationFileLastCheckTimes = Maps.newConcurrentMap();
+
+    private final Set<String> reloadingApps = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable task) {
+            final Thread thread = new Thread(task, "Reload configuration");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private long checkInterval = DEFAULT_CHECK_INTERVAL;
 
     @PostConstruct
     private void validateConfigurationFiles() {
@@ -63,8 +86,26 @@ public class ServletMapPrinterFactory implements MapPrinterFactory {
         }
     }
 
+    /**
+     * Called by spring when application context is being destroyed.
+     */
+    @PreDestroy
+    public final void shutdown() {
+        this.reloadExecutor.shutdownNow();
+    }
+
+    /**
+     * The minimum time in milliseconds between two checks of the modification time of the configuration file of an app
+     * (default 1000).
+     *
+     * @param checkInterval the time in milliseconds
+     */
+    public final void setCheckInterval(final long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
     @Override
-    public final synchronized MapPrinter create(@Nullable final String app) throws NoSuchAppException {
+    public final MapPrinter create(@Nullable final String app) throws NoSuchAppException {
         String finalApp = app;
         if (app == null) {
             finalApp = DEFAULT_CONFIGURATION_FILE_KEY;
@@ -77,50 +118,102 @@ public class ServletMapPrinterFactory implements MapPrinterFactory {
                                          "'" + finalApp + "'");
         }
 
-        final long lastModified;
-        if (this.configurationFileLastModifiedTimes.containsKey(finalApp)) {
-            lastModified = this.configurationFileLastModifiedTimes.get(finalApp);
+        MapPrinter printer = this.printers.get(finalApp);
+        if (printer == null) {
+            synchronized (configFile) {
+                printer = this.printers.get(finalApp);
+                if (printer == null) {
+                    printer = load(finalApp, configFile);
+                    this.printers.put(finalApp, printer);
+                }
+            }
         } else {
-            lastModified = 0L;
+            checkModified(finalApp, configFile, printer);
         }
 
-        MapPrinter printer = this.printers.get(finalApp);
+        return printer;
+    }
 
-        Optional<Long> configFileLastModified = this.configFileLoader.lastModified(configFile);
-        if (configFileLastModified.isPresent() && configFileLastModified.get() > lastModified) {
-            // file modified, reload it
-            LOGGER.info("Configuration file modified. Reloading...");
+    /**
+     * Check, at most once per check interval, if the configuration file has been modified and in that case reload it in the
+     * background.  The current printer is used until the new one is ready and the print jobs that use it keep it.
+     */
+    private void checkModified(final String app, final URI configFile, final MapPrinter printer) {
+        final long now = System.currentTimeMillis();
+        final Long lastCheck = this.configurationFileLastCheckTimes.get(app);
+        if (lastCheck != null && now - lastCheck < this.checkInterval) {
+            return;
+        }
+        if (lastCheck == null ? this.configurationFileLastCheckTimes.putIfAbsent(app, now) != null :
+                !this.configurationFileLastCheckTimes.replace(app, lastCheck, now)) {
+            // another request is doing the check
+            return;
+        }
+        if (!this.reloadingApps.add(app)) {
+            return;
+        }
+        try {
+            this.reloadExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload(app, configFile, printer);
+                    } finally {
+                        ServletMapPrinterFactory.this.reloadingApps.remove(app);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.reloadingApps.remove(app);
+        }
+    }
 
-            this.printers.remove(finalApp);
-            printer = null;
+    private void reload(final String app, final URI configFile, final MapPrinter oldPrinter) {
+        final Long lastModified = this.configurationFileLastModifiedTimes.get(app);
+        final Optional<Long> configFileLastModified = this.configFileLoader.lastModified(configFile);
+        if (!configFileLastModified.isPresent() || (lastModified != null && configFileLastModified.get() <= lastModified)) {
+            return;
+        }
+        LOGGER.info("Configuration file modified. Reloading...");
+        final MapPrinter printer;
+        try {
+            printer = load(app, configFile);
+        } catch (RuntimeException e) {
+            // the old configuration is kept until the file is fixed
+            return;
         }
+        if (this.printers.replace(app, oldPrinter, printer)) {
+            // the old configuration is no more used by the new print jobs, it is closed when its jobs are done
+            oldPrinter.getConfiguration().close();
+        } else {
+            printer.getConfiguration().close();
+        }
+    }
 
-        if (printer == null) {
-            if (configFileLastModified.isPresent()) {
-                this.configurationFileLastModifiedTimes.put(finalApp, configFileLastModified.get());
-            }
+    private MapPrinter load(final String app, final URI configFile) {
+        final Optional<Long> configFileLastModified = this.configFileLoader.lastModified(configFile);
+        if (configFileLastModified.isPresent()) {
+            this.configurationFileLastModifiedTimes.put(app, configFileLastModified.get());
+        }
+        this.configurationFileLastCheckTimes.put(app, System.currentTimeMillis());
 
-            try {
-                LOGGER.info("Loading configuration file: " + configFile);
-                printer = this.applicationContext.getBean(MapPrinter.class);
-                byte[] bytes = this.configFileLoader.loadFile(configFile);
-                printer.setConfiguration(configFile, bytes);
-
-                this.printers.put(finalApp, printer);
-            } catch (Throwable e) {
-                if (e instanceof ClosedByInterruptException) {
-                    // because of a bug in the JDK, the interrupted status might not be set
-                    // when throwing a ClosedByInterruptException. so, we do it manually.
-                    // see also http://bugs.java.com/view_bug.do?bug_id=7043425
-                    Thread.currentThread().interrupt();
-                }
-                LOGGER.error("Error occurred while reading configuration file", e);
-                throw new RuntimeException("Error occurred while reading configuration file '"
-                                           + configFile + "': ", e);
+        try {
+            LOGGER.info("Loading configuration file: " + configFile);
+            final MapPrinter printer = this.applicationContext.getBean(MapPrinter.class);
+            byte[] bytes = this.configFileLoader.loadFile(configFile);
+            printer.setConfiguration(configFile, bytes);
+            return printer;
+        } catch (Throwable e) {
+            if (e instanceof ClosedByInterruptException) {
+                // because of a bug in the JDK, the interrupted status might not be set
+                // when throwing a ClosedByInterruptException. so, we do it manually.
+                // see also http://bugs.java.com/view_bug.do?bug_id=7043425
+                Thread.currentThread().interrupt();
             }
+            LOGGER.error("Error occurred while reading configuration file", e);
+            throw new RuntimeException("Error occurred while reading configuration file '"
+                                       + configFile + "': ", e);
         }
-
-        return printer;
     }
 
     @Override
@@ -136,6 +229,11 @@ public class ServletMapPrinterFactory implements MapPrinterFactory {
     public final void setConfigurationFiles(final Map<String, String> configurationFiles) throws URISyntaxException {
         this.configurationFiles.clear();
         this.configurationFileLastModifiedTimes.clear();
+        this.configurationFileLastCheckTimes.clear();
+        for (MapPrinter printer : this.printers.values()) {
+            printer.getConfiguration().close();
+        }
+        this.printers.clear();
         for (Map.Entry<String, String> entry : configurationFiles.entrySet()) {
             if (!entry.getValue().contains(":/")) {
                 // assume is a file
@@ -1,5 +1,7 @@
 package org.mapfish.print.servlet.job;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Manages and Executes Print Jobs.
  */
@@ -28,4 +30,16 @@ public interface JobManager {
      */
     PrintJobStatus getStatus(String referenceId) throws NoSuchReferenceException;
 
+    /**
+     * Wait until a job executed by this job manager is finished (done, failed or cancelled) and its status has been
+     * updated.
+     *
+     * @param referenceId The referenceId of the job to wait for.
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return false if the timeout has elapsed or if the job is not executed by this job manager (for example it is
+     * waiting to be taken by another instance of a cluster), in which case its status must be polled.
+     */
+    boolean waitForCompletion(String referenceId, long timeout, TimeUnit unit) throws InterruptedException;
+
 }
@@ -73,16 +73,31 @@ public abstract class PrintJob implements Callable<PrintJobResult> {
         return new PrintJobResultImpl(reportURI, fileName, fileExtension, mimeType);
     }
 
+    /**
+     * Delete the report written by the job, called when the job fails or is cancelled once its report is written.
+     * The report files are deleted by the clean up of the old files by default.
+     */
+    public void deleteReport() {
+    }
+
     @Override
     public final PrintJobResult call() throws Exception {
         SecurityContextHolder.setContext(this.securityContext);
         Timer.Context timer = this.metricRegistry.timer(getClass().getName() + " call()").time();
         PJsonObject spec = null;
         MapPrinter mapPrinter = null;
+        Configuration configuration = null;
         try {
             LOGGER.info("Starting print job " + this.entry.getReferenceId());
             spec = this.entry.getRequestData();
             mapPrinter = PrintJob.this.mapPrinterFactory.create(this.entry.getAppId());
+            if (mapPrinter != null) {
+                // a configuration replaced by a reload is closed once its jobs are done
+                configuration = mapPrinter.getConfiguration();
+                if (configuration != null) {
+                    configuration.printJobStarted();
+                }
+            }
             final MapPrinter finalMapPrinter = mapPrinter;
             URI reportURI = withOpenOutputStream(new PrintAction() {
                 @Override
@@ -111,8 +126,12 @@ public abstract class PrintJob implements Callable<PrintJobResult> {
             }
             LOGGER.info("Error executing print job " + canceledText + this.entry.getReferenceId() + "\n" + this.entry.getRequestData(), e);
             this.metricRegistry.counter(getClass().getName() + "failure").inc();
+            deleteReport();
             throw e;
         } finally {
+            if (configuration != null) {
+                configuration.printJobDone();
+            }
             final long stop = TimeUnit.MILLISECONDS.convert(timer.stop(), TimeUnit.NANOSECONDS);
             LOGGER.debug("Print Job " + this.entry.getReferenceId() + " completed in " + stop + "ms");
         }
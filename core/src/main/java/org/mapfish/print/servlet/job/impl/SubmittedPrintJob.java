@@ -4,6 +4,7 @@ import org.mapfish.print.servlet.job.PrintJobEntry;
 import org.mapfish.print.servlet.job.PrintJobResult;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Encapsulates a job that has been submitted to the JobManager.
@@ -12,6 +13,10 @@ public class SubmittedPrintJob {
 
     private final PrintJobEntry entry;
     private final Future<PrintJobResult> reportFuture;
+    private ScheduledFuture<?> timeoutCheck = null;
+    private ScheduledFuture<?> abandonedCheck = null;
+    private boolean checksCancelled = false;
+    private boolean resultClaimed = false;
 
     /**
      * Constructor.
@@ -35,4 +40,59 @@ public class SubmittedPrintJob {
         return this.entry;
     }
 
+    /**
+     * Claim the posting of the result of the job, the result of a job (done, failed or cancelled) is posted only by
+     * the first caller.
+     *
+     * @return true if the caller must post the result
+     */
+    public final synchronized boolean claimResult() {
+        if (this.resultClaimed) {
+            return false;
+        }
+        this.resultClaimed = true;
+        return true;
+    }
+
+    /**
+     * Set the scheduled check of the timeout of the job, cancel it if the job is already finished.
+     *
+     * @param check the scheduled check
+     */
+    public final synchronized void setTimeoutCheck(final ScheduledFuture<?> check) {
+        if (this.checksCancelled) {
+            check.cancel(false);
+        } else {
+            this.timeoutCheck = check;
+        }
+    }
+
+    /**
+     * Set the scheduled check if the job is abandoned, cancel it if the job is already finished.
+     *
+     * @param check the scheduled check
+     */
+    public final synchronized void setAbandonedCheck(final ScheduledFuture<?> check) {
+        if (this.checksCancelled) {
+            check.cancel(false);
+        } else {
+            this.abandonedCheck = check;
+        }
+    }
+
+    /**
+     * Cancel the scheduled checks of the job, called when the job is finished or cancelled.
+     */
+    public final synchronized void cancelChecks() {
+        this.checksCancelled = true;
+        if (this.timeoutCheck != null) {
+            this.timeoutCheck.cancel(false);
+            this.timeoutCheck = null;
+        }
+        if (this.abandonedCheck != null) {
+            this.abandonedCheck.cancel(false);
+            this.abandonedCheck = null;
+        }
+    }
+
 }
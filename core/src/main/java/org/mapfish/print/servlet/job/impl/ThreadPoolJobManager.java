@@ -19,13 +19,12 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.core.context.SecurityContextHolder;
 
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -33,6 +32,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -112,10 +112,20 @@ public class ThreadPoolJobManager implements JobManager {
      * A collection of jobs that are currently being processed or that are awaiting
      * to be processed.
      */
-    private final Map<String, SubmittedPrintJob> runningTasksFutures =
-            Collections.synchronizedMap(new HashMap<String, SubmittedPrintJob>());
+    private final ConcurrentMap<String, SubmittedPrintJob> runningTasksFutures =
+            new ConcurrentHashMap<String, SubmittedPrintJob>();
 
-    private ScheduledExecutorService timer;
+    /**
+     * The latches released when the status of a running job is updated, used by the requests waiting for a job.
+     */
+    private final ConcurrentMap<String, CountDownLatch> completionLatches =
+            new ConcurrentHashMap<String, CountDownLatch>();
+
+    /**
+     * The timer of the timeout and abandoned checks of the jobs, the checks of a finished job are cancelled and
+     * purged so they don't accumulate in the queue until their delay is reached.
+     */
+    private ScheduledThreadPoolExecutor timer;
     private ScheduledExecutorService cleanUpTimer;
 
     @Autowired
@@ -222,7 +232,14 @@ public class ThreadPoolJobManager implements JobManager {
                 this.maxIdleTime, TimeUnit.SECONDS, queue, threadFactory) {
             @Override
             protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
-                return new JobFutureTask<T>(callable);
+                return new JobFutureTask<T>(callable) {
+                    @Override
+                    protected void done() {
+                        if (callable instanceof PrintJob) {
+                            jobDone(((PrintJob) callable).getEntry().getReferenceId(), this);
+                        }
+                    }
+                };
             }
             @Override
             protected void beforeExecute(final Thread t, final Runnable runnable) {
@@ -243,16 +260,18 @@ public class ThreadPoolJobManager implements JobManager {
             }
         };
 
-        this.timer = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
             @Override
             public Thread newThread(final Runnable timerTask) {
-                final Thread thread = new Thread(timerTask, "Post result to registry");
+                final Thread thread = new Thread(timerTask, "Print job timer");
                 thread.setDaemon(true);
                 return thread;
             }
         });
-        this.timer.scheduleAtFixedRate(new RegistryTask(), RegistryTask.CHECK_INTERVAL,
-                RegistryTask.CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        if (this.clustered) {
+            this.timer.scheduleAtFixedRate(new RegistryTask(), RegistryTask.CHECK_INTERVAL,
+                    RegistryTask.CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
 
         if (this.oldFileCleanUp) {
             this.cleanUpTimer = Executors.newScheduledThreadPool(1, new ThreadFactory() {
@@ -282,9 +301,17 @@ public class ThreadPoolJobManager implements JobManager {
     }
 
     private void executeJob(final PrintJob job) {
+        final String referenceId = job.getEntry().getReferenceId();
         final Future<PrintJobResult> future = this.executor.submit(job);
-        this.runningTasksFutures.put(job.getEntry().getReferenceId(),
-            new SubmittedPrintJob(future, job.getEntry()));
+        final SubmittedPrintJob printJob = new SubmittedPrintJob(future, job.getEntry());
+        this.runningTasksFutures.put(referenceId, printJob);
+        if (future.isDone()) {
+            // the job has finished before being registered
+            jobDone(referenceId, future);
+        } else {
+            scheduleTimeout(printJob);
+            scheduleAbandonedCheck(printJob, TimeUnit.SECONDS.toMillis(this.abandonedTimeout));
+        }
     }
 
     /**
@@ -338,17 +365,24 @@ public class ThreadPoolJobManager implements JobManager {
     }
 
     private void cancelJobIfRunning(final String referenceId) throws NoSuchReferenceException {
-        synchronized (this.runningTasksFutures) {
-            if (this.runningTasksFutures.containsKey(referenceId)) {
-                // the job is not yet finished (or has not even started), cancel
-                final SubmittedPrintJob printJob = this.runningTasksFutures.get(referenceId);
-                printJob.getEntry().assertAccess();
-                if (!printJob.getReportFuture().cancel(true)) {
-                    LOGGER.info("Could not cancel job " + referenceId);
+        final SubmittedPrintJob printJob = this.runningTasksFutures.get(referenceId);
+        if (printJob != null) {
+            // the job is not yet finished (or has not even started), cancel
+            printJob.getEntry().assertAccess();
+            // claim the result first so that its completion is not posted as a timeout
+            if (printJob.claimResult()) {
+                cancelChecks(printJob);
+                try {
+                    if (!printJob.getReportFuture().cancel(true)) {
+                        LOGGER.info("Could not cancel job " + referenceId);
+                        // the job is already finished, its result is not posted
+                        deleteReport(printJob.getReportFuture());
+                    }
+                    //now from canceling to cancelled state
+                    this.jobQueue.cancel(referenceId, "task cancelled", true);
+                } finally {
+                    resultPosted(referenceId, printJob);
                 }
-                this.runningTasksFutures.remove(referenceId);
-                //now from canceling to cancelled state
-                this.jobQueue.cancel(referenceId, "task cancelled", true);
             }
         }
     }
@@ -382,8 +416,8 @@ public class ThreadPoolJobManager implements JobManager {
     }
 
     /**
-     * This timer task changes the status of finished jobs in the registry.
-     * Also it stops jobs that have been running for too long (timeout).
+     * This timer task is used when clustered, it cancels the old jobs and starts the jobs that are waiting in
+     * the registry.
      */
     @VisibleForTesting
     class RegistryTask implements Runnable {
@@ -398,13 +432,8 @@ public class ThreadPoolJobManager implements JobManager {
 
             // run in try-catch to ensure that the timer task is not stopped
             try {
-                synchronized (ThreadPoolJobManager.this.runningTasksFutures) {
-                    updateRegistry();
-                    if (ThreadPoolJobManager.this.clustered) {
-                        cancelOld();
-                        pollRegistry();
-                    }
-                }
+                cancelOld();
+                pollRegistry();
             } catch (Throwable t) {
                 LOGGER.error("Error while polling/updating registry", t);
             }
@@ -436,49 +465,123 @@ public class ThreadPoolJobManager implements JobManager {
         }
     }
 
-    private void updateRegistry() {
-        final Iterator<SubmittedPrintJob> submittedJobs = this.runningTasksFutures.values().iterator();
-        while (submittedJobs.hasNext()) {
-            final SubmittedPrintJob printJob = submittedJobs.next();
-            if (!printJob.getReportFuture().isDone() &&
-                    (isTimeoutExceeded(printJob) || isAbandoned(printJob))) {
-                LOGGER.info("Cancelling job after timeout " + printJob.getEntry().getReferenceId());
-                if (!printJob.getReportFuture().cancel(true)) {
-                    LOGGER.info("Could not cancel job after timeout " + printJob.getEntry().getReferenceId());
+    /**
+     * Post the result of a job to the registry, called by the job's thread as soon as the job is finished, failed or
+     * cancelled.  The job stays registered as running until its result is posted, so a request waiting for it finds
+     * the final status in the registry.
+     */
+    private void jobDone(final String referenceId, final Future<?> future) {
+        final SubmittedPrintJob printJob = this.runningTasksFutures.get(referenceId);
+        if (printJob == null || printJob.getReportFuture() != future || !printJob.claimResult()) {
+            // not yet registered, already posted or cancelled by the user
+            return;
+        }
+        cancelChecks(printJob);
+        try {
+            try {
+                this.jobQueue.done(referenceId, printJob.getReportFuture().get());
+            } catch (InterruptedException e) {
+                // restore the interrupted status to not lose the information.
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                //failure occurred
+                this.jobQueue.fail(referenceId, ExceptionUtils.getRootCause(e).toString());
+            } catch (CancellationException e) {
+                //cancellation occurred, set cancellation status
+                this.jobQueue.cancel(referenceId, "task cancelled (timeout)", true);
+            }
+        } catch (NoSuchReferenceException e) { // shouldnt'// really happen
+            LOGGER.error("Error while posting the result of the job " + referenceId, e);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while posting the result of the job " + referenceId, e);
+        } finally {
+            resultPosted(referenceId, printJob);
+        }
+    }
+
+    private void resultPosted(final String referenceId, final SubmittedPrintJob printJob) {
+        this.runningTasksFutures.remove(referenceId, printJob);
+        notifyCompletion(referenceId);
+    }
+
+    private void cancelChecks(final SubmittedPrintJob printJob) {
+        printJob.cancelChecks();
+        this.timer.purge();
+    }
+
+    private void notifyCompletion(final String referenceId) {
+        final CountDownLatch latch = this.completionLatches.remove(referenceId);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    @Override
+    public final boolean waitForCompletion(final String referenceId, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        if (!this.runningTasksFutures.containsKey(referenceId)) {
+            return false;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch previous = this.completionLatches.putIfAbsent(referenceId, latch);
+        if (previous != null) {
+            latch = previous;
+        }
+        if (!this.runningTasksFutures.containsKey(referenceId)) {
+            // finished while registering the latch
+            notifyCompletion(referenceId);
+            return true;
+        }
+        return latch.await(timeout, unit);
+    }
+
+    private void scheduleTimeout(final SubmittedPrintJob printJob) {
+        final long delay = TimeUnit.SECONDS.toMillis(this.timeout) - printJob.getEntry().getTimeSinceStart();
+        printJob.setTimeoutCheck(this.timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!printJob.getReportFuture().isDone() && isTimeoutExceeded(printJob)) {
+                    cancelAfterTimeout(printJob);
+                } else if (!printJob.getReportFuture().isDone()) {
+                    scheduleTimeout(printJob);
                 }
-                // remove all cancelled tasks from the work queue (otherwise the queue comparator
-                // might stumble on non-PrintJob entries)
-                this.executor.purge();
             }
+        }, Math.max(0L, delay) + 1, TimeUnit.MILLISECONDS));
+    }
 
-            if (printJob.getReportFuture().isDone()) {
-                submittedJobs.remove();
+    private void scheduleAbandonedCheck(final SubmittedPrintJob printJob, final long delay) {
+        printJob.setAbandonedCheck(this.timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (printJob.getReportFuture().isDone()) {
+                    return;
+                }
                 try {
-                    try {
-                        // set the completion date to the moment the job was
-                        // marked as completed
-                        // in the registry.
-                        this.jobQueue.done(printJob.getEntry().getReferenceId(), printJob.getReportFuture().get());
-                    } catch (InterruptedException e) {
-                        // if this happens, the timer task was interrupted.
-                        // restore the interrupted
-                        // status to not lose the information.
-                        Thread.currentThread().interrupt();
-                    } catch (ExecutionException e) {
-                        //failure occurred
-                        this.jobQueue.fail(printJob.getEntry().getReferenceId(),
-                                ExceptionUtils.getRootCause(e).toString());
-
-                    } catch (CancellationException e) {
-                        //cancellation occurred, set cancellation status
-                        this.jobQueue.cancel(printJob.getEntry().getReferenceId(),
-                                    "task cancelled (timeout)", true);
+                    if (isAbandoned(printJob)) {
+                        cancelAfterTimeout(printJob);
+                    } else {
+                        // check again when the abandoned timeout is reached since the last status check
+                        final long duration = ThreadPoolJobManager.this.jobQueue.timeSinceLastStatusCheck(
+                                printJob.getEntry().getReferenceId());
+                        scheduleAbandonedCheck(printJob,
+                                TimeUnit.SECONDS.toMillis(ThreadPoolJobManager.this.abandonedTimeout) - duration + 1);
                     }
-                } catch (NoSuchReferenceException e) { // shouldnt'// really happen
-                    throw ExceptionUtils.getRuntimeException(e);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error while checking if the job " + printJob.getEntry().getReferenceId() +
+                                 " is abandoned", e);
                 }
             }
+        }, Math.max(0L, delay), TimeUnit.MILLISECONDS));
+    }
+
+    private void cancelAfterTimeout(final SubmittedPrintJob printJob) {
+        LOGGER.info("Cancelling job after timeout " + printJob.getEntry().getReferenceId());
+        if (!printJob.getReportFuture().cancel(true)) {
+            LOGGER.info("Could not cancel job after timeout " + printJob.getEntry().getReferenceId());
         }
+        // remove all cancelled tasks from the work queue (otherwise the queue comparator
+        // might stumble on non-PrintJob entries)
+        this.executor.purge();
     }
 
     private boolean isTimeoutExceeded(final SubmittedPrintJob printJob) {
@@ -504,11 +607,23 @@ public class ThreadPoolJobManager implements JobManager {
         return abandoned;
     }
 
+    /**
+     * Delete the report of a job whose result is not posted to the job queue.
+     */
+    private static void deleteReport(final Future<?> future) {
+        if (future instanceof JobFutureTask<?>) {
+            final Callable<?> callable = ((JobFutureTask<?>) future).getCallable();
+            if (callable instanceof PrintJob) {
+                ((PrintJob) callable).deleteReport();
+            }
+        }
+    }
+
     /**
      * A custom FutureTask implementation which allows to retrieve the
      * wrapped Callable.
      */
-    private static final class JobFutureTask<V> extends FutureTask<V> {
+    private static class JobFutureTask<V> extends FutureTask<V> {
 
         private final Callable<V> callable;
 
@@ -521,6 +636,15 @@ public class ThreadPoolJobManager implements JobManager {
             return this.callable;
         }
 
+        @Override
+        protected void set(final V v) {
+            super.set(v);
+            if (isCancelled()) {
+                // the job was cancelled while its report was written, its result is dropped
+                deleteReport(this);
+            }
+        }
+
     }
 
 }
@@ -1,10 +1,13 @@
 package org.mapfish.print.servlet.job.impl.hibernate;
 
+import org.mapfish.print.ExceptionUtils;
 import org.mapfish.print.servlet.job.JobQueue;
 import org.mapfish.print.servlet.job.NoSuchReferenceException;
 import org.mapfish.print.servlet.job.PrintJobEntry;
 import org.mapfish.print.servlet.job.PrintJobResult;
 import org.mapfish.print.servlet.job.PrintJobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -12,6 +15,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -28,6 +33,8 @@ import javax.annotation.PreDestroy;
  */
 @Transactional
 public class HibernateJobQueue implements JobQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateJobQueue.class);
+
     private static final int DEFAULT_TIME_TO_KEEP_AFTER_ACCESS = 30; /* minutes */
 
     private static final long DEFAULT_CLEAN_UP_INTERVAL = 300; /* seconds */
@@ -149,15 +156,43 @@ public class HibernateJobQueue implements JobQueue {
     @Override
     public final synchronized void done(final String referenceId, final PrintJobResult result)
             throws NoSuchReferenceException {
-        PrintJobStatusExtImpl record = this.dao.get(referenceId, true);
-        if (record == null) {
-            throw new NoSuchReferenceException(referenceId);
+        try {
+            PrintJobStatusExtImpl record = this.dao.get(referenceId, true);
+            if (record == null) {
+                throw new NoSuchReferenceException(referenceId);
+            }
+            record.setStatus(record.getStatus() == PrintJobStatus.Status.CANCELING ? PrintJobStatus.Status.CANCELLED
+                    : PrintJobStatus.Status.FINISHED);
+            if (result instanceof PrintJobResultExtImpl) {
+                final PrintJobResultExtImpl extResult = (PrintJobResultExtImpl) result;
+                if (extResult.getReportFile() != null) {
+                    try {
+                        extResult.setData(this.dao.createBlob(extResult.getReportFile()));
+                    } catch (IOException e) {
+                        throw ExceptionUtils.getRuntimeException(e);
+                    }
+                    extResult.setReportFile(null);
+                }
+            }
+            record.setResult(result);
+            record.setCompletionTime(System.currentTimeMillis());
+            this.dao.save(record);
+        } finally {
+            deleteReportFile(result);
+        }
+    }
+
+    /**
+     * Delete the report file of a result that is not stored in the database, the report file of a stored result
+     * is deleted once the transaction is completed.
+     */
+    private static void deleteReportFile(final PrintJobResult result) {
+        if (result instanceof PrintJobResultExtImpl) {
+            final File reportFile = ((PrintJobResultExtImpl) result).getReportFile();
+            if (reportFile != null && reportFile.exists() && !reportFile.delete()) {
+                LOGGER.warn("Unable to delete the report file " + reportFile);
+            }
         }
-        record.setStatus(record.getStatus() == PrintJobStatus.Status.CANCELING ? PrintJobStatus.Status.CANCELLED
-                : PrintJobStatus.Status.FINISHED);
-        record.setResult(result);
-        record.setCompletionTime(System.currentTimeMillis());
-        this.dao.save(record);
     }
 
     @Override
@@ -1,29 +1,55 @@
 package org.mapfish.print.servlet.job.impl.hibernate;
 
+import org.mapfish.print.config.WorkingDirectories;
 import org.mapfish.print.servlet.job.PrintJob;
 import org.mapfish.print.servlet.job.PrintJobResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URI;
 
 /**
  * A PrintJob implementation that write results to the database.
  * <p></p>
+ * The report is first written to a file in the reports directory and streamed from there to the database when the result is
+ * saved, so the report is never fully loaded in memory.
  */
 public class HibernatePrintJob extends PrintJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernatePrintJob.class);
 
-    private byte[] data;
+    @Autowired
+    private WorkingDirectories workingDirectories;
+
+    private File reportFile;
 
     @Override
     protected final URI withOpenOutputStream(final PrintAction function) throws Exception {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        BufferedOutputStream bout = new BufferedOutputStream(out);
+        this.reportFile = new File(this.workingDirectories.getReports(), getEntry().getReferenceId());
+        boolean success = false;
+        FileOutputStream out = null;
+        BufferedOutputStream bout = null;
         try {
+            out = new FileOutputStream(this.reportFile);
+            bout = new BufferedOutputStream(out);
             function.run(bout);
-            this.data = out.toByteArray();
+            success = true;
         } finally {
-            bout.close();
+            try {
+                if (bout != null) {
+                    bout.close();
+                }
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+                if (!success) {
+                    this.reportFile.delete();
+                }
+            }
         }
         return new URI("hibernate:" + getEntry().getReferenceId());
     }
@@ -31,6 +57,13 @@ public class HibernatePrintJob extends PrintJob {
     @Override
     protected final PrintJobResult createResult(final URI reportURI, final String fileName,
             final String fileExtension, final String mimeType) {
-        return new PrintJobResultExtImpl(reportURI, fileName, fileExtension, mimeType, this.data);
+        return new PrintJobResultExtImpl(reportURI, fileName, fileExtension, mimeType, this.reportFile);
+    }
+
+    @Override
+    public final void deleteReport() {
+        if (this.reportFile != null && this.reportFile.exists() && !this.reportFile.delete()) {
+            LOGGER.warn("Unable to delete the report file " + this.reportFile);
+        }
     }
 }
@@ -1,12 +1,15 @@
 package org.mapfish.print.servlet.job.impl.hibernate;
 
+import com.google.common.io.ByteStreams;
 import org.mapfish.print.servlet.job.loader.ReportLoader;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.sql.SQLException;
 
 /**
  * Loads reports from hibernate uris.
@@ -25,6 +28,15 @@ public class HibernateReportLoader implements ReportLoader {
     @Override
     @Transactional
     public final void loadReport(final URI reportURI, final OutputStream out) throws IOException {
-        out.write(this.dao.getResult(reportURI).getData());
+        try {
+            final InputStream in = this.dao.getResult(reportURI).getData().getBinaryStream();
+            try {
+                ByteStreams.copy(in, out);
+            } finally {
+                in.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package org.mapfish.print.servlet.job.impl.hibernate;
 
+import org.apache.commons.io.IOUtils;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.LockMode;
@@ -11,9 +12,18 @@ import org.hibernate.criterion.Restrictions;
 import org.hibernate.type.LongType;
 import org.hibernate.type.Type;
 import org.mapfish.print.servlet.job.PrintJobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.sql.Blob;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -23,6 +33,7 @@ import javax.annotation.PostConstruct;
  *
  */
 public class PrintJobDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrintJobDao.class);
 
     @Autowired
     private SessionFactory sf;
@@ -202,6 +213,27 @@ public class PrintJobDao {
         return (List<PrintJobStatusExtImpl>) query.list();
     }
 
+    /**
+     * Create a blob streaming the content of a file into the database.  The file is deleted when the current
+     * transaction is completed.
+     *
+     * @param file the file
+     * @return the blob.
+     */
+    public final Blob createBlob(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(final int status) {
+                IOUtils.closeQuietly(in);
+                if (!file.delete()) {
+                    LOGGER.warn("Unable to delete the report file " + file);
+                }
+            }
+        });
+        return getSession().getLobHelper().createBlob(in, file.length());
+    }
+
     /**
      * Get result report.
      *
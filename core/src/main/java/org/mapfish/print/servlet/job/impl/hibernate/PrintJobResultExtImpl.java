@@ -2,10 +2,13 @@ package org.mapfish.print.servlet.job.impl.hibernate;
 
 import org.mapfish.print.servlet.job.impl.PrintJobResultImpl;
 
+import java.io.File;
 import java.net.URI;
+import java.sql.Blob;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Lob;
 
 /**
  * Extension of Print Job Result that holds data as BLOB.
@@ -14,8 +17,11 @@ import javax.persistence.Entity;
 @Entity
 public class PrintJobResultExtImpl extends PrintJobResultImpl {
 
-    @Column
-    private byte[] data;
+    @Column(name = "report")
+    @Lob
+    private Blob data;
+
+    private transient File reportFile;
 
     /**
      * Default Constructor.
@@ -31,21 +37,32 @@ public class PrintJobResultExtImpl extends PrintJobResultImpl {
      * @param fileName the file name
      * @param fileExtension the file extension
      * @param mimeType the mime type
-     * @param data the data
+     * @param reportFile the file containing the report, stored in the database when the result is saved
      */
     public PrintJobResultExtImpl(final URI reportURI, final String fileName, final String fileExtension, final String mimeType,
-            final byte[] data) {
+            final File reportFile) {
         super(reportURI, fileName, fileExtension, mimeType);
-        this.data = data;
+        this.reportFile = reportFile;
     }
 
 
-    public final byte[] getData() {
+    public final Blob getData() {
         return this.data;
     }
 
-    public final void setData(final byte[] data) {
+    public final void setData(final Blob data) {
         this.data = data;
     }
 
+    /**
+     * The file containing the report that has not yet been stored in the database.
+     */
+    public final File getReportFile() {
+        return this.reportFile;
+    }
+
+    public final void setReportFile(final File reportFile) {
+        this.reportFile = reportFile;
+    }
+
 }
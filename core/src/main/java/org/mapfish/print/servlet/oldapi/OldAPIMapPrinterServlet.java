@@ -38,6 +38,7 @@ import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -439,9 +440,12 @@ public class OldAPIMapPrinterServlet extends BaseMapServlet {
             final String jobReferenceId = this.primaryApiServlet.createAndSubmitPrintJob(appId, format,
                     updatedSpecJson.getInternalObj().toString(), httpServletRequest,
                     httpServletResponse);
-            boolean isDone = false;
+            boolean isDone = this.jobManager.getStatus(jobReferenceId).isDone();
             while (!isDone) {
-                Thread.sleep(HALF_SECOND);
+                if (!this.jobManager.waitForCompletion(jobReferenceId, 1, TimeUnit.MINUTES)) {
+                    // the job is not executed by this instance, poll its status
+                    Thread.sleep(HALF_SECOND);
+                }
                 isDone = this.jobManager.getStatus(jobReferenceId).isDone();
             }
 
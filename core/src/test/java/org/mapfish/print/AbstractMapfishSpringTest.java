@@ -8,7 +8,11 @@ import org.mapfish.print.attribute.map.CenterScaleMapBounds;
 import org.mapfish.print.attribute.map.MapfishMapContext;
 import org.mapfish.print.config.WorkingDirectories;
 import org.mapfish.print.wrapper.json.PJsonObject;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.ApplicationContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -18,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +45,8 @@ public abstract class AbstractMapfishSpringTest {
 
     @Autowired
     private WorkingDirectories workingDirectories;
+    @Autowired
+    private ApplicationContext applicationContext;
 
     /**
      * Look on the classpath for the named file.  Will look at the root package and in the same package as testClass.
@@ -93,6 +100,21 @@ public abstract class AbstractMapfishSpringTest {
         return workingDirectories.getTaskDirectory();
     }
 
+    /**
+     * Create a new bean with other properties than the one of the application context, for example a cache with a
+     * smaller size.  The bean is autowired and initialized (PostConstruct) like the beans of the application context.
+     *
+     * @param beanClass the class of the bean.
+     * @param properties the properties to set before the initialization.
+     */
+    protected <T> T createBean(final Class<T> beanClass, final Map<String, ?> properties) {
+        final AutowireCapableBeanFactory beanFactory = this.applicationContext.getAutowireCapableBeanFactory();
+        final T bean = BeanUtils.instantiateClass(beanClass);
+        beanFactory.autowireBean(bean);
+        new BeanWrapperImpl(bean).setPropertyValues(properties);
+        return beanClass.cast(beanFactory.initializeBean(bean, beanClass.getName()));
+    }
+
     public static MapfishMapContext createTestMapContext() {
         try {
             final CenterScaleMapBounds bounds = new CenterScaleMapBounds(CRS.decode("CRS:84"), 0, 0, 30000);
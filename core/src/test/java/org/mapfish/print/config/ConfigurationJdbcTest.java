@@ -0,0 +1,162 @@
+package org.mapfish.print.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the database connection pools of {@link org.mapfish.print.config.Configuration}.
+ */
+public class ConfigurationJdbcTest extends AbstractMapfishSpringTest {
+    private static final String JDBC_URL = "jdbc:hsqldb:mem:configurationJdbcTest";
+
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Test
+    public void testPoolReused() throws Exception {
+        final Configuration config = createConfig(new File("/apps/app1/config.yaml"));
+        try {
+            final Connection connection = config.getJdbcConnection("main");
+            assertEquals(1, getValue(config, "active"));
+            connection.close();
+            assertEquals(0, getValue(config, "active"));
+            assertEquals(1, getValue(config, "idle"));
+
+            // the connection returned to the pool is used again
+            final Connection connection2 = config.getJdbcConnection("main");
+            assertEquals(1, getValue(config, "active"));
+            assertEquals(0, getValue(config, "idle"));
+            connection2.close();
+        } finally {
+            config.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        final Configuration config = createConfig(new File("/apps/app1/config.yaml"));
+        final Connection connection = config.getJdbcConnection("main");
+        config.close();
+
+        assertNull(getGauge(config, "active"));
+        assertNull(getGauge(config, "idle"));
+        // the connection used by a print job can still be used and is closed when it is returned
+        assertFalse(connection.isClosed());
+        connection.close();
+
+        // a connection that is not pooled is opened once the configuration is closed
+        final Connection notPooled = config.getJdbcConnection("main");
+        try {
+            assertFalse(notPooled.isClosed());
+            assertNull(getGauge(config, "active"));
+        } finally {
+            notPooled.close();
+        }
+    }
+
+    @Test
+    public void testCloseAfterPrintJobs() throws Exception {
+        final Configuration config = createConfig(new File("/apps/app1/config.yaml"));
+        config.printJobStarted();
+        config.getJdbcConnection("main").close();
+
+        // the configuration is replaced while a print job uses it
+        config.close();
+        assertEquals(1, getValue(config, "idle"));
+        config.getJdbcConnection("main").close();
+        assertEquals(1, getValue(config, "idle"));
+
+        config.printJobDone();
+        assertNull(getGauge(config, "idle"));
+    }
+
+    @Test
+    public void testGaugesOfTheApps() throws Exception {
+        // the directories of both apps have the same name
+        final Configuration config1 = createConfig(new File("/apps1/app/config.yaml"));
+        final Configuration config2 = createConfig(new File("/apps2/app/config.yaml"));
+        try {
+            final Connection connection = config1.getJdbcConnection("main");
+            config2.getJdbcConnection("main").close();
+            assertEquals(1, getValue(config1, "active"));
+            assertEquals(0, getValue(config2, "active"));
+
+            config2.close();
+            assertNull(getGauge(config2, "active"));
+            assertEquals(1, getValue(config1, "active"));
+            connection.close();
+        } finally {
+            config1.close();
+            config2.close();
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        final File configFile = new File("/apps/app1/config.yaml");
+        final Configuration oldConfig = createConfig(configFile);
+        oldConfig.getJdbcConnection("main").close();
+        final Configuration newConfig = createConfig(configFile);
+        try {
+            newConfig.getJdbcConnection("main").close();
+
+            // closing the replaced configuration keeps the gauges of the new one
+            oldConfig.close();
+            assertEquals(1, getValue(newConfig, "idle"));
+        } finally {
+            newConfig.close();
+        }
+        assertNull(getGauge(newConfig, "idle"));
+    }
+
+    @Test
+    public void testValidateDoesNotCreatePool() throws Exception {
+        final Configuration config = createConfig(new File("/apps/app1/config.yaml"));
+        final Map<String, Template> templates = Maps.newHashMap(config.getTemplates());
+        final Template badTemplate = new Template();
+        badTemplate.setJdbcUrl("jdbc:nodriver:test");
+        templates.put("bad", badTemplate);
+        config.setTemplates(templates);
+
+        final int gauges = this.metricRegistry.getGauges().size();
+        assertFalse(config.validate().isEmpty());
+        assertEquals(gauges, this.metricRegistry.getGauges().size());
+        config.close();
+    }
+
+    private Configuration createConfig(final File configFile) {
+        final Configuration config = this.context.getBean(Configuration.class);
+        config.setConfigurationFile(configFile);
+        final Template template = new Template();
+        template.setJdbcUrl(JDBC_URL);
+        final Map<String, Template> templates = Maps.newHashMap();
+        templates.put("main", template);
+        config.setTemplates(templates);
+        return config;
+    }
+
+    private int getValue(final Configuration config, final String name) {
+        return getGauge(config, name).getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Gauge<Integer> getGauge(final Configuration config, final String name) {
+        return this.metricRegistry.getGauges().get(MetricRegistry.name(Configuration.class, "jdbc",
+                config.getDirectory().getAbsolutePath() + File.separator + "config.yaml", "main", name));
+    }
+}
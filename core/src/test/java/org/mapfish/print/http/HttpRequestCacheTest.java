@@ -0,0 +1,262 @@
+package org.mapfish.print.http;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import jsr166y.ForkJoinPool;
+import org.apache.commons.io.FileUtils;
+import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.collection.CollectionFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.map.GridReaderLayer;
+import org.geotools.styling.Style;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.attribute.map.MapfishMapContext;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.Template;
+import org.mapfish.print.map.AbstractLayerParams;
+import org.mapfish.print.map.geotools.FeatureLayer;
+import org.mapfish.print.map.geotools.FeatureSourceSupplier;
+import org.mapfish.print.map.geotools.GeotiffCache;
+import org.mapfish.print.map.geotools.GeotiffLayer;
+import org.mapfish.print.map.geotools.StyleSupplier;
+import org.mapfish.print.map.image.ImageLayer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the layers load their resources while the {@link HttpRequestCache} caches the http requests and
+ * that the resources loaded for a map that is not rendered are released.
+ */
+public class HttpRequestCacheTest extends AbstractMapfishSpringTest {
+    private static final URI GEOTIFF = URI.create("http://geotiff.test/1.tiff");
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+    @Autowired
+    private ImageLayer.ImageLayerPlugin imageLayerParser;
+
+    private File directory;
+    private ForkJoinPool requestForkJoinPool;
+    private HttpRequestCache cache;
+    private CountingRequestFactory requestFactory;
+    private MapfishMapContext mapContext;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDir();
+        this.requestForkJoinPool = new ForkJoinPool(2);
+        this.cache = new HttpRequestCache(this.directory, this.metricRegistry);
+        this.requestFactory = new CountingRequestFactory(
+                Files.toByteArray(getFile(HttpRequestCacheTest.class, "/map-data/zoomed-in-ny-tiger.tif")));
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+        this.mapContext = createTestMapContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.requestForkJoinPool.shutdownNow();
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void testFeatureSourceLoaded() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final FeatureLayer layer = new FeatureLayer(this.requestForkJoinPool, new FeatureSourceSupplier() {
+            @Nonnull
+            @Override
+            public FeatureSource load(@Nonnull final MfClientHttpRequestFactory requestFactory,
+                                      @Nonnull final MapfishMapContext mapContext) {
+                loads.incrementAndGet();
+                return new CollectionFeatureSource(new DefaultFeatureCollection());
+            }
+        }, null, false, new AbstractLayerParams());
+
+        layer.cacheResources(this.cache, this.requestFactory, this.mapContext);
+        assertEquals(0, loads.get());
+        this.cache.cache(this.requestForkJoinPool);
+        assertEquals(1, loads.get());
+
+        // the rendering uses the loaded feature source
+        final FeatureSource<?, ?> featureSource = layer.getFeatureSource(this.requestFactory, this.mapContext);
+        assertSame(featureSource, layer.getFeatureSource(this.requestFactory, this.mapContext));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testImageLoaded() throws Exception {
+        final Template template = new Template();
+        template.setConfiguration(new Configuration());
+        final ImageLayer.ImageParam param = new ImageLayer.ImageParam();
+        param.baseURL = "http://image.test/image.png";
+        param.extent = new double[] {-180, -90, 180, 90};
+        final ImageLayer layer = this.imageLayerParser.parse(template, param);
+
+        layer.cacheResources(this.cache, this.requestFactory, this.mapContext);
+        assertEquals(0, this.requestFactory.count);
+        this.cache.cache(this.requestForkJoinPool);
+        assertEquals(1, this.requestFactory.count);
+    }
+
+    @Test
+    public void testGridCoverageReaderLoaded() throws Exception {
+        final GeotiffCache geotiffCache = createGeotiffCache();
+        final ReaderSupplier readerSupplier = new ReaderSupplier(geotiffCache);
+        final StyleSupplier<AbstractGridCoverage2DReader> style = new StyleSupplier<AbstractGridCoverage2DReader>() {
+            @Override
+            public Style load(final MfClientHttpRequestFactory requestFactory,
+                              final AbstractGridCoverage2DReader featureSource) {
+                return CommonFactoryFinder.getStyleFactory().createStyle();
+            }
+        };
+        final GeotiffLayer layer = new GeotiffLayer(readerSupplier, style, this.requestForkJoinPool,
+                new AbstractLayerParams(), geotiffCache);
+
+        layer.cacheResources(this.cache, this.requestFactory, this.mapContext);
+        assertEquals(0, readerSupplier.loads);
+        this.cache.cache(this.requestForkJoinPool);
+        assertEquals(1, readerSupplier.loads);
+        assertEquals(1, this.requestFactory.count);
+
+        // the rendering uses the prefetched reader
+        final GridReaderLayer gridLayer =
+                (GridReaderLayer) layer.getLayers(this.requestFactory, this.mapContext).get(0);
+        assertSame(readerSupplier.reader, gridLayer.getReader());
+        assertEquals(1, readerSupplier.loads);
+        layer.releaseResources();
+        gridLayer.dispose();
+    }
+
+    @Test
+    public void testPrefetchedReaderReleasedWhenNotRendered() throws Exception {
+        final GeotiffCache geotiffCache = createGeotiffCache();
+        final ReaderSupplier readerSupplier = new ReaderSupplier(geotiffCache);
+        final GeotiffLayer layer = createFailingGeotiffLayer(geotiffCache, readerSupplier);
+
+        layer.cacheResources(this.cache, this.requestFactory, this.mapContext);
+        this.cache.cache(this.requestForkJoinPool);
+        // the rendering of another layer fails, this layer is not rendered
+        layer.releaseResources();
+
+        // the idle reader is given to the next print
+        final AbstractGridCoverage2DReader reader = geotiffCache.getReader(GEOTIFF, this.requestFactory);
+        assertSame(readerSupplier.reader, reader);
+        geotiffCache.release(reader);
+        assertEquals(1, this.requestFactory.count);
+    }
+
+    @Test
+    public void testPrefetchedReaderReleasedWhenRenderingFails() throws Exception {
+        final GeotiffCache geotiffCache = createGeotiffCache();
+        final ReaderSupplier readerSupplier = new ReaderSupplier(geotiffCache);
+        final GeotiffLayer layer = createFailingGeotiffLayer(geotiffCache, readerSupplier);
+
+        layer.cacheResources(this.cache, this.requestFactory, this.mapContext);
+        this.cache.cache(this.requestForkJoinPool);
+        try {
+            layer.getLayers(this.requestFactory, this.mapContext);
+            fail("The style is not loaded");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        layer.releaseResources();
+
+        final AbstractGridCoverage2DReader reader = geotiffCache.getReader(GEOTIFF, this.requestFactory);
+        assertSame(readerSupplier.reader, reader);
+        geotiffCache.release(reader);
+        assertEquals(1, readerSupplier.loads);
+        assertEquals(1, this.requestFactory.count);
+    }
+
+    private GeotiffCache createGeotiffCache() {
+        return createBean(GeotiffCache.class, ImmutableMap.of(
+                "directory", new File(this.directory, "geotiff"),
+                "maxSize", 100L * 1024 * 1024,
+                "maxLocalFiles", 16));
+    }
+
+    private GeotiffLayer createFailingGeotiffLayer(final GeotiffCache geotiffCache,
+                                                   final ReaderSupplier readerSupplier) {
+        return new GeotiffLayer(readerSupplier, new StyleSupplier<AbstractGridCoverage2DReader>() {
+            @Override
+            public Style load(final MfClientHttpRequestFactory requestFactory,
+                              final AbstractGridCoverage2DReader featureSource) {
+                throw new IllegalStateException("Style error");
+            }
+        }, this.requestForkJoinPool, new AbstractLayerParams(), geotiffCache);
+    }
+
+    private static class ReaderSupplier
+            implements Function<MfClientHttpRequestFactory, AbstractGridCoverage2DReader> {
+        private final GeotiffCache geotiffCache;
+        private volatile int loads = 0;
+        private volatile AbstractGridCoverage2DReader reader;
+
+        public ReaderSupplier(final GeotiffCache geotiffCache) {
+            this.geotiffCache = geotiffCache;
+        }
+
+        @Override
+        public AbstractGridCoverage2DReader apply(final MfClientHttpRequestFactory requestFactory) {
+            try {
+                this.reader = this.geotiffCache.getReader(GEOTIFF, requestFactory);
+                this.loads++;
+                return this.reader;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class CountingRequestFactory implements MfClientHttpRequestFactory {
+        private final HttpHeaders responseHeaders = new HttpHeaders();
+        private final byte[] content;
+        private int count = 0;
+
+        public CountingRequestFactory(final byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            return new MockClientHttpRequest(httpMethod, uri) {
+                @Override
+                protected ClientHttpResponse executeInternal() throws IOException {
+                    synchronized (CountingRequestFactory.this) {
+                        count++;
+                    }
+                    final MockClientHttpResponse response = new MockClientHttpResponse(content, HttpStatus.OK);
+                    response.getHeaders().putAll(responseHeaders);
+                    return response;
+                }
+            };
+        }
+
+        @Override
+        public void register(RequestConfigurator callback) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.mapfish.print.http;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PersistentHttpCacheTest extends AbstractMapfishSpringTest {
+    private static final byte[] BODY = "0123456789".getBytes();
+
+    private File directory;
+    private PersistentHttpCache cache;
+    private CountingRequestFactory requestFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDir();
+        this.cache = createBean(PersistentHttpCache.class, ImmutableMap.of(
+                "directory", new File(this.directory, "cache-" + System.nanoTime()),
+                "maxSize", 15));
+        this.requestFactory = new CountingRequestFactory();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void testFreshResponseIsCached() throws Exception {
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+
+        assertArrayEquals(BODY, load("http://tiles.test/1/2/3.png"));
+        assertArrayEquals(BODY, load("http://TILES.test:80/1/2/../2/3.png"));
+        assertEquals(1, this.requestFactory.count);
+    }
+
+    @Test
+    public void testNoStoreIsNotCached() throws Exception {
+        this.requestFactory.responseHeaders.setCacheControl("no-store, max-age=600");
+
+        assertArrayEquals(BODY, load("http://tiles.test/1/2/3.png"));
+        assertArrayEquals(BODY, load("http://tiles.test/1/2/3.png"));
+        assertEquals(2, this.requestFactory.count);
+    }
+
+    @Test
+    public void testRevalidate() throws Exception {
+        this.requestFactory.responseHeaders.setCacheControl("no-cache");
+        this.requestFactory.responseHeaders.setETag("\"abc\"");
+
+        assertArrayEquals(BODY, load("http://tiles.test/1/2/3.png"));
+        assertArrayEquals(BODY, load("http://tiles.test/1/2/3.png"));
+        assertEquals(2, this.requestFactory.count);
+        assertEquals(1, this.requestFactory.notModified);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+
+        load("http://tiles.test/1/2/3.png");
+        load("http://tiles.test/1/2/4.png");
+        load("http://tiles.test/1/2/4.png");
+        assertEquals(2, this.requestFactory.count);
+
+        // the first tile has been evicted because the cache can hold only one tile
+        load("http://tiles.test/1/2/3.png");
+        assertEquals(3, this.requestFactory.count);
+    }
+
+    @Test
+    public void testSharedExpires() throws Exception {
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+        final ClientHttpRequest request = this.requestFactory.createRequest(new URI("http://tiles.test/1.png"),
+                HttpMethod.GET);
+        assertNotNull(PersistentHttpCache.getSharedExpires(request, request.execute(), 0L));
+
+        this.requestFactory.responseHeaders.set("Vary", "Accept-Language, Accept-Encoding");
+        assertNotNull(PersistentHttpCache.getSharedExpires(request, request.execute(), 0L));
+        this.requestFactory.responseHeaders.set("Vary", "User-Agent");
+        assertNull(PersistentHttpCache.getSharedExpires(request, request.execute(), 0L));
+        this.requestFactory.responseHeaders.remove("Vary");
+
+        request.getHeaders().set("Cookie", "session=1");
+        assertNull(PersistentHttpCache.getSharedExpires(request, request.execute(), 0L));
+        final ClientHttpRequest other = this.requestFactory.createRequest(new URI("http://tiles.test/1.png"),
+                HttpMethod.GET);
+        assertFalse(PersistentHttpCache.createKey(request).equals(PersistentHttpCache.createKey(other)));
+    }
+
+    @Test
+    public void testRevalidateHelper() throws Exception {
+        final URI uri = new URI("http://tiles.test/1.png");
+        this.requestFactory.responseHeaders.setETag("\"abc\"");
+        final HttpHeaders stored = new HttpHeaders();
+        assertNull(PersistentHttpCache.revalidate(this.requestFactory, uri, stored));
+        assertEquals(0, this.requestFactory.count);
+
+        stored.setETag("\"abc\"");
+        assertNotNull(PersistentHttpCache.revalidate(this.requestFactory, uri, stored));
+        assertEquals(1, this.requestFactory.notModified);
+
+        stored.setETag("\"old\"");
+        assertNull(PersistentHttpCache.revalidate(this.requestFactory, uri, stored));
+        assertEquals(2, this.requestFactory.count);
+    }
+
+    private byte[] load(final String uri) throws Exception {
+        final MfClientHttpRequestFactory factory = this.cache.wrap(this.requestFactory);
+        final ClientHttpResponse response = factory.createRequest(new URI(uri), HttpMethod.GET).execute();
+        try {
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            return ByteStreams.toByteArray(response.getBody());
+        } finally {
+            response.close();
+        }
+    }
+
+    private static class CountingRequestFactory implements MfClientHttpRequestFactory {
+        private final HttpHeaders responseHeaders = new HttpHeaders();
+        private int count = 0;
+        private int notModified = 0;
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            return new MockClientHttpRequest(httpMethod, uri) {
+                @Override
+                protected ClientHttpResponse executeInternal() throws IOException {
+                    count++;
+                    final String etag = responseHeaders.getETag();
+                    final MockClientHttpResponse response;
+                    if (etag != null && getHeaders().getIfNoneMatch().contains(etag)) {
+                        notModified++;
+                        response = new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+                    } else {
+                        response = new MockClientHttpResponse(BODY, HttpStatus.OK);
+                    }
+                    response.getHeaders().putAll(responseHeaders);
+                    return response;
+                }
+            };
+        }
+
+        @Override
+        public void register(RequestConfigurator callback) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+}
@@ -3,7 +3,11 @@ package org.mapfish.print.map.geotools;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultEngineeringCRS;
 import org.json.JSONObject;
@@ -15,6 +19,8 @@ import org.mapfish.print.config.Configuration;
 import org.mapfish.print.config.ConfigurationFactory;
 import org.mapfish.print.http.ConfigFileResolvingHttpRequestFactory;
 import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
@@ -32,6 +38,7 @@ import javax.annotation.Nullable;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 
 public class FeaturesParserTest extends AbstractMapfishSpringTest {
 
@@ -194,6 +201,39 @@ public class FeaturesParserTest extends AbstractMapfishSpringTest {
         assertEquals(0, simpleFeatureCollection.size());
     }
 
+    @Test
+    public void testTreatStringAsGeoJsonTypeInference() throws Exception {
+        FeaturesParser featuresParser = new FeaturesParser(requestFactory, false);
+
+        // the crs is after the features and the members are in any order
+        final String geojson = "{\"type\": \"FeatureCollection\", \"features\": ["
+                               + "{\"properties\": {\"name\": \"a\"}, \"type\": \"Feature\", \"id\": \"f1\","
+                               + " \"geometry\": {\"coordinates\": [1.5, 2], \"type\": \"Point\"}},"
+                               + "{\"type\": \"Feature\", \"properties\": {\"value\": 3},"
+                               + " \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[0, 0], [1, 1]]}},"
+                               + "{\"type\": \"Feature\", \"properties\": null, \"geometry\": null}"
+                               + "], \"crs\": {\"type\": \"EPSG\", \"properties\": {\"code\": \"4326\"}}}";
+        final SimpleFeatureCollection features = featuresParser.treatStringAsGeoJson(geojson);
+        assertEquals(3, features.size());
+
+        final SimpleFeatureType featureType = features.getSchema();
+        assertEquals(3, featureType.getAttributeCount());
+        assertEquals(Geometry.class, featureType.getGeometryDescriptor().getType().getBinding());
+        assertEquals("EPSG:4326", CRS.lookupIdentifier(featureType.getCoordinateReferenceSystem(), false));
+
+        final SimpleFeatureIterator iterator = features.features();
+        try {
+            final SimpleFeature first = iterator.next();
+            assertEquals("f1", first.getID());
+            assertEquals("a", first.getAttribute("name"));
+            assertEquals(new Coordinate(1.5, 2), ((Point) first.getDefaultGeometry()).getCoordinate());
+            assertEquals(3L, iterator.next().getAttribute("value"));
+            assertNull(iterator.next().getDefaultGeometry());
+        } finally {
+            iterator.close();
+        }
+    }
+
     private int getNumExpectedFeatures(File geojsonExample) {
         final Pattern numExpectedFilesPattern = Pattern.compile(".*-(\\d+)\\.json");
 
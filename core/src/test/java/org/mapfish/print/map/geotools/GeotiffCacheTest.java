@@ -0,0 +1,194 @@
+package org.mapfish.print.map.geotools;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class GeotiffCacheTest extends AbstractMapfishSpringTest {
+    private static final URI GEOTIFF1 = URI.create("http://geotiff.test/1.tiff");
+    private static final URI GEOTIFF2 = URI.create("http://geotiff.test/2.tiff");
+
+    private byte[] geotiff;
+    private File directory;
+    private File cacheDirectory;
+    private CountingRequestFactory requestFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.geotiff = Files.toByteArray(getFile(GeotiffCacheTest.class, "/map-data/zoomed-in-ny-tiger.tif"));
+        this.directory = Files.createTempDir();
+        this.cacheDirectory = new File(this.directory, "cache");
+        this.requestFactory = new CountingRequestFactory();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        final GeotiffCache cache = createCache(10 * this.geotiff.length, 16);
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(GEOTIFF1, this.requestFactory);
+        cache.release(reader);
+        final AbstractGridCoverage2DReader reader2 = cache.getReader(GEOTIFF1, this.requestFactory);
+        cache.release(reader2);
+
+        assertEquals(1, this.requestFactory.count);
+        // the idle reader is reused
+        assertSame(reader, reader2);
+        assertEquals(1, this.cacheDirectory.list().length);
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        final GeotiffCache cache = createCache(10 * this.geotiff.length, 16);
+        this.requestFactory.responseHeaders.setCacheControl("no-cache");
+        this.requestFactory.responseHeaders.setETag("\"abc\"");
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(GEOTIFF1, this.requestFactory);
+        cache.release(reader);
+        final AbstractGridCoverage2DReader reader2 = cache.getReader(GEOTIFF1, this.requestFactory);
+        cache.release(reader2);
+
+        assertEquals(2, this.requestFactory.count);
+        assertEquals(1, this.requestFactory.notModified);
+        assertSame(reader, reader2);
+        assertEquals(1, this.cacheDirectory.list().length);
+    }
+
+    @Test
+    public void testEvictionWhileBorrowed() throws Exception {
+        // only one GeoTIFF fits in the cache
+        final GeotiffCache cache = createCache(this.geotiff.length, 16);
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(GEOTIFF1, this.requestFactory);
+        final AbstractGridCoverage2DReader reader2 = cache.getReader(GEOTIFF2, this.requestFactory);
+        // the first GeoTIFF is evicted but still read by its layer
+        assertEquals(2, this.cacheDirectory.list().length);
+
+        cache.release(reader);
+        assertEquals(1, this.cacheDirectory.list().length);
+        cache.release(reader2);
+        assertEquals(1, this.cacheDirectory.list().length);
+
+        cache.release(cache.getReader(GEOTIFF1, this.requestFactory));
+        assertEquals(3, this.requestFactory.count);
+    }
+
+    @Test
+    public void testCredentialsNotKept() throws Exception {
+        final GeotiffCache cache = createCache(10 * this.geotiff.length, 16);
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+        this.requestFactory.requestHeaders.set("Cookie", "session=1");
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(GEOTIFF1, this.requestFactory);
+        assertEquals(1, this.cacheDirectory.list().length);
+        cache.release(reader);
+        assertEquals(0, this.cacheDirectory.list().length);
+
+        cache.release(cache.getReader(GEOTIFF1, this.requestFactory));
+        assertEquals(2, this.requestFactory.count);
+    }
+
+    @Test
+    public void testNotKeptWithoutSize() throws Exception {
+        final GeotiffCache cache = createCache(0, 16);
+        this.requestFactory.responseHeaders.setCacheControl("max-age=600");
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(GEOTIFF1, this.requestFactory);
+        assertEquals(1, this.cacheDirectory.list().length);
+        cache.release(reader);
+        assertEquals(0, this.cacheDirectory.list().length);
+
+        cache.release(cache.getReader(GEOTIFF1, this.requestFactory));
+        assertEquals(2, this.requestFactory.count);
+    }
+
+    @Test
+    public void testLocalFilesBounded() throws Exception {
+        final GeotiffCache cache = createCache(0, 1);
+        final File file1 = new File(this.directory, "1.tiff");
+        final File file2 = new File(this.directory, "2.tiff");
+        Files.write(this.geotiff, file1);
+        Files.write(this.geotiff, file2);
+
+        final AbstractGridCoverage2DReader reader = cache.getReader(file1.toURI(), this.requestFactory);
+        cache.release(reader);
+        final AbstractGridCoverage2DReader reader2 = cache.getReader(file1.toURI(), this.requestFactory);
+        cache.release(reader2);
+        assertSame(reader, reader2);
+
+        // the readers of the first file are disposed when the second file is used
+        cache.release(cache.getReader(file2.toURI(), this.requestFactory));
+        final AbstractGridCoverage2DReader reader3 = cache.getReader(file1.toURI(), this.requestFactory);
+        cache.release(reader3);
+        assertNotSame(reader, reader3);
+        assertEquals(0, this.requestFactory.count);
+    }
+
+    private GeotiffCache createCache(final long maxSize, final int maxLocalFiles) {
+        return createBean(GeotiffCache.class, ImmutableMap.of(
+                "directory", this.cacheDirectory,
+                "maxSize", maxSize,
+                "maxLocalFiles", maxLocalFiles));
+    }
+
+    private class CountingRequestFactory implements MfClientHttpRequestFactory {
+        private final HttpHeaders requestHeaders = new HttpHeaders();
+        private final HttpHeaders responseHeaders = new HttpHeaders();
+        private int count = 0;
+        private int notModified = 0;
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            final MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri) {
+                @Override
+                protected ClientHttpResponse executeInternal() throws IOException {
+                    count++;
+                    final String etag = responseHeaders.getETag();
+                    final MockClientHttpResponse response;
+                    if (etag != null && getHeaders().getIfNoneMatch().contains(etag)) {
+                        notModified++;
+                        response = new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+                    } else {
+                        response = new MockClientHttpResponse(geotiff, HttpStatus.OK);
+                    }
+                    response.getHeaders().putAll(responseHeaders);
+                    return response;
+                }
+            };
+            request.getHeaders().putAll(this.requestHeaders);
+            return request;
+        }
+
+        @Override
+        public void register(RequestConfigurator callback) {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+}
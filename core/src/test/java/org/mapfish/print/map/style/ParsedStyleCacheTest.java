@@ -0,0 +1,188 @@
+package org.mapfish.print.map.style;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.geotools.styling.Style;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.config.Configuration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParsedStyleCacheTest extends AbstractMapfishSpringTest {
+    private static final String STYLE_URL = "http://styles.test/style.sld";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private StyleParser styleParser;
+
+    private Configuration configuration;
+    private StyleRequestFactory requestFactory;
+    private ParsedStyleCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        this.configuration = new Configuration();
+        this.configuration.setConfigurationFile(this.folder.newFile("config.yaml"));
+        this.requestFactory = new StyleRequestFactory(this.configuration.getDirectory());
+        this.cache = new ParsedStyleCache();
+    }
+
+    @Test
+    public void testFileChanged() throws Exception {
+        final File file = new File(this.configuration.getDirectory(), "style.sld");
+        Files.write(createSld("#ff00ff", "#ffffff"), file, Charsets.UTF_8);
+
+        assertEquals(2, getRuleCount(loadStyle("style.sld")));
+        final int requests = this.requestFactory.requests.size();
+        assertEquals(2, getRuleCount(loadStyle("style.sld")));
+        assertEquals(requests, this.requestFactory.requests.size());
+
+        Files.write(createSld("#ff00ff"), file, Charsets.UTF_8);
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+        assertEquals(1, getRuleCount(loadStyle("style.sld")));
+    }
+
+    @Test
+    public void testHttpFresh() throws Exception {
+        this.requestFactory.cacheControl = "max-age=600";
+
+        assertEquals(2, getRuleCount(loadStyle(STYLE_URL)));
+        final int requests = this.requestFactory.requests.size();
+        assertEquals(2, getRuleCount(loadStyle(STYLE_URL)));
+        assertEquals(requests, this.requestFactory.requests.size());
+    }
+
+    @Test
+    public void testHttpStale() throws Exception {
+        this.requestFactory.cacheControl = "no-cache";
+
+        assertEquals(2, getRuleCount(loadStyle(STYLE_URL)));
+        final int requests = this.requestFactory.requests.size();
+        assertEquals(2, getRuleCount(loadStyle(STYLE_URL)));
+        final List<MockClientHttpRequest> revalidations =
+                this.requestFactory.requests.subList(requests, this.requestFactory.requests.size());
+        assertFalse(revalidations.isEmpty());
+        for (MockClientHttpRequest request : revalidations) {
+            // only conditional requests, the style is not parsed again
+            assertEquals("\"v1\"", request.getHeaders().getFirst("If-None-Match"));
+        }
+    }
+
+    @Test
+    public void testHttpNoStore() throws Exception {
+        this.requestFactory.cacheControl = "no-store";
+
+        loadStyle(STYLE_URL);
+        final int requests = this.requestFactory.requests.size();
+        loadStyle(STYLE_URL);
+        final List<MockClientHttpRequest> reloads =
+                this.requestFactory.requests.subList(requests, this.requestFactory.requests.size());
+        assertFalse(reloads.isEmpty());
+        for (MockClientHttpRequest request : reloads) {
+            assertEquals(null, request.getHeaders().getFirst("If-None-Match"));
+        }
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        this.requestFactory.cacheControl = "max-age=600";
+
+        final Style style = loadStyle(STYLE_URL);
+        style.featureTypeStyles().clear();
+        assertEquals(2, getRuleCount(loadStyle(STYLE_URL)));
+    }
+
+    private Style loadStyle(final String styleRef) {
+        final Optional<? extends Style> style = this.cache.loadStyle(this.styleParser, this.configuration,
+                this.requestFactory, styleRef);
+        assertTrue(style.isPresent());
+        return style.get();
+    }
+
+    private static int getRuleCount(final Style style) {
+        return style.featureTypeStyles().get(0).rules().size();
+    }
+
+    private static String createSld(final String... colors) {
+        final StringBuilder sld = new StringBuilder("<StyledLayerDescriptor version=\"0.7.2\"><NamedLayer>" +
+                                                    "<Name>layer</Name><UserStyle><FeatureTypeStyle>");
+        for (String color : colors) {
+            sld.append("<Rule><LineSymbolizer><Stroke><CssParameter name=\"stroke\">").append(color).append(
+                    "</CssParameter></Stroke></LineSymbolizer></Rule>");
+        }
+        return sld.append("</FeatureTypeStyle></UserStyle></NamedLayer></StyledLayerDescriptor>").toString();
+    }
+
+    /**
+     * Serves the files of the configuration directory and an http style with an ETag.
+     */
+    private static final class StyleRequestFactory implements ClientHttpRequestFactory {
+        private final File directory;
+        private final List<MockClientHttpRequest> requests = Lists.newArrayList();
+        private String cacheControl;
+
+        private StyleRequestFactory(final File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) throws IOException {
+            final MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri) {
+                @Override
+                protected ClientHttpResponse executeInternal() throws IOException {
+                    return createResponse(this);
+                }
+            };
+            this.requests.add(request);
+            return request;
+        }
+
+        private ClientHttpResponse createResponse(final MockClientHttpRequest request) throws IOException {
+            final URI uri = request.getURI();
+            if (uri.getScheme() == null || uri.getScheme().equals("file")) {
+                final File file = uri.getScheme() == null ? new File(this.directory, uri.getPath()) : new File(uri);
+                if (!file.isFile()) {
+                    throw new FileNotFoundException(file.toString());
+                }
+                return new MockClientHttpResponse(Files.toByteArray(file), HttpStatus.OK);
+            }
+            if (!uri.toString().equals(STYLE_URL)) {
+                return new MockClientHttpResponse(new byte[0], HttpStatus.NOT_FOUND);
+            }
+            final MockClientHttpResponse response;
+            if ("\"v1\"".equals(request.getHeaders().getFirst("If-None-Match"))) {
+                response = new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+            } else {
+                response = new MockClientHttpResponse(createSld("#ff00ff", "#ffffff").getBytes(Charsets.UTF_8),
+                        HttpStatus.OK);
+            }
+            response.getHeaders().setCacheControl(this.cacheControl);
+            response.getHeaders().setETag("\"v1\"");
+            return response;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.mapfish.print.map.tiled;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import jsr166y.ForkJoinPool;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.junit.After;
+import org.junit.Test;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.http.MfClientHttpRequestFactory;
+import org.mapfish.print.map.tiled.TilePreparationInfo.SingleTilePreparationInfo;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoverageTaskTest {
+    private static final int TILE_SIZE = 10;
+    private static final String COMMON_URL = "http://tiles.test/layer";
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ForkJoinPool requestForkJoinPool;
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        if (this.requestForkJoinPool != null) {
+            this.requestForkJoinPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTilesDrawnWhenLoaded() throws Exception {
+        this.requestForkJoinPool = new ForkJoinPool(4);
+        final Color[][] colors = {{Color.RED, Color.GREEN}, {Color.BLUE, Color.YELLOW}};
+        final List<SingleTilePreparationInfo> tiles = Lists.newArrayList();
+        for (int x = 0; x < 2; x++) {
+            for (int y = 0; y < 2; y++) {
+                // the first tile is the last one loaded
+                final TileRequest request = new TileRequest(x, y, createResponse(colors[x][y]));
+                request.delay = x == 0 && y == 0 ? 200 : 0;
+                tiles.add(new SingleTilePreparationInfo(x, y, request));
+            }
+        }
+
+        final GridCoverage2D coverage = createTask(tiles, true).call();
+
+        final RenderedImage image = coverage.getRenderedImage();
+        final BufferedImage coverageImage = new BufferedImage(2 * TILE_SIZE, 2 * TILE_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = coverageImage.createGraphics();
+        try {
+            graphics.drawRenderedImage(image, null);
+        } finally {
+            graphics.dispose();
+        }
+        for (int x = 0; x < 2; x++) {
+            for (int y = 0; y < 2; y++) {
+                assertEquals(colors[x][y].getRGB(),
+                        coverageImage.getRGB(x * TILE_SIZE + TILE_SIZE / 2, y * TILE_SIZE + TILE_SIZE / 2));
+            }
+        }
+        // the decoding time is measured per layer
+        assertEquals(4, this.registry.timer(CoverageTask.class.getName() + ".decode." + COMMON_URL).getCount());
+    }
+
+    @Test
+    public void testRemainingTilesCancelledOnError() throws Exception {
+        // with one thread the tiles are loaded in the order they are submitted
+        this.requestForkJoinPool = new ForkJoinPool(1);
+        final List<TileRequest> requests = Lists.newArrayList(
+                new TileRequest(0, 0, new MockClientHttpResponse(new byte[0], HttpStatus.INTERNAL_SERVER_ERROR)),
+                new TileRequest(1, 0, createResponse(Color.RED)),
+                new TileRequest(0, 1, createResponse(Color.RED)),
+                new TileRequest(1, 1, createResponse(Color.RED)));
+        // the second tile, if it is started, is still loading when the first one fails
+        requests.get(1).blocked = true;
+        final List<SingleTilePreparationInfo> tiles = Lists.newArrayList();
+        for (TileRequest request : requests) {
+            tiles.add(new SingleTilePreparationInfo(request.x, request.y, request));
+        }
+
+        try {
+            createTask(tiles, true).call();
+            fail("The error of the first tile should be thrown");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        this.release.countDown();
+        this.requestForkJoinPool.shutdown();
+        assertTrue(this.requestForkJoinPool.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(requests.get(0).isExecuted());
+        assertFalse(requests.get(2).isExecuted());
+        assertFalse(requests.get(3).isExecuted());
+    }
+
+    private CoverageTask createTask(final List<SingleTilePreparationInfo> tiles, final boolean failOnError)
+            throws Exception {
+        final TilePreparationInfo tilePreparationInfo = new TilePreparationInfo(tiles, 2 * TILE_SIZE,
+                2 * TILE_SIZE, new Coordinate(0, 0), 2 * TILE_SIZE, 2 * TILE_SIZE, CRS.decode("EPSG:3857"));
+        return new CoverageTask(tilePreparationInfo, failOnError, this.registry, this.requestForkJoinPool,
+                new TestTileCacheInformation(), null, new Configuration());
+    }
+
+    private static MockClientHttpResponse createResponse(final Color color) throws IOException {
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(color);
+            graphics.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        } finally {
+            graphics.dispose();
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return new MockClientHttpResponse(bytes.toByteArray(), HttpStatus.OK);
+    }
+
+    /**
+     * A tile request that can be delayed or blocked until the end of the test.
+     */
+    private final class TileRequest extends MockClientHttpRequest {
+        private final int x;
+        private final int y;
+        private volatile long delay = 0;
+        private volatile boolean blocked = false;
+
+        private TileRequest(final int x, final int y, final ClientHttpResponse response) {
+            super(HttpMethod.GET, URI.create(COMMON_URL + "/" + x + "/" + y + ".png"));
+            this.x = x;
+            this.y = y;
+            setResponse(response);
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal() throws IOException {
+            try {
+                Thread.sleep(this.delay);
+                if (this.blocked) {
+                    CoverageTaskTest.this.release.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return super.executeInternal();
+        }
+    }
+
+    private static final class TestTileCacheInformation extends TileCacheInformation {
+        private TestTileCacheInformation() {
+            super(null, new Rectangle(2 * TILE_SIZE, 2 * TILE_SIZE), 72, null);
+        }
+
+        @Override
+        public ClientHttpRequest getTileRequest(final MfClientHttpRequestFactory httpRequestFactory,
+                                                final String commonUrl, final ReferencedEnvelope tileBounds,
+                                                final Dimension tileSizeOnScreen, final int column, final int row) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public double getResolution() {
+            return 1;
+        }
+
+        @Override
+        public Double getLayerDpi() {
+            return 72.0;
+        }
+
+        @Override
+        public Dimension getTileSize() {
+            return new Dimension(TILE_SIZE, TILE_SIZE);
+        }
+
+        @Override
+        protected ReferencedEnvelope getTileCacheBounds() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected String createCommonUrl() {
+            return COMMON_URL;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.mapfish.print.map.tiled;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TileCacheTest extends AbstractMapfishSpringTest {
+    @Test
+    public void testDecodedTiles() throws Exception {
+        // 256x256 ARGB tiles take 256KB, the cache can hold about 40 of them
+        final TileCache cache = createCache(10 * 1024 * 1024);
+        final ClientHttpRequest request = createRequest("http://tiles.test/0/0/0.png");
+        final BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+
+        assertFalse(cache.hasDecodedTile(request));
+        assertNull(cache.getDecodedTile(request));
+
+        cache.putDecodedTile(request, createResponse("max-age=600"), image);
+        assertTrue(cache.hasDecodedTile(request));
+        assertSame(image, cache.getDecodedTile(createRequest("http://TILES.test:80/0/0/0.png")));
+
+        final List<ClientHttpRequest> requests = Lists.newArrayList();
+        for (int i = 0; i < 60; i++) {
+            requests.add(createRequest("http://tiles.test/1/2/" + i + ".png"));
+            cache.putDecodedTile(requests.get(i), createResponse("max-age=600"),
+                    new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        }
+        int count = 0;
+        for (ClientHttpRequest tileRequest : requests) {
+            if (cache.hasDecodedTile(tileRequest)) {
+                count++;
+            }
+        }
+        assertTrue("" + count, count > 0 && count <= 40);
+    }
+
+    @Test
+    public void testNotShared() throws Exception {
+        final TileCache cache = createCache(10 * 1024 * 1024);
+        final BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+
+        final ClientHttpRequest withCredentials = createRequest("http://tiles.test/1/2/3.png");
+        withCredentials.getHeaders().set("Authorization", "Basic dXNlcjpwYXNz");
+        cache.putDecodedTile(withCredentials, createResponse("max-age=600"), image);
+        assertFalse(cache.hasDecodedTile(withCredentials));
+        assertFalse(cache.hasDecodedTile(createRequest("http://tiles.test/1/2/3.png")));
+
+        final ClientHttpRequest request = createRequest("http://tiles.test/1/2/4.png");
+        cache.putDecodedTile(request, createResponse("no-store, max-age=600"), image);
+        assertFalse(cache.hasDecodedTile(request));
+        cache.putDecodedTile(request, createResponse("private, max-age=600"), image);
+        assertFalse(cache.hasDecodedTile(request));
+        cache.putDecodedTile(request, createResponse("max-age=0"), image);
+        assertFalse(cache.hasDecodedTile(request));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final TileCache cache = createCache(0);
+        final ClientHttpRequest request = createRequest("http://tiles.test/1/2/3.png");
+
+        cache.putDecodedTile(request, createResponse("max-age=600"),
+                new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        assertFalse(cache.hasDecodedTile(request));
+        assertNull(cache.getDecodedTile(request));
+    }
+
+    private static ClientHttpRequest createRequest(final String uri) throws Exception {
+        return new MockClientHttpRequest(HttpMethod.GET, new URI(uri));
+    }
+
+    private static MockClientHttpResponse createResponse(final String cacheControl) {
+        final MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        response.getHeaders().setCacheControl(cacheControl);
+        return response;
+    }
+
+    private TileCache createCache(final long maxDecodedSize) {
+        return createBean(TileCache.class, ImmutableMap.of("maxDecodedSize", maxDecodedSize));
+    }
+}
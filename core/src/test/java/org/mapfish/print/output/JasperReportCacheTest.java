@@ -0,0 +1,58 @@
+package org.mapfish.print.output;
+
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.ConfigurationFactory;
+import org.mapfish.print.output.JasperReportCache.Declarations;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.awt.Image;
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JasperReportCacheTest extends AbstractMapfishSpringTest {
+    private static final String BASE_DIR = "../processor/jasper/legend/";
+
+    @Autowired
+    private ConfigurationFactory configurationFactory;
+
+    @Test
+    public void testDeclarations() throws Exception {
+        final Configuration config = this.configurationFactory.getConfig(getFile(BASE_DIR + "config.yaml"));
+        final File buildFile = File.createTempFile("legend", ".jasper", getTaskDirectory());
+        final JasperReportCache cache = new JasperReportCache();
+
+        final Declarations declarations = cache.getDeclarations(config, "legend.jrxml", buildFile);
+        assertEquals(3, declarations.getFields().size());
+        assertEquals(Image.class, declarations.getFields().get("icon"));
+        assertEquals(Integer.class, declarations.getFields().get("level"));
+        assertSame(declarations, cache.getDeclarations(config, "legend.jrxml", buildFile));
+
+        // the template is parsed again when the report is rebuilt
+        assertTrue(buildFile.setLastModified(buildFile.lastModified() - 10000));
+        assertNotSame(declarations, cache.getDeclarations(config, "legend.jrxml", buildFile));
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        final File buildFile = File.createTempFile("legend", ".jasper", getTaskDirectory());
+        JasperCompileManager.compileReportToFile(getFile(BASE_DIR + "legend.jrxml").getAbsolutePath(),
+                buildFile.getAbsolutePath());
+        final JasperReportCache cache = new JasperReportCache();
+
+        final JasperReport report = cache.getReport(buildFile);
+        assertEquals(3, report.getFields().length);
+        assertSame(report, cache.getReport(buildFile));
+
+        // the report is loaded again when it is rebuilt
+        assertTrue(buildFile.setLastModified(buildFile.lastModified() - 10000));
+        assertNotSame(report, cache.getReport(buildFile));
+    }
+}
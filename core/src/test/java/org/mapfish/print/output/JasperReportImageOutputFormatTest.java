@@ -0,0 +1,146 @@
+package org.mapfish.print.output;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.base.JRBasePrintPage;
+import net.sf.jasperreports.engine.base.JRBasePrintRectangle;
+import net.sf.jasperreports.engine.type.ModeEnum;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JasperReportImageOutputFormatTest extends AbstractMapfishSpringTest {
+    private static final int PAGE_WIDTH = 100;
+    private static final int PAGE_HEIGHT = 50;
+    private static final Color[] PAGE_COLORS = {Color.RED, Color.GREEN, Color.BLUE};
+
+    @Autowired
+    private Map<String, OutputFormat> outputFormat;
+
+    @Test
+    public void testStitched() throws Exception {
+        final JasperReportImageOutputFormat format = getFormat("pngOutputFormat");
+        assertEquals("image/png", format.getContentType());
+        assertEquals("png", format.getFileSuffix());
+
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(export(format)));
+        assertEquals(PAGE_WIDTH, image.getWidth());
+        assertEquals(PAGE_COLORS.length * PAGE_HEIGHT + PAGE_COLORS.length - 1, image.getHeight());
+        for (int i = 0; i < PAGE_COLORS.length; i++) {
+            assertPage(i, image.getSubimage(0, i * (PAGE_HEIGHT + 1), PAGE_WIDTH, PAGE_HEIGHT));
+        }
+    }
+
+    @Test
+    public void testZip() throws Exception {
+        final JasperReportImageOutputFormat format = getFormat("zipOutputFormat");
+        assertEquals("application/zip", format.getContentType());
+        assertEquals("zip", format.getFileSuffix());
+
+        assertZipPages(export(format));
+    }
+
+    @Test
+    public void testMultiPage() throws Exception {
+        final JasperReportImageOutputFormat format = getFormat("multitiffOutputFormat");
+        assertEquals("image/tiff", format.getContentType());
+        assertEquals("tiff", format.getFileSuffix());
+
+        final ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(export(format)));
+        try {
+            final ImageReader reader = ImageIO.getImageReaders(input).next();
+            try {
+                reader.setInput(input);
+                assertEquals(PAGE_COLORS.length, reader.getNumImages(true));
+                for (int i = 0; i < PAGE_COLORS.length; i++) {
+                    assertPage(i, reader.read(i));
+                }
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void testMemoryBudgetSmallerThanPage() throws Exception {
+        final JasperReportImageOutputFormat format = getFormat("zipOutputFormat");
+        format.setMemoryBudget(1);
+
+        assertZipPages(export(format));
+    }
+
+    private JasperReportImageOutputFormat getFormat(final String name) {
+        return (JasperReportImageOutputFormat) this.outputFormat.get(name);
+    }
+
+    private void assertZipPages(final byte[] zip) throws Exception {
+        final ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zip));
+        try {
+            final List<String> names = new ArrayList<String>();
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertPage(names.size() - 1, ImageIO.read(input));
+            }
+            final List<String> expectedNames = new ArrayList<String>();
+            for (int i = 1; i <= PAGE_COLORS.length; i++) {
+                expectedNames.add("page-" + i + ".png");
+            }
+            assertEquals(expectedNames, names);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void assertPage(final int pageIndex, final BufferedImage page) {
+        assertEquals(PAGE_WIDTH, page.getWidth());
+        assertEquals(PAGE_HEIGHT, page.getHeight());
+        assertEquals(PAGE_COLORS[pageIndex].getRGB(), page.getRGB(PAGE_WIDTH / 2, PAGE_HEIGHT / 2));
+    }
+
+    /**
+     * Export a report with one page of each of the {@link #PAGE_COLORS}, at 72 DPI one pixel is one point.
+     */
+    private static byte[] export(final JasperReportImageOutputFormat format) throws Exception {
+        final JasperPrint jasperPrint = new JasperPrint();
+        jasperPrint.setPageWidth(PAGE_WIDTH);
+        jasperPrint.setPageHeight(PAGE_HEIGHT);
+        for (Color color : PAGE_COLORS) {
+            final JRBasePrintRectangle rectangle = new JRBasePrintRectangle(jasperPrint.getDefaultStyleProvider());
+            rectangle.setWidth(PAGE_WIDTH);
+            rectangle.setHeight(PAGE_HEIGHT);
+            rectangle.setMode(ModeEnum.OPAQUE);
+            rectangle.setBackcolor(color);
+            rectangle.setForecolor(color);
+            final JRBasePrintPage page = new JRBasePrintPage();
+            page.addElement(rectangle);
+            jasperPrint.addPage(page);
+        }
+
+        final AbstractJasperReportOutputFormat.Print print = new AbstractJasperReportOutputFormat.Print(
+                DefaultJasperReportsContext.getInstance(), jasperPrint, new Values(), Constants.PDF_DPI);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        format.doExport(outputStream, print);
+        assertTrue(outputStream.size() > 0);
+        return outputStream.toByteArray();
+    }
+}
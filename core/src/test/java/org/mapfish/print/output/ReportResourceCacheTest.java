@@ -0,0 +1,192 @@
+package org.mapfish.print.output;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReportResourceCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFile() throws Exception {
+        final File file = this.folder.newFile("logo.png");
+        Files.write("first", file, Charsets.UTF_8);
+        final CountingRequestFactory requestFactory = new CountingRequestFactory(null);
+        final ReportResourceCache cache = createCache(1024 * 1024);
+
+        assertEquals("first", read(cache.getInputStream(file.toURI(), file, requestFactory)));
+        assertEquals("first", read(cache.getInputStream(file.toURI(), file, requestFactory)));
+        assertEquals(1, requestFactory.getExecuted().size());
+
+        Files.write("second", file, Charsets.UTF_8);
+        assertEquals(true, file.setLastModified(file.lastModified() + 10000));
+        assertEquals("second", read(cache.getInputStream(file.toURI(), file, requestFactory)));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testHttpFresh() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("max-age=3600");
+        final ReportResourceCache cache = createCache(1024 * 1024);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        read(cache.getInputStream(uri, null, requestFactory));
+        read(cache.getInputStream(uri, null, requestFactory));
+        assertEquals(1, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testHttpRevalidated() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("no-cache");
+        final ReportResourceCache cache = createCache(1024 * 1024);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        read(cache.getInputStream(uri, null, requestFactory));
+        requestFactory.status = HttpStatus.NOT_MODIFIED;
+        assertEquals("content", read(cache.getInputStream(uri, null, requestFactory)));
+        assertEquals(2, requestFactory.getExecuted().size());
+        assertEquals("\"v1\"", requestFactory.getExecuted().get(1).getHeaders().getFirst("If-None-Match"));
+    }
+
+    @Test
+    public void testHttpNotStored() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("no-store");
+        final ReportResourceCache cache = createCache(1024 * 1024);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        final InputStream stream = cache.getInputStream(uri, null, requestFactory);
+        // the resource that is not kept is streamed from the response
+        assertTrue(stream instanceof ResponseClosingStream);
+        assertEquals("content", read(stream));
+        read(cache.getInputStream(uri, null, requestFactory));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testLargeHttpStreamed() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("max-age=3600");
+        requestFactory.contentLength = 1024 * 1024;
+        final ReportResourceCache cache = createCache(1024 * 1024);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        // the content is larger than the part of the cache an entry may use
+        assertTrue(cache.getInputStream(uri, null, requestFactory) instanceof ResponseClosingStream);
+        read(cache.getInputStream(uri, null, requestFactory));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testLargeHttpWithoutLengthStreamed() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("max-age=3600");
+        final ReportResourceCache cache = createCache(16);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        // the first bytes are read before the resource is found to be too large
+        assertEquals("content", read(cache.getInputStream(uri, null, requestFactory)));
+        assertEquals("content", read(cache.getInputStream(uri, null, requestFactory)));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testHttpWithCredentialsNotStored() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("max-age=3600");
+        requestFactory.cookie = "session=1";
+        final ReportResourceCache cache = createCache(1024 * 1024);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        read(cache.getInputStream(uri, null, requestFactory));
+        read(cache.getInputStream(uri, null, requestFactory));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final CountingRequestFactory requestFactory = new CountingRequestFactory("max-age=3600");
+        final ReportResourceCache cache = createCache(0);
+        final URI uri = new URI("http://example.com/logo.png");
+
+        final InputStream stream = cache.getInputStream(uri, null, requestFactory);
+        assertTrue(stream instanceof ResponseClosingStream);
+        assertEquals("content", read(stream));
+        read(cache.getInputStream(uri, null, requestFactory));
+        assertEquals(2, requestFactory.getExecuted().size());
+    }
+
+    private static String read(final InputStream stream) throws IOException {
+        try {
+            return new String(ByteStreams.toByteArray(stream), Charsets.UTF_8);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static ReportResourceCache createCache(final long maxSize) {
+        final ReportResourceCache cache = new ReportResourceCache();
+        cache.setMaxSize(maxSize);
+        cache.init();
+        return cache;
+    }
+
+    private static final class CountingRequestFactory implements ClientHttpRequestFactory {
+        private final List<MockClientHttpRequest> requests = Lists.newArrayList();
+        private final String cacheControl;
+        private HttpStatus status = HttpStatus.OK;
+        private String cookie = null;
+        private long contentLength = -1;
+
+        private CountingRequestFactory(final String cacheControl) {
+            this.cacheControl = cacheControl;
+        }
+
+        private List<MockClientHttpRequest> getExecuted() {
+            final List<MockClientHttpRequest> executed = Lists.newArrayList();
+            for (MockClientHttpRequest request : this.requests) {
+                if (request.isExecuted()) {
+                    executed.add(request);
+                }
+            }
+            return executed;
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) throws IOException {
+            final byte[] body = uri.getScheme().equals("file") ?
+                    Files.toByteArray(new File(uri)) : "content".getBytes(Charsets.UTF_8);
+            final MockClientHttpResponse response = new MockClientHttpResponse(body, this.status);
+            if (this.contentLength >= 0) {
+                response.getHeaders().setContentLength(this.contentLength);
+            }
+            if (this.cacheControl != null) {
+                response.getHeaders().setCacheControl(this.cacheControl);
+                response.getHeaders().setETag("\"v1\"");
+            }
+            final MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+            if (this.cookie != null) {
+                request.getHeaders().set("Cookie", this.cookie);
+            }
+            request.setResponse(response);
+            this.requests.add(request);
+            return request;
+        }
+    }
+}
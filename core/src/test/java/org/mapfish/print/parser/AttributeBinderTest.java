@@ -0,0 +1,66 @@
+package org.mapfish.print.parser;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeBinderTest {
+
+    @Test
+    public void testAttributes() throws Exception {
+        final AttributeBinder binder = AttributeBinder.of(ChildParam.class);
+        assertSame(binder, AttributeBinder.of(ChildParam.class));
+
+        assertEquals(ParserUtils.getAllAttributes(ChildParam.class).size(), binder.getAttributes().size());
+        assertEquals(ParserUtils.getAllAttributeNames(ChildParam.class), binder.getAttributeNames());
+        assertEquals(ParserUtils.getAttributes(ChildParam.class, ParserUtils.FILTER_NON_FINAL_FIELDS).size(),
+                binder.getMutableAttributes().size());
+        assertFalse(binder.getMutableAttributes().contains(ChildParam.class.getField("constant")));
+
+        final Field required = ChildParam.class.getField("required");
+        final Field optional = ChildParam.class.getField("optional");
+        final Field choice = ChildParam.class.getField("choice");
+        assertFalse(binder.isOptional(required));
+        assertFalse(binder.hasDefaultValue(required));
+        assertTrue(binder.isOptional(optional));
+        assertTrue(binder.hasDefaultValue(optional));
+        assertTrue(binder.isOptional(choice));
+        assertFalse(binder.hasDefaultValue(choice));
+        assertEquals(1, binder.getOneOfAttributes().size());
+        assertEquals(1, binder.getRequiresAttributes().size());
+
+        assertTrue(binder.isAcceptedName("REQUIRED"));
+        assertFalse(binder.isAcceptedName("constant"));
+        assertFalse(binder.isAcceptedName("other"));
+    }
+
+    @Test
+    public void testPostConstruct() throws Exception {
+        assertNotNull(AttributeBinder.of(ChildParam.class).getPostConstructMethod());
+        assertNull(AttributeBinder.of(Object.class).getPostConstructMethod());
+    }
+
+    public static class ParentParam {
+        public String required;
+        @HasDefaultValue
+        @Requires("required")
+        public String optional;
+        public final String constant = "constant";
+
+        public void postConstruct() {
+            // nothing to do
+        }
+    }
+
+    public static class ChildParam extends ParentParam {
+        @OneOf("choice")
+        public int choice;
+    }
+}
@@ -0,0 +1,102 @@
+package org.mapfish.print.processor;
+
+import com.google.common.collect.Lists;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mapfish.print.output.Values;
+import org.mapfish.print.parser.HasDefaultValue;
+import org.mapfish.print.processor.ProcessorGraphNodeTest.DataTransferObject;
+import org.mapfish.print.processor.ProcessorGraphNodeTest.TestProcessor;
+
+import java.lang.reflect.Field;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertTrue;
+import static org.mapfish.print.parser.ParserUtils.getAllAttributes;
+
+/**
+ * Micro-benchmark of the population of the input object of a processor (6 attributes), it compares the inspection of
+ * the class and the computation of the value names for each call (the implementation before the attribute binder),
+ * the attribute binder with the value names computed for each call and the value names computed once per processor
+ * graph node.
+ * <p></p>
+ * Ignored in the build, run it manually.  Measured with a warm JIT: about 490 ns/op by inspection, 200 ns/op with
+ * the binder and 60 to 90 ns/op with the precomputed names.
+ */
+@Ignore("micro-benchmark, run manually")
+public class ProcessorUtilsBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    private final TestProcessor processor = new TestProcessor();
+    private final Values values = new Values();
+
+    @Test
+    public void testPopulateInputParameter() throws Exception {
+        this.processor.getInputMapperBiMap().put("integer", "i");
+        this.processor.getInputMapperBiMap().put("bool", "b");
+        this.values.put("integer", 1);
+        this.values.put("bool", true);
+        this.values.put("s", "sValue");
+        this.values.put("ls", Lists.newArrayList("one", "two"));
+        this.values.put("da", new double[] {1.2, 2.3});
+        final ProcessorUtils.ValueNames names =
+                ProcessorUtils.getInputValueNames(this.processor, DataTransferObject.class);
+
+        final double inspection = measure(new Runnable() {
+            @Override
+            public void run() {
+                populateByInspection(new DataTransferObject());
+            }
+        });
+        final double computedNames = measure(new Runnable() {
+            @Override
+            public void run() {
+                ProcessorUtils.populateInputParameter(ProcessorUtilsBenchmarkTest.this.processor,
+                        ProcessorUtilsBenchmarkTest.this.values);
+            }
+        });
+        final double precomputedNames = measure(new Runnable() {
+            @Override
+            public void run() {
+                ProcessorUtils.populateInputParameter(ProcessorUtilsBenchmarkTest.this.processor,
+                        new DataTransferObject(), names, ProcessorUtilsBenchmarkTest.this.values);
+            }
+        });
+
+        System.out.println(String.format("populateInputParameter: inspection %.1f ns/op, binder %.1f ns/op, " +
+                "binder and precomputed names %.1f ns/op", inspection, computedNames, precomputedNames));
+        assertTrue(precomputedNames < inspection);
+    }
+
+    private static double measure(final Runnable operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    /**
+     * The population of the input object before the attribute binder.
+     */
+    private void populateByInspection(final DataTransferObject inputObject) {
+        for (Field field : getAllAttributes(inputObject.getClass())) {
+            String name = ProcessorUtils.getInputValueName(this.processor.getOutputPrefix(),
+                    this.processor.getInputMapperBiMap(), field.getName());
+            Object value = this.values.getObject(name, Object.class);
+            if (value != null) {
+                try {
+                    field.set(inputObject, value);
+                } catch (IllegalAccessException e) {
+                    throw new AssertionError(e);
+                }
+            } else if (field.getAnnotation(HasDefaultValue.class) == null) {
+                throw new NoSuchElementException(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.mapfish.print.processor.http.matcher;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UriMatchersTest extends AbstractMapfishSpringTest {
+    private static final String DECISION_HIT = UriMatchers.class.getName() + ".decision.hit";
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Test
+    public void testDecisionCache() throws Exception {
+        final HostResolver hostResolver = createResolver(60);
+        final AddressHostMatcher matcher = new AddressHostMatcher();
+        matcher.setHostResolver(hostResolver);
+        matcher.setIp("127.0.0.1");
+        final UriMatchers uriMatchers = new UriMatchers();
+        uriMatchers.setMatchers(Arrays.asList(matcher));
+
+        final long hits = this.metricRegistry.counter(DECISION_HIT).getCount();
+        assertTrue(uriMatchers.matches(new URI("http://127.0.0.1:8080/tiles/1/2/3.png"), HttpMethod.GET));
+        assertTrue(uriMatchers.matches(new URI("http://127.0.0.1:8080/tiles/1/2/4.png"), HttpMethod.GET));
+        assertFalse(uriMatchers.matches(new URI("http://127.0.0.2:8080/tiles/1/2/4.png"), HttpMethod.GET));
+        assertEquals(hits + 1, this.metricRegistry.counter(DECISION_HIT).getCount());
+    }
+
+    @Test
+    public void testDecisionCacheWithPath() throws Exception {
+        final AddressHostMatcher matcher = new AddressHostMatcher();
+        matcher.setHostResolver(createResolver(60));
+        matcher.setIp("127.0.0.1");
+        matcher.setPathRegex("/print/.+");
+        final UriMatchers uriMatchers = new UriMatchers();
+        uriMatchers.setMatchers(Arrays.asList(matcher));
+
+        assertTrue(uriMatchers.matches(new URI("http://127.0.0.1:8080/print/a"), HttpMethod.GET));
+        assertFalse(uriMatchers.matches(new URI("http://127.0.0.1:8080/other/a"), HttpMethod.GET));
+        assertTrue(uriMatchers.matches(new URI("http://127.0.0.1:8080/print/a"), HttpMethod.GET));
+    }
+
+    private HostResolver createResolver(final long timeToLive) {
+        return createBean(HostResolver.class, ImmutableMap.of("timeToLive", timeToLive));
+    }
+}
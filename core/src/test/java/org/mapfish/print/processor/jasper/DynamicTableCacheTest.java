@@ -0,0 +1,88 @@
+package org.mapfish.print.processor.jasper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.WorkingDirectories;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DynamicTableCacheTest extends AbstractMapfishSpringTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private WorkingDirectories workingDirectories;
+
+    private Configuration configuration;
+    private File taskDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.configuration = new Configuration();
+        this.configuration.setConfigurationFile(new File(this.folder.newFolder(), "config.yaml"));
+        this.taskDirectory = this.folder.newFolder();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDeleted() throws Exception {
+        final DynamicTableCache cache = createCache(2);
+        final File first = compile(cache, "first");
+        final File second = compile(cache, "second");
+        assertEquals(first, cache.get(this.configuration, "first"));
+
+        final File third = compile(cache, "third");
+        assertFalse(second.exists());
+        assertNull(cache.get(this.configuration, "second"));
+        assertEquals(first, cache.get(this.configuration, "first"));
+        assertEquals(third, cache.get(this.configuration, "third"));
+    }
+
+    @Test
+    public void testPreviousFilesDeleted() throws Exception {
+        final File directory = new File(this.workingDirectories.getJasperCompilation(this.configuration),
+                "dynamic-tables");
+        assertTrue(directory.mkdirs());
+        final File previous = new File(directory, "table-previous" + JasperReportBuilder.JASPER_REPORT_COMPILED_FILE_EXT);
+        Files.write("previous", previous, Charsets.UTF_8);
+
+        final DynamicTableCache cache = createCache(2);
+        assertNull(cache.get(this.configuration, "previous"));
+        assertFalse(previous.exists());
+
+        final File buildFile = compile(cache, "first");
+        assertEquals(directory, buildFile.getParentFile());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final DynamicTableCache cache = createCache(0);
+        final File buildFile = compile(cache, "first");
+
+        assertEquals(this.taskDirectory, buildFile.getParentFile());
+        assertNull(cache.get(this.configuration, "first"));
+    }
+
+    private File compile(final DynamicTableCache cache, final String key) throws Exception {
+        final File buildFile = cache.getBuildFile(this.configuration, key, this.taskDirectory);
+        Files.write(key, buildFile, Charsets.UTF_8);
+        cache.put(this.configuration, key, buildFile);
+        return buildFile;
+    }
+
+    private DynamicTableCache createCache(final int maxFiles) {
+        return createBean(DynamicTableCache.class, ImmutableMap.of("maxFiles", maxFiles));
+    }
+}
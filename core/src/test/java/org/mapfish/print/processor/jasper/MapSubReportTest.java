@@ -2,6 +2,7 @@ package org.mapfish.print.processor.jasper;
 
 import com.google.common.collect.Lists;
 import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.Renderable;
 import net.sf.jasperreports.engine.design.JRDesignImage;
 import net.sf.jasperreports.engine.design.JasperDesign;
 import net.sf.jasperreports.engine.util.JRLoader;
@@ -45,13 +46,13 @@ public class MapSubReportTest {
         JRDesignImage image0 = (JRDesignImage) report.getNoData().getChildren().get(0);
         assertEquals(400, image0.getWidth());
         assertEquals(500, image0.getHeight());
-        assertEquals('"' + layer0Tiff.getPath().replace('\\', '/') + '"', image0.getExpression().getText());
+        assertEquals(ImagesSubReport.class.getName() + ".getGraphic($P{JASPER_REPORT}, 0)",
+                image0.getExpression().getText());
 
         JRDesignImage image3 = (JRDesignImage) report.getNoData().getChildren().get(3);
         assertEquals(400, image3.getWidth());
         assertEquals(500, image3.getHeight());
-        assertEquals("net.sf.jasperreports.renderers.BatikRenderer.getInstance(new java.io.File(\"" + layer3SVG.getPath().replace('\\',
-                        '/') + "\"))",
+        assertEquals(ImagesSubReport.class.getName() + ".getGraphic($P{JASPER_REPORT}, 3)",
                 image3.getExpression().getText());
 
         File compiledReportFile = folder.newFile();
@@ -60,6 +61,29 @@ public class MapSubReportTest {
         JasperReport jasperReport = (JasperReport) JRLoader.loadObject(compiledReportFile);
         assertEquals("report can be loaded from compiled file",
                 "map", jasperReport.getName());
+        assertEquals("72", jasperReport.getProperty(Renderable.PROPERTY_IMAGE_DPI));
+        assertEquals(layer0Tiff.getPath().replace('\\', '/'), ImagesSubReport.getGraphic(jasperReport, 0));
+        assertEquals(layer3SVG.getPath().replace('\\', '/'),
+                jasperReport.getProperty("org.mapfish.print.imagesSubReport.graphic.3"));
+    }
+
+    @Test
+    public void testCompiledReportReused() throws Exception {
+        File layer0 = new File("/tmp/mfp/4/layer_0.png").getAbsoluteFile();
+        File layer1 = new File("/tmp/mfp/5/layer_0.png").getAbsoluteFile();
+
+        File compiledReportFile0 = folder.newFile();
+        new ImagesSubReport(Lists.newArrayList(layer0.toURI()), new Dimension(300, 200), 72).compile(compiledReportFile0);
+        File compiledReportFile1 = folder.newFile();
+        new ImagesSubReport(Lists.newArrayList(layer1.toURI()), new Dimension(300, 200), 254).compile(compiledReportFile1);
+
+        JasperReport jasperReport0 = (JasperReport) JRLoader.loadObject(compiledReportFile0);
+        JasperReport jasperReport1 = (JasperReport) JRLoader.loadObject(compiledReportFile1);
+        assertEquals("the expressions are compiled once", jasperReport0.getCompileNameSuffix(),
+                jasperReport1.getCompileNameSuffix());
+        assertEquals(layer0.getPath().replace('\\', '/'), ImagesSubReport.getGraphic(jasperReport0, 0));
+        assertEquals(layer1.getPath().replace('\\', '/'), ImagesSubReport.getGraphic(jasperReport1, 0));
+        assertEquals("254", jasperReport1.getProperty(Renderable.PROPERTY_IMAGE_DPI));
     }
 
 }
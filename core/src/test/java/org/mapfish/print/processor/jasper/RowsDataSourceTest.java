@@ -0,0 +1,217 @@
+package org.mapfish.print.processor.jasper;
+
+import jsr166y.ForkJoinPool;
+import jsr166y.ForkJoinTask;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import org.junit.After;
+import org.junit.Test;
+import org.mapfish.print.output.Values;
+import org.mapfish.print.processor.AbstractProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RowsDataSourceTest {
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+    private final AbstractProcessor.Context context = new AbstractProcessor.Context();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        this.forkJoinPool.shutdownNow();
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        final TestDataSource dataSource = new TestDataSource(10, 3, -1, 10);
+        dataSource.start();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(dataSource.next());
+            assertEquals(i, dataSource.getFieldValue(createField("row")));
+        }
+        assertFalse(dataSource.next());
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        final TestDataSource dataSource = new TestDataSource(10, 3, -1, 10);
+        dataSource.start();
+        assertEquals(3, dataSource.tasks.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(dataSource.next());
+            assertTrue(dataSource.tasks.size() <= i + 1 + 3);
+        }
+        assertFalse(dataSource.next());
+        assertEquals(10, dataSource.tasks.size());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        final TestDataSource dataSource = new TestDataSource(10, 3, 1, 2);
+        dataSource.start();
+
+        assertTrue(dataSource.next());
+        try {
+            dataSource.next();
+            fail("The error of the row should be thrown");
+        } catch (JRException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(e.getCause().getMessage().contains("row 1"));
+        }
+        // the rows that will not be read are cancelled
+        for (ForkJoinTask<Values> task : dataSource.tasks.subList(2, dataSource.tasks.size())) {
+            assertTrue(task.isCancelled());
+        }
+    }
+
+    @Test
+    public void testCanceled() throws Exception {
+        final TestDataSource dataSource = new TestDataSource(10, 3, -1, 1);
+        dataSource.start();
+
+        assertTrue(dataSource.next());
+        this.context.cancel();
+        try {
+            dataSource.next();
+            fail("The cancellation should be thrown");
+        } catch (CancellationException e) {
+            // expected
+        }
+        for (ForkJoinTask<Values> task : dataSource.tasks.subList(1, dataSource.tasks.size())) {
+            assertTrue(task.isCancelled());
+        }
+    }
+
+    @Test
+    public void testCloseDataSources() throws Exception {
+        final Values values = new Values();
+        final TestDataSource dataSource = new TestDataSource(values, 10, 3, -1, 0);
+        values.put("datasource", dataSource.start());
+        final Values otherValues = new Values();
+        otherValues.put("datasource", dataSource);
+
+        RowsDataSource.closeDataSources(otherValues);
+        assertFalse(dataSource.tasks.get(0).isCancelled());
+
+        RowsDataSource.closeDataSources(values);
+        for (ForkJoinTask<Values> task : dataSource.tasks) {
+            assertTrue(task.isCancelled());
+        }
+    }
+
+    @Test
+    public void testNestedDataSourcesClosed() throws Exception {
+        final TestDataSource dataSource = new TestDataSource(3, 3, -1, 3);
+        dataSource.nestedRowCount = 10;
+        dataSource.nestedBlockedRow = 0;
+        dataSource.start();
+
+        assertTrue(dataSource.next());
+        final TestDataSource nested = (TestDataSource) dataSource.tasks.get(0).get().getObject("nested", Object.class);
+        assertTrue(dataSource.next());
+        // the datasource of the previous row is not read by the report
+        assertEquals(3, nested.tasks.size());
+        for (ForkJoinTask<Values> task : nested.tasks) {
+            assertTrue(task.isCancelled());
+        }
+    }
+
+    @Test
+    public void testMergedNestedDataSources() throws Exception {
+        final Values values = new Values();
+        final TestDataSource dataSource = new TestDataSource(values, 3, 3, -1, 3);
+        dataSource.nestedRowCount = 10;
+        values.put("datasource", dataSource.start());
+
+        final List<Map<String, ?>> rows = new ArrayList<Map<String, ?>>();
+        MergeDataSourceProcessor.SourceType.DATASOURCE.add(rows, values, MergeDataSourceProcessor.Source.createSource(
+                "datasource", MergeDataSourceProcessor.SourceType.DATASOURCE,
+                Collections.singletonMap("nested", "table")));
+
+        // the datasources copied in the merged rows are read after the rows of the merged datasource
+        assertEquals(3, rows.size());
+        for (Map<String, ?> row : rows) {
+            final RowsDataSource nested = (RowsDataSource) row.get("table");
+            for (int i = 0; i < 10; i++) {
+                assertTrue(nested.next());
+                assertEquals(i, nested.getFieldValue(createField("row")));
+            }
+            assertFalse(nested.next());
+        }
+    }
+
+    private static JRDesignField createField(final String name) {
+        final JRDesignField field = new JRDesignField();
+        field.setName(name);
+        return field;
+    }
+
+    /**
+     * The later rows are processed faster than the first ones, the rows from <code>blockedRow</code> wait until the
+     * end of the test.
+     */
+    private final class TestDataSource extends RowsDataSource {
+        private final List<ForkJoinTask<Values>> tasks = new CopyOnWriteArrayList<ForkJoinTask<Values>>();
+        private final int rowCount;
+        private final int failingRow;
+        private final int blockedRow;
+        private int nestedRowCount = 0;
+        private int nestedBlockedRow = -1;
+
+        private TestDataSource(final int rowCount, final int maxParallelRows, final int failingRow,
+                               final int blockedRow) {
+            this(new Values(), rowCount, maxParallelRows, failingRow, blockedRow);
+        }
+
+        private TestDataSource(final Values values, final int rowCount, final int maxParallelRows,
+                               final int failingRow, final int blockedRow) {
+            super(values, RowsDataSourceTest.this.forkJoinPool, rowCount, maxParallelRows,
+                    RowsDataSourceTest.this.context);
+            this.rowCount = rowCount;
+            this.failingRow = failingRow;
+            this.blockedRow = blockedRow;
+        }
+
+        @Override
+        protected ForkJoinTask<Values> createRowTask(final int row) throws JRException {
+            final ForkJoinTask<Values> task = ForkJoinTask.adapt(new Callable<Values>() {
+                @Override
+                public Values call() throws Exception {
+                    if (row >= TestDataSource.this.blockedRow) {
+                        RowsDataSourceTest.this.release.await();
+                    }
+                    Thread.sleep((TestDataSource.this.rowCount - row) * 5);
+                    if (row == TestDataSource.this.failingRow) {
+                        throw new IllegalStateException("row " + row);
+                    }
+                    final Values rowValues = new Values();
+                    rowValues.put("row", row);
+                    if (TestDataSource.this.nestedRowCount > 0) {
+                        final int nestedRowCount = TestDataSource.this.nestedRowCount;
+                        final int nestedBlockedRow = TestDataSource.this.nestedBlockedRow;
+                        rowValues.put("nested", new TestDataSource(rowValues, nestedRowCount, 3, -1,
+                                nestedBlockedRow < 0 ? nestedRowCount : nestedBlockedRow).start());
+                    }
+                    return rowValues;
+                }
+            });
+            this.tasks.add(task);
+            return task;
+        }
+    }
+}
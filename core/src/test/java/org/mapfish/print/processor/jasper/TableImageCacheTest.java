@@ -0,0 +1,79 @@
+package org.mapfish.print.processor.jasper;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TableImageCacheTest extends AbstractMapfishSpringTest {
+    @Test
+    public void testHttpImages() throws Exception {
+        final TableImageCache cache = createCache(1024 * 1024);
+        final ClientHttpRequest request = createRequest("http://icons.test/icon.png");
+        final BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+
+        assertNull(cache.getImage(request));
+        cache.putImage(request, createResponse("max-age=600"), image);
+        assertSame(image, cache.getImage(createRequest("http://ICONS.test/icon.png")));
+    }
+
+    @Test
+    public void testNotShared() throws Exception {
+        final TableImageCache cache = createCache(1024 * 1024);
+        final BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+
+        final ClientHttpRequest withCredentials = createRequest("http://icons.test/icon.png");
+        withCredentials.getHeaders().set("Cookie", "session=1");
+        cache.putImage(withCredentials, createResponse("max-age=600"), image);
+        assertNull(cache.getImage(withCredentials));
+        assertNull(cache.getImage(createRequest("http://icons.test/icon.png")));
+
+        final ClientHttpRequest request = createRequest("http://icons.test/other.png");
+        cache.putImage(request, createResponse("no-store"), image);
+        assertNull(cache.getImage(request));
+        cache.putImage(request, createResponse("max-age=0"), image);
+        assertNull(cache.getImage(request));
+    }
+
+    @Test
+    public void testFileImagesNotShared() throws Exception {
+        final TableImageCache cache = createCache(1024 * 1024);
+        final ClientHttpRequest request = createRequest("file://logo.png");
+
+        cache.putImage(request, createResponse("max-age=600"), new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.getImage(request));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final TableImageCache cache = createCache(0);
+        final ClientHttpRequest request = createRequest("http://icons.test/icon.png");
+
+        cache.putImage(request, createResponse("max-age=600"), new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.getImage(request));
+    }
+
+    private static ClientHttpRequest createRequest(final String uri) throws Exception {
+        return new MockClientHttpRequest(HttpMethod.GET, new URI(uri));
+    }
+
+    private static MockClientHttpResponse createResponse(final String cacheControl) {
+        final MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        response.getHeaders().setCacheControl(cacheControl);
+        return response;
+    }
+
+    private TableImageCache createCache(final long maxSize) {
+        return createBean(TableImageCache.class, ImmutableMap.of("maxSize", maxSize));
+    }
+}
@@ -0,0 +1,137 @@
+package org.mapfish.print.processor.map;
+
+import com.google.common.base.Predicate;
+import com.google.common.io.Files;
+import jsr166y.ForkJoinPool;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.TestHttpClientFactory;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.ConfigurationFactory;
+import org.mapfish.print.config.Template;
+import org.mapfish.print.output.Values;
+import org.mapfish.print.parser.MapfishParser;
+import org.mapfish.print.wrapper.json.PJsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CreateMapProcessorMapExportTest extends AbstractMapfishSpringTest {
+
+    public static final String BASE_DIR = "map_export/";
+
+    @Autowired
+    private ConfigurationFactory configurationFactory;
+    @Autowired
+    private TestHttpClientFactory requestFactory;
+    @Autowired
+    private MapfishParser parser;
+    @Autowired
+    private ForkJoinPool forkJoinPool;
+
+    @Test
+    @DirtiesContext
+    public void testMemoryBudgetExceeded() throws Exception {
+        registerHandlers();
+        final Configuration config = configurationFactory.getConfig(getFile(BASE_DIR + "config.yaml"));
+
+        final Values inMemoryValues = print(config.getTemplate("inMemory"));
+        // all the raster layers are composited from memory, only the svg layer is written
+        final List<URI> inMemoryGraphics = getLayerGraphics(inMemoryValues);
+        assertEquals(1, inMemoryGraphics.size());
+        assertTrue(inMemoryGraphics.get(0).getPath().endsWith(".svg"));
+
+        final Values spillValues = print(config.getTemplate("spill"));
+        // the layers that do not fit in the budget are written and read again
+        final List<URI> spillGraphics = getLayerGraphics(spillValues);
+        assertEquals(3, spillGraphics.size());
+        assertTrue(spillGraphics.get(0).getPath().endsWith(".png"));
+        assertTrue(spillGraphics.get(1).getPath().endsWith(".svg"));
+        assertTrue(spillGraphics.get(2).getPath().endsWith(".png"));
+        for (URI graphic : spillGraphics) {
+            assertTrue(new File(graphic).isFile());
+        }
+
+        final BufferedImage inMemoryMap = readMap(inMemoryValues);
+        final BufferedImage spillMap = readMap(spillValues);
+        assertEquals(630, inMemoryMap.getWidth());
+        assertEquals(294, inMemoryMap.getHeight());
+        assertEquals(inMemoryMap.getWidth(), spillMap.getWidth());
+        assertEquals(inMemoryMap.getHeight(), spillMap.getHeight());
+        for (int x = 0; x < inMemoryMap.getWidth(); x++) {
+            for (int y = 0; y < inMemoryMap.getHeight(); y++) {
+                assertEquals(inMemoryMap.getRGB(x, y), spillMap.getRGB(x, y));
+            }
+        }
+    }
+
+    private Values print(final Template template) throws Exception {
+        final PJsonObject requestData = parseJSONObjectFromFile(CreateMapProcessorMapExportTest.class,
+                BASE_DIR + "requestData.json");
+        final Values values = new Values(requestData, template, this.parser, getTaskDirectory(),
+                this.requestFactory, new File("."), "png");
+        this.forkJoinPool.submit(template.getProcessorGraph().createTask(values)).get();
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<URI> getLayerGraphics(final Values values) {
+        return (List<URI>) values.getObject("layerGraphics", List.class);
+    }
+
+    private static BufferedImage readMap(final Values values) throws Exception {
+        return ImageIO.read(new File(new URI(values.getString("mapSubReport"))));
+    }
+
+    private void registerHandlers() {
+        final String host = "center_wms1_0_0_flexiblescale";
+        requestFactory.registerHandler(
+                new Predicate<URI>() {
+                    @Override
+                    public boolean apply(URI input) {
+                        return (("" + input.getHost()).contains(host + ".wms")) ||
+                                input.getAuthority().contains(host + ".wms");
+                    }
+                }, new TestHttpClientFactory.Handler() {
+                    @Override
+                    public MockClientHttpRequest handleRequest(URI uri, HttpMethod httpMethod) throws Exception {
+                        try {
+                            byte[] bytes = Files.toByteArray(getFile("/map-data/zoomed-in-ny-tiger.tif"));
+                            return ok(uri, bytes, httpMethod);
+                        } catch (AssertionError e) {
+                            return error404(uri, httpMethod);
+                        }
+                    }
+                }
+        );
+        requestFactory.registerHandler(
+                new Predicate<URI>() {
+                    @Override
+                    public boolean apply(URI input) {
+                        return (("" + input.getHost()).contains(host + ".json")) ||
+                                input.getAuthority().contains(host + ".json");
+                    }
+                }, new TestHttpClientFactory.Handler() {
+                    @Override
+                    public MockClientHttpRequest handleRequest(URI uri, HttpMethod httpMethod) throws Exception {
+                        try {
+                            byte[] bytes = Files.toByteArray(getFile("/map-data" + uri.getPath()));
+                            return ok(uri, bytes, httpMethod);
+                        } catch (AssertionError e) {
+                            return error404(uri, httpMethod);
+                        }
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,125 @@
+package org.mapfish.print.processor.map;
+
+import jsr166y.ForkJoinPool;
+import org.junit.After;
+import org.junit.Test;
+import org.mapfish.print.processor.AbstractProcessor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LayerGraphicsRendererTest {
+    private static final String PERMITS = "layers";
+    private static final int MAX_PARALLEL_LAYERS = 2;
+
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(8);
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        this.forkJoinPool.shutdownNow();
+    }
+
+    @Test
+    public void testTwoMapsOfAJob() throws Exception {
+        final AbstractProcessor.Context taskContext = new AbstractProcessor.Context();
+        // the second map is in a datasource row of the same job
+        final AbstractProcessor.Context rowContext = new AbstractProcessor.Context(taskContext);
+        assertSame(taskContext.getTaskPermits(PERMITS, MAX_PARALLEL_LAYERS),
+                rowContext.getTaskPermits(PERMITS, MAX_PARALLEL_LAYERS));
+
+        final Future<List<URI>> map1 = this.forkJoinPool.submit(createMap(taskContext, "map1"));
+        final Future<List<URI>> map2 = this.forkJoinPool.submit(createMap(rowContext, "map2"));
+
+        assertGraphics("map1", map1.get());
+        assertGraphics("map2", map2.get());
+        assertTrue(this.maxRunning.get() <= MAX_PARALLEL_LAYERS);
+        assertEquals(MAX_PARALLEL_LAYERS, taskContext.getTaskPermits(PERMITS, MAX_PARALLEL_LAYERS).availablePermits());
+    }
+
+    @Test
+    public void testPermitsReleasedOnError() throws Exception {
+        final Semaphore permits = new AbstractProcessor.Context().getTaskPermits(PERMITS, MAX_PARALLEL_LAYERS);
+        final List<Callable<URI>> tasks = createTasks("map", 6);
+        tasks.set(1, new Callable<URI>() {
+            @Override
+            public URI call() throws Exception {
+                throw new IllegalStateException("layer 1");
+            }
+        });
+
+        try {
+            LayerGraphicsRenderer.render(this.forkJoinPool, permits, tasks, true);
+            fail("The error of the layer should be thrown");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        this.forkJoinPool.shutdown();
+        assertTrue(this.forkJoinPool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(MAX_PARALLEL_LAYERS, permits.availablePermits());
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        final Semaphore permits = new AbstractProcessor.Context().getTaskPermits(PERMITS, 1);
+
+        assertGraphics("map", LayerGraphicsRenderer.render(this.forkJoinPool, permits, createTasks("map", 6), false));
+        assertEquals(1, this.maxRunning.get());
+        assertEquals(1, permits.availablePermits());
+    }
+
+    private Callable<List<URI>> createMap(final AbstractProcessor.Context context, final String name) {
+        return new Callable<List<URI>>() {
+            @Override
+            public List<URI> call() throws Exception {
+                final Semaphore permits = context.getTaskPermits(PERMITS, MAX_PARALLEL_LAYERS);
+                return LayerGraphicsRenderer.render(LayerGraphicsRendererTest.this.forkJoinPool, permits,
+                        createTasks(name, 6), true);
+            }
+        };
+    }
+
+    private List<Callable<URI>> createTasks(final String name, final int count) {
+        final List<Callable<URI>> tasks = new ArrayList<Callable<URI>>();
+        for (int i = 0; i < count; i++) {
+            final URI graphic = URI.create("file:///" + name + "_layer_" + i + ".png");
+            tasks.add(new Callable<URI>() {
+                @Override
+                public URI call() throws Exception {
+                    final int current = LayerGraphicsRendererTest.this.running.incrementAndGet();
+                    try {
+                        final AtomicInteger maxRunning = LayerGraphicsRendererTest.this.maxRunning;
+                        int max;
+                        do {
+                            max = maxRunning.get();
+                        } while (current > max && !maxRunning.compareAndSet(max, current));
+                        Thread.sleep(20);
+                        return graphic;
+                    } finally {
+                        LayerGraphicsRendererTest.this.running.decrementAndGet();
+                    }
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private static void assertGraphics(final String name, final List<URI> graphics) {
+        assertEquals(6, graphics.size());
+        for (int i = 0; i < graphics.size(); i++) {
+            assertEquals(URI.create("file:///" + name + "_layer_" + i + ".png"), graphics.get(i));
+        }
+    }
+}
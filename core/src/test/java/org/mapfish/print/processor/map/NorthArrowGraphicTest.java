@@ -1,5 +1,9 @@
 package org.mapfish.print.processor.map;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Test;
 import org.mapfish.print.AbstractMapfishSpringTest;
@@ -18,12 +22,19 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class NorthArrowGraphicTest extends AbstractMapfishSpringTest {
     private static final String BASE_DIR = "north_arrow/";
 
     @Autowired
     private ConfigurationFactory configurationFactory;
 
+    @Autowired
+    private MetricRegistry metricRegistry;
+
     @Autowired
     private TestHttpClientFactory requestFactory;
     private ConfigFileResolvingHttpRequestFactory requestFactoryWrapper;
@@ -200,4 +211,25 @@ public class NorthArrowGraphicTest extends AbstractMapfishSpringTest {
 //        ImageSimilarity.writeUncompressedImage(referenceImage, "/tmp/expected-north-arrow_10-default.tiff");
         new ImageSimilarity(referenceImage, 2).assertSimilarity(getFile(BASE_DIR + "expected-north-arrow_10-default.tiff"), 75);
     }
+
+    @Test
+    public void testCreateCached() throws Exception {
+        final DecorationCache cache = createBean(DecorationCache.class, ImmutableMap.of("maxSize", 1024 * 1024));
+        final Counter hits = this.metricRegistry.counter(DecorationCache.class.getName() + ".hit");
+        final long initialHits = hits.getCount();
+
+        final String graphic = "file://" + getFile(BASE_DIR + "NorthArrow_10.svg").toString();
+        final URI first = NorthArrowGraphic.create(new Dimension(200, 200), graphic,
+                this.bgColor, Math.PI / 2, getTaskDirectory(), this.requestFactoryWrapper, cache);
+        final URI second = NorthArrowGraphic.create(new Dimension(200, 200), graphic,
+                this.bgColor, Math.PI / 2, getTaskDirectory(), this.requestFactoryWrapper, cache);
+        assertEquals(initialHits + 1, hits.getCount());
+        assertFalse(first.equals(second));
+        assertTrue(Files.equal(new File(first), new File(second)));
+
+        final URI rotated = NorthArrowGraphic.create(new Dimension(200, 200), graphic,
+                this.bgColor, Math.PI, getTaskDirectory(), this.requestFactoryWrapper, cache);
+        assertEquals(initialHits + 1, hits.getCount());
+        assertFalse(Files.equal(new File(first), new File(rotated)));
+    }
 }
@@ -0,0 +1,168 @@
+package org.mapfish.print.servlet;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.MapPrinter;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ServletMapPrinterFactoryTest extends AbstractMapfishSpringTest {
+    private static final long TIMEOUT = 10000L;
+
+    private File directory;
+    private File configFile;
+    private ServletMapPrinterFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDir();
+        this.configFile = new File(this.directory, "config.yaml");
+        writeConfig("main", 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.factory != null) {
+            this.factory.shutdown();
+        }
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void testCheckRateLimited() throws Exception {
+        createFactory(TIMEOUT * 100);
+        final MapPrinter printer = this.factory.create(null);
+        writeConfig("modified", 10000);
+
+        // the file is not checked again before the end of the interval
+        Thread.sleep(200);
+        assertSame(printer, this.factory.create(null));
+        Thread.sleep(200);
+        assertSame(printer, this.factory.create(null));
+        assertNotNull(printer.getConfiguration().getTemplate("main"));
+    }
+
+    @Test
+    public void testBackgroundReload() throws Exception {
+        createFactory(0);
+        final MapPrinter printer = this.factory.create(null);
+        writeConfig("modified", 10000);
+
+        final MapPrinter newPrinter = waitForReload(printer);
+        assertEquals(Sets.newHashSet("modified"), newPrinter.getConfiguration().getTemplates().keySet());
+        // the reloaded printer is used by the next requests
+        assertSame(newPrinter, this.factory.create(null));
+    }
+
+    @Test
+    public void testBrokenConfigurationNotReloaded() throws Exception {
+        createFactory(0);
+        final MapPrinter printer = this.factory.create(null);
+        Files.write("templates: [", this.configFile, Charsets.UTF_8);
+        assertTrue(this.configFile.setLastModified(this.configFile.lastModified() + 10000));
+
+        // the old configuration is kept until the file is fixed
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(100);
+            assertSame(printer, this.factory.create(null));
+        }
+
+        writeConfig("fixed", 20000);
+        assertEquals(Sets.newHashSet("fixed"), waitForReload(printer).getConfiguration().getTemplates().keySet());
+    }
+
+    @Test
+    public void testAtomicSwap() throws Exception {
+        createFactory(0);
+        final MapPrinter printer = this.factory.create(null);
+        writeConfig("modified", 10000);
+
+        // the concurrent requests get the old or the new printer, never a printer that is replaced after
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Set<MapPrinter> printers = Sets.newSetFromMap(new ConcurrentHashMap<MapPrinter, Boolean>());
+            final Future<?>[] futures = new Future<?>[4];
+            final long end = System.currentTimeMillis() + 500;
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        while (System.currentTimeMillis() < end) {
+                            final MapPrinter current = ServletMapPrinterFactoryTest.this.factory.create(null);
+                            assertNotNull(current);
+                            printers.add(current);
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            final MapPrinter newPrinter = waitForReload(printer);
+            printers.remove(printer);
+            printers.remove(newPrinter);
+            assertTrue(printers.isEmpty());
+            assertSame(newPrinter, this.factory.create(null));
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private void createFactory(final long checkInterval) {
+        this.factory = createBean(ServletMapPrinterFactory.class, ImmutableMap.of(
+                "configurationFiles", ImmutableMap.of(
+                        ServletMapPrinterFactory.DEFAULT_CONFIGURATION_FILE_KEY, this.configFile.getAbsolutePath()),
+                "checkInterval", checkInterval));
+    }
+
+    private MapPrinter waitForReload(final MapPrinter printer) throws Exception {
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        MapPrinter current = this.factory.create(null);
+        while (current == printer && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+            current = this.factory.create(null);
+        }
+        assertNotSame(printer, current);
+        return current;
+    }
+
+    private void writeConfig(final String templateName, final long lastModifiedOffset) throws Exception {
+        final long lastModified = this.configFile.exists() ? this.configFile.lastModified() : 0L;
+        Files.write("templates:\n" +
+                    "  " + templateName + ": !template\n" +
+                    "    mapExport: true\n" +
+                    "    attributes:\n" +
+                    "      map: !map\n" +
+                    "        width: 100\n" +
+                    "        height: 100\n" +
+                    "        maxDpi: 400\n" +
+                    "    processors:\n" +
+                    "    - !createMap {}\n", this.configFile, Charsets.UTF_8);
+        if (lastModifiedOffset > 0) {
+            // make sure that the modification is seen even if the file system has a coarse time resolution
+            assertTrue(this.configFile.setLastModified(lastModified + lastModifiedOffset));
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.mapfish.print.servlet.job;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.config.Configuration;
+import org.mapfish.print.config.Template;
+import org.mapfish.print.servlet.MapPrinterServlet;
+import org.mapfish.print.servlet.job.impl.PrintJobEntryImpl;
+import org.mapfish.print.servlet.job.impl.ThreadPoolJobManager;
+import org.mapfish.print.wrapper.json.PJsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPoolJobManagerTest extends AbstractMapfishSpringTest {
+
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private JobQueue jobQueue;
+
+    private PostingJobQueue postingJobQueue;
+    private TestJobManager jobManager;
+
+    @Before
+    public void setUp() throws Exception {
+        this.postingJobQueue = new PostingJobQueue(this.jobQueue);
+        final StaticApplicationContext jobContext = new StaticApplicationContext(this.context);
+        jobContext.getBeanFactory().registerSingleton("postingJobQueue", this.postingJobQueue);
+        jobContext.refresh();
+        this.jobManager = new TestJobManager(jobContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.jobManager.shutdown();
+    }
+
+    @Test
+    public void testResultPostedOnceOnCompletion() throws Exception {
+        final TestPrintJob printJob = new TestPrintJob("completion");
+        this.jobManager.submit(printJob);
+
+        this.postingJobQueue.awaitPosted();
+        printJob.awaitFinished();
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("done"), this.postingJobQueue.getPosted());
+        assertEquals(1, printJob.reportDeleted.getCount());
+    }
+
+    @Test
+    public void testResultPostedOnceOnFailure() throws Exception {
+        final TestPrintJob printJob = new TestPrintJob("failure") {
+            @Override
+            protected URI print() throws Exception {
+                throw new RuntimeException("failure");
+            }
+        };
+        this.jobManager.submit(printJob);
+
+        this.postingJobQueue.awaitPosted();
+        printJob.awaitFinished();
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("fail"), this.postingJobQueue.getPosted());
+        printJob.awaitReportDeleted();
+    }
+
+    @Test
+    public void testResultPostedOnceOnCancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final TestPrintJob printJob = new TestPrintJob("cancel") {
+            @Override
+            protected URI print() throws Exception {
+                started.countDown();
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                return super.print();
+            }
+        };
+        this.jobManager.submit(printJob);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        this.jobManager.cancel(printJob.getEntry().getReferenceId());
+
+        printJob.awaitFinished();
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("cancel"), this.postingJobQueue.getPosted());
+    }
+
+    @Test
+    public void testReportDeletedWhenCancelledWhileWritten() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(1);
+        final TestPrintJob printJob = new TestPrintJob("cancelWritten") {
+            @Override
+            protected URI print() throws Exception {
+                started.countDown();
+                // the report is written even if the job is interrupted
+                Uninterruptibles.awaitUninterruptibly(written);
+                return super.print();
+            }
+        };
+        this.jobManager.submit(printJob);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        this.jobManager.cancel(printJob.getEntry().getReferenceId());
+        written.countDown();
+
+        printJob.awaitFinished();
+        printJob.awaitReportDeleted();
+        assertEquals(Collections.singletonList("cancel"), this.postingJobQueue.getPosted());
+    }
+
+    @Test
+    public void testWaitForCompletionUntilResultPosted() throws Exception {
+        this.postingJobQueue.postDelay = 500;
+        final TestPrintJob printJob = new TestPrintJob("wait");
+        final String referenceId = printJob.getEntry().getReferenceId();
+        this.jobManager.submit(printJob);
+
+        // the job is finished but its result is not yet in the registry, a create and get request must not poll
+        this.postingJobQueue.awaitPosting();
+        assertTrue(this.jobManager.waitForCompletion(referenceId, 5, TimeUnit.SECONDS));
+        assertEquals(PrintJobStatus.Status.FINISHED, this.jobQueue.get(referenceId, false).getStatus());
+        assertFalse(this.jobManager.waitForCompletion(referenceId, 5, TimeUnit.SECONDS));
+    }
+
+    private static class TestJobManager extends ThreadPoolJobManager {
+        public TestJobManager(final ApplicationContext context) {
+            initForTesting(context);
+        }
+    }
+
+    private class TestPrintJob extends PrintJob {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final CountDownLatch reportDeleted = new CountDownLatch(1);
+
+        public TestPrintJob(final String name) throws Exception {
+            initForTesting(ThreadPoolJobManagerTest.this.context);
+            PrintJobEntryImpl entry = (PrintJobEntryImpl) getEntry();
+            entry.setRequestData(new PJsonObject(new JSONObject(
+                    "{\"" + MapPrinterServlet.JSON_APP + "\":\"default\"}"), "job"));
+            entry.setReferenceId(ThreadPoolJobManagerTest.class.getSimpleName() + "-" + name + "-" +
+                                 System.nanoTime());
+            entry.setStartTime(System.currentTimeMillis());
+            Template template = new Template();
+            template.setConfiguration(new Configuration());
+            entry.configureAccess(template, ThreadPoolJobManagerTest.this.context);
+            setSecurityContext(SecurityContextHolder.createEmptyContext());
+        }
+
+        @Override
+        protected final URI withOpenOutputStream(final PrintAction function) throws Exception {
+            try {
+                return print();
+            } finally {
+                this.finished.countDown();
+            }
+        }
+
+        protected URI print() throws Exception {
+            return new URI("file://123.com");
+        }
+
+        @Override
+        public void deleteReport() {
+            this.reportDeleted.countDown();
+        }
+
+        public void awaitFinished() throws InterruptedException {
+            assertTrue(this.finished.await(5, TimeUnit.SECONDS));
+        }
+
+        public void awaitReportDeleted() throws InterruptedException {
+            assertTrue(this.reportDeleted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Record the results posted by the job manager.
+     */
+    private static final class PostingJobQueue implements JobQueue {
+        private final JobQueue delegate;
+        private final List<String> posted = new CopyOnWriteArrayList<String>();
+        private final CountDownLatch firstPosting = new CountDownLatch(1);
+        private final CountDownLatch firstPosted = new CountDownLatch(1);
+        private volatile long postDelay = 0;
+
+        private PostingJobQueue(final JobQueue delegate) {
+            this.delegate = delegate;
+        }
+
+        public List<String> getPosted() {
+            return this.posted;
+        }
+
+        public void awaitPosting() throws InterruptedException {
+            assertTrue(this.firstPosting.await(5, TimeUnit.SECONDS));
+        }
+
+        public void awaitPosted() throws InterruptedException {
+            assertTrue(this.firstPosted.await(5, TimeUnit.SECONDS));
+        }
+
+        private void post(final String result) {
+            this.posted.add(result);
+            this.firstPosted.countDown();
+        }
+
+        @Override
+        public long getTimeToKeepAfterAccessInMillis() {
+            return this.delegate.getTimeToKeepAfterAccessInMillis();
+        }
+
+        @Override
+        public int getLastPrintCount() {
+            return this.delegate.getLastPrintCount();
+        }
+
+        @Override
+        public long getAverageTimeSpentPrinting() {
+            return this.delegate.getAverageTimeSpentPrinting();
+        }
+
+        @Override
+        public int getNumberOfRequestsMade() {
+            return this.delegate.getNumberOfRequestsMade();
+        }
+
+        @Override
+        public long timeSinceLastStatusCheck(final String referenceId) {
+            return this.delegate.timeSinceLastStatusCheck(referenceId);
+        }
+
+        @Override
+        public int getWaitingJobsCount() {
+            return this.delegate.getWaitingJobsCount();
+        }
+
+        @Override
+        public PrintJobStatus get(final String referenceId, final boolean external)
+                throws NoSuchReferenceException {
+            return this.delegate.get(referenceId, external);
+        }
+
+        @Override
+        public void add(final PrintJobEntry jobEntry) {
+            this.delegate.add(jobEntry);
+        }
+
+        @Override
+        public void cancel(final String referenceId, final String message, final boolean forceFinal)
+                throws NoSuchReferenceException {
+            this.delegate.cancel(referenceId, message, forceFinal);
+            if (forceFinal) {
+                post("cancel");
+            }
+        }
+
+        @Override
+        public void fail(final String referenceId, final String message) throws NoSuchReferenceException {
+            this.delegate.fail(referenceId, message);
+            post("fail");
+        }
+
+        @Override
+        public void start(final String referenceId) throws NoSuchReferenceException {
+            this.delegate.start(referenceId);
+        }
+
+        @Override
+        public void done(final String referenceId, final PrintJobResult result) throws NoSuchReferenceException {
+            this.firstPosting.countDown();
+            try {
+                Thread.sleep(this.postDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.delegate.done(referenceId, result);
+            post("done");
+        }
+
+        @Override
+        public void cancelOld(final long startTimeOut, final long abandonTimeout, final String message) {
+            this.delegate.cancelOld(startTimeOut, abandonTimeout, message);
+        }
+
+        @Override
+        public List<? extends PrintJobStatus> start(final int number) {
+            return this.delegate.start(number);
+        }
+
+        @Override
+        public List<? extends PrintJobStatus> toCancel() {
+            return this.delegate.toCancel();
+        }
+    }
+}
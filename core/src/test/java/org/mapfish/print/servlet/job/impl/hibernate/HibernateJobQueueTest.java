@@ -0,0 +1,90 @@
+package org.mapfish.print.servlet.job.impl.hibernate;
+
+import com.google.common.io.Files;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.mapfish.print.AbstractMapfishSpringTest;
+import org.mapfish.print.config.WorkingDirectories;
+import org.mapfish.print.config.access.AlwaysAllowAssertion;
+import org.mapfish.print.servlet.MapPrinterServlet;
+import org.mapfish.print.servlet.job.JobQueue;
+import org.mapfish.print.servlet.job.NoSuchReferenceException;
+import org.mapfish.print.servlet.job.PrintJobStatus;
+import org.mapfish.print.servlet.job.impl.PrintJobEntryImpl;
+import org.mapfish.print.servlet.job.loader.ReportLoader;
+import org.mapfish.print.wrapper.json.PJsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+@ContextConfiguration(locations = {
+        HibernateJobQueueTest.HIBERNATE_CONTEXT
+})
+public class HibernateJobQueueTest extends AbstractMapfishSpringTest {
+    public static final String HIBERNATE_CONTEXT =
+            "classpath:org/mapfish/print/servlet/job/impl/hibernate/mapfish-spring-application-context-hibernate.xml";
+
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private JobQueue jobQueue;
+    @Autowired
+    private WorkingDirectories workingDirectories;
+
+    @Test
+    public void testReportRoundTrip() throws Exception {
+        final String referenceId = "roundTrip";
+        final byte[] report = "%PDF-1.4 report".getBytes("UTF-8");
+        final File reportFile = writeReport(referenceId, report);
+        this.jobQueue.add(createEntry(referenceId));
+        this.jobQueue.start(referenceId);
+
+        final URI reportURI = new URI("hibernate:" + referenceId);
+        this.jobQueue.done(referenceId, new PrintJobResultExtImpl(reportURI, "report", "pdf", "application/pdf",
+                reportFile));
+        // the report is streamed to the database and the file is deleted
+        assertFalse(reportFile.exists());
+        assertEquals(PrintJobStatus.Status.FINISHED, this.jobQueue.get(referenceId, false).getStatus());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.context.getBean("hibernateReportLoader", ReportLoader.class).loadReport(reportURI, out);
+        assertArrayEquals(report, out.toByteArray());
+    }
+
+    @Test
+    public void testReportDeletedWhenNotStored() throws Exception {
+        final String referenceId = "notStored";
+        final File reportFile = writeReport(referenceId, "%PDF-1.4 report".getBytes("UTF-8"));
+
+        try {
+            this.jobQueue.done(referenceId, new PrintJobResultExtImpl(new URI("hibernate:" + referenceId),
+                    "report", "pdf", "application/pdf", reportFile));
+            fail("The job is not in the queue");
+        } catch (NoSuchReferenceException e) {
+            // expected
+        }
+        assertFalse(reportFile.exists());
+    }
+
+    private File writeReport(final String referenceId, final byte[] report) throws Exception {
+        final File reportFile = new File(this.workingDirectories.getReports(), referenceId);
+        Files.write(report, reportFile);
+        return reportFile;
+    }
+
+    private static PrintJobEntryImpl createEntry(final String referenceId) throws Exception {
+        final PJsonObject requestData = new PJsonObject(new JSONObject(
+                "{\"" + MapPrinterServlet.JSON_APP + "\":\"default\"}"), "job");
+        return new PrintJobEntryImpl(referenceId, requestData, System.currentTimeMillis(),
+                new AlwaysAllowAssertion());
+    }
+}